@@ -0,0 +1,64 @@
+package com.sven.rmtest;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * throughput of outward postcode extraction and matching of a single postcode.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PostcodeBenchmark
+{
+
+    private static final int POSTCODES = 1024;
+
+    private String[] postcodes;
+    private String outwardPostcode;
+    private int index = 0;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        PropertyGenerator generator = new PropertyGenerator(42);
+        postcodes = new String[POSTCODES];
+        for (int i = 0; i < POSTCODES; i++) {
+            postcodes[i] = generator.next(i).getPostcode();
+        }
+        outwardPostcode = generator.getMostPopularOutwardPostcode();
+    }
+
+    @Benchmark
+    public Optional<String> getOutwardPostcode()
+    {
+        return PropertyUtils.getOutwardPostcode(nextPostcode());
+    }
+
+    @Benchmark
+    public boolean isSameOutwardPostcode()
+    {
+        return PropertyUtils.isSameOutwardPostcode(nextPostcode(), outwardPostcode);
+    }
+
+    private String nextPostcode()
+    {
+        index = (index + 1) & (POSTCODES - 1);
+        return postcodes[index];
+    }
+}
@@ -0,0 +1,83 @@
+package com.sven.rmtest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * drill-down of the most popular district by {@link PostcodeRollupCube},
+ * compared with a scan of properties by {@link PropertyUtils}, and time of a price change.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class PostcodeRollupCubeBenchmark
+{
+
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private List<Property> properties;
+    private PostcodeRollupCube cube;
+    private String outwardPostcode;
+    private Property property;
+    private Property changed;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        PropertyGenerator generator = new PropertyGenerator(42);
+        properties = generator.generate(size);
+        cube = PostcodeRollupCube.of(properties);
+        outwardPostcode = generator.getMostPopularOutwardPostcode();
+
+        property = properties.get(0);
+        changed = new Property(property.getPropertyReference(), property.getPrice() * 2,
+                property.getPostcode(), property.getPropertyType());
+        changed.setBedrooms(property.getBedrooms());
+    }
+
+    @Benchmark
+    public PostcodeRollupCube.Cell get()
+    {
+        return cube.get(PostcodeRollupCube.Level.DISTRICT, outwardPostcode, PropertyType.Flat, PostcodeRollupCube.BedroomBand.TWO);
+    }
+
+    @Benchmark
+    public List<PostcodeRollupCube.Cell> drillDown()
+    {
+        return cube.drillDown(PostcodeRollupCube.Level.DISTRICT, outwardPostcode, PropertyType.Flat, null);
+    }
+
+    @Benchmark
+    public Double scan()
+    {
+        return PropertyUtils.getMeanPriceByPostcodeOutward(outwardPostcode, properties);
+    }
+
+    @Benchmark
+    public boolean replace()
+    {
+        //price goes up and back, the cube is the same after each pair of calls
+        boolean replaced = cube.replace(property, changed);
+        Property swap = property;
+        property = changed;
+        changed = swap;
+        return replaced;
+    }
+}
@@ -0,0 +1,32 @@
+package com.sven.rmtest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * load time of the bundled sample data, as {@link Application} loads it.
+ * <p>
+ * the file is fixed, see {@link PropertyLoadBenchmark} for generated data of different sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PropertyClassPathLoadBenchmark
+{
+
+    @Benchmark
+    public List<Property> loadDataFromClassPathFile()
+    {
+        return PropertyUtils.loadDataFromClassPathFile("/property-data.json");
+    }
+}
@@ -0,0 +1,65 @@
+package com.sven.rmtest;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * time of a full summary table by {@link PropertyGroupBy}, sequential and parallel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class PropertyGroupByBenchmark
+{
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private PropertyStore store;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        store = PropertyStore.of(new PropertyGenerator(42).generate(size));
+    }
+
+    @Benchmark
+    public PropertyGroupBy.Table byOutwardPostcode()
+    {
+        return PropertyGroupBy.byOutwardPostcode(store);
+    }
+
+    @Benchmark
+    public PropertyGroupBy.Table byOutwardPostcodeParallel()
+    {
+        return PropertyGroupBy.byOutwardPostcode(store, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public PropertyGroupBy.Table byRegionAndPropertyType()
+    {
+        return PropertyGroupBy.byRegionAndPropertyType(store);
+    }
+
+    @Benchmark
+    public PropertyGroupBy.Table byRegionAndPropertyTypeParallel()
+    {
+        return PropertyGroupBy.byRegionAndPropertyType(store, ForkJoinPool.commonPool());
+    }
+}
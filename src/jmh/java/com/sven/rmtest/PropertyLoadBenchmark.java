@@ -0,0 +1,93 @@
+package com.sven.rmtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * load time of property data.
+ * <p>
+ * generated data is written to a temporary file, 
+ * it's parsed by the same reader as {@link PropertyUtils#loadDataFromClassPathFile(String)},
+ * and by reflective Gson binding for comparison.
+ * loading of the bundled classpath file is in {@link PropertyClassPathLoadBenchmark}, as size doesn't apply to it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class PropertyLoadBenchmark
+{
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        file = Files.createTempFile("property-data-" + size, ".json");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            new PropertyGenerator(42).writeJson(out, size);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException
+    {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<Property> loadDataFromFile()
+    {
+        try (Stream<Property> properties = PropertyUtils.streamDataFromFile(file)) {
+            return properties.collect(Collectors.toList());
+        }
+    }
+
+    @Benchmark
+    public List<Property> loadDataFromFileWithGsonReflection() throws IOException
+    {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return new Gson().fromJson(in, new TypeToken<List<Property>>() {}.getType());
+        }
+    }
+
+    @Benchmark
+    public Double streamMeanPriceFromFile()
+    {
+        try (Stream<Property> properties = PropertyUtils.streamDataFromFile(file)) {
+            return properties
+                    .filter(PropertyUtils.isPropertyType(PropertyType.Flat))
+                    .collect(Collectors.averagingDouble(Property::getPrice));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sven.rmtest;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * throughput of {@link PropertyUtils} queries over generated properties of different sizes,
+ * and of same queries over a {@link PropertyStore} of them.
+ * <p>
+ * run with <code>gradle jmh -PjmhInclude=PropertyQueryBenchmark -PjmhArgs="-p size=1000"</code>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class PropertyQueryBenchmark
+{
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private List<Property> properties;
+    private PropertyStore store;
+    private String outwardPostcode;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        PropertyGenerator generator = new PropertyGenerator(42);
+        properties = generator.generate(size);
+        store = PropertyStore.of(properties);
+        outwardPostcode = generator.getMostPopularOutwardPostcode();
+    }
+
+    @Benchmark
+    public Double getMeanPriceByPostcodeOutward()
+    {
+        return PropertyUtils.getMeanPriceByPostcodeOutward(outwardPostcode, properties);
+    }
+
+    @Benchmark
+    public Double getMeanPriceByPropertyType()
+    {
+        return PropertyUtils.getMeanPriceByPropertyType(PropertyType.Flat, properties);
+    }
+
+    @Benchmark
+    public List<Property> getTopNPercentMostExpensive()
+    {
+        return PropertyUtils.getTopNPercentMostExpensive(10, properties);
+    }
+
+    @Benchmark
+    public double storeGetMeanPriceByPostcodeOutward()
+    {
+        return store.getMeanPriceByPostcodeOutward(outwardPostcode);
+    }
+
+    @Benchmark
+    public double storeGetMeanPriceByPropertyType()
+    {
+        return store.getMeanPriceByPropertyType(PropertyType.Flat);
+    }
+
+    @Benchmark
+    public List<Property> storeGetTopNPercentMostExpensive()
+    {
+        return store.getTopNPercentMostExpensive(10);
+    }
+}
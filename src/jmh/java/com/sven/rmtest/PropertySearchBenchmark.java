@@ -0,0 +1,72 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * latency of a search page ("3+ bed, price 300k-600k, sorted by price, page 5") on {@link PropertyIndex},
+ * and the same page by a full scan for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class PropertySearchBenchmark
+{
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private List<Property> properties;
+    private PropertyIndex index;
+    private PropertySearch search;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        properties = new PropertyGenerator(42).generate(size);
+        index = PropertyIndex.of(PropertyStore.of(properties));
+        search = new PropertySearch.Builder()
+                .price(300000, 600000)
+                .minBedrooms(3)
+                .page(5, 20)
+                .build();
+    }
+
+    @Benchmark
+    public PropertyIndex.Page search()
+    {
+        return index.search(search);
+    }
+
+    @Benchmark
+    public List<Property> scan()
+    {
+        List<Property> matches = new ArrayList<>();
+        for (Property property : properties) {
+            if (property.getPrice() >= search.getMinPrice() && property.getPrice() <= search.getMaxPrice()
+                    && property.getBedrooms() >= search.getMinBedrooms()) {
+                matches.add(property);
+            }
+        }
+        matches.sort(PropertyUtils.propertyPriceDescentComparator.reversed());
+        int from = (int) Math.min(matches.size(), search.getOffset());
+        return matches.subList(from, Math.min(matches.size(), from + search.getPageSize()));
+    }
+}
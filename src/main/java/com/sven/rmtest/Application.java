@@ -8,23 +8,37 @@ public class Application
 
     public static void main(String[] args) {
         
+        //--server [port] answers the same queries over HTTP, see PropertyQueryServer
+        if (args.length > 0 && "--server".equals(args[0])) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : PropertyQueryServer.DEFAULT_PORT;
+            PropertyQueryServer server = PropertyQueryServer.start("/property-data.json", port);
+            System.out.println(String.format("Listening on http://localhost:%d", server.getPort()));
+            return;
+        }
+        
         List<Property> properties = PropertyUtils.loadDataFromClassPathFile("/property-data.json");
         System.out.println(String.format("Loaded %d properties", properties.size()));
         
+        //1 & 2 are collected in one pass over properties
+        String queryPostcodeOutward = "W1F";
+        PropertyQuery query = new PropertyQuery();
+        PropertyQuery.Total postcodeOutward = query.total(PropertyUtils.isPostcodeOutward(queryPostcodeOutward));
+        PropertyQuery.Aggregation<PropertyType> propertyTypes = query.groupByPropertyType();
+        PropertyQuery.Result result = query.execute(properties);
+        
         //1 Find the mean price in the postcode outward "W1F"
         System.out.println("-------------------");
-        String queryPostcodeOutward = "W1F";
-        Double meanPrice = PropertyUtils.getMeanPriceByPostcodeOutward(queryPostcodeOutward, properties);
+        Double meanPrice = result.get(postcodeOutward).getMean();
         System.out.println(String.format("Mean price for postcode [%s] is %f", queryPostcodeOutward, meanPrice));
         
         
         //2 Find the difference in average property prices between detached houses and flats?
         Double detachedHouseMeanPrice = 
-                PropertyUtils.getMeanPriceByPropertyType(PropertyType.Detached, properties);
+                result.get(propertyTypes, PropertyType.Detached).getMean();
         System.out.println(String.format("Mean price of detached houses is %f", detachedHouseMeanPrice));
         
         Double flatMeanPrice = 
-                PropertyUtils.getMeanPriceByPropertyType(PropertyType.Flat, properties);
+                result.get(propertyTypes, PropertyType.Flat).getMean();
         System.out.println(String.format("Mean price of flats is %f", flatMeanPrice));
         
         System.out.println(String.format("Mean price difference between detached houses & flats is %f", 
@@ -0,0 +1,233 @@
+package com.sven.rmtest;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * {@link PropertyUtils} queries over a loaded dataset, with results cached until next dataset is loaded.
+ * <p>
+ * results are keyed by query, its parameters and epoch of the dataset they were calculated on.
+ * loading a dataset starts a new epoch and invalidates all results, so a query which was running
+ * on the previous dataset can't put a stale result for the new one.
+ * datasets are held by a {@link PropertyDatasetHolder}, a reload in background doesn't block queries.
+ * <p>
+ * cache is bounded, least recently used results are evicted first. thread safe.
+ */
+public class CachedPropertyQueries
+{
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    private enum Query
+    {
+        MEAN_BY_POSTCODE_OUTWARD, MEAN_BY_PROPERTY_TYPE, TOP_N_PERCENT
+    }
+
+    private final PropertyDatasetHolder datasets;
+    private final Cache<Key, Object> results;
+
+    public CachedPropertyQueries()
+    {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param maximumSize
+     *  maximum number of cached results
+     */
+    public CachedPropertyQueries(long maximumSize)
+    {
+        this(new PropertyDatasetHolder(), maximumSize);
+    }
+
+    /**
+     * queries over current dataset of giving <code>datasets</code>,
+     * cached results are invalidated whenever a dataset is published to it.
+     * @param datasets
+     * @param maximumSize
+     *  maximum number of cached results
+     */
+    public CachedPropertyQueries(PropertyDatasetHolder datasets, long maximumSize)
+    {
+        this.datasets = datasets;
+        this.results = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        datasets.addListener(s -> results.invalidateAll());
+    }
+
+    /**
+     * replace dataset with <code>properties</code>, invalidating all cached results.
+     * <p>
+     * properties are copied, later changes of the collection have no effect.
+     * @param properties
+     * @return
+     *  epoch of the new dataset
+     */
+    public long load(Collection<Property> properties)
+    {
+        return datasets.publish(properties).getEpoch();
+    }
+
+    /**
+     * replace dataset with properties of JSON classpath file, see {@link #load(Collection)}
+     * @param classPath
+     * @return
+     *  epoch of the new dataset
+     */
+    public long loadClassPathFile(String classPath)
+    {
+        return load(PropertyUtils.loadDataFromClassPathFile(classPath));
+    }
+
+    /**
+     * epoch of current dataset, 0 if nothing is loaded yet
+     * @return
+     */
+    public long getEpoch()
+    {
+        return datasets.get().getEpoch();
+    }
+
+    /**
+     * holder of the datasets queried, e.g. to reload one in background
+     * @return
+     */
+    public PropertyDatasetHolder getDatasets()
+    {
+        return datasets;
+    }
+
+    /**
+     * current dataset, unmodifiable
+     * @return
+     */
+    public List<Property> getProperties()
+    {
+        return datasets.get().getProperties();
+    }
+
+    /**
+     * @see PropertyUtils#getMeanPriceByPostcodeOutward(String, Collection)
+     */
+    public Double getMeanPriceByPostcodeOutward(String postcodeOutward)
+    {
+        PropertyDataset current = datasets.get();
+        //outward postcodes are compared ignoring case and blank means no filter
+        String parameter = StringUtils.isBlank(postcodeOutward) ? "" : postcodeOutward.toUpperCase(Locale.ROOT);
+        return get(new Key(current.getEpoch(), Query.MEAN_BY_POSTCODE_OUTWARD, parameter),
+                () -> PropertyUtils.getMeanPriceByPostcodeOutward(postcodeOutward, current.getProperties()));
+    }
+
+    /**
+     * @see PropertyUtils#getMeanPriceByPropertyType(PropertyType, Collection)
+     */
+    public Double getMeanPriceByPropertyType(PropertyType propertyType)
+    {
+        PropertyDataset current = datasets.get();
+        return get(new Key(current.getEpoch(), Query.MEAN_BY_PROPERTY_TYPE, propertyType),
+                () -> PropertyUtils.getMeanPriceByPropertyType(propertyType, current.getProperties()));
+    }
+
+    /**
+     * @see PropertyUtils#getTopNPercentMostExpensive(int, Collection)
+     * @return
+     *  unmodifiable list, shared by all callers
+     */
+    public List<Property> getTopNPercentMostExpensive(int percent)
+    {
+        PropertyDataset current = datasets.get();
+        return get(new Key(current.getEpoch(), Query.TOP_N_PERCENT, percent),
+                () -> Collections.unmodifiableList(
+                        PropertyUtils.getTopNPercentMostExpensive(percent, current.getProperties())));
+    }
+
+    /**
+     * hit, miss, load time and eviction counts since creation
+     * @return
+     */
+    public CacheStats getStats()
+    {
+        return results.stats();
+    }
+
+    /**
+     * number of cached results
+     * @return
+     */
+    public long getCachedSize()
+    {
+        return results.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Key key, Callable<T> query)
+    {
+        try
+        {
+            PropertyMetrics metrics = PropertyUtils.getMetrics();
+            if (!metrics.isEnabled()) {
+                return (T) results.get(key, query);
+            }
+
+            boolean[] missed = new boolean[1];
+            T result = (T) results.get(key, () -> {
+                missed[0] = true;
+                return query.call();
+            });
+            metrics.recordCacheAccess(CachedPropertyQueries.class.getSimpleName(), !missed[0]);
+            return result;
+        }
+        catch (ExecutionException | UncheckedExecutionException e)
+        {
+            throw new RuntimeException(
+                    String.format("Unabled to run query %s", key.query), e.getCause());
+        }
+    }
+
+    private static class Key
+    {
+        private final long epoch;
+        private final Query query;
+        private final Object parameter;
+
+        private Key(long epoch, Query query, Object parameter)
+        {
+            this.epoch = epoch;
+            this.query = query;
+            this.parameter = parameter;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return epoch == other.epoch && query == other.query && Objects.equals(parameter, other.parameter);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(epoch, query, parameter);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.sven.rmtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * histogram of non negative values (e.g. latencies in nanoseconds) with a fixed relative precision,
+ * like HdrHistogram.
+ * <p>
+ * each power of 2 is split in 32 linear buckets, so a percentile is within about 3% of the recorded value,
+ * from 0 up to {@link Long#MAX_VALUE}, in a fixed 16KB of counters.
+ * recording is lock free and doesn't allocate.
+ * <p>
+ * thread safe, values recorded while reading may or may not be seen.
+ */
+public class LatencyHistogram
+{
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * record a value, negative value is recorded as 0
+     * @param value
+     */
+    public void record(long value)
+    {
+        value = Math.max(0L, value);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    /**
+     * @return
+     *  0 if there is no value
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * @return
+     *  0 if there is no value
+     */
+    public double getMean()
+    {
+        long total = count.sum();
+        return total == 0 ? 0d : (double) sum.sum() / total;
+    }
+
+    /**
+     * value at or below which giving <code>percentile</code> of values are,
+     * i.e. highest value of the bucket it falls in (but not above max).
+     * @param percentile
+     *  from 0 to 100
+     * @return
+     *  0 if there is no value
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0L;
+        }
+
+        long target = Math.max(1L, (long) Math.ceil(Math.min(100d, Math.max(0d, percentile)) / 100d * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(highestValueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * add all values of <code>other</code> to this histogram
+     * @param other
+     */
+    public void add(LatencyHistogram other)
+    {
+        for (int i = 0; i < BUCKETS; i++) {
+            long bucketCount = other.counts.get(i);
+            if (bucketCount != 0) {
+                counts.addAndGet(i, bucketCount);
+            }
+        }
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    /**
+     * remove all values
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0L);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("LatencyHistogram[count=%d, mean=%.1f, p50=%d, p99=%d, p999=%d, max=%d]",
+                getCount(), getMean(), getValueAtPercentile(50), getValueAtPercentile(99),
+                getValueAtPercentile(99.9), getMax());
+    }
+
+    /**
+     * values below 32 have a bucket each,
+     * others are bucketed by their highest bit and the 5 bits below it
+     */
+    static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
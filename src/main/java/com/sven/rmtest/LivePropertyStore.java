@@ -0,0 +1,394 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * mutable, thread safe set of {@link Property} keyed by property reference,
+ * whose statistics are kept up to date on every change instead of being recomputed.
+ * <ul>
+ * <li>mean price per type and per outward postcode: compensated sum and count updated with deltas, read in O(1)</li>
+ * <li>top N most expensive: properties kept ordered by price, read in O(log size + N)</li>
+ * </ul>
+ * properties with same price keep the order in which they were first added,
+ * same as {@link PropertyUtils#getTopNPercentMostExpensive(int, Collection)} on a list of them.
+ * <p>
+ * properties are copied in and out, changing a {@link Property} after adding it has no effect.
+ */
+public class LivePropertyStore
+{
+
+    private static final Comparator<Entry> entryPriceDescentComparator =
+            Comparator.<Entry>comparingDouble(s -> s.property.getPrice()).reversed()
+            .thenComparingLong(s -> s.sequence);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final TreeSet<Entry> entriesByPrice = new TreeSet<>(entryPriceDescentComparator);
+
+    private final PriceSum priceSum = new PriceSum();
+    private final Map<PropertyType, PriceSum> propertyTypePriceSums = new EnumMap<>(PropertyType.class);
+    private final PriceSum noPropertyTypePriceSum = new PriceSum();
+    private final OutwardPostcodeDictionary outwardPostcodes = new OutwardPostcodeDictionary();
+    private final List<PriceSum> outwardPostcodePriceSums = new ArrayList<>();
+
+    private long nextSequence = 0;
+
+    public LivePropertyStore()
+    {
+        for (PropertyType propertyType : PropertyType.values()) {
+            propertyTypePriceSums.put(propertyType, new PriceSum());
+        }
+    }
+
+    /**
+     * create store with giving <code>properties</code>, null elements are skipped.
+     * @param properties
+     * @return
+     */
+    public static LivePropertyStore of(Collection<Property> properties)
+    {
+        LivePropertyStore store = new LivePropertyStore();
+        if (properties != null) {
+            properties.forEach(store::upsert);
+        }
+        return store;
+    }
+
+    /**
+     * add <code>property</code>, or replace the one with same property reference.
+     * <p>
+     * null is ignored.
+     * @param property
+     */
+    public void upsert(Property property)
+    {
+        if (property == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try
+        {
+            Entry previous = entries.get(property.getPropertyReference());
+            long sequence;
+            if (previous != null) {
+                remove(previous);
+                sequence = previous.sequence;
+            } else {
+                sequence = nextSequence++;
+            }
+            add(new Entry(copyOf(property), sequence, outwardPostcodeIdOf(property.getPostcode())));
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * change price of property with giving <code>propertyReference</code>
+     * @param propertyReference
+     * @param price
+     * @return
+     *  false if there is no such property
+     */
+    public boolean updatePrice(long propertyReference, double price)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Entry entry = entries.get(propertyReference);
+            if (entry == null) {
+                return false;
+            }
+            remove(entry);
+            entry.property.setPrice(price);
+            add(entry);
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * remove property with giving <code>propertyReference</code>
+     * @param propertyReference
+     * @return
+     *  false if there is no such property
+     */
+    public boolean remove(long propertyReference)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            Entry entry = entries.get(propertyReference);
+            if (entry == null) {
+                return false;
+            }
+            remove(entry);
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param propertyReference
+     * @return
+     *  copy of the property, null if there is no such property
+     */
+    public Property get(long propertyReference)
+    {
+        lock.readLock().lock();
+        try
+        {
+            Entry entry = entries.get(propertyReference);
+            return entry == null ? null : copyOf(entry.property);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return entries.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * mean price of properties with giving <code>postcodeOutward</code>, compared ignoring case.
+     * <p>
+     * filter will not be triggered if giving  <code>postcodeOutward</code> is blank,
+     * @param postcodeOutward
+     * @return
+     *  0 if no property matches
+     */
+    public double getMeanPriceByPostcodeOutward(String postcodeOutward)
+    {
+        lock.readLock().lock();
+        try
+        {
+            if (StringUtils.isBlank(postcodeOutward)) {
+                return priceSum.getMean();
+            }
+            int id = outwardPostcodes.idOf(postcodeOutward);
+            return id == OutwardPostcodeDictionary.NO_ID ? 0d : outwardPostcodePriceSums.get(id).getMean();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * mean price of properties with giving <code>propertyType</code>.
+     * <p>
+     * null matches properties without property type, as {@link PropertyUtils#isPropertyType(PropertyType)}
+     * and {@link PropertyStore#getMeanPriceByPropertyType(PropertyType)}.
+     * @param propertyType
+     * @return
+     *  0 if no property matches
+     */
+    public double getMeanPriceByPropertyType(PropertyType propertyType)
+    {
+        lock.readLock().lock();
+        try
+        {
+            return priceSumOf(propertyType).getMean();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * get top <code>percent</code> percent most expensive properties,
+     * including properties which have same price as the last one of top N.
+     * <p>
+     * fractional part (if have) is rounded up to upper Integer.
+     * @param percent
+     * @return
+     *  copies of properties, empty list if store is empty
+     */
+    public List<Property> getTopNPercentMostExpensive(int percent)
+    {
+        lock.readLock().lock();
+        try
+        {
+            int n = (int) Math.ceil(entries.size() / 100f * percent );
+            if (n <= 0) {
+                return Collections.emptyList();
+            }
+
+            List<Property> topProperties = new ArrayList<>(n);
+            double lowestPriceInTopN = 0d;
+            for (Entry entry : entriesByPrice) {
+                double price = entry.property.getPrice();
+                if (topProperties.size() < n) {
+                    lowestPriceInTopN = price;
+                } else if (!(price >= lowestPriceInTopN)) {
+                    break;
+                }
+                topProperties.add(copyOf(entry.property));
+            }
+            return topProperties;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Entry entry)
+    {
+        entries.put(entry.property.getPropertyReference(), entry);
+        entriesByPrice.add(entry);
+        updatePriceSums(entry, true);
+    }
+
+    private void remove(Entry entry)
+    {
+        entries.remove(entry.property.getPropertyReference());
+        entriesByPrice.remove(entry);
+        updatePriceSums(entry, false);
+    }
+
+    private void updatePriceSums(Entry entry, boolean add)
+    {
+        double price = entry.property.getPrice();
+        priceSum.update(price, add);
+        priceSumOf(entry.property.getPropertyType()).update(price, add);
+        if (entry.outwardPostcodeId != OutwardPostcodeDictionary.NO_ID) {
+            outwardPostcodePriceSums.get(entry.outwardPostcodeId).update(price, add);
+        }
+    }
+
+    private PriceSum priceSumOf(PropertyType propertyType)
+    {
+        return propertyType == null ? noPropertyTypePriceSum : propertyTypePriceSums.get(propertyType);
+    }
+
+    private int outwardPostcodeIdOf(String postcode)
+    {
+        int id = outwardPostcodes.intern(postcode);
+        while (outwardPostcodePriceSums.size() < outwardPostcodes.size()) {
+            outwardPostcodePriceSums.add(new PriceSum());
+        }
+        return id;
+    }
+
+    private static Property copyOf(Property property)
+    {
+        Property copy = new Property(property.getPropertyReference(), property.getPrice(),
+                property.getPostcode(), property.getPropertyType());
+        copy.setBedrooms(property.getBedrooms());
+        copy.setBathrooms(property.getBathrooms());
+        copy.setHouseNumber(property.getHouseNumber());
+        copy.setAddress(property.getAddress());
+        copy.setRegion(property.getRegion());
+        return copy;
+    }
+
+    private static class Entry
+    {
+        private final Property property;
+        private final long sequence;
+        private final int outwardPostcodeId;
+
+        private Entry(Property property, long sequence, int outwardPostcodeId)
+        {
+            this.property = property;
+            this.sequence = sequence;
+            this.outwardPostcodeId = outwardPostcodeId;
+        }
+    }
+
+    /**
+     * sum and count of prices which can be decreased.
+     * <p>
+     * finite prices are summed with compensation (see {@link PriceStatistics}), so adding and removing
+     * prices of very different size leaves no growing rounding error behind.
+     * infinite and NaN prices are counted instead of summed, so they don't turn the sum into NaN
+     * for good once they are removed or changed.
+     */
+    private static class PriceSum
+    {
+        private long count = 0;
+        private double sum = 0d;
+        private double compensation = 0d;
+        private long positiveInfinities = 0;
+        private long negativeInfinities = 0;
+        private long nans = 0;
+
+        private void update(double price, boolean add)
+        {
+            int delta = add ? 1 : -1;
+            count += delta;
+            if (Double.isNaN(price)) {
+                nans += delta;
+            } else if (price == Double.POSITIVE_INFINITY) {
+                positiveInfinities += delta;
+            } else if (price == Double.NEGATIVE_INFINITY) {
+                negativeInfinities += delta;
+            } else {
+                double value = add ? price : -price;
+                double total = sum + value;
+                compensation += PriceStatistics.roundingErrorOf(sum, value, total);
+                sum = total;
+            }
+
+            //no rounding error left behind once all prices are gone
+            if (count == 0) {
+                sum = 0d;
+                compensation = 0d;
+            }
+        }
+
+        /**
+         * same as a plain sum of current prices divided by count
+         */
+        private double getMean()
+        {
+            if (count == 0) {
+                return 0d;
+            }
+            if (nans > 0 || (positiveInfinities > 0 && negativeInfinities > 0)) {
+                return Double.NaN;
+            }
+            if (positiveInfinities > 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            if (negativeInfinities > 0) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            return (sum + compensation) / count;
+        }
+    }
+}
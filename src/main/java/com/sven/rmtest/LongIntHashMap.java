@@ -0,0 +1,132 @@
+package com.sven.rmtest;
+
+/**
+ * open addressing hash map of primitive long keys to int values, no boxing and no object per entry.
+ * <p>
+ * linear probing, capacity is a power of 2 kept at least twice the size.
+ * entries can't be removed.
+ * <p>
+ * not thread safe.
+ */
+class LongIntHashMap
+{
+    static final int NO_VALUE = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size = 0;
+    private int mask;
+
+    LongIntHashMap()
+    {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize
+     *  number of entries which can be put without resizing
+     */
+    LongIntHashMap(int expectedSize)
+    {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2L && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @param key
+     * @return
+     *  {@link #NO_VALUE} if there is no such key
+     */
+    int get(long key)
+    {
+        for (int slot = slotOf(key); used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * put <code>value</code> if there is no such <code>key</code> yet
+     * @param key
+     * @param value
+     * @return
+     *  value already put for <code>key</code>, {@link #NO_VALUE} if <code>value</code> was put
+     */
+    int putIfAbsent(long key, int value)
+    {
+        int slot = slotOf(key);
+        for (; used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+        return NO_VALUE;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    private void resize()
+    {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int slot = slotOf(oldKeys[i]);
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * spread bits of key (murmur3 finalizer), ids of dictionaries are small and dense
+     */
+    private int slotOf(long key)
+    {
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("LongIntHashMap[size=%d, capacity=%d]", size, keys.length);
+    }
+}
@@ -0,0 +1,283 @@
+package com.sven.rmtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.sven.rmtest.PropertySnapshot.Section;
+
+/**
+ * read only view of a {@link PropertySnapshot} file, mapped into memory with {@link FileChannel#map}.
+ * <p>
+ * opening reads the header and the small outward postcode table only,
+ * queries run straight over the mapped columns and strings are decoded only when a {@link Property} is built.
+ * pages are loaded by the OS on first access and shared between processes mapping the same file.
+ * <p>
+ * safe to be shared between threads, mapping is released by garbage collection after close.
+ */
+public class MappedPropertySnapshot implements Closeable
+{
+
+    private final String source;
+    private final FileChannel channel;
+    private final int size;
+
+    private final LongBuffer propertyReferences;
+    private final DoubleBuffer prices;
+    private final IntBuffer bedrooms;
+    private final IntBuffer bathrooms;
+    private final ByteBuffer propertyTypeOrdinals;
+    private final IntBuffer outwardPostcodeIds;
+    private final IntBuffer regionIds;
+    private final IntBuffer houseNumbers;
+    private final IntBuffer addresses;
+    private final IntBuffer postcodes;
+    private final IntBuffer regionTable;
+    private final LongBuffer stringOffsets;
+    private final ByteBuffer stringBytes;
+
+    private final OutwardPostcodeDictionary outwardPostcodes = new OutwardPostcodeDictionary();
+
+    private MappedPropertySnapshot(Path file, FileChannel channel) throws IOException
+    {
+        this.source = file.toString();
+        this.channel = channel;
+
+        ByteBuffer header = map(0, PropertySnapshot.HEADER_SIZE);
+        if (header.getInt() != PropertySnapshot.MAGIC) {
+            throw new RuntimeException(String.format("File [%s] is not a property snapshot", source));
+        }
+        int version = header.getInt();
+        if (version != PropertySnapshot.VERSION) {
+            throw new RuntimeException(
+                    String.format("Snapshot [%s] has unsupported version %d", source, version));
+        }
+        this.size = header.getInt();
+        int stringCount = header.getInt();
+        int outwardPostcodeCount = header.getInt();
+        int regionCount = header.getInt();
+        long[] offsets = new long[Section.values().length];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = header.getLong();
+        }
+
+        this.propertyReferences = map(offsets[Section.PROPERTY_REFERENCES.ordinal()], 8L * size).asLongBuffer();
+        this.prices = map(offsets[Section.PRICES.ordinal()], 8L * size).asDoubleBuffer();
+        this.bedrooms = map(offsets[Section.BEDROOMS.ordinal()], 4L * size).asIntBuffer();
+        this.bathrooms = map(offsets[Section.BATHROOMS.ordinal()], 4L * size).asIntBuffer();
+        this.propertyTypeOrdinals = map(offsets[Section.PROPERTY_TYPES.ordinal()], size);
+        this.outwardPostcodeIds = map(offsets[Section.OUTWARD_POSTCODES.ordinal()], 4L * size).asIntBuffer();
+        this.regionIds = map(offsets[Section.REGIONS.ordinal()], 4L * size).asIntBuffer();
+        this.houseNumbers = map(offsets[Section.HOUSE_NUMBERS.ordinal()], 4L * size).asIntBuffer();
+        this.addresses = map(offsets[Section.ADDRESSES.ordinal()], 4L * size).asIntBuffer();
+        this.postcodes = map(offsets[Section.POSTCODES.ordinal()], 4L * size).asIntBuffer();
+        this.regionTable = map(offsets[Section.REGION_TABLE.ordinal()], 4L * regionCount).asIntBuffer();
+        this.stringOffsets = map(offsets[Section.STRING_OFFSETS.ordinal()], 8L * (stringCount + 1)).asLongBuffer();
+        this.stringBytes = map(offsets[Section.STRING_BYTES.ordinal()], stringOffsets.get(stringCount));
+
+        //ids of the dictionary are same as ids in the file as outward postcodes are added in order
+        IntBuffer outwardPostcodeTable = map(offsets[Section.OUTWARD_POSTCODE_TABLE.ordinal()],
+                4L * outwardPostcodeCount).asIntBuffer();
+        for (int id = 0; id < outwardPostcodeCount; id++) {
+            String outwardPostcode = getString(outwardPostcodeTable.get(id));
+            if (outwardPostcodes.internOutward(outwardPostcode) != id) {
+                throw new RuntimeException(String.format(
+                        "Snapshot [%s] has blank or duplicate outward postcode [%s] at %d", source, outwardPostcode, id));
+            }
+        }
+    }
+
+    /**
+     * map giving snapshot <code>file</code>
+     * <p>
+     * throw RuntimeException if file can't be read or isn't a supported snapshot.
+     * @param file
+     * @return
+     */
+    public static MappedPropertySnapshot open(Path file)
+    {
+        FileChannel channel = null;
+        try
+        {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            return new MappedPropertySnapshot(file, channel);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            closeQuietly(channel);
+            if (e instanceof RuntimeException && e.getCause() == null) {
+                throw (RuntimeException) e;
+            }
+            throw new RuntimeException(
+                    String.format("Unabled to open snapshot [%s]", file), e);
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * mean price of properties with giving <code>postcodeOutward</code>, compared ignoring case.
+     * <p>
+     * filter will not be triggered if giving  <code>postcodeOutward</code> is blank,
+     * @param postcodeOutward
+     * @return
+     *  0 if no property matches
+     */
+    public double getMeanPriceByPostcodeOutward(String postcodeOutward)
+    {
+        if (StringUtils.isBlank(postcodeOutward)) {
+            double sum = 0d;
+            for (int i = 0; i < size; i++) {
+                sum += prices.get(i);
+            }
+            return size == 0 ? 0d : sum / size;
+        }
+
+        int outwardPostcodeId = outwardPostcodes.idOf(postcodeOutward);
+        if (outwardPostcodeId == OutwardPostcodeDictionary.NO_ID) {
+            return 0d;
+        }
+
+        double sum = 0d;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (outwardPostcodeIds.get(i) == outwardPostcodeId) {
+                sum += prices.get(i);
+                count++;
+            }
+        }
+        return count == 0 ? 0d : sum / count;
+    }
+
+    /**
+     * mean price of properties with giving <code>propertyType</code>.
+     * @param propertyType
+     * @return
+     *  0 if no property matches
+     */
+    public double getMeanPriceByPropertyType(PropertyType propertyType)
+    {
+        byte ordinal = propertyType == null ? PropertyStore.NO_PROPERTY_TYPE : (byte) propertyType.ordinal();
+
+        double sum = 0d;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (propertyTypeOrdinals.get(i) == ordinal) {
+                sum += prices.get(i);
+                count++;
+            }
+        }
+        return count == 0 ? 0d : sum / count;
+    }
+
+    /**
+     * get top <code>percent</code> percent most expensive properties,
+     * including properties which have same price as the last one of top N.
+     * <p>
+     * fractional part (if have) is rounded up to upper Integer.
+     * @param percent
+     * @return
+     *  empty list if snapshot is empty
+     * @see PropertyUtils#getTopNPercentMostExpensive(int, java.util.Collection)
+     */
+    public List<Property> getTopNPercentMostExpensive(int percent)
+    {
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+
+        //price column is copied in bulk, selection needs random access to it many times
+        double[] rowPrices = new double[size];
+        prices.duplicate().get(rowPrices);
+
+        int n = (int) Math.ceil(size / 100f * percent );
+        int[] rows = PropertyTopN.selectTopRows(rowPrices, 0, size, n, true);
+        List<Property> topProperties = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            topProperties.add(getProperty(row));
+        }
+        return topProperties;
+    }
+
+    /**
+     * create a new {@link Property} with values of giving <code>row</code>
+     * @param row
+     * @return
+     */
+    public Property getProperty(int row)
+    {
+        byte ordinal = propertyTypeOrdinals.get(row);
+        Property property = new Property(propertyReferences.get(row), prices.get(row),
+                getString(postcodes.get(row)),
+                ordinal == PropertyStore.NO_PROPERTY_TYPE ? null : PropertyType.values()[ordinal]);
+        property.setBedrooms(bedrooms.get(row));
+        property.setBathrooms(bathrooms.get(row));
+        property.setHouseNumber(getString(houseNumbers.get(row)));
+        property.setAddress(getString(addresses.get(row)));
+        int regionId = regionIds.get(row);
+        property.setRegion(regionId < 0 ? null : getString(regionTable.get(regionId)));
+        return property;
+    }
+
+    @Override
+    public void close()
+    {
+        closeQuietly(channel);
+    }
+
+    private String getString(int id)
+    {
+        if (id < 0) {
+            return null;
+        }
+        int from = (int) stringOffsets.get(id);
+        int to = (int) stringOffsets.get(id + 1);
+        byte[] bytes = new byte[to - from];
+        ByteBuffer string = stringBytes.duplicate();
+        string.position(from);
+        string.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer map(long offset, long length) throws IOException
+    {
+        if (length > Integer.MAX_VALUE) {
+            throw new RuntimeException(
+                    String.format("Section of snapshot [%s] is larger than 2GB", source));
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        buffer.order(PropertySnapshot.BYTE_ORDER);
+        return buffer;
+    }
+
+    private static void closeQuietly(FileChannel channel)
+    {
+        if (channel == null) {
+            return;
+        }
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            //nothing to do with it
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.sven.rmtest;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * canonical dictionary of outward postcodes, each distinct outward (ignoring case) is given a dense id starting from 0.
+ * <p>
+ * outward is looked up in place from a full postcode, no substring or upper case copy is created,
+ * so a postcode filter becomes an int comparison of ids.
+ * canonical outward is the upper case one.
+ * <p>
+ * not thread safe while outwards are being added.
+ * @see PropertyUtils#getOutwardPostcode(String)
+ */
+public class OutwardPostcodeDictionary
+{
+    public static final int NO_ID = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * open addressing hash table of id + 1, 0 is an empty slot.
+     */
+    private int[] slots = new int[INITIAL_CAPACITY];
+    private String[] outwards = new String[INITIAL_CAPACITY / 2];
+    private int size = 0;
+
+    /**
+     * get id of outward of giving <code>postcode</code>, add it to the dictionary if it's new.
+     * @param postcode
+     * @return
+     *  {@link #NO_ID} if <code>postcode</code> or its outward is blank, e.g. " W1F 7AA"
+     */
+    public int intern(String postcode)
+    {
+        int length = outwardLengthOf(postcode);
+        if (length < 0) {
+            return NO_ID;
+        }
+        return intern(postcode, length);
+    }
+
+    /**
+     * get id of giving <code>outwardPostcode</code> as it is, add it to the dictionary if it's new,
+     * e.g. to rebuild a dictionary from its outwards in order of ids.
+     * @param outwardPostcode
+     * @return
+     *  {@link #NO_ID} if <code>outwardPostcode</code> is null or empty, same as {@link #intern(String)}
+     */
+    public int internOutward(String outwardPostcode)
+    {
+        if (outwardPostcode == null || outwardPostcode.isEmpty()) {
+            return NO_ID;
+        }
+        return intern(outwardPostcode, outwardPostcode.length());
+    }
+
+    /**
+     * get id of outward of giving <code>postcode</code>
+     * @param postcode
+     * @return
+     *  {@link #NO_ID} if <code>postcode</code> is blank or not in the dictionary
+     */
+    public int idOfPostcode(String postcode)
+    {
+        int length = outwardLengthOf(postcode);
+        if (length < 0) {
+            return NO_ID;
+        }
+        return slots[findSlot(postcode, length, hash(postcode, length))] - 1;
+    }
+
+    /**
+     * get id of giving <code>outwardPostcode</code>, compared ignoring case.
+     * @param outwardPostcode
+     * @return
+     *  {@link #NO_ID} if <code>outwardPostcode</code> is null, empty or not in the dictionary
+     */
+    public int idOf(String outwardPostcode)
+    {
+        if (outwardPostcode == null || outwardPostcode.isEmpty()) {
+            return NO_ID;
+        }
+        int length = outwardPostcode.length();
+        return slots[findSlot(outwardPostcode, length, hash(outwardPostcode, length))] - 1;
+    }
+
+    /**
+     * get canonical outward of giving <code>id</code>
+     * @param id
+     * @return
+     *  null if <code>id</code> is {@link #NO_ID}
+     */
+    public String get(int id)
+    {
+        return id == NO_ID ? null : outwards[id];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * add first <code>length</code> chars of <code>value</code> if they are new
+     */
+    private int intern(String value, int length)
+    {
+        int hash = hash(value, length);
+        int slot = findSlot(value, length, hash);
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+
+        if (size == outwards.length) {
+            outwards = Arrays.copyOf(outwards, size * 2);
+        }
+        outwards[size] = value.substring(0, length).toUpperCase(Locale.ROOT);
+        slots[slot] = ++size;
+
+        //keep load factor under 0.5
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return size - 1;
+    }
+
+    private int findSlot(String value, int length, int hash)
+    {
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            String outward = outwards[slots[slot] - 1];
+            if (outward.length() == length && outward.regionMatches(true, 0, value, 0, length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash()
+    {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hash(outwards[id], outwards[id].length()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+        }
+    }
+
+    /**
+     * length of outward of <code>postcode</code>, a postcode starting with a space has an empty outward
+     * @return
+     *  -1 if outward is blank
+     */
+    private static int outwardLengthOf(String postcode)
+    {
+        int length = PropertyUtils.getOutwardPostcodeLength(postcode);
+        return length == 0 ? -1 : length;
+    }
+
+    /**
+     * hash of first <code>length</code> chars, consistent with {@link String#equalsIgnoreCase(String)}
+     */
+    private static int hash(String value, int length)
+    {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+        }
+
+        //spread low bits, table size is power of 2
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,745 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * materialized count, sum, min and max of prices for every cell of postcode level x property type x bedroom band,
+ * built once at load time and kept up to date by {@link #add(Property)} and {@link #remove(Property)}.
+ * <p>
+ * postcodes nest as area (<code>"SW"</code>) -&gt; district, the outward postcode (<code>"SW1A"</code>)
+ * -&gt; sector (<code>"SW1A 1"</code>) -&gt; unit (<code>"SW1A 1AA"</code>).
+ * null property type or bedroom band of a query stands for all of them, so a roll-up is a lookup of the parent
+ * or the "all" cell and a drill-down is a lookup of the children, no property is scanned.
+ * <ul>
+ * <li>properties without postcode are left out, a postcode without inward code counts to its area and district only</li>
+ * <li>properties without property type count to cells of all property types only</li>
+ * <li>a change touches cells of the postcodes of a property: count and sum by delta,
+ * min and max are merged again from children when the removed price was one of them</li>
+ * <li>units hold a handful of properties, their cells are not materialized but merged from their prices</li>
+ * </ul>
+ * postcodes are compared ignoring case and extra spaces.
+ * <p>
+ * thread safe.
+ */
+public class PostcodeRollupCube
+{
+
+    public enum Level
+    {
+        AREA, DISTRICT, SECTOR, UNIT
+    }
+
+    public enum BedroomBand
+    {
+        STUDIO, ONE, TWO, THREE, FOUR_OR_MORE;
+
+        /**
+         * @param bedrooms
+         * @return
+         *  {@link #STUDIO} for 0 or less
+         */
+        public static BedroomBand of(int bedrooms)
+        {
+            return bedroomBands[Math.max(0, Math.min(bedrooms, FOUR_OR_MORE.ordinal()))];
+        }
+    }
+
+    private static final Level[] levels = Level.values();
+    private static final PropertyType[] propertyTypes = PropertyType.values();
+    private static final BedroomBand[] bedroomBands = BedroomBand.values();
+
+    /**
+     * cells of a node are indexed by <code>propertyType * BANDS + bedroomBand</code>,
+     * 0 is all property types (or no property type for prices) and all bedroom bands
+     */
+    private static final int BANDS = bedroomBands.length + 1;
+    private static final int SLOTS = (propertyTypes.length + 1) * BANDS;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Level, Map<String, Node>> nodes = new EnumMap<>(Level.class);
+
+    public PostcodeRollupCube()
+    {
+        for (Level level : levels) {
+            nodes.put(level, new HashMap<>());
+        }
+    }
+
+    /**
+     * create cube of giving <code>properties</code>, null elements are skipped.
+     * @param properties
+     * @return
+     */
+    public static PostcodeRollupCube of(Collection<Property> properties)
+    {
+        PostcodeRollupCube cube = new PostcodeRollupCube();
+        if (properties != null) {
+            properties.forEach(cube::add);
+        }
+        return cube;
+    }
+
+    /**
+     * add price of <code>property</code> to its cells.
+     * <p>
+     * null is ignored.
+     * @param property
+     */
+    public void add(Property property)
+    {
+        String[] keys = property == null ? null : keysOf(property.getPostcode());
+        if (keys == null) {
+            return;
+        }
+
+        int propertyType = propertyTypeOf(property);
+        int bedroomBand = bedroomBandOf(property);
+        double price = property.getPrice();
+
+        lock.writeLock().lock();
+        try
+        {
+            Node node = createNode(keys);
+            node.pricesOf().add(propertyType * BANDS + bedroomBand, price);
+            for (; node != null; node = node.parent) {
+                if (node.cells != null) {
+                    for (int slot : slotsOf(propertyType, bedroomBand)) {
+                        node.cellToAdd(slot).add(price);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * remove price of <code>property</code> from its cells,
+     * postcode, property type, bedrooms and price must be the same as when it was added.
+     * @param property
+     * @return
+     *  false if no such property was added
+     */
+    public boolean remove(Property property)
+    {
+        String[] keys = property == null ? null : keysOf(property.getPostcode());
+        if (keys == null) {
+            return false;
+        }
+
+        int propertyType = propertyTypeOf(property);
+        int bedroomBand = bedroomBandOf(property);
+        double price = property.getPrice();
+
+        lock.writeLock().lock();
+        try
+        {
+            Node node = findNode(keys);
+            if (node == null || node.prices == null || !node.prices.remove(propertyType * BANDS + bedroomBand, price)) {
+                return false;
+            }
+
+            //children first, min and max of a parent are merged from them
+            for (; node != null; node = node.parent) {
+                if (node.cells != null) {
+                    for (int slot : slotsOf(propertyType, bedroomBand)) {
+                        Aggregate cell = node.cells[slot];
+                        cell.count--;
+                        if (cell.count == 0) {
+                            cell.clear();
+                        } else if (price > cell.min && price < cell.max) {
+                            cell.addToSum(-price);
+                        } else {
+                            merge(node, slot, cell);
+                        }
+                    }
+                }
+                if (node.isEmpty()) {
+                    nodes.get(node.level).remove(node.key);
+                    if (node.parent != null) {
+                        node.parent.children.remove(node.key);
+                    }
+                }
+            }
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * replace <code>previous</code> by <code>property</code> at once, e.g. after a change of price
+     * @param previous
+     *  null if <code>property</code> is new
+     * @param property
+     *  null if <code>previous</code> is gone
+     * @return
+     *  false if <code>previous</code> was not added, <code>property</code> is added anyway
+     */
+    public boolean replace(Property previous, Property property)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            boolean removed = previous == null || remove(previous);
+            add(property);
+            return removed;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * price statistics of one cell
+     * @param level
+     * @param key
+     *  area, outward postcode, sector or postcode of <code>level</code>
+     * @param propertyType
+     *  null for all property types
+     * @param bedroomBand
+     *  null for all bedroom bands
+     * @return
+     *  empty cell if no property falls in it
+     */
+    public Cell get(Level level, String key, PropertyType propertyType, BedroomBand bedroomBand)
+    {
+        String normalizedKey = normalize(key);
+        int slot = slotOf(propertyType, bedroomBand);
+
+        lock.readLock().lock();
+        try
+        {
+            Node node = normalizedKey == null ? null : nodes.get(level).get(normalizedKey);
+            Aggregate cell = node == null ? null : node.cellOf(slot);
+            return new Cell(level, node == null ? normalizedKey : node.key, propertyType, bedroomBand, cell);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * price statistics of non empty cells one level below a cell, e.g. sectors of a district
+     * @param level
+     *  level of <code>key</code>
+     * @param key
+     * @param propertyType
+     *  null for all property types
+     * @param bedroomBand
+     *  null for all bedroom bands
+     * @return
+     *  cells ordered by key, empty list for {@link Level#UNIT} or unknown key
+     */
+    public List<Cell> drillDown(Level level, String key, PropertyType propertyType, BedroomBand bedroomBand)
+    {
+        String normalizedKey = normalize(key);
+        int slot = slotOf(propertyType, bedroomBand);
+
+        lock.readLock().lock();
+        try
+        {
+            Node node = normalizedKey == null ? null : nodes.get(level).get(normalizedKey);
+            if (node == null || node.children == null) {
+                return Collections.emptyList();
+            }
+            return cellsOf(node.children.values(), slot, propertyType, bedroomBand);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * price statistics of all non empty cells of <code>level</code>, e.g. all areas
+     * @param level
+     * @param propertyType
+     *  null for all property types
+     * @param bedroomBand
+     *  null for all bedroom bands
+     * @return
+     *  cells ordered by key
+     */
+    public List<Cell> getCells(Level level, PropertyType propertyType, BedroomBand bedroomBand)
+    {
+        int slot = slotOf(propertyType, bedroomBand);
+
+        lock.readLock().lock();
+        try
+        {
+            return cellsOf(new TreeMap<>(nodes.get(level)).values(), slot, propertyType, bedroomBand);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * price statistics of all properties with a postcode, merged from areas
+     * @param propertyType
+     *  null for all property types
+     * @param bedroomBand
+     *  null for all bedroom bands
+     * @return
+     *  cell without level and key
+     */
+    public Cell getTotal(PropertyType propertyType, BedroomBand bedroomBand)
+    {
+        int slot = slotOf(propertyType, bedroomBand);
+
+        lock.readLock().lock();
+        try
+        {
+            Aggregate total = new Aggregate();
+            for (Node area : nodes.get(Level.AREA).values()) {
+                Aggregate cell = area.cellOf(slot);
+                if (cell != null) {
+                    total.merge(cell);
+                }
+            }
+            return new Cell(null, null, propertyType, bedroomBand, total);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return
+     *  number of properties in cube
+     */
+    public long size()
+    {
+        return getTotal(null, null).getCount();
+    }
+
+    /**
+     * keys of giving <code>postcode</code> from area to unit, sector and unit are null without inward code
+     * @param postcode
+     * @return
+     *  null if <code>postcode</code> is blank
+     */
+    static String[] keysOf(String postcode)
+    {
+        String normalized = normalize(postcode);
+        if (normalized == null) {
+            return null;
+        }
+
+        String[] keys = new String[levels.length];
+        int outwardLength = PropertyUtils.getOutwardPostcodeLength(normalized);
+        String outward = normalized.substring(0, outwardLength);
+
+        int areaLength = 0;
+        while (areaLength < outward.length() && Character.isLetter(outward.charAt(areaLength))) {
+            areaLength++;
+        }
+        keys[Level.AREA.ordinal()] = areaLength == 0 ? outward : outward.substring(0, areaLength);
+        keys[Level.DISTRICT.ordinal()] = outward;
+        if (outwardLength < normalized.length()) {
+            keys[Level.SECTOR.ordinal()] = normalized.substring(0, outwardLength + 2);
+            keys[Level.UNIT.ordinal()] = normalized;
+        }
+        return keys;
+    }
+
+    private static String normalize(String key)
+    {
+        return StringUtils.isBlank(key) ? null : StringUtils.normalizeSpace(key).toUpperCase(Locale.ROOT);
+    }
+
+    private static int propertyTypeOf(Property property)
+    {
+        return property.getPropertyType() == null ? 0 : property.getPropertyType().ordinal() + 1;
+    }
+
+    private static int bedroomBandOf(Property property)
+    {
+        return BedroomBand.of(property.getBedrooms()).ordinal() + 1;
+    }
+
+    private static int slotOf(PropertyType propertyType, BedroomBand bedroomBand)
+    {
+        return (propertyType == null ? 0 : propertyType.ordinal() + 1) * BANDS
+                + (bedroomBand == null ? 0 : bedroomBand.ordinal() + 1);
+    }
+
+    /**
+     * cells a price of <code>propertyType</code> and <code>bedroomBand</code> counts to
+     */
+    private static int[] slotsOf(int propertyType, int bedroomBand)
+    {
+        return propertyType == 0
+                ? new int[] {bedroomBand, 0}
+                : new int[] {propertyType * BANDS + bedroomBand, propertyType * BANDS, bedroomBand, 0};
+    }
+
+    /**
+     * node of deepest key, nodes on the way are created
+     */
+    private Node createNode(String[] keys)
+    {
+        Node node = findNode(keys);
+        if (node != null) {
+            return node;
+        }
+
+        for (Level level : levels) {
+            String key = keys[level.ordinal()];
+            if (key == null) {
+                break;
+            }
+            Map<String, Node> levelNodes = nodes.get(level);
+            Node child = levelNodes.get(key);
+            if (child == null) {
+                child = new Node(level, key, node);
+                levelNodes.put(key, child);
+                if (node != null) {
+                    node.children.put(key, child);
+                }
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * @return
+     *  node of deepest key, null if it doesn't exist
+     */
+    private Node findNode(String[] keys)
+    {
+        //a node exists only with its parents
+        for (int i = levels.length - 1; i >= 0; i--) {
+            if (keys[i] != null) {
+                return nodes.get(levels[i]).get(keys[i]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * set <code>cell</code> of <code>node</code> to merge of same cells of children and prices ending at node
+     */
+    private static void merge(Node node, int slot, Aggregate cell)
+    {
+        cell.clear();
+        if (node.children != null) {
+            for (Node child : node.children.values()) {
+                Aggregate childCell = child.cellOf(slot);
+                if (childCell != null) {
+                    cell.merge(childCell);
+                }
+            }
+        }
+        if (node.prices != null) {
+            node.prices.addTo(cell, slot);
+        }
+    }
+
+    private static List<Cell> cellsOf(Collection<Node> nodes, int slot, PropertyType propertyType, BedroomBand bedroomBand)
+    {
+        List<Cell> cells = new ArrayList<>();
+        for (Node node : nodes) {
+            Aggregate cell = node.cellOf(slot);
+            if (cell != null && cell.count > 0) {
+                cells.add(new Cell(node.level, node.key, propertyType, bedroomBand, cell));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * one postcode of a level with its cells
+     */
+    private static class Node
+    {
+        private final Level level;
+        private final String key;
+        private final Node parent;
+        private final TreeMap<String, Node> children;
+
+        /**
+         * null for units
+         */
+        private final Aggregate[] cells;
+
+        /**
+         * prices of properties whose postcode ends at this node
+         */
+        private Prices prices;
+
+        private Node(Level level, String key, Node parent)
+        {
+            this.level = level;
+            this.key = key;
+            this.parent = parent;
+            this.children = level == Level.UNIT ? null : new TreeMap<>();
+            this.cells = level == Level.UNIT ? null : new Aggregate[SLOTS];
+        }
+
+        /**
+         * cell of <code>slot</code> to add a price to, created if it doesn't exist yet, not for units
+         */
+        private Aggregate cellToAdd(int slot)
+        {
+            if (cells[slot] == null) {
+                cells[slot] = new Aggregate();
+            }
+            return cells[slot];
+        }
+
+        /**
+         * read only, a cell is created by {@link #cellToAdd(int)} only
+         * @return
+         *  null if there is no price in cell
+         */
+        private Aggregate cellOf(int slot)
+        {
+            if (cells != null) {
+                return cells[slot];
+            }
+            if (prices == null) {
+                return null;
+            }
+            Aggregate cell = new Aggregate();
+            prices.addTo(cell, slot);
+            return cell;
+        }
+
+        private Prices pricesOf()
+        {
+            if (prices == null) {
+                prices = new Prices();
+            }
+            return prices;
+        }
+
+        private boolean isEmpty()
+        {
+            return cells == null ? prices.size == 0 : cells[0] == null || cells[0].count == 0;
+        }
+    }
+
+    /**
+     * count, min, max and compensated sum, same as {@link PriceStatistics}, so adds and removes don't drift
+     */
+    private static class Aggregate
+    {
+        private long count = 0;
+        private double sum = 0d;
+        private double compensation = 0d;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        private void add(double price)
+        {
+            count++;
+            addToSum(price);
+            min = Math.min(min, price);
+            max = Math.max(max, price);
+        }
+
+        private void merge(Aggregate other)
+        {
+            count += other.count;
+            addToSum(other.sum);
+            addToSum(other.compensation);
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        private void clear()
+        {
+            count = 0;
+            sum = 0d;
+            compensation = 0d;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+        }
+
+        private void addToSum(double value)
+        {
+            double total = sum + value;
+            compensation += PriceStatistics.roundingErrorOf(sum, value, total);
+            sum = total;
+        }
+
+        /**
+         * @return
+         *  plain sum if it overflowed, compensation of an infinite sum is NaN
+         */
+        private double getSum()
+        {
+            double compensatedSum = sum + compensation;
+            return Double.isNaN(compensatedSum) && Double.isInfinite(sum) ? sum : compensatedSum;
+        }
+    }
+
+    /**
+     * unordered prices with their property type and bedroom band, which can be removed
+     */
+    private static class Prices
+    {
+        private byte[] slots = new byte[2];
+        private double[] values = new double[2];
+        private int size = 0;
+
+        private void add(int slot, double price)
+        {
+            if (size == values.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            slots[size] = (byte) slot;
+            values[size++] = price;
+        }
+
+        private boolean remove(int slot, double price)
+        {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot && Double.compare(values[i], price) == 0) {
+                    size--;
+                    slots[i] = slots[size];
+                    values[i] = values[size];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * add prices which count to cell of <code>slot</code>
+         */
+        private void addTo(Aggregate cell, int slot)
+        {
+            int propertyType = slot / BANDS;
+            int bedroomBand = slot % BANDS;
+            for (int i = 0; i < size; i++) {
+                if ((propertyType == 0 || slots[i] / BANDS == propertyType)
+                        && (bedroomBand == 0 || slots[i] % BANDS == bedroomBand)) {
+                    cell.add(values[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * price statistics of one cell
+     */
+    public static class Cell
+    {
+        private final Level level;
+        private final String key;
+        private final PropertyType propertyType;
+        private final BedroomBand bedroomBand;
+        private final long count;
+        private final double sum;
+        private final double min;
+        private final double max;
+
+        private Cell(Level level, String key, PropertyType propertyType, BedroomBand bedroomBand, Aggregate aggregate)
+        {
+            boolean empty = aggregate == null || aggregate.count == 0;
+            this.level = level;
+            this.key = key;
+            this.propertyType = propertyType;
+            this.bedroomBand = bedroomBand;
+            this.count = empty ? 0 : aggregate.count;
+            this.sum = empty ? 0d : aggregate.getSum();
+            this.min = empty ? Double.NaN : aggregate.min;
+            this.max = empty ? Double.NaN : aggregate.max;
+        }
+
+        public Level getLevel()
+        {
+            return level;
+        }
+
+        /**
+         * @return
+         *  canonical, upper case area, outward postcode, sector or postcode
+         */
+        public String getKey()
+        {
+            return key;
+        }
+
+        /**
+         * @return
+         *  null for all property types
+         */
+        public PropertyType getPropertyType()
+        {
+            return propertyType;
+        }
+
+        /**
+         * @return
+         *  null for all bedroom bands
+         */
+        public BedroomBand getBedroomBand()
+        {
+            return bedroomBand;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public double getSum()
+        {
+            return sum;
+        }
+
+        /**
+         * @return
+         *  0 if cell is empty
+         */
+        public double getMean()
+        {
+            return count == 0 ? 0d : sum / count;
+        }
+
+        /**
+         * @return
+         *  NaN if cell is empty
+         */
+        public double getMin()
+        {
+            return min;
+        }
+
+        /**
+         * @return
+         *  NaN if cell is empty
+         */
+        public double getMax()
+        {
+            return max;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.sven.rmtest;
+
+import java.util.Arrays;
+
+/**
+ * branch free, unrolled loops over price columns, the hot loops of {@link PropertyStore} and {@link PropertyTopN}.
+ * <ul>
+ * <li>4 independent sums per loop, so an addition doesn't wait for the previous one</li>
+ * <li>a filter multiplies a price by 1 or 0 instead of branching,
+ * so randomly matching rows don't cost branch mispredictions and the JIT can vectorize the loop.
+ * NaN or infinite prices would turn a sum into NaN, <code>xxxOfFinite</code> loops must only be used with finite prices</li>
+ * <li>rows are compacted by always writing a row and advancing by whether it matches</li>
+ * </ul>
+ * sums are added in a different order than a plain loop, results may differ in the last bits.
+ */
+final class PriceKernels
+{
+
+    /**
+     * number of prices sampled to guess a threshold of top N
+     */
+    static final int THRESHOLD_SAMPLE_SIZE = 1024;
+
+    private PriceKernels()
+    {
+    }
+
+    /**
+     * mean of <code>prices</code> within [from, to)
+     * @return
+     *  0 if range is empty
+     */
+    static double mean(double[] prices, int from, int to)
+    {
+        double sum0 = 0d, sum1 = 0d, sum2 = 0d, sum3 = 0d;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            sum0 += prices[i];
+            sum1 += prices[i + 1];
+            sum2 += prices[i + 2];
+            sum3 += prices[i + 3];
+        }
+        for (; i < to; i++) {
+            sum0 += prices[i];
+        }
+        return mean((sum0 + sum1) + (sum2 + sum3), to - from);
+    }
+
+    /**
+     * mean of finite <code>prices</code> within [from, to) whose <code>keys</code> equal to <code>key</code>,
+     * a price is multiplied by 1 or 0 whether its key matches.
+     * @return
+     *  0 if no key matches
+     * @see #isFinite(double[], int, int)
+     */
+    static double meanOfFinite(byte[] keys, byte key, double[] prices, int from, int to)
+    {
+        double sum0 = 0d, sum1 = 0d, sum2 = 0d, sum3 = 0d;
+        int count = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            int match0 = keys[i] == key ? 1 : 0;
+            int match1 = keys[i + 1] == key ? 1 : 0;
+            int match2 = keys[i + 2] == key ? 1 : 0;
+            int match3 = keys[i + 3] == key ? 1 : 0;
+            sum0 += prices[i] * match0;
+            sum1 += prices[i + 1] * match1;
+            sum2 += prices[i + 2] * match2;
+            sum3 += prices[i + 3] * match3;
+            count += match0 + match1 + match2 + match3;
+        }
+        for (; i < to; i++) {
+            int match = keys[i] == key ? 1 : 0;
+            sum0 += prices[i] * match;
+            count += match;
+        }
+        return mean((sum0 + sum1) + (sum2 + sum3), count);
+    }
+
+    /**
+     * mean of <code>prices</code> within [from, to) whose <code>keys</code> equal to <code>key</code>,
+     * one row at a time, for prices which are not all finite.
+     * @return
+     *  0 if no key matches
+     */
+    static double mean(byte[] keys, byte key, double[] prices, int from, int to)
+    {
+        double sum = 0d;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (keys[i] == key) {
+                sum += prices[i];
+                count++;
+            }
+        }
+        return mean(sum, count);
+    }
+
+    /**
+     * mean of finite <code>prices</code> within [from, to) whose <code>keys</code> equal to <code>key</code>,
+     * a price is multiplied by 1 or 0 whether its key matches.
+     * @return
+     *  0 if no key matches
+     * @see #isFinite(double[], int, int)
+     */
+    static double meanOfFinite(int[] keys, int key, double[] prices, int from, int to)
+    {
+        double sum0 = 0d, sum1 = 0d, sum2 = 0d, sum3 = 0d;
+        int count = 0;
+        int i = from;
+        for (; i + 3 < to; i += 4) {
+            int match0 = keys[i] == key ? 1 : 0;
+            int match1 = keys[i + 1] == key ? 1 : 0;
+            int match2 = keys[i + 2] == key ? 1 : 0;
+            int match3 = keys[i + 3] == key ? 1 : 0;
+            sum0 += prices[i] * match0;
+            sum1 += prices[i + 1] * match1;
+            sum2 += prices[i + 2] * match2;
+            sum3 += prices[i + 3] * match3;
+            count += match0 + match1 + match2 + match3;
+        }
+        for (; i < to; i++) {
+            int match = keys[i] == key ? 1 : 0;
+            sum0 += prices[i] * match;
+            count += match;
+        }
+        return mean((sum0 + sum1) + (sum2 + sum3), count);
+    }
+
+    /**
+     * mean of <code>prices</code> within [from, to) whose <code>keys</code> equal to <code>key</code>,
+     * one row at a time, for prices which are not all finite.
+     * @return
+     *  0 if no key matches
+     */
+    static double mean(int[] keys, int key, double[] prices, int from, int to)
+    {
+        double sum = 0d;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (keys[i] == key) {
+                sum += prices[i];
+                count++;
+            }
+        }
+        return mean(sum, count);
+    }
+
+    /**
+     * @return
+     *  true if all <code>prices</code> within [from, to) are neither infinite nor NaN
+     */
+    static boolean isFinite(double[] prices, int from, int to)
+    {
+        for (int i = from; i < to; i++) {
+            if (!(Math.abs(prices[i]) <= Double.MAX_VALUE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * rows within [from, to) whose price is not less than <code>threshold</code>, in row order.
+     * <p>
+     * NaN prices are kept, they rank before all others.
+     */
+    static int[] rowsNotBelow(double[] prices, int from, int to, double threshold)
+    {
+        int[] rows = new int[to - from];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            rows[count] = i;
+            count += prices[i] < threshold ? 0 : 1;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * guess a price which about <code>n</code> rows within [from, to) are not below,
+     * from prices sampled at even steps, with some margin so it's rather too low than too high.
+     * @return
+     *  NaN if no useful threshold is found, e.g. n is close to number of rows
+     */
+    static double guessThreshold(double[] prices, int from, int to, int n)
+    {
+        int size = to - from;
+        int sampleSize = Math.min(size, THRESHOLD_SAMPLE_SIZE);
+        double[] sample = new double[sampleSize];
+        for (int i = 0; i < sampleSize; i++) {
+            sample[i] = prices[from + (int) ((long) i * size / sampleSize)];
+        }
+        Arrays.sort(sample);
+
+        //rank of threshold from top in sample, 1/8 more plus a few rows as margin
+        long rank = (long) n * sampleSize / size;
+        rank += rank / 8 + 8;
+        return rank >= sampleSize ? Double.NaN : sample[(int) (sampleSize - 1 - rank)];
+    }
+
+    private static double mean(double sum, int count)
+    {
+        return count == 0 ? 0d : sum / count;
+    }
+}
@@ -0,0 +1,403 @@
+package com.sven.rmtest;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * KLL quantile sketch of prices, answers percentiles and top N percent thresholds of a stream
+ * of any size in bounded memory.
+ * <p>
+ * prices are kept in levels, a price in level h stands for 2^h prices. when the sketch is full,
+ * a level is sorted and every other price of it (starting randomly at first or second) is promoted to the next level.
+ * <ul>
+ * <li>memory: about 3 * <code>k</code> prices whatever the number of prices accepted</li>
+ * <li>error: rank of an answer is within about 1.7 / <code>k</code> of the exact rank (1.65% for default k of 200)
+ * with high probability</li>
+ * </ul>
+ * count, min and max are exact.
+ * sketches can be merged, e.g. one per thread or per file, and serialized with {@link #toByteArray()}.
+ * <p>
+ * not thread safe, use one per thread and {@link #merge(PriceSketch)} them.
+ */
+public class PriceSketch
+{
+
+    public static final int DEFAULT_K = 200;
+
+    private static final int MIN_K = 8;
+    private static final byte SERIAL_VERSION = 1;
+
+    private static final double CAPACITY_RATIO = 2d / 3d;
+
+    private final int k;
+    private final Random random = new Random(0x5EED);
+
+    private long count = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private double[][] levels = new double[0][];
+    private int[] levelSizes = new int[0];
+    private int retained = 0;
+    private int capacity = 0;
+
+    public PriceSketch()
+    {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k
+     *  accuracy parameter, larger is more accurate and uses more memory, at least 8
+     */
+    public PriceSketch(int k)
+    {
+        if (k < MIN_K) {
+            throw new RuntimeException(String.format("k of a price sketch must be at least %d, was %d", MIN_K, k));
+        }
+        this.k = k;
+        addLevel();
+    }
+
+    public void accept(double price)
+    {
+        count++;
+        min = Math.min(min, price);
+        max = Math.max(max, price);
+        add(0, price);
+        retained++;
+        if (retained >= capacity) {
+            compress();
+        }
+    }
+
+    /**
+     * merge prices of <code>other</code> into this sketch, <code>other</code> is unchanged.
+     * <p>
+     * throw RuntimeException if sketches don't have the same k
+     * @param other
+     * @return
+     */
+    public PriceSketch merge(PriceSketch other)
+    {
+        if (other.k != k) {
+            throw new RuntimeException(
+                    String.format("Unabled to merge price sketch of k %d into one of k %d", other.k, k));
+        }
+        if (other.count == 0) {
+            return this;
+        }
+
+        while (levels.length < other.levels.length) {
+            addLevel();
+        }
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.levelSizes[level]; i++) {
+                add(level, other.levels[level][i]);
+            }
+            retained += other.levelSizes[level];
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        while (retained >= capacity) {
+            compress();
+        }
+        return this;
+    }
+
+    public int getK()
+    {
+        return k;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * @return
+     *  0 if there is no price
+     */
+    public double getMin()
+    {
+        return count == 0 ? 0d : min;
+    }
+
+    /**
+     * @return
+     *  0 if there is no price
+     */
+    public double getMax()
+    {
+        return count == 0 ? 0d : max;
+    }
+
+    /**
+     * number of prices kept in memory
+     * @return
+     */
+    public int getRetained()
+    {
+        return retained;
+    }
+
+    /**
+     * approximate price below or at which <code>fraction</code> of prices are.
+     * @param fraction
+     *  from 0 (min) to 1 (max)
+     * @return
+     *  NaN if there is no price
+     */
+    public double getQuantile(double fraction)
+    {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (fraction <= 0d) {
+            return min;
+        }
+        if (fraction >= 1d) {
+            return max;
+        }
+
+        SortedView view = sortedView();
+        double target = fraction * count;
+        long weight = 0;
+        for (int i = 0; i < view.prices.length; i++) {
+            weight += view.weights[i];
+            if (weight >= target) {
+                return view.prices[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * approximate fraction of prices below or at giving <code>price</code>
+     * @param price
+     * @return
+     *  0 if there is no price
+     */
+    public double getRank(double price)
+    {
+        if (count == 0) {
+            return 0d;
+        }
+        long weight = 0;
+        for (int level = 0; level < levels.length; level++) {
+            for (int i = 0; i < levelSizes[level]; i++) {
+                if (levels[level][i] <= price) {
+                    weight += 1L << level;
+                }
+            }
+        }
+        return (double) weight / count;
+    }
+
+    /**
+     * approximate lowest price of top <code>percent</code> percent most expensive prices,
+     * top N is rounded up like {@link PropertyUtils#getTopNPercentMostExpensive(int, java.util.Collection)}.
+     * <p>
+     * prices at or above the threshold are the approximate top N percent.
+     * @param percent
+     * @return
+     *  NaN if there is no price or <code>percent</code> isn't positive, no price is above NaN
+     */
+    public double getTopNPercentThreshold(int percent)
+    {
+        if (count == 0 || percent <= 0) {
+            return Double.NaN;
+        }
+        if (percent >= 100) {
+            return min;
+        }
+
+        SortedView view = sortedView();
+        double target = Math.ceil(count / 100d * percent);
+        long weight = 0;
+        for (int i = view.prices.length - 1; i >= 0; i--) {
+            weight += view.weights[i];
+            if (weight >= target) {
+                return view.prices[i];
+            }
+        }
+        return min;
+    }
+
+    /**
+     * serialize this sketch, read back with {@link #fromByteArray(byte[])}
+     * @return
+     */
+    public byte[] toByteArray()
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 8 + 8 + 8 + 4 + 4 * levels.length + 8 * retained);
+        buffer.put(SERIAL_VERSION);
+        buffer.putInt(k);
+        buffer.putLong(count);
+        buffer.putDouble(min);
+        buffer.putDouble(max);
+        buffer.putInt(levels.length);
+        for (int level = 0; level < levels.length; level++) {
+            buffer.putInt(levelSizes[level]);
+            for (int i = 0; i < levelSizes[level]; i++) {
+                buffer.putDouble(levels[level][i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * read a sketch written by {@link #toByteArray()}
+     * <p>
+     * throw RuntimeException if <code>bytes</code> isn't a supported sketch
+     * @param bytes
+     * @return
+     */
+    public static PriceSketch fromByteArray(byte[] bytes)
+    {
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            byte version = buffer.get();
+            if (version != SERIAL_VERSION) {
+                throw new RuntimeException(String.format("Unsupported price sketch version %d", version));
+            }
+            PriceSketch sketch = new PriceSketch(buffer.getInt());
+            sketch.count = buffer.getLong();
+            sketch.min = buffer.getDouble();
+            sketch.max = buffer.getDouble();
+            int levelCount = buffer.getInt();
+            while (sketch.levels.length < levelCount) {
+                sketch.addLevel();
+            }
+            for (int level = 0; level < levelCount; level++) {
+                int size = buffer.getInt();
+                for (int i = 0; i < size; i++) {
+                    sketch.add(level, buffer.getDouble());
+                }
+                sketch.retained += size;
+            }
+            return sketch;
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw new RuntimeException("Unabled to read truncated price sketch", e);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("PriceSketch[k=%d, count=%d, retained=%d, min=%f, median=%f, max=%f]",
+                k, count, retained, getMin(), getQuantile(0.5d), getMax());
+    }
+
+    /**
+     * compact lowest level which is full into next one
+     */
+    private void compress()
+    {
+        for (int level = 0; level < levels.length; level++) {
+            if (levelSizes[level] >= capacityOf(level)) {
+                if (level + 1 == levels.length) {
+                    addLevel();
+                }
+                compact(level);
+                return;
+            }
+        }
+    }
+
+    private void compact(int level)
+    {
+        double[] prices = levels[level];
+        int size = levelSizes[level];
+        Arrays.sort(prices, 0, size);
+
+        //odd price stays in this level
+        int pairs = size / 2;
+        int offset = random.nextBoolean() ? 1 : 0;
+        for (int i = 0; i < pairs; i++) {
+            add(level + 1, prices[2 * i + offset]);
+        }
+        if (size % 2 == 1) {
+            prices[0] = prices[size - 1];
+            levelSizes[level] = 1;
+        } else {
+            levelSizes[level] = 0;
+        }
+        retained -= pairs;
+    }
+
+    private void add(int level, double price)
+    {
+        double[] prices = levels[level];
+        if (levelSizes[level] == prices.length) {
+            prices = levels[level] = Arrays.copyOf(prices, Math.max(8, prices.length * 2));
+        }
+        prices[levelSizes[level]++] = price;
+    }
+
+    private void addLevel()
+    {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        levels[levels.length - 1] = new double[0];
+        levelSizes = Arrays.copyOf(levelSizes, levelSizes.length + 1);
+
+        capacity = 0;
+        for (int level = 0; level < levels.length; level++) {
+            capacity += capacityOf(level);
+        }
+    }
+
+    /**
+     * top level holds k prices, each level below holds 2/3 of the one above, at least 2
+     */
+    private int capacityOf(int level)
+    {
+        int depth = levels.length - level - 1;
+        return (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)) + 1;
+    }
+
+    private SortedView sortedView()
+    {
+        double[] prices = new double[retained];
+        int[] levelOfPrices = new int[retained];
+        int size = 0;
+        for (int level = 0; level < levels.length; level++) {
+            System.arraycopy(levels[level], 0, prices, size, levelSizes[level]);
+            Arrays.fill(levelOfPrices, size, size + levelSizes[level], level);
+            size += levelSizes[level];
+        }
+
+        //sort prices and their weights together
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(prices[a], prices[b]));
+
+        SortedView view = new SortedView(size);
+        for (int i = 0; i < size; i++) {
+            view.prices[i] = prices[order[i]];
+            view.weights[i] = 1L << levelOfPrices[order[i]];
+        }
+        return view;
+    }
+
+    private static class SortedView
+    {
+        private final double[] prices;
+        private final long[] weights;
+
+        private SortedView(int size)
+        {
+            this.prices = new double[size];
+            this.weights = new long[size];
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.sven.rmtest;
+
+/**
+ * count, sum, min, max and mean of prices.
+ * <p>
+ * sum is compensated (Kahan-Babuska), so it's accurate and only depends on the order
+ * prices are accepted and statistics are combined, not on how many threads were used.
+ * <p>
+ * not thread safe, use one per thread and {@link #combine(PriceStatistics)} them.
+ */
+public class PriceStatistics
+{
+    private long count = 0;
+    private double sum = 0d;
+    private double compensation = 0d;
+
+    /**
+     * plain sum, used when compensated one overflows
+     */
+    private double simpleSum = 0d;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void accept(double price)
+    {
+        count++;
+        simpleSum += price;
+        add(price);
+        min = Math.min(min, price);
+        max = Math.max(max, price);
+    }
+
+    /**
+     * merge statistics of <code>other</code> into this one.
+     * @param other
+     * @return
+     */
+    public PriceStatistics combine(PriceStatistics other)
+    {
+        count += other.count;
+        simpleSum += other.simpleSum;
+        add(other.sum);
+        add(other.compensation);
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public double getSum()
+    {
+        double compensatedSum = sum + compensation;
+        if (Double.isNaN(compensatedSum) && Double.isInfinite(simpleSum)) {
+            return simpleSum;
+        }
+        return compensatedSum;
+    }
+
+    /**
+     * @return
+     *  0 if there is no price
+     */
+    public double getMin()
+    {
+        return count == 0 ? 0d : min;
+    }
+
+    /**
+     * @return
+     *  0 if there is no price
+     */
+    public double getMax()
+    {
+        return count == 0 ? 0d : max;
+    }
+
+    /**
+     * @return
+     *  0 if there is no price
+     */
+    public double getMean()
+    {
+        return count == 0 ? 0d : getSum() / count;
+    }
+
+    private void add(double value)
+    {
+        double total = sum + value;
+        compensation += roundingErrorOf(sum, value, total);
+        sum = total;
+    }
+
+    /**
+     * Kahan-Babuska step: what was lost by rounding <code>sum + value</code> to <code>total</code>
+     * @param sum
+     * @param value
+     * @param total
+     * @return
+     */
+    static double roundingErrorOf(double sum, double value, double total)
+    {
+        return Math.abs(sum) >= Math.abs(value) ? (sum - total) + value : (value - total) + sum;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("PriceStatistics[count=%d, sum=%f, min=%f, max=%f, mean=%f]",
+                count, getSum(), getMin(), getMax(), getMean());
+    }
+}
@@ -0,0 +1,76 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * fork join calculation of {@link PriceStatistics} of properties matching a filter.
+ * <p>
+ * properties are split in halves down to chunks of a fixed size, whatever the parallelism of the pool is,
+ * and partial statistics are combined in the same left to right order.
+ * so the result is bit for bit the same on every run.
+ */
+class PriceStatisticsTask extends RecursiveTask<PriceStatistics>
+{
+
+    private static final long serialVersionUID = 1L;
+
+    static final int CHUNK_SIZE = 1 << 13;
+
+    private final List<Property> properties;
+    private final Predicate<Property> filter;
+    private final int from;
+    private final int to;
+
+    private PriceStatisticsTask(List<Property> properties, Predicate<Property> filter, int from, int to)
+    {
+        this.properties = properties;
+        this.filter = filter;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * statistics of <code>properties</code> matching <code>filter</code>, calculated in <code>pool</code>.
+     * <p>
+     * null elements are skipped.
+     * @param properties
+     * @param filter
+     * @param pool
+     * @return
+     */
+    static PriceStatistics aggregate(Collection<Property> properties, Predicate<Property> filter, ForkJoinPool pool)
+    {
+        List<Property> list = properties instanceof List && properties instanceof RandomAccess
+                ? (List<Property>) properties
+                : new ArrayList<>(properties);
+        return pool.invoke(new PriceStatisticsTask(list, filter, 0, list.size()));
+    }
+
+    @Override
+    protected PriceStatistics compute()
+    {
+        if (to - from <= CHUNK_SIZE) {
+            PriceStatistics statistics = new PriceStatistics();
+            for (int i = from; i < to; i++) {
+                Property property = properties.get(i);
+                if (property != null && filter.test(property)) {
+                    statistics.accept(property.getPrice());
+                }
+            }
+            return statistics;
+        }
+
+        int middle = (from + to) >>> 1;
+        PriceStatisticsTask left = new PriceStatisticsTask(properties, filter, from, middle);
+        PriceStatisticsTask right = new PriceStatisticsTask(properties, filter, middle, to);
+        left.fork();
+        PriceStatistics rightStatistics = right.compute();
+        return left.join().combine(rightStatistics);
+    }
+}
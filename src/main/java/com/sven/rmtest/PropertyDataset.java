@@ -0,0 +1,104 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * immutable snapshot of a loaded dataset: its properties, the {@link PropertyStore} built from them
+ * and the {@link PropertyIndex} of the store, row <code>i</code> of the store is element <code>i</code> of the properties.
+ * <p>
+ * a query should read {@link PropertyDatasetHolder#get()} once and use that snapshot to the end,
+ * so it sees a consistent dataset even if a newer one is published meanwhile.
+ */
+public final class PropertyDataset
+{
+
+    private final long epoch;
+    private final List<Property> properties;
+    private final PropertyIndex index;
+
+    private PropertyDataset(long epoch, List<Property> properties, PropertyIndex index)
+    {
+        this.epoch = epoch;
+        this.properties = properties;
+        this.index = index;
+    }
+
+    static PropertyDataset empty()
+    {
+        return new PropertyDataset(0, Collections.emptyList(), PropertyIndex.of(PropertyStore.of(null)));
+    }
+
+    /**
+     * copy <code>properties</code> without null elements and build their store and index, the expensive part of a reload
+     * @param properties
+     * @return
+     *  dataset with epoch 0, see {@link #withEpoch(long)}
+     */
+    static PropertyDataset build(Collection<Property> properties)
+    {
+        List<Property> copy = new ArrayList<>(properties == null ? 0 : properties.size());
+        if (properties != null) {
+            for (Property property : properties) {
+                if (property != null) {
+                    copy.add(property);
+                }
+            }
+        }
+        return new PropertyDataset(0, Collections.unmodifiableList(copy), PropertyIndex.of(PropertyStore.of(copy)));
+    }
+
+    PropertyDataset withEpoch(long epoch)
+    {
+        return new PropertyDataset(epoch, properties, index);
+    }
+
+    /**
+     * epoch of the dataset, increased by each publish of {@link PropertyDatasetHolder}, 0 for the initial empty one
+     * @return
+     */
+    public long getEpoch()
+    {
+        return epoch;
+    }
+
+    /**
+     * properties of the dataset, unmodifiable
+     * @return
+     */
+    public List<Property> getProperties()
+    {
+        return properties;
+    }
+
+    /**
+     * column oriented copy of the properties, in the same order
+     * @return
+     */
+    public PropertyStore getStore()
+    {
+        return index.getStore();
+    }
+
+    /**
+     * search index of the store
+     * @return
+     */
+    public PropertyIndex getIndex()
+    {
+        return index;
+    }
+
+    public int size()
+    {
+        return properties.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("PropertyDataset[epoch=%d, size=%d]", epoch, size());
+    }
+}
@@ -0,0 +1,113 @@
+package com.sven.rmtest;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * holder of the current {@link PropertyDataset}, replaced by a reference swap when a new one is published.
+ * <p>
+ * a new dataset and its store are built before the swap, on the caller thread by {@link #publish(Collection)}
+ * or on a background thread by {@link #reload(Supplier)}, readers are never blocked and never see
+ * a half built dataset. a reader keeping a snapshot keeps it alive, a replaced snapshot is garbage collected
+ * once the last query using it is done.
+ * <pre>
+ * PropertyDatasetHolder datasets = new PropertyDatasetHolder();
+ * datasets.reloadClassPathFile("/property-data.json");
+ * ...
+ * PropertyDataset dataset = datasets.get();
+ * double mean = dataset.getStore().getMeanPriceByPropertyType(PropertyType.Flat);
+ * </pre>
+ * thread safe.
+ */
+public class PropertyDatasetHolder
+{
+
+    //one thread at most, gone when idle
+    private final ExecutorService reloader = new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "property-dataset-reloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final AtomicReference<PropertyDataset> current = new AtomicReference<>(PropertyDataset.empty());
+    private final List<Consumer<PropertyDataset>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * current dataset, empty with epoch 0 until one is published
+     * @return
+     */
+    public PropertyDataset get()
+    {
+        return current.get();
+    }
+
+    /**
+     * build a dataset of giving <code>properties</code> on the caller thread and make it the current one.
+     * <p>
+     * properties are copied, later changes of the collection have no effect.
+     * @param properties
+     * @return
+     *  published dataset
+     */
+    public PropertyDataset publish(Collection<Property> properties)
+    {
+        return swap(PropertyDataset.build(properties));
+    }
+
+    /**
+     * load and build a dataset of properties given by <code>loader</code> on a background thread,
+     * then make it the current one. reloads are run one at a time, in order of calls.
+     * <p>
+     * if loading fails, the current dataset is kept and the returned future completes exceptionally.
+     * @param loader
+     * @return
+     *  future of the published dataset
+     */
+    public CompletableFuture<PropertyDataset> reload(Supplier<? extends Collection<Property>> loader)
+    {
+        return CompletableFuture.supplyAsync(() -> swap(PropertyDataset.build(loader.get())), reloader);
+    }
+
+    /**
+     * reload properties of JSON classpath file in background, see {@link #reload(Supplier)}
+     * @param classPath
+     * @return
+     */
+    public CompletableFuture<PropertyDataset> reloadClassPathFile(String classPath)
+    {
+        return reload(() -> PropertyUtils.loadDataFromClassPathFile(classPath));
+    }
+
+    /**
+     * call <code>listener</code> with each dataset published from now on, after it became the current one
+     * @param listener
+     */
+    public void addListener(Consumer<PropertyDataset> listener)
+    {
+        listeners.add(listener);
+    }
+
+    private PropertyDataset swap(PropertyDataset built)
+    {
+        PropertyDataset published;
+        //epochs follow order of swaps, building is done before
+        synchronized (current) {
+            published = built.withEpoch(current.get().getEpoch() + 1);
+            current.set(published);
+        }
+        for (Consumer<PropertyDataset> listener : listeners) {
+            listener.accept(published);
+        }
+        return published;
+    }
+}
@@ -0,0 +1,278 @@
+package com.sven.rmtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * tail a feed of property events, one {@link Property} JSON object per line (NDJSON),
+ * into {@link WindowedPriceStatistics}.
+ * <p>
+ * a file is followed like <code>tail -f</code>: at its end, the tailer waits for more lines until closed.
+ * an {@link InputStream} is read until its end. a line being written (no line break yet) is kept
+ * until it's complete. blank lines are skipped, a line which is not a property is skipped and counted.
+ * <p>
+ * listeners are called on the tailer thread after a batch of events, as soon as no more input is ready
+ * or at most every {@link #DEFAULT_PUBLISH_INTERVAL_MILLIS} under a sustained rate.
+ * <p>
+ * if reading fails, or a listener or the statistics throw, the tailer stops and the exception is kept
+ * in {@link #getFailure()}.
+ * <pre>
+ * WindowedPriceStatistics statistics = new WindowedPriceStatistics();
+ * PropertyEventTailer tailer = PropertyEventTailer.follow(Paths.get("events.ndjson"), statistics);
+ * tailer.addListener(s -&gt; publish(s.getMeanPriceByPropertyType(PropertyType.Flat, WindowedPriceStatistics.HOUR, Mode.SLIDING)));
+ * tailer.start();
+ * </pre>
+ */
+public class PropertyEventTailer implements Closeable
+{
+
+    public static final long DEFAULT_PUBLISH_INTERVAL_MILLIS = 100;
+    public static final long DEFAULT_POLL_MILLIS = 50;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final String source;
+    private final boolean follow;
+    private final WindowedPriceStatistics statistics;
+    private final List<Consumer<WindowedPriceStatistics>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread thread;
+
+    private volatile boolean closed = false;
+    private volatile long skippedCount = 0;
+    private volatile RuntimeException failure;
+
+    private PropertyEventTailer(InputStream in, String source, boolean follow, WindowedPriceStatistics statistics)
+    {
+        this.in = in;
+        this.source = source;
+        this.follow = follow;
+        this.statistics = statistics;
+        this.thread = new Thread(this::run, "property-event-tailer");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * tail <code>file</code> from its beginning and wait for new lines at its end, until closed.
+     * <p>
+     * throw RuntimeException if file can't be opened
+     * @param file
+     * @param statistics
+     * @return
+     *  tailer not started yet
+     */
+    public static PropertyEventTailer follow(Path file, WindowedPriceStatistics statistics)
+    {
+        try
+        {
+            return new PropertyEventTailer(Files.newInputStream(file), file.toString(), true, statistics);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(
+                    String.format("Unabled to open file [%s]", file), e);
+        }
+    }
+
+    /**
+     * read <code>in</code> until its end, <code>in</code> is closed at the end or when tailer is closed
+     * @param in
+     * @param source
+     *  name of the feed for messages
+     * @param statistics
+     * @return
+     *  tailer not started yet
+     */
+    public static PropertyEventTailer read(InputStream in, String source, WindowedPriceStatistics statistics)
+    {
+        return new PropertyEventTailer(in, source, false, statistics);
+    }
+
+    /**
+     * call <code>listener</code> with the statistics after each batch of events
+     * @param listener
+     */
+    public void addListener(Consumer<WindowedPriceStatistics> listener)
+    {
+        listeners.add(listener);
+    }
+
+    public void start()
+    {
+        thread.start();
+    }
+
+    /**
+     * wait until the end of an {@link InputStream} or until closed
+     * @param millis
+     * @return
+     *  false if still running after <code>millis</code>
+     * @throws InterruptedException
+     */
+    public boolean await(long millis) throws InterruptedException
+    {
+        thread.join(millis);
+        return !thread.isAlive();
+    }
+
+    /**
+     * number of lines which are not a property
+     * @return
+     */
+    public long getSkippedCount()
+    {
+        return skippedCount;
+    }
+
+    /**
+     * @return
+     *  null unless reading, the statistics or a listener failed and tailer stopped
+     */
+    public RuntimeException getFailure()
+    {
+        return failure;
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        thread.interrupt();
+        try
+        {
+            in.close();
+        }
+        catch (IOException e)
+        {
+            //closing anyway
+        }
+    }
+
+    private void run()
+    {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        //start of pending partial line
+        int start = 0;
+        int end = 0;
+        long lastPublish = System.nanoTime();
+        boolean pending = false;
+
+        try
+        {
+            while (!closed) {
+                if (end == buffer.length) {
+                    if (start == 0) {
+                        //a line longer than buffer
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    } else {
+                        System.arraycopy(buffer, start, buffer, 0, end - start);
+                        end -= start;
+                        start = 0;
+                    }
+                }
+
+                if (pending && in.available() == 0) {
+                    //no more input ready, publish what was read
+                    publish();
+                    pending = false;
+                    lastPublish = System.nanoTime();
+                }
+
+                int read = in.read(buffer, end, buffer.length - end);
+                if (read < 0) {
+                    if (!follow) {
+                        break;
+                    }
+                    Thread.sleep(DEFAULT_POLL_MILLIS);
+                    continue;
+                }
+
+                int lineStart = start;
+                for (int i = end; i < end + read; i++) {
+                    if (buffer[i] == '\n') {
+                        accept(buffer, lineStart, i);
+                        lineStart = i + 1;
+                        pending = true;
+                    }
+                }
+                start = lineStart;
+                end += read;
+
+                if (pending && System.nanoTime() - lastPublish >= DEFAULT_PUBLISH_INTERVAL_MILLIS * 1000000L) {
+                    publish();
+                    pending = false;
+                    lastPublish = System.nanoTime();
+                }
+            }
+
+            //last line without line break at end of stream
+            if (!closed && start < end) {
+                accept(buffer, start, end);
+                pending = true;
+            }
+            if (!closed && pending) {
+                publish();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            //closed
+        }
+        catch (IOException e)
+        {
+            if (!closed) {
+                failure = new RuntimeException(
+                        String.format("Unabled to read events of [%s]", source), e);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            failure = new RuntimeException(
+                    String.format("Unabled to process events of [%s]", source), e);
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException e)
+            {
+                //closing anyway
+            }
+        }
+    }
+
+    private void accept(byte[] buffer, int from, int to)
+    {
+        String line = new String(buffer, from, to - from, StandardCharsets.UTF_8).trim();
+        if (line.isEmpty()) {
+            return;
+        }
+        try
+        {
+            statistics.accept(PropertyTypeAdapter.DEFAULT.fromJson(line));
+        }
+        catch (JsonParseException | IOException e)
+        {
+            skippedCount++;
+        }
+    }
+
+    private void publish()
+    {
+        for (Consumer<WindowedPriceStatistics> listener : listeners) {
+            listener.accept(statistics);
+        }
+    }
+}
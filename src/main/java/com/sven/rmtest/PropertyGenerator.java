@@ -0,0 +1,292 @@
+package com.sven.rmtest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * generate synthetic but realistic {@link Property} data for benchmarks and load tests.
+ * <ul>
+ * <li>outward postcodes: popularity follows a Zipf distribution, a few districts have most properties</li>
+ * <li>prices: log-normal, scaled by area and {@link PropertyType}, rounded to 250</li>
+ * <li>region: derived from postcode area</li>
+ * <li>nulls: optionally, each text field and property type is null with a giving rate, as in real feeds</li>
+ * </ul>
+ * same seed and null rate always generate same data.
+ */
+public class PropertyGenerator
+{
+
+    //@formatter:off
+    /**
+     * postcode area, region and price factor of area
+     */
+    private static final Object[][] areas = {
+            {"W", "London", 2.5}, {"WC", "London", 2.8}, {"EC", "London", 2.6}, {"SW", "London", 2.2},
+            {"SE", "London", 1.5}, {"N", "London", 1.6}, {"NW", "London", 1.9}, {"E", "London", 1.4},
+            {"RM", "Essex", 0.9}, {"CM", "Essex", 1.0}, {"SS", "Essex", 0.9},
+            {"M", "Manchester", 0.8}, {"OL", "Manchester", 0.7}, {"B", "Birmingham", 0.7},
+            {"L", "Liverpool", 0.6}, {"LS", "Leeds", 0.7}, {"S", "Sheffield", 0.6}, {"DN", "Sheffield", 0.6},
+            {"BS", "Bristol", 1.0}, {"OX", "Oxford", 1.5}, {"CB", "Cambridge", 1.5},
+            {"G", "Glasgow", 0.6}, {"EH", "Edinburgh", 0.9}, {"CF", "Cardiff", 0.7}, {"NE", "Newcastle", 0.5}
+    };
+    //@formatter:on
+
+    private static final String[] streets = {
+            "Richard Lane", "Brick Road", "Yellow Lane", "Red Admiral Court", "High Street", "Station Road",
+            "Church Street", "Park Avenue", "Victoria Road", "Green Lane", "Manor Road", "Kings Road"
+    };
+
+    private static final String inwardLetters = "ABDEFGHJLNPQRSTUWXYZ";
+
+    private static final int DISTRICTS_PER_AREA = 30;
+
+    private static final double MEDIAN_PRICE = 250000d;
+    private static final double PRICE_SIGMA = 0.6d;
+    private static final double ZIPF_EXPONENT = 1.1d;
+
+    private final Random random;
+    private final double nullRate;
+
+    private final String[] outwardPostcodes;
+    private final String[] regions;
+    private final double[] areaPriceFactors;
+    private final double[] cumulativePopularity;
+
+    public PropertyGenerator(long seed)
+    {
+        this(seed, 0d);
+    }
+
+    /**
+     * @param seed
+     * @param nullRate
+     *  probability from 0 to 1 of house number, address, region, postcode and property type to be null, each on its own
+     */
+    public PropertyGenerator(long seed, double nullRate)
+    {
+        this.random = new Random(seed);
+        this.nullRate = nullRate;
+
+        int count = areas.length * DISTRICTS_PER_AREA;
+        this.outwardPostcodes = new String[count];
+        this.regions = new String[count];
+        this.areaPriceFactors = new double[count];
+        for (int i = 0; i < count; i++) {
+            Object[] area = areas[i % areas.length];
+            int district = i / areas.length + 1;
+            outwardPostcodes[i] = area[0] + String.valueOf(district);
+            regions[i] = (String) area[1];
+            areaPriceFactors[i] = (Double) area[2];
+        }
+
+        //shuffle so popularity isn't tied to area order
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            swap(outwardPostcodes, i, j);
+            swap(regions, i, j);
+            double factor = areaPriceFactors[i];
+            areaPriceFactors[i] = areaPriceFactors[j];
+            areaPriceFactors[j] = factor;
+        }
+
+        this.cumulativePopularity = new double[count];
+        double total = 0d;
+        for (int i = 0; i < count; i++) {
+            total += 1d / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulativePopularity[i] = total;
+        }
+        for (int i = 0; i < count; i++) {
+            cumulativePopularity[i] /= total;
+        }
+    }
+
+    /**
+     * write generated properties to a JSON file, usage:
+     * <pre>
+     * PropertyGenerator &lt;size&gt; &lt;json file&gt; [seed] [null rate]
+     * </pre>
+     * @param args
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Usage: PropertyGenerator <size> <json file> [seed] [null rate]");
+            System.exit(1);
+        }
+
+        int size = Integer.parseInt(args[0]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+        double nullRate = args.length > 3 ? Double.parseDouble(args[3]) : 0d;
+
+        long start = System.currentTimeMillis();
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+            new PropertyGenerator(seed, nullRate).writeJson(out, size);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(String.format("Unabled to write [%s]", args[1]), e);
+        }
+        System.out.println(String.format("Wrote %d properties to [%s] in %d ms",
+                size, args[1], System.currentTimeMillis() - start));
+    }
+
+    /**
+     * generate <code>size</code> properties with property reference from 1 to size
+     * @param size
+     * @return
+     */
+    public List<Property> generate(int size)
+    {
+        List<Property> properties = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            properties.add(next(i));
+        }
+        return properties;
+    }
+
+    /**
+     * generate <code>size</code> properties and write them to <code>out</code> as a JSON array,
+     * in the same format as <code>property-data.json</code>.
+     * <p>
+     * properties are written one by one, so <code>size</code> isn't limited by memory.
+     * <p>
+     * throw RuntimeException if failed
+     * @param out
+     * @param size
+     */
+    public void writeJson(Writer out, int size)
+    {
+        try
+        {
+            JsonWriter writer = new JsonWriter(out);
+            writer.setIndent(" ");
+            writer.beginArray();
+            for (int i = 1; i <= size; i++) {
+                PropertyTypeAdapter.DEFAULT.write(writer, next(i));
+            }
+            writer.endArray();
+            writer.flush();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Unabled to write generated properties", e);
+        }
+    }
+
+    /**
+     * generate next property
+     * @param propertyReference
+     * @return
+     */
+    public Property next(long propertyReference)
+    {
+        int district = nextDistrict();
+        PropertyType propertyType = nextPropertyType();
+
+        double price = MEDIAN_PRICE * areaPriceFactors[district] * priceFactorOf(propertyType)
+                * Math.exp(random.nextGaussian() * PRICE_SIGMA);
+        price = Math.max(250d, Math.round(price / 250d) * 250d);
+
+        Property property = new Property(propertyReference, price, nextPostcode(district), propertyType);
+        property.setBedrooms(nextBedrooms(propertyType));
+        property.setBathrooms(Math.max(1, property.getBedrooms() / 2 + random.nextInt(2)));
+        property.setHouseNumber(String.valueOf(1 + random.nextInt(200)));
+        property.setAddress(streets[random.nextInt(streets.length)]);
+        property.setRegion(regions[district]);
+
+        //no random draw without nulls, so data of a seed stays the same
+        if (nullRate > 0d) {
+            property.setHouseNumber(orNull(property.getHouseNumber()));
+            property.setAddress(orNull(property.getAddress()));
+            property.setRegion(orNull(property.getRegion()));
+            property.setPostcode(orNull(property.getPostcode()));
+            property.setPropertyType(orNull(property.getPropertyType()));
+        }
+        return property;
+    }
+
+    /**
+     * the most popular outward postcode
+     * @return
+     */
+    public String getMostPopularOutwardPostcode()
+    {
+        return outwardPostcodes[0];
+    }
+
+    private <T> T orNull(T value)
+    {
+        return random.nextDouble() < nullRate ? null : value;
+    }
+
+    private int nextDistrict()
+    {
+        int index = Arrays.binarySearch(cumulativePopularity, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cumulativePopularity.length - 1);
+    }
+
+    private String nextPostcode(int district)
+    {
+        return outwardPostcodes[district] + " " + random.nextInt(10)
+                + inwardLetters.charAt(random.nextInt(inwardLetters.length()))
+                + inwardLetters.charAt(random.nextInt(inwardLetters.length()));
+    }
+
+    private PropertyType nextPropertyType()
+    {
+        double value = random.nextDouble();
+        if (value < 0.40) {
+            return PropertyType.Flat;
+        } else if (value < 0.75) {
+            return PropertyType.Terraced;
+        } else if (value < 0.98) {
+            return PropertyType.Detached;
+        }
+        return PropertyType.Mansion;
+    }
+
+    private int nextBedrooms(PropertyType propertyType)
+    {
+        switch (propertyType) {
+        case Flat:
+            return 1 + random.nextInt(3);
+        case Terraced:
+            return 2 + random.nextInt(3);
+        case Detached:
+            return 3 + random.nextInt(3);
+        default:
+            return 5 + random.nextInt(6);
+        }
+    }
+
+    private static double priceFactorOf(PropertyType propertyType)
+    {
+        switch (propertyType) {
+        case Flat:
+            return 0.8d;
+        case Terraced:
+            return 1d;
+        case Detached:
+            return 1.6d;
+        default:
+            return 5d;
+        }
+    }
+
+    private static void swap(String[] values, int i, int j)
+    {
+        String value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+}
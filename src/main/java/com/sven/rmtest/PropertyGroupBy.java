@@ -0,0 +1,469 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+
+/**
+ * price summary (count, sum, mean, median, min, max) of every group of a {@link PropertyStore}
+ * in one pass, instead of one query per group.
+ * <ul>
+ * <li>{@link #byOutwardPostcode(PropertyStore)}: one group per outward postcode, properties without postcode are left out</li>
+ * <li>{@link #byRegionAndPropertyType(PropertyStore)}: one group per region and property type,
+ * no region or no property type is a group of its own</li>
+ * </ul>
+ * groups are keyed by dictionary ids packed in a long, looked up in a {@link LongIntHashMap},
+ * statistics are held in primitive arrays indexed by group: no boxing and no object per row or group
+ * while grouping, memory is O(number of groups) plus an int and a double per row for medians.
+ * <p>
+ * with a {@link ForkJoinPool}, chunks of rows are grouped in parallel and merged in order of chunks,
+ * result is the same as sequential one.
+ */
+public class PropertyGroupBy
+{
+
+    public enum Statistic
+    {
+        COUNT, SUM, MEAN, MEDIAN, MIN, MAX
+    }
+
+    /**
+     * rows of a chunk in parallel grouping
+     */
+    static final int MIN_PARALLEL_CHUNK_SIZE = 1 << 14;
+
+    /**
+     * key of a row which is left out
+     */
+    private static final long NO_KEY = Long.MIN_VALUE;
+
+    private enum Grouping
+    {
+        OUTWARD_POSTCODE {
+            @Override
+            long keyOf(PropertyStore store, int row)
+            {
+                int id = store.getOutwardPostcodeId(row);
+                return id == OutwardPostcodeDictionary.NO_ID ? NO_KEY : id;
+            }
+        },
+        REGION_AND_PROPERTY_TYPE {
+            @Override
+            long keyOf(PropertyStore store, int row)
+            {
+                PropertyType propertyType = store.getPropertyType(row);
+                int ordinal = propertyType == null ? PropertyStore.NO_PROPERTY_TYPE : propertyType.ordinal();
+                return ((long) store.getRegionId(row) << 32) | (ordinal & 0xFFFFFFFFL);
+            }
+        };
+
+        abstract long keyOf(PropertyStore store, int row);
+    }
+
+    private PropertyGroupBy()
+    {
+    }
+
+    public static Table byOutwardPostcode(PropertyStore store)
+    {
+        return byOutwardPostcode(store, null);
+    }
+
+    /**
+     * @param store
+     * @param pool
+     *  null to group sequentially
+     * @return
+     *  one summary per outward postcode, in order of their first property
+     */
+    public static Table byOutwardPostcode(PropertyStore store, ForkJoinPool pool)
+    {
+        return groupBy(store, Grouping.OUTWARD_POSTCODE, pool);
+    }
+
+    public static Table byRegionAndPropertyType(PropertyStore store)
+    {
+        return byRegionAndPropertyType(store, null);
+    }
+
+    /**
+     * @param store
+     * @param pool
+     *  null to group sequentially
+     * @return
+     *  one summary per region and property type, in order of their first property
+     */
+    public static Table byRegionAndPropertyType(PropertyStore store, ForkJoinPool pool)
+    {
+        return groupBy(store, Grouping.REGION_AND_PROPERTY_TYPE, pool);
+    }
+
+    private static Table groupBy(PropertyStore store, Grouping grouping, ForkJoinPool pool)
+    {
+        int size = store.size();
+        int[] groupOfRows = new int[size];
+        Groups groups;
+
+        int chunkSize = pool == null
+                ? size
+                : Math.max(MIN_PARALLEL_CHUNK_SIZE, size / (pool.getParallelism() * 4) + 1);
+        if (chunkSize >= size) {
+            groups = new Groups();
+            groups.accept(store, grouping, 0, size, groupOfRows);
+        } else {
+            List<ForkJoinTask<Groups>> tasks = new ArrayList<>();
+            for (int from = 0; from < size; from += chunkSize) {
+                int chunkFrom = from;
+                int chunkTo = Math.min(size, from + chunkSize);
+                tasks.add(pool.submit(() -> {
+                    Groups chunk = new Groups();
+                    chunk.accept(store, grouping, chunkFrom, chunkTo, groupOfRows);
+                    return chunk;
+                }));
+            }
+
+            //merged in order of chunks, groups are numbered as sequentially
+            groups = new Groups();
+            List<ForkJoinTask<?>> remaps = new ArrayList<>();
+            int from = 0;
+            for (ForkJoinTask<Groups> task : tasks) {
+                int[] groupIds = groups.merge(task.join());
+                int chunkFrom = from;
+                int chunkTo = Math.min(size, from + chunkSize);
+                remaps.add(pool.submit(() -> remap(groupOfRows, chunkFrom, chunkTo, groupIds)));
+                from += chunkSize;
+            }
+            remaps.forEach(ForkJoinTask::join);
+        }
+
+        double[] medians = medians(store, groups, groupOfRows, pool);
+        List<Summary> summaries = new ArrayList<>(groups.size);
+        for (int group = 0; group < groups.size; group++) {
+            int row = groups.firstRows[group];
+            summaries.add(new Summary(
+                    grouping == Grouping.OUTWARD_POSTCODE ? store.getOutwardPostcode(row) : null,
+                    grouping == Grouping.REGION_AND_PROPERTY_TYPE ? store.getRegion(row) : null,
+                    grouping == Grouping.REGION_AND_PROPERTY_TYPE ? store.getPropertyType(row) : null,
+                    groups.counts[group], groups.getSum(group), medians[group],
+                    groups.mins[group], groups.maxs[group]));
+        }
+        return new Table(Collections.unmodifiableList(summaries));
+    }
+
+    private static void remap(int[] groupOfRows, int from, int to, int[] groupIds)
+    {
+        for (int row = from; row < to; row++) {
+            if (groupOfRows[row] != LongIntHashMap.NO_VALUE) {
+                groupOfRows[row] = groupIds[groupOfRows[row]];
+            }
+        }
+    }
+
+    /**
+     * exact median of each group: prices are laid out group after group (counting sort) then each group is sorted
+     */
+    private static double[] medians(PropertyStore store, Groups groups, int[] groupOfRows, ForkJoinPool pool)
+    {
+        int[] starts = new int[groups.size + 1];
+        for (int group = 0; group < groups.size; group++) {
+            starts[group + 1] = starts[group] + (int) groups.counts[group];
+        }
+
+        int[] next = Arrays.copyOf(starts, groups.size);
+        double[] prices = new double[starts[groups.size]];
+        for (int row = 0; row < groupOfRows.length; row++) {
+            int group = groupOfRows[row];
+            if (group != LongIntHashMap.NO_VALUE) {
+                prices[next[group]++] = store.getPrice(row);
+            }
+        }
+
+        double[] medians = new double[groups.size];
+        IntStream groupIds = IntStream.range(0, groups.size);
+        if (pool == null) {
+            groupIds.forEach(s -> medians[s] = median(prices, starts[s], starts[s + 1]));
+        } else {
+            //parallel stream run by a task of pool is run in that pool
+            pool.submit(() -> groupIds.parallel().forEach(s -> medians[s] = median(prices, starts[s], starts[s + 1])))
+                    .join();
+        }
+        return medians;
+    }
+
+    /**
+     * median of prices within [from, to), mean of the 2 middle ones if their number is even
+     */
+    private static double median(double[] prices, int from, int to)
+    {
+        Arrays.sort(prices, from, to);
+        int middle = (from + to) >>> 1;
+        return (to - from) % 2 == 1 ? prices[middle] : (prices[middle - 1] + prices[middle]) / 2;
+    }
+
+    /**
+     * statistics of groups in primitive arrays indexed by group number
+     */
+    private static class Groups
+    {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final LongIntHashMap ids = new LongIntHashMap();
+        private int size = 0;
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private int[] firstRows = new int[INITIAL_CAPACITY];
+        private long[] counts = new long[INITIAL_CAPACITY];
+        private double[] sums = new double[INITIAL_CAPACITY];
+        private double[] compensations = new double[INITIAL_CAPACITY];
+        private double[] mins = new double[INITIAL_CAPACITY];
+        private double[] maxs = new double[INITIAL_CAPACITY];
+
+        /**
+         * group rows within [from, to), group number of each row is put in <code>groupOfRows</code>
+         */
+        private void accept(PropertyStore store, Grouping grouping, int from, int to, int[] groupOfRows)
+        {
+            for (int row = from; row < to; row++) {
+                long key = grouping.keyOf(store, row);
+                if (key == NO_KEY) {
+                    groupOfRows[row] = LongIntHashMap.NO_VALUE;
+                    continue;
+                }
+
+                int group = groupOf(key, row);
+                double price = store.getPrice(row);
+                counts[group]++;
+                add(group, price);
+                mins[group] = Math.min(mins[group], price);
+                maxs[group] = Math.max(maxs[group], price);
+                groupOfRows[row] = group;
+            }
+        }
+
+        /**
+         * merge groups of <code>other</code> into this one
+         * @return
+         *  group numbers of this one indexed by group numbers of <code>other</code>
+         */
+        private int[] merge(Groups other)
+        {
+            int[] groupIds = new int[other.size];
+            for (int i = 0; i < other.size; i++) {
+                int group = groupOf(other.keys[i], other.firstRows[i]);
+                counts[group] += other.counts[i];
+                add(group, other.sums[i]);
+                add(group, other.compensations[i]);
+                mins[group] = Math.min(mins[group], other.mins[i]);
+                maxs[group] = Math.max(maxs[group], other.maxs[i]);
+                groupIds[i] = group;
+            }
+            return groupIds;
+        }
+
+        private int groupOf(long key, int row)
+        {
+            int group = ids.putIfAbsent(key, size);
+            if (group != LongIntHashMap.NO_VALUE) {
+                return group;
+            }
+
+            if (size == counts.length) {
+                grow();
+            }
+            group = size++;
+            keys[group] = key;
+            firstRows[group] = row;
+            mins[group] = Double.POSITIVE_INFINITY;
+            maxs[group] = Double.NEGATIVE_INFINITY;
+            return group;
+        }
+
+        /**
+         * compensated sum, same as {@link PriceStatistics}
+         */
+        private void add(int group, double value)
+        {
+            double sum = sums[group];
+            double total = sum + value;
+            compensations[group] += PriceStatistics.roundingErrorOf(sum, value, total);
+            sums[group] = total;
+        }
+
+        private double getSum(int group)
+        {
+            return sums[group] + compensations[group];
+        }
+
+        private void grow()
+        {
+            int capacity = counts.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            firstRows = Arrays.copyOf(firstRows, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            compensations = Arrays.copyOf(compensations, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxs = Arrays.copyOf(maxs, capacity);
+        }
+    }
+
+    /**
+     * price statistics of one group
+     */
+    public static class Summary
+    {
+        private final String outwardPostcode;
+        private final String region;
+        private final PropertyType propertyType;
+        private final long count;
+        private final double sum;
+        private final double median;
+        private final double min;
+        private final double max;
+
+        Summary(String outwardPostcode, String region, PropertyType propertyType,
+                long count, double sum, double median, double min, double max)
+        {
+            this.outwardPostcode = outwardPostcode;
+            this.region = region;
+            this.propertyType = propertyType;
+            this.count = count;
+            this.sum = sum;
+            this.median = median;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * @return
+         *  canonical, upper case outward postcode, null if not grouped by outward postcode
+         */
+        public String getOutwardPostcode()
+        {
+            return outwardPostcode;
+        }
+
+        /**
+         * @return
+         *  null if not grouped by region or group of properties without region
+         */
+        public String getRegion()
+        {
+            return region;
+        }
+
+        /**
+         * @return
+         *  null if not grouped by property type or group of properties without property type
+         */
+        public PropertyType getPropertyType()
+        {
+            return propertyType;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public double getSum()
+        {
+            return sum;
+        }
+
+        public double getMean()
+        {
+            return sum / count;
+        }
+
+        public double getMedian()
+        {
+            return median;
+        }
+
+        public double getMin()
+        {
+            return min;
+        }
+
+        public double getMax()
+        {
+            return max;
+        }
+
+        public double get(Statistic statistic)
+        {
+            switch (statistic) {
+            case COUNT:
+                return count;
+            case SUM:
+                return sum;
+            case MEAN:
+                return getMean();
+            case MEDIAN:
+                return median;
+            case MIN:
+                return min;
+            case MAX:
+                return max;
+            default:
+                throw new RuntimeException(String.format("Unknown statistic %s", statistic));
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Summary[outwardPostcode=%s, region=%s, propertyType=%s, "
+                    + "count=%d, mean=%f, median=%f, min=%f, max=%f]",
+                    outwardPostcode, region, propertyType, count, getMean(), median, min, max);
+        }
+    }
+
+    /**
+     * summaries of all groups
+     */
+    public static class Table
+    {
+        private final List<Summary> summaries;
+
+        Table(List<Summary> summaries)
+        {
+            this.summaries = summaries;
+        }
+
+        public int size()
+        {
+            return summaries.size();
+        }
+
+        /**
+         * summaries in order of the first property of each group, unmodifiable
+         * @return
+         */
+        public List<Summary> getSummaries()
+        {
+            return summaries;
+        }
+
+        /**
+         * summaries sorted by giving <code>statistic</code>, groups with same value keep their order
+         * @param statistic
+         * @param descending
+         * @return
+         *  new list
+         */
+        public List<Summary> sortedBy(Statistic statistic, boolean descending)
+        {
+            Comparator<Summary> comparator = Comparator.comparingDouble(s -> s.get(statistic));
+            List<Summary> sorted = new ArrayList<>(summaries);
+            sorted.sort(descending ? comparator.reversed() : comparator);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,586 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * search index of a {@link PropertyStore}, answering {@link PropertySearch} without a full scan.
+ * <ul>
+ * <li>rows sorted by price: a price range is found by binary search, O(log size)</li>
+ * <li>a bitmap of rows per number of bedrooms, per number of bathrooms, per region,
+ * per property type and per outward postcode, a sorted list of rows instead when it's smaller</li>
+ * </ul>
+ * the number of matching rows is estimated from the sizes of bitmaps. if it's small compared to
+ * the price range (a very selective search), bitmaps are combined with AND and their rows are taken,
+ * sorted by their position in price order. otherwise rows in the price range are walked in price order
+ * and checked one by one, walking stops as soon as the page is full.
+ * <p>
+ * properties with same price keep the order of their rows, whatever the sort order is.
+ * <p>
+ * read only, thread safe.
+ */
+public class PropertyIndex
+{
+
+    /**
+     * bitmap rows are taken instead of walking the price range when
+     * estimated number of matching rows * SELECTIVE_RATIO < number of rows in price range
+     */
+    static final int SELECTIVE_RATIO = 8;
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    /**
+     * id of a criterion not set, no id of the store is lower than -1
+     */
+    private static final int ANY = Integer.MIN_VALUE;
+
+    private final PropertyStore store;
+
+    private final int[] rowsByPrice;
+    private final double[] sortedPrices;
+    private final int[] positionsOfRows;
+
+    private final Bitmaps bedroomRows = new Bitmaps();
+    private final Bitmaps bathroomRows = new Bitmaps();
+    private final Bitmaps regionRows = new Bitmaps();
+    private final Bitmaps propertyTypeRows = new Bitmaps();
+    private final Bitmaps outwardPostcodeRows = new Bitmaps();
+
+    private PropertyIndex(PropertyStore store)
+    {
+        this.store = store;
+        int size = store.size();
+
+        rowsByPrice = new int[size];
+        for (int i = 0; i < size; i++) {
+            rowsByPrice[i] = i;
+        }
+        sortByPrice(store, rowsByPrice, new int[size], 0, size);
+
+        sortedPrices = new double[size];
+        positionsOfRows = new int[size];
+        for (int position = 0; position < size; position++) {
+            sortedPrices[position] = store.getPrice(rowsByPrice[position]);
+            positionsOfRows[rowsByPrice[position]] = position;
+        }
+
+        for (int row = 0; row < size; row++) {
+            bedroomRows.add(store.getBedrooms(row), row);
+            bathroomRows.add(store.getBathrooms(row), row);
+            regionRows.add(store.getRegionId(row), row);
+            propertyTypeRows.add(propertyTypeOrdinalOf(row), row);
+            outwardPostcodeRows.add(store.getOutwardPostcodeId(row), row);
+        }
+        for (Bitmaps bitmaps : Arrays.asList(bedroomRows, bathroomRows, regionRows, propertyTypeRows, outwardPostcodeRows)) {
+            bitmaps.seal(size);
+        }
+    }
+
+    /**
+     * build index of giving <code>store</code>, O(size * log size)
+     * @param store
+     * @return
+     */
+    public static PropertyIndex of(PropertyStore store)
+    {
+        return new PropertyIndex(store);
+    }
+
+    public PropertyStore getStore()
+    {
+        return store;
+    }
+
+    /**
+     * get the page of properties matching <code>search</code>, sorted by price.
+     * <p>
+     * cost is O(log size + rows walked until the page is full), not O(size).
+     * @param search
+     * @return
+     */
+    public Page search(PropertySearch search)
+    {
+        List<Property> properties = new ArrayList<>(Math.min(search.getPageSize(), store.size()));
+        boolean hasNext = !forEachMatch(search, new RowVisitor() {
+
+            private long skip = search.getOffset();
+
+            @Override
+            public boolean visit(int row)
+            {
+                if (skip > 0) {
+                    skip--;
+                    return true;
+                }
+                if (properties.size() == search.getPageSize()) {
+                    //one more match, there is a next page
+                    return false;
+                }
+                properties.add(store.getProperty(row));
+                return true;
+            }
+        });
+        return new Page(search, Collections.unmodifiableList(properties), hasNext);
+    }
+
+    /**
+     * number of properties matching <code>search</code>, page is ignored.
+     * <p>
+     * all matches are walked, use {@link Page#hasNext()} when the total is not needed.
+     * @param search
+     * @return
+     */
+    public int count(PropertySearch search)
+    {
+        int[] count = new int[1];
+        forEachMatch(search, row -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+
+    /**
+     * visit rows matching <code>search</code> in its order until <code>visitor</code> returns false
+     * @return
+     *  false if stopped by visitor
+     */
+    private boolean forEachMatch(PropertySearch search, RowVisitor visitor)
+    {
+        int from = search.hasPriceRange() ? lowerBound(search.getMinPrice()) : 0;
+        int to = search.hasPriceRange() ? upperBound(search.getMaxPrice()) : sortedPrices.length;
+        if (from >= to) {
+            return true;
+        }
+
+        Criteria criteria = new Criteria(search);
+        if (criteria.isNone()) {
+            return true;
+        }
+        if (criteria.isAll() || (long) criteria.estimate() * SELECTIVE_RATIO >= to - from) {
+            return visitPositions(from, to, criteria, search.getOrder(), visitor);
+        }
+
+        BitSet rows = criteria.rows();
+        int[] positions = new int[rows.cardinality()];
+        int count = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            int position = positionsOfRows[row];
+            if (position >= from && position < to) {
+                positions[count++] = position;
+            }
+        }
+        Arrays.sort(positions, 0, count);
+        return visitPositions(positions, count, search.getOrder(), visitor);
+    }
+
+    /**
+     * visit rows at positions [from, to) of price order which match <code>criteria</code>
+     */
+    private boolean visitPositions(int from, int to, Criteria criteria, PropertySearch.Order order, RowVisitor visitor)
+    {
+        if (order == PropertySearch.Order.PRICE_ASCENDING) {
+            for (int position = from; position < to; position++) {
+                int row = rowsByPrice[position];
+                if (criteria.matches(row) && !visitor.visit(row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //descent order by groups of same price, rows of a group in ascending order
+        int end = to;
+        while (end > from) {
+            int start = end - 1;
+            while (start > from && Double.compare(sortedPrices[start - 1], sortedPrices[end - 1]) == 0) {
+                start--;
+            }
+            for (int position = start; position < end; position++) {
+                int row = rowsByPrice[position];
+                if (criteria.matches(row) && !visitor.visit(row)) {
+                    return false;
+                }
+            }
+            end = start;
+        }
+        return true;
+    }
+
+    /**
+     * visit rows at first <code>count</code> of ascending <code>positions</code> of price order
+     */
+    private boolean visitPositions(int[] positions, int count, PropertySearch.Order order, RowVisitor visitor)
+    {
+        if (order == PropertySearch.Order.PRICE_ASCENDING) {
+            for (int i = 0; i < count; i++) {
+                if (!visitor.visit(rowsByPrice[positions[i]])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int end = count;
+        while (end > 0) {
+            int start = end - 1;
+            while (start > 0 && Double.compare(sortedPrices[positions[start - 1]], sortedPrices[positions[end - 1]]) == 0) {
+                start--;
+            }
+            for (int i = start; i < end; i++) {
+                if (!visitor.visit(rowsByPrice[positions[i]])) {
+                    return false;
+                }
+            }
+            end = start;
+        }
+        return true;
+    }
+
+    private int propertyTypeOrdinalOf(int row)
+    {
+        PropertyType propertyType = store.getPropertyType(row);
+        return propertyType == null ? PropertyStore.NO_PROPERTY_TYPE : propertyType.ordinal();
+    }
+
+    /**
+     * first position whose price is not lower than <code>price</code>
+     */
+    private int lowerBound(double price)
+    {
+        int low = 0;
+        int high = sortedPrices.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(sortedPrices[middle], price) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * first position whose price is higher than <code>price</code>
+     */
+    private int upperBound(double price)
+    {
+        int low = 0;
+        int high = sortedPrices.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(sortedPrices[middle], price) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * stable merge sort of <code>rows</code> within [from, to) by price then by row, no boxing
+     */
+    private static void sortByPrice(PropertyStore store, int[] rows, int[] buffer, int from, int to)
+    {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int row = rows[i];
+                double price = store.getPrice(row);
+                int j = i - 1;
+                while (j >= from && Double.compare(store.getPrice(rows[j]), price) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        sortByPrice(store, rows, buffer, from, middle);
+        sortByPrice(store, rows, buffer, middle, to);
+        if (Double.compare(store.getPrice(rows[middle - 1]), store.getPrice(rows[middle])) <= 0) {
+            return;
+        }
+
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle
+                    && Double.compare(store.getPrice(buffer[left]), store.getPrice(buffer[right])) <= 0)) {
+                rows[i] = buffer[left++];
+            } else {
+                rows[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * rows per value of an attribute
+     */
+    private static class Bitmaps
+    {
+        private final Map<Integer, Rows> adding = new HashMap<>();
+        private final NavigableMap<Integer, Rows> rows = new TreeMap<>();
+
+        private void add(int value, int row)
+        {
+            adding.computeIfAbsent(value, s -> new Rows()).add(row);
+        }
+
+        /**
+         * once all rows are added
+         */
+        private void seal(int size)
+        {
+            adding.values().forEach(s -> s.seal(size));
+            rows.putAll(adding);
+            adding.clear();
+        }
+
+        /**
+         * number of rows with value within [min, max]
+         */
+        private int count(int min, int max)
+        {
+            int count = 0;
+            for (Rows value : rows.subMap(min, true, max, true).values()) {
+                count += value.count;
+            }
+            return count;
+        }
+
+        /**
+         * new bitmap of rows with value within [min, max]
+         */
+        private BitSet rows(int min, int max)
+        {
+            BitSet union = new BitSet();
+            for (Rows value : rows.subMap(min, true, max, true).values()) {
+                value.addTo(union);
+            }
+            return union;
+        }
+    }
+
+    /**
+     * rows of one value in ascending order, kept as a bitmap if there are more than 1 in 32 rows
+     * (smaller than a list then), as a list otherwise
+     */
+    private static class Rows
+    {
+        private int[] rows = new int[8];
+        private int count = 0;
+        private BitSet bitSet;
+
+        private void add(int row)
+        {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+            }
+            rows[count++] = row;
+        }
+
+        private void seal(int size)
+        {
+            if ((long) count * 32 >= size) {
+                bitSet = new BitSet(size);
+                for (int i = 0; i < count; i++) {
+                    bitSet.set(rows[i]);
+                }
+                rows = null;
+            } else {
+                rows = Arrays.copyOf(rows, count);
+            }
+        }
+
+        private void addTo(BitSet union)
+        {
+            if (bitSet != null) {
+                union.or(bitSet);
+                return;
+            }
+            for (int row : rows) {
+                union.set(row);
+            }
+        }
+    }
+
+    /**
+     * criteria of a search other than price, with names resolved to ids of the store
+     */
+    private class Criteria
+    {
+        private final int propertyTypeOrdinal;
+        private final int regionId;
+        private final int outwardPostcodeId;
+        private final int minBedrooms;
+        private final int maxBedrooms;
+        private final int minBathrooms;
+        private final int maxBathrooms;
+        private final boolean all;
+        private final boolean none;
+
+        private Criteria(PropertySearch search)
+        {
+            propertyTypeOrdinal = search.getPropertyType() == null ? ANY : search.getPropertyType().ordinal();
+            regionId = search.getRegion() == null ? ANY : store.getRegionId(search.getRegion());
+            outwardPostcodeId = StringUtils.isBlank(search.getPostcodeOutward())
+                    ? ANY
+                    : store.getOutwardPostcodeId(search.getPostcodeOutward());
+            minBedrooms = search.getMinBedrooms();
+            maxBedrooms = search.getMaxBedrooms();
+            minBathrooms = search.getMinBathrooms();
+            maxBathrooms = search.getMaxBathrooms();
+
+            all = propertyTypeOrdinal == ANY && regionId == ANY && outwardPostcodeId == ANY
+                    && !search.hasBedroomsRange() && !search.hasBathroomsRange();
+            //a name unknown to the store matches nothing
+            none = regionId == StringDictionary.NO_ID || outwardPostcodeId == OutwardPostcodeDictionary.NO_ID
+                    || minBedrooms > maxBedrooms || minBathrooms > maxBathrooms;
+        }
+
+        private boolean isAll()
+        {
+            return all;
+        }
+
+        private boolean isNone()
+        {
+            return none;
+        }
+
+        private boolean matches(int row)
+        {
+            if (all) {
+                return true;
+            }
+            int bedrooms = store.getBedrooms(row);
+            int bathrooms = store.getBathrooms(row);
+            return bedrooms >= minBedrooms && bedrooms <= maxBedrooms
+                    && bathrooms >= minBathrooms && bathrooms <= maxBathrooms
+                    && (propertyTypeOrdinal == ANY || propertyTypeOrdinal == propertyTypeOrdinalOf(row))
+                    && (regionId == ANY || regionId == store.getRegionId(row))
+                    && (outwardPostcodeId == ANY || outwardPostcodeId == store.getOutwardPostcodeId(row));
+        }
+
+        /**
+         * upper bound of number of matching rows, the count of the most selective criterion
+         */
+        private int estimate()
+        {
+            int estimate = bedroomRows.count(minBedrooms, maxBedrooms);
+            estimate = Math.min(estimate, bathroomRows.count(minBathrooms, maxBathrooms));
+            if (propertyTypeOrdinal != ANY) {
+                estimate = Math.min(estimate, propertyTypeRows.count(propertyTypeOrdinal, propertyTypeOrdinal));
+            }
+            if (regionId != ANY) {
+                estimate = Math.min(estimate, regionRows.count(regionId, regionId));
+            }
+            if (outwardPostcodeId != ANY) {
+                estimate = Math.min(estimate, outwardPostcodeRows.count(outwardPostcodeId, outwardPostcodeId));
+            }
+            return estimate;
+        }
+
+        /**
+         * AND of bitmaps of all criteria, bedrooms and bathrooms ranges are checked row by row
+         * if there is a more selective criterion
+         */
+        private BitSet rows()
+        {
+            BitSet rows = null;
+            if (propertyTypeOrdinal != ANY) {
+                rows = and(rows, propertyTypeRows, propertyTypeOrdinal, propertyTypeOrdinal);
+            }
+            if (regionId != ANY) {
+                rows = and(rows, regionRows, regionId, regionId);
+            }
+            if (outwardPostcodeId != ANY) {
+                rows = and(rows, outwardPostcodeRows, outwardPostcodeId, outwardPostcodeId);
+            }
+            if (rows == null) {
+                rows = and(null, bedroomRows, minBedrooms, maxBedrooms);
+            }
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                if (!matches(row)) {
+                    rows.clear(row);
+                }
+            }
+            return rows;
+        }
+
+        private BitSet and(BitSet rows, Bitmaps bitmaps, int min, int max)
+        {
+            BitSet other = bitmaps.rows(min, max);
+            if (rows == null) {
+                return other;
+            }
+            rows.and(other);
+            return rows;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowVisitor
+    {
+        /**
+         * @return
+         *  false to stop
+         */
+        boolean visit(int row);
+    }
+
+    /**
+     * one page of properties matching a {@link PropertySearch}
+     */
+    public static class Page
+    {
+        private final PropertySearch search;
+        private final List<Property> properties;
+        private final boolean hasNext;
+
+        private Page(PropertySearch search, List<Property> properties, boolean hasNext)
+        {
+            this.search = search;
+            this.properties = properties;
+            this.hasNext = hasNext;
+        }
+
+        public PropertySearch getSearch()
+        {
+            return search;
+        }
+
+        /**
+         * properties of the page sorted by price, new copies, unmodifiable list
+         * @return
+         */
+        public List<Property> getProperties()
+        {
+            return properties;
+        }
+
+        /**
+         * true if more properties match after this page
+         * @return
+         */
+        public boolean hasNext()
+        {
+            return hasNext;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.sven.rmtest;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * load a dataset split in many JSON files (shards) in parallel.
+ * <p>
+ * shards are parsed on a fixed number of threads. properties are merged in the order of shards,
+ * so the result is the same whatever the number of threads is. at most twice as many shards as threads
+ * are parsed or waiting to be merged at a time, a shard is dropped as soon as it's merged,
+ * so a parser ahead of the merge waits instead of holding more shards.
+ * <p>
+ * a shard which can't be read or parsed doesn't stop the others, its failure is reported in {@link Result}
+ * and none of its properties are kept.
+ * <p>
+ * given a consumer, e.g. a {@link PropertyStore.Builder}, properties are only held by their shard until merged:
+ * <pre>
+ * PropertyStore.Builder builder = new PropertyStore.Builder();
+ * PropertyIngestion.Result result = new PropertyIngestion(8).ingestDirectory(Paths.get("feed"), "*.json", builder::add);
+ * result.getFailures().forEach((shard, e) -&gt; log(shard, e));
+ * PropertyStore store = builder.build();
+ * </pre>
+ */
+public class PropertyIngestion
+{
+
+    public static final String DEFAULT_GLOB = "*.json";
+
+    private final int threads;
+
+    /**
+     * @param threads
+     *  number of shards parsed at the same time, at least 1
+     */
+    public PropertyIngestion(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * ingest JSON files of giving <code>directory</code> matching {@link #DEFAULT_GLOB}
+     * @param directory
+     * @return
+     * @see #ingestDirectory(Path, String)
+     */
+    public Result ingestDirectory(Path directory)
+    {
+        return ingestDirectory(directory, DEFAULT_GLOB);
+    }
+
+    /**
+     * ingest files of giving <code>directory</code> (not its sub directories) whose name matches <code>glob</code>,
+     * in order of file name.
+     * <p>
+     * throw RuntimeException if directory can't be listed
+     * @param directory
+     * @param glob
+     *  e.g. <code>*.json</code> or <code>region-{london,essex}.json</code>, see {@link java.nio.file.FileSystem#getPathMatcher(String)}
+     * @return
+     */
+    public Result ingestDirectory(Path directory, String glob)
+    {
+        List<Property> properties = new ArrayList<>();
+        return ingestDirectory(directory, glob, properties::add).withProperties(properties);
+    }
+
+    /**
+     * ingest files of giving <code>directory</code> matching <code>glob</code> into <code>consumer</code>,
+     * see {@link #ingestDirectory(Path, String)}
+     * <p>
+     * throw RuntimeException if directory can't be listed
+     * @param directory
+     * @param glob
+     * @param consumer
+     *  called on the calling thread, in order of shards
+     * @return
+     *  result without properties
+     */
+    public Result ingestDirectory(Path directory, String glob, Consumer<? super Property> consumer)
+    {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, glob)) {
+            for (Path path : paths) {
+                if (Files.isRegularFile(path)) {
+                    files.add(path);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(
+                    String.format("Unabled to list files [%s] of [%s]", glob, directory), e);
+        }
+        Collections.sort(files);
+        return ingestFiles(files, consumer);
+    }
+
+    /**
+     * ingest giving <code>files</code>, properties are merged in the order of files.
+     * @param files
+     * @return
+     */
+    public Result ingestFiles(List<Path> files)
+    {
+        List<Property> properties = new ArrayList<>();
+        return ingestFiles(files, properties::add).withProperties(properties);
+    }
+
+    /**
+     * ingest giving <code>files</code> into <code>consumer</code>
+     * @param files
+     * @param consumer
+     *  called on the calling thread, in order of files
+     * @return
+     *  result without properties
+     */
+    public Result ingestFiles(List<Path> files, Consumer<? super Property> consumer)
+    {
+        List<Shard> shards = new ArrayList<>(files.size());
+        for (Path file : files) {
+            shards.add(new Shard(file.toString(), () -> PropertyUtils.streamDataFromFile(file)));
+        }
+        return ingest(shards, consumer);
+    }
+
+    /**
+     * ingest giving classpath files, properties are merged in the order of files.
+     * <p>
+     * classpath can't be listed reliably (e.g. in a War file), so each file must be named.
+     * @param classPaths
+     * @return
+     */
+    public Result ingestClassPathFiles(List<String> classPaths)
+    {
+        List<Property> properties = new ArrayList<>();
+        return ingestClassPathFiles(classPaths, properties::add).withProperties(properties);
+    }
+
+    /**
+     * ingest giving classpath files into <code>consumer</code>
+     * @param classPaths
+     * @param consumer
+     *  called on the calling thread, in order of files
+     * @return
+     *  result without properties
+     */
+    public Result ingestClassPathFiles(List<String> classPaths, Consumer<? super Property> consumer)
+    {
+        List<Shard> shards = new ArrayList<>(classPaths.size());
+        for (String classPath : classPaths) {
+            shards.add(new Shard(classPath, () -> PropertyUtils.streamDataFromClassPathFile(classPath)));
+        }
+        return ingest(shards, consumer);
+    }
+
+    private Result ingest(List<Shard> shards, Consumer<? super Property> consumer)
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new IngestionThreadFactory());
+        int window = threads * 2;
+        Deque<Future<LoadedShard>> inFlight = new ArrayDeque<>(window);
+        List<ShardResult> results = new ArrayList<>(shards.size());
+        try
+        {
+            //next shard is submitted once the oldest one is merged
+            for (Shard shard : shards) {
+                if (inFlight.size() == window) {
+                    results.add(inFlight.poll().get().mergeInto(consumer));
+                }
+                inFlight.add(executor.submit(shard::load));
+            }
+            while (!inFlight.isEmpty()) {
+                results.add(inFlight.poll().get().mergeInto(consumer));
+            }
+            return new Result(results);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while ingesting shards", e);
+        }
+        catch (ExecutionException e)
+        {
+            //shard failures are caught in Shard.load, this is an Error
+            throw new RuntimeException("Unabled to ingest shards", e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class Shard
+    {
+        private final String source;
+        private final Supplier<Stream<Property>> opener;
+
+        private Shard(String source, Supplier<Stream<Property>> opener)
+        {
+            this.source = source;
+            this.opener = opener;
+        }
+
+        private LoadedShard load()
+        {
+            long start = System.nanoTime();
+            List<Property> properties = new ArrayList<>();
+            try (Stream<Property> stream = opener.get()) {
+                stream.forEachOrdered(properties::add);
+            }
+            catch (RuntimeException e)
+            {
+                return new LoadedShard(new ShardResult(source, 0, System.nanoTime() - start, e), Collections.emptyList());
+            }
+            return new LoadedShard(new ShardResult(source, properties.size(), System.nanoTime() - start, null), properties);
+        }
+    }
+
+    /**
+     * properties of a shard waiting to be merged
+     */
+    private static class LoadedShard
+    {
+        private final ShardResult result;
+        private final List<Property> properties;
+
+        private LoadedShard(ShardResult result, List<Property> properties)
+        {
+            this.result = result;
+            this.properties = properties;
+        }
+
+        private ShardResult mergeInto(Consumer<? super Property> consumer)
+        {
+            properties.forEach(consumer);
+            return result;
+        }
+    }
+
+    private static class IngestionThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "property-ingestion-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * outcome of loading one shard
+     */
+    public static class ShardResult
+    {
+        private final String source;
+        private final int count;
+        private final long nanos;
+        private final RuntimeException failure;
+
+        private ShardResult(String source, int count, long nanos, RuntimeException failure)
+        {
+            this.source = source;
+            this.count = count;
+            this.nanos = nanos;
+            this.failure = failure;
+        }
+
+        /**
+         * file path or classpath of the shard
+         * @return
+         */
+        public String getSource()
+        {
+            return source;
+        }
+
+        /**
+         * number of properties loaded, 0 if failed
+         * @return
+         */
+        public int getCount()
+        {
+            return count;
+        }
+
+        public long getMillis()
+        {
+            return nanos / 1000000L;
+        }
+
+        /**
+         * @return
+         *  null if shard was loaded
+         */
+        public RuntimeException getFailure()
+        {
+            return failure;
+        }
+
+        public boolean isFailed()
+        {
+            return failure != null;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("ShardResult[source=%s, count=%d, millis=%d, failure=%s]",
+                    source, getCount(), getMillis(), failure);
+        }
+    }
+
+    /**
+     * properties of all loaded shards, unless they were given to a consumer, and the outcome of each shard
+     */
+    public static class Result
+    {
+        private final List<ShardResult> shards;
+        private List<Property> properties = Collections.emptyList();
+
+        private Result(List<ShardResult> shards)
+        {
+            this.shards = Collections.unmodifiableList(shards);
+        }
+
+        private Result withProperties(List<Property> properties)
+        {
+            this.properties = properties;
+            return this;
+        }
+
+        /**
+         * outcome of each shard, in order of shards
+         * @return
+         */
+        public List<ShardResult> getShards()
+        {
+            return shards;
+        }
+
+        /**
+         * failure of each failed shard, keyed by source of shard, in order of shards
+         * @return
+         */
+        public Map<String, RuntimeException> getFailures()
+        {
+            Map<String, RuntimeException> failures = new LinkedHashMap<>();
+            for (ShardResult shard : shards) {
+                if (shard.isFailed()) {
+                    failures.put(shard.source, shard.failure);
+                }
+            }
+            return failures;
+        }
+
+        public boolean hasFailures()
+        {
+            return shards.stream().anyMatch(ShardResult::isFailed);
+        }
+
+        /**
+         * number of properties of all loaded shards
+         * @return
+         */
+        public int getCount()
+        {
+            return shards.stream().mapToInt(ShardResult::getCount).sum();
+        }
+
+        /**
+         * properties of all loaded shards, in order of shards
+         * @return
+         *  empty list if properties were given to a consumer
+         */
+        public List<Property> getProperties()
+        {
+            return properties;
+        }
+    }
+}
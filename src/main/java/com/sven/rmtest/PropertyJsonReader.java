@@ -0,0 +1,349 @@
+package com.sven.rmtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import com.sven.rmtest.PropertyTypeAdapter.MalformedPropertyException;
+
+/**
+ * pull {@link Property} one by one from a JSON source without reading the whole source into memory.
+ * <p>
+ * accepts either a top level array of properties (the format of <code>property-data.json</code>)
+ * or a sequence of top level property objects (newline delimited JSON).
+ * <p>
+ * properties are read by a scanner made for them, with the defaults of a {@link PropertyTypeAdapter}.
+ * a record which is valid JSON but not a valid property is handled as set by
+ * {@link Options#onMalformed(MalformedPolicy, Consumer)}, by default loading fails.
+ * <p>
+ * throw RuntimeException if source can't be read or parsed.
+ */
+public class PropertyJsonReader implements Iterator<Property>, Closeable
+{
+
+    /**
+     * what to do with a malformed record
+     */
+    public enum MalformedPolicy
+    {
+        /**
+         * throw RuntimeException
+         */
+        FAIL,
+        /**
+         * skip it, report it without its JSON
+         */
+        SKIP,
+        /**
+         * skip it, report it with its JSON text. text of every record is kept until it's read, which is slower
+         */
+        QUARANTINE
+    }
+
+    private final Reader in;
+    private final PropertyJsonScanner scanner;
+    private final String source;
+    private final PropertyTypeAdapter adapter;
+    private final MalformedPolicy malformedPolicy;
+    private final Consumer<? super MalformedRecord> malformedRecords;
+
+    private boolean started = false;
+    private boolean inArray = false;
+    private boolean finished = false;
+    private boolean afterRecord = false;
+
+    private Property pending;
+    private boolean hasPending = false;
+
+    private long index = 0;
+    private long count = 0;
+    private long skippedCount = 0;
+
+    /**
+     * @param in
+     * @param source
+     *  name of source, used in error messages only.
+     */
+    public PropertyJsonReader(Reader in, String source)
+    {
+        this(in, source, new Options());
+    }
+
+    /**
+     * @param in
+     * @param source
+     *  name of source, used in error messages only.
+     * @param options
+     */
+    public PropertyJsonReader(Reader in, String source, Options options)
+    {
+        this.in = in;
+        this.scanner = new PropertyJsonScanner(in);
+        this.source = source;
+        this.adapter = options.adapter;
+        this.malformedPolicy = options.malformedPolicy;
+        this.malformedRecords = options.malformedRecords;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (!hasPending && hasNextRecord()) {
+            hasPending = readRecord();
+        }
+        return hasPending;
+    }
+
+    @Override
+    public Property next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Property property = pending;
+        pending = null;
+        hasPending = false;
+        return property;
+    }
+
+    /**
+     * number of properties read so far
+     * @return
+     */
+    public long getCount()
+    {
+        return count;
+    }
+
+    /**
+     * number of records read so far which are not a property: JSON null, which is returned as null,
+     * and malformed records which are skipped or quarantined
+     * @return
+     */
+    public long getSkippedCount()
+    {
+        return skippedCount;
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            in.close();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(
+                    String.format("Unabled to close [%s]", source), e);
+        }
+    }
+
+    private boolean hasNextRecord()
+    {
+        if (finished) {
+            return false;
+        }
+
+        try
+        {
+            if (!started) {
+                started = true;
+                if (scanner.peek() == '[') {
+                    scanner.skip();
+                    inArray = true;
+                }
+            }
+
+            int c = scanner.peek();
+            if (inArray && c == ']') {
+                scanner.skip();
+                finished = true;
+            } else if (c < 0) {
+                if (inArray) {
+                    throw scanner.syntaxError("Unterminated array");
+                }
+                finished = true;
+            } else if (inArray && afterRecord) {
+                scanner.expectAfterWhitespace(',');
+            }
+            return !finished;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            throw new RuntimeException(
+                    String.format("Unabled to load data from [%s]", source), e);
+        }
+    }
+
+    /**
+     * read next record into pending
+     * @return
+     *  false if record was malformed and skipped
+     */
+    private boolean readRecord()
+    {
+        long recordIndex = index++;
+        long offset = 0;
+        afterRecord = true;
+        try
+        {
+            scanner.peek();
+            offset = scanner.getOffset();
+            if (malformedPolicy == MalformedPolicy.QUARANTINE) {
+                scanner.startCapture();
+            }
+            pending = scanner.readProperty(adapter);
+            if (malformedPolicy == MalformedPolicy.QUARANTINE) {
+                scanner.endCapture();
+            }
+        }
+        catch (MalformedPropertyException e)
+        {
+            if (malformedPolicy == MalformedPolicy.FAIL) {
+                throw new RuntimeException(
+                        String.format("Unabled to load data from [%s] at %s", source, pathOf(recordIndex)), e);
+            }
+            String json = malformedPolicy == MalformedPolicy.QUARANTINE ? scanner.endCapture() : null;
+            skippedCount++;
+            malformedRecords.accept(
+                    new MalformedRecord(source, recordIndex, offset, pathOf(recordIndex), e.getMessage(), json));
+            return false;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            throw new RuntimeException(
+                    String.format("Unabled to load data from [%s] at %s", source, pathOf(recordIndex)), e);
+        }
+
+        if (pending == null) {
+            skippedCount++;
+        } else {
+            count++;
+        }
+        return true;
+    }
+
+    /**
+     * JSON path of record, same as Gson
+     */
+    private String pathOf(long recordIndex)
+    {
+        return inArray ? "$[" + recordIndex + "]" : "$";
+    }
+
+    /**
+     * how a {@link PropertyJsonReader} reads properties
+     */
+    public static class Options
+    {
+        private PropertyTypeAdapter adapter = PropertyTypeAdapter.DEFAULT;
+        private MalformedPolicy malformedPolicy = MalformedPolicy.FAIL;
+        private Consumer<? super MalformedRecord> malformedRecords = s -> {};
+
+        /**
+         * adapter reading each property, {@link PropertyTypeAdapter#DEFAULT} by default
+         * @param adapter
+         * @return
+         */
+        public Options adapter(PropertyTypeAdapter adapter)
+        {
+            this.adapter = adapter;
+            return this;
+        }
+
+        /**
+         * handle malformed records with giving <code>malformedPolicy</code>,
+         * skipped and quarantined ones are given to <code>malformedRecords</code>.
+         * @param malformedPolicy
+         * @param malformedRecords
+         * @return
+         */
+        public Options onMalformed(MalformedPolicy malformedPolicy, Consumer<? super MalformedRecord> malformedRecords)
+        {
+            this.malformedPolicy = malformedPolicy;
+            this.malformedRecords = malformedRecords;
+            return this;
+        }
+    }
+
+    /**
+     * a record which is valid JSON but not a valid property
+     */
+    public static class MalformedRecord
+    {
+        private final String source;
+        private final long index;
+        private final long offset;
+        private final String path;
+        private final String message;
+        private final String json;
+
+        private MalformedRecord(String source, long index, long offset, String path, String message, String json)
+        {
+            this.source = source;
+            this.index = index;
+            this.offset = offset;
+            this.path = path;
+            this.message = message;
+            this.json = json;
+        }
+
+        public String getSource()
+        {
+            return source;
+        }
+
+        /**
+         * index of record in source, from 0
+         * @return
+         */
+        public long getIndex()
+        {
+            return index;
+        }
+
+        /**
+         * offset in chars of the start of record in source, from 0
+         * @return
+         */
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        /**
+         * JSON path of record, e.g. <code>$[12]</code>, or <code>$</code> for top level records
+         * @return
+         */
+        public String getPath()
+        {
+            return path;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        /**
+         * @return
+         *  JSON of record if quarantined, otherwise null
+         */
+        public String getJson()
+        {
+            return json;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("MalformedRecord[source=%s, index=%d, offset=%d, path=%s, message=%s]",
+                    source, index, offset, path, message);
+        }
+    }
+}
@@ -0,0 +1,604 @@
+package com.sven.rmtest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import com.google.gson.stream.MalformedJsonException;
+import com.sven.rmtest.PropertyTypeAdapter.MalformedPropertyException;
+
+/**
+ * scanner of JSON text made for reading {@link Property} fast, used by {@link PropertyJsonReader}.
+ * <p>
+ * compared to Gson's JsonReader:
+ * <ul>
+ * <li>field names are matched in the char buffer, no String is created for them</li>
+ * <li>{@link PropertyType} names are matched in the char buffer too</li>
+ * <li>integers, and decimals with up to 15 digits and no exponent (all prices), are converted without a String</li>
+ * <li>offset of each record in the source is known, and its text can be captured</li>
+ * </ul>
+ * strict JSON only, no comments or unquoted strings.
+ * <p>
+ * not thread safe.
+ */
+final class PropertyJsonScanner
+{
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private enum Field
+    {
+        PROPERTY_REFERENCE("propertyReference"), PRICE("price"), BEDROOMS("bedrooms"), BATHROOMS("bathrooms"),
+        HOUSE_NUMBER("houseNumber"), ADDRESS("address"), REGION("region"), POSTCODE("postcode"),
+        PROPERTY_TYPE("propertyType");
+
+        private final String name;
+        private final char[] chars;
+
+        private Field(String name)
+        {
+            this.name = name;
+            this.chars = name.toCharArray();
+        }
+    }
+
+    private static final Field[] fields = Field.values();
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+
+    /**
+     * offset in source of buffer[0]
+     */
+    private long bufferOffset = 0;
+
+    private char[] text = new char[64];
+    private int textLength = 0;
+
+    private StringBuilder capture;
+    private int captureStart;
+
+    PropertyJsonScanner(Reader in)
+    {
+        this.in = in;
+    }
+
+    /**
+     * skip whitespaces and get next char without consuming it
+     * @return
+     *  -1 at end of source
+     */
+    int peek() throws IOException
+    {
+        while (true) {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[position];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                position++;
+            } else {
+                return c;
+            }
+        }
+    }
+
+    /**
+     * consume next char after {@link #peek()}
+     */
+    void skip()
+    {
+        position++;
+    }
+
+    /**
+     * offset in source of next char
+     * @return
+     */
+    long getOffset()
+    {
+        return bufferOffset + position;
+    }
+
+    /**
+     * start keeping text of source from next char, see {@link #endCapture()}
+     */
+    void startCapture()
+    {
+        capture = new StringBuilder();
+        captureStart = position;
+    }
+
+    /**
+     * stop keeping text of source
+     * @return
+     *  text since {@link #startCapture()}
+     */
+    String endCapture()
+    {
+        capture.append(buffer, captureStart, position - captureStart);
+        String captured = capture.toString().trim();
+        capture = null;
+        return captured;
+    }
+
+    /**
+     * read next value as a property, with values of <code>adapter</code> defaults for null or missing fields.
+     * <p>
+     * throw {@link MalformedPropertyException} if value isn't a property, after the whole value was read.
+     * <p>
+     * throw IOException if JSON is broken
+     * @param adapter
+     * @return
+     *  null if value is JSON null
+     */
+    Property readProperty(PropertyTypeAdapter adapter) throws IOException
+    {
+        int c = peek();
+        if (c != '{') {
+            if (c == 'n') {
+                readLiteral("null");
+                return null;
+            }
+            skipValue();
+            throw new MalformedPropertyException("Expected a property");
+        }
+        position++;
+
+        Property property = adapter.newProperty();
+        String malformed = null;
+
+        if (peek() == '}') {
+            position++;
+            return property;
+        }
+        while (true) {
+            expect('"');
+            readText();
+            Field field = fieldOf(text, textLength);
+            expectAfterWhitespace(':');
+
+            c = peek();
+            if (c == 'n') {
+                readLiteral("null");
+            } else if (field == null) {
+                skipValue();
+            } else {
+                String error = readField(property, field, c, adapter);
+                if (error != null && malformed == null) {
+                    malformed = String.format("Invalid value of [%s]: %s", field.name, error);
+                }
+            }
+
+            c = peek();
+            position++;
+            if (c == '}') {
+                break;
+            }
+            if (c != ',') {
+                throw syntaxError("Expected ',' or '}'");
+            }
+            peek();
+        }
+
+        if (malformed != null) {
+            throw new MalformedPropertyException(malformed);
+        }
+        return property;
+    }
+
+    /**
+     * consume next char, which must be <code>expected</code>
+     */
+    void expectAfterWhitespace(char expected) throws IOException
+    {
+        if (peek() != expected) {
+            throw syntaxError(String.format("Expected '%s'", expected));
+        }
+        position++;
+    }
+
+    MalformedJsonException syntaxError(String message)
+    {
+        return new MalformedJsonException(String.format("%s at offset %d", message, getOffset()));
+    }
+
+    /**
+     * @return
+     *  error message if value has a wrong type, value is consumed anyway
+     */
+    private String readField(Property property, Field field, int c, PropertyTypeAdapter adapter) throws IOException
+    {
+        switch (field) {
+        case PROPERTY_REFERENCE:
+        case PRICE:
+        case BEDROOMS:
+        case BATHROOMS:
+            if (c == '"') {
+                //quoted number, as Gson
+                position++;
+                readText();
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                readNumberText();
+            } else {
+                skipValue();
+                return "not a number";
+            }
+            try
+            {
+                return setNumber(property, field);
+            }
+            catch (NumberFormatException e)
+            {
+                return String.format("not a number [%s]", new String(text, 0, textLength));
+            }
+        default:
+            String string;
+            if (c == '"') {
+                position++;
+                readText();
+                if (field == Field.PROPERTY_TYPE) {
+                    property.setPropertyType(adapter.propertyTypeOf(text, textLength));
+                    return null;
+                }
+                string = new String(text, 0, textLength);
+            } else if (c == 't') {
+                readLiteral("true");
+                string = "true";
+            } else if (c == 'f') {
+                readLiteral("false");
+                string = "false";
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                readNumberText();
+                string = new String(text, 0, textLength);
+            } else {
+                skipValue();
+                return "not a string";
+            }
+
+            if (field == Field.PROPERTY_TYPE) {
+                property.setPropertyType(adapter.propertyTypeOf(string));
+            } else {
+                setString(property, field, string);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * set number in text to <code>field</code>
+     * <p>
+     * throw NumberFormatException if text isn't a number
+     * @return
+     *  error message if number doesn't fit the field
+     */
+    private String setNumber(Property property, Field field)
+    {
+        if (field == Field.PRICE) {
+            property.setPrice(doubleOfText());
+            return null;
+        }
+
+        long value = longOfText();
+        if (field == Field.PROPERTY_REFERENCE) {
+            property.setPropertyReference(value);
+        } else if (value != (int) value) {
+            return String.format("not an int [%d]", value);
+        } else if (field == Field.BEDROOMS) {
+            property.setBedrooms((int) value);
+        } else {
+            property.setBathrooms((int) value);
+        }
+        return null;
+    }
+
+    private static void setString(Property property, Field field, String value)
+    {
+        switch (field) {
+        case HOUSE_NUMBER:
+            property.setHouseNumber(value);
+            break;
+        case ADDRESS:
+            property.setAddress(value);
+            break;
+        case REGION:
+            property.setRegion(value);
+            break;
+        default:
+            property.setPostcode(value);
+        }
+    }
+
+    private static Field fieldOf(char[] name, int length)
+    {
+        for (Field field : fields) {
+            if (field.chars.length == length && equals(field.chars, name, length)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    static boolean equals(char[] expected, char[] actual, int length)
+    {
+        for (int i = 0; i < length; i++) {
+            if (expected[i] != actual[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * number in text, exactly as {@link Double#parseDouble(String)}
+     * <p>
+     * throw NumberFormatException if text isn't a number
+     */
+    private double doubleOfText()
+    {
+        //fast path: mantissa and power of ten are exact doubles, so there is one rounding only
+        int i = 0;
+        boolean negative = textLength > 0 && text[0] == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        boolean hasDigit = false;
+        for (; i < textLength; i++) {
+            char c = text[i];
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                if (digits <= 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+                if (fraction) {
+                    scale++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                //exponent or invalid
+                return Double.parseDouble(new String(text, 0, textLength));
+            }
+        }
+        if (!hasDigit || digits > 15 || scale >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(new String(text, 0, textLength));
+        }
+        double value = scale == 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    /**
+     * integer in text, which may also be written as a double with no fraction (e.g. <code>2.0</code>), as Gson
+     * <p>
+     * throw NumberFormatException if text isn't an integer
+     */
+    private long longOfText()
+    {
+        int i = 0;
+        boolean negative = textLength > 0 && text[0] == '-';
+        if (negative) {
+            i++;
+        }
+        if (textLength - i > 0 && textLength - i <= 18) {
+            long value = 0;
+            for (; i < textLength; i++) {
+                char c = text[i];
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (i == textLength) {
+                return negative ? -value : value;
+            }
+        }
+
+        String number = new String(text, 0, textLength);
+        try
+        {
+            return Long.parseLong(number);
+        }
+        catch (NumberFormatException e)
+        {
+            double value = Double.parseDouble(number);
+            if (value != (long) value) {
+                throw new NumberFormatException(number);
+            }
+            return (long) value;
+        }
+    }
+
+    /**
+     * read chars of a number into text
+     */
+    private void readNumberText() throws IOException
+    {
+        textLength = 0;
+        while (true) {
+            if (position == limit && !fill()) {
+                return;
+            }
+            char c = buffer[position];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                appendText(c);
+                position++;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * read a string, whose opening quote is consumed, into text
+     */
+    private void readText() throws IOException
+    {
+        textLength = 0;
+        while (true) {
+            if (position == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            char c = buffer[position++];
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                appendText(readEscape());
+            } else {
+                appendText(c);
+            }
+        }
+    }
+
+    private char readEscape() throws IOException
+    {
+        char c = nextChar();
+        switch (c) {
+        case 'u':
+            int value = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(nextChar(), 16);
+                if (digit < 0) {
+                    throw syntaxError("Invalid unicode escape");
+                }
+                value = value * 16 + digit;
+            }
+            return (char) value;
+        case 't':
+            return '\t';
+        case 'b':
+            return '\b';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 'f':
+            return '\f';
+        case '"':
+        case '\\':
+        case '/':
+            return c;
+        default:
+            throw syntaxError("Invalid escape");
+        }
+    }
+
+    /**
+     * skip next value, whatever it is
+     */
+    private void skipValue() throws IOException
+    {
+        int c = peek();
+        switch (c) {
+        case '{':
+        case '[':
+            position++;
+            char close = c == '{' ? '}' : ']';
+            if (peek() == close) {
+                position++;
+                return;
+            }
+            while (true) {
+                if (c == '{') {
+                    expectAfterWhitespace('"');
+                    readText();
+                    expectAfterWhitespace(':');
+                }
+                skipValue();
+                int next = peek();
+                position++;
+                if (next == close) {
+                    return;
+                }
+                if (next != ',') {
+                    throw syntaxError(String.format("Expected ',' or '%s'", close));
+                }
+            }
+        case '"':
+            position++;
+            readText();
+            return;
+        case 't':
+            readLiteral("true");
+            return;
+        case 'f':
+            readLiteral("false");
+            return;
+        case 'n':
+            readLiteral("null");
+            return;
+        default:
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                readNumberText();
+                return;
+            }
+            throw syntaxError(c < 0 ? "Unexpected end of source" : String.format("Unexpected '%s'", (char) c));
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException
+    {
+        for (int i = 0; i < literal.length(); i++) {
+            if (nextChar() != literal.charAt(i)) {
+                throw syntaxError(String.format("Expected %s", literal));
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException
+    {
+        if (nextChar() != expected) {
+            throw syntaxError(String.format("Expected '%s'", expected));
+        }
+    }
+
+    private char nextChar() throws IOException
+    {
+        if (position == limit && !fill()) {
+            throw syntaxError("Unexpected end of source");
+        }
+        return buffer[position++];
+    }
+
+    private void appendText(char c)
+    {
+        if (textLength == text.length) {
+            text = Arrays.copyOf(text, text.length * 2);
+        }
+        text[textLength++] = c;
+    }
+
+    /**
+     * read more chars, buffer is empty when called
+     */
+    private boolean fill() throws IOException
+    {
+        if (capture != null) {
+            capture.append(buffer, captureStart, limit - captureStart);
+            captureStart = 0;
+        }
+        bufferOffset += limit;
+        position = 0;
+        limit = 0;
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,409 @@
+package com.sven.rmtest;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+/**
+ * closed loop load test of {@link PropertyStore} queries: a number of threads run a weighted mix of queries
+ * back to back for a while, the latency of each query is recorded in a {@link LatencyHistogram} per query.
+ * <ul>
+ * <li>{@link Query#MEAN}: mean price of a random {@link PropertyType}</li>
+ * <li>{@link Query#TOP_N}: top N percent most expensive properties</li>
+ * <li>{@link Query#POSTCODE}: mean price of the outward postcode of a random row,
+ * so popular postcodes are queried as often as they occur</li>
+ * </ul>
+ * queries of a warm up period are not recorded. every thread has its own histograms and random,
+ * they are only merged at the end, so measuring doesn't add contention between threads.
+ * <p>
+ * results are not cached, see {@link CachedPropertyQueries} for that, each query scans the store.
+ */
+public class PropertyLoadDriver
+{
+
+    public enum Query
+    {
+        MEAN, TOP_N, POSTCODE
+    }
+
+    private static final PropertyType[] propertyTypes = PropertyType.values();
+
+    private final int threads;
+    private final long warmUpMillis;
+    private final long durationMillis;
+    private final int[] weights;
+    private final int totalWeight;
+    private final int percent;
+    private final long seed;
+
+    private PropertyLoadDriver(Builder builder)
+    {
+        this.threads = builder.threads;
+        this.warmUpMillis = builder.warmUpMillis;
+        this.durationMillis = builder.durationMillis;
+        this.weights = builder.weights.clone();
+        this.totalWeight = Arrays.stream(weights).sum();
+        this.percent = builder.percent;
+        this.seed = builder.seed;
+    }
+
+    /**
+     * run queries against a JSON file or generated properties, usage:
+     * <pre>
+     * PropertyLoadDriver &lt;json file | number of generated properties&gt; [threads, e.g. 1,2,4,8] [seconds] [mean:topN:postcode weights]
+     * </pre>
+     * one report is printed for each number of threads, so a drop of throughput per thread shows where scaling ends.
+     * @param args
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 1 || args.length > 4) {
+            System.err.println("Usage: PropertyLoadDriver <json file | number of generated properties> "
+                    + "[threads, e.g. 1,2,4,8] [seconds] [mean:topN:postcode weights]");
+            System.exit(1);
+        }
+
+        long start = System.currentTimeMillis();
+        PropertyStore.Builder storeBuilder = new PropertyStore.Builder();
+        if (args[0].matches("\\d+")) {
+            //generated in place, never held as Property objects
+            PropertyGenerator generator = new PropertyGenerator(42L, 0.01d);
+            for (int i = 1, size = Integer.parseInt(args[0]); i <= size; i++) {
+                storeBuilder.add(generator.next(i));
+            }
+        } else {
+            try (Stream<Property> properties = PropertyUtils.streamDataFromFile(Paths.get(args[0]))) {
+                properties.forEachOrdered(storeBuilder::add);
+            }
+        }
+        PropertyStore store = storeBuilder.build();
+        System.out.println(String.format("Loaded %d properties in %d ms", store.size(), System.currentTimeMillis() - start));
+
+        Builder builder = new Builder();
+        if (args.length > 2) {
+            builder.duration(Long.parseLong(args[2]) * 1000L);
+        }
+        if (args.length > 3) {
+            String[] weights = args[3].split(":");
+            if (weights.length != Query.values().length) {
+                throw new RuntimeException(String.format("Expected %d weights but was [%s]", Query.values().length, args[3]));
+            }
+            for (Query query : Query.values()) {
+                builder.weight(query, Integer.parseInt(weights[query.ordinal()]));
+            }
+        }
+        for (String threads : (args.length > 1 ? args[1] : "1").split(",")) {
+            System.out.println(builder.threads(Integer.parseInt(threads.trim())).build().run(store));
+        }
+    }
+
+    /**
+     * run the mix against <code>store</code>, blocks for warm up and duration.
+     * <p>
+     * throw RuntimeException if a query failed or the thread was interrupted
+     * @param store
+     * @return
+     */
+    public Report run(PropertyStore store)
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        List<Worker> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(store, new Random(seed + i), started);
+            worker.setName("property-load-driver-" + (i + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+
+        try
+        {
+            started.countDown();
+            Thread.sleep(warmUpMillis);
+            long measuredFrom = System.nanoTime();
+            workers.forEach(s -> s.measuring = true);
+            Thread.sleep(durationMillis);
+            workers.forEach(s -> s.stopped = true);
+            long measuredTo = System.nanoTime();
+            for (Worker worker : workers) {
+                worker.join();
+            }
+
+            Report report = new Report(threads, measuredTo - measuredFrom);
+            for (Worker worker : workers) {
+                if (worker.failure != null) {
+                    throw new RuntimeException(
+                            String.format("Query failed on [%s]", worker.getName()), worker.failure);
+                }
+                for (Query query : Query.values()) {
+                    report.histograms.get(query).add(worker.histograms.get(query));
+                }
+            }
+            return report;
+        }
+        catch (InterruptedException e)
+        {
+            workers.forEach(s -> s.stopped = true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running queries", e);
+        }
+    }
+
+    /**
+     * run one query, result is returned so the JIT can't drop it
+     */
+    private Object execute(Query query, PropertyStore store, Random random)
+    {
+        switch (query) {
+        case MEAN:
+            return store.getMeanPriceByPropertyType(propertyTypes[random.nextInt(propertyTypes.length)]);
+        case TOP_N:
+            return store.getTopNPercentMostExpensive(percent);
+        default:
+            //a blank outward postcode of a row without postcode is the mean of all
+            return store.getMeanPriceByPostcodeOutward(
+                    store.size() == 0 ? null : store.getOutwardPostcode(random.nextInt(store.size())));
+        }
+    }
+
+    /**
+     * cheap hash of a result, hash of a list would walk all its properties within the measured period
+     */
+    private static int sinkOf(Object result)
+    {
+        return result instanceof List ? ((List<?>) result).size() : result.hashCode();
+    }
+
+    private Query nextQuery(Random random)
+    {
+        int value = random.nextInt(totalWeight);
+        for (Query query : Query.values()) {
+            value -= weights[query.ordinal()];
+            if (value < 0) {
+                return query;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private class Worker extends Thread
+    {
+        private final PropertyStore store;
+        private final Random random;
+        private final CountDownLatch started;
+        private final Map<Query, LatencyHistogram> histograms = new EnumMap<>(Query.class);
+
+        private volatile boolean measuring = false;
+        private volatile boolean stopped = false;
+        private Throwable failure;
+
+        /**
+         * hash of results, kept so the JIT can't drop a query
+         */
+        private int sink;
+
+        private Worker(PropertyStore store, Random random, CountDownLatch started)
+        {
+            this.store = store;
+            this.random = random;
+            this.started = started;
+            for (Query query : Query.values()) {
+                histograms.put(query, new LatencyHistogram());
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                started.await();
+                while (!stopped) {
+                    Query query = nextQuery(random);
+                    long start = System.nanoTime();
+                    Object result = execute(query, store, random);
+                    long latency = System.nanoTime() - start;
+                    if (measuring && !stopped) {
+                        histograms.get(query).record(latency);
+                    }
+                    sink += sinkOf(result);
+                }
+            }
+            catch (Throwable e)
+            {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * latencies in nanoseconds of each query, recorded after warm up
+     */
+    public static class Report
+    {
+        private final int threads;
+        private final long elapsedNanos;
+        private final Map<Query, LatencyHistogram> histograms = new EnumMap<>(Query.class);
+
+        private Report(int threads, long elapsedNanos)
+        {
+            this.threads = threads;
+            this.elapsedNanos = elapsedNanos;
+            for (Query query : Query.values()) {
+                histograms.put(query, new LatencyHistogram());
+            }
+        }
+
+        public int getThreads()
+        {
+            return threads;
+        }
+
+        public long getElapsedNanos()
+        {
+            return elapsedNanos;
+        }
+
+        /**
+         * @param query
+         * @return
+         *  empty histogram if query was not run
+         */
+        public LatencyHistogram getHistogram(Query query)
+        {
+            return histograms.get(query);
+        }
+
+        /**
+         * @return
+         *  all queries in one histogram
+         */
+        public LatencyHistogram getTotal()
+        {
+            LatencyHistogram total = new LatencyHistogram();
+            histograms.values().forEach(total::add);
+            return total;
+        }
+
+        /**
+         * @return
+         *  queries per second over all threads
+         */
+        public double getThroughput()
+        {
+            return elapsedNanos == 0 ? 0d : getTotal().getCount() * 1e9d / elapsedNanos;
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder text = new StringBuilder(String.format("%d threads: %.1f queries/s in %d ms%n",
+                    threads, getThroughput(), elapsedNanos / 1000000L));
+            Map<String, LatencyHistogram> rows = new LinkedHashMap<>();
+            histograms.forEach((query, histogram) -> rows.put(query.name(), histogram));
+            rows.put("ALL", getTotal());
+            rows.forEach((name, histogram) -> text.append(String.format(
+                    "  %-8s count=%d p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus%n",
+                    name, histogram.getCount(), histogram.getValueAtPercentile(50) / 1000d,
+                    histogram.getValueAtPercentile(99) / 1000d, histogram.getValueAtPercentile(99.9) / 1000d,
+                    histogram.getMax() / 1000d)));
+            return text.toString();
+        }
+    }
+
+    /**
+     * build a {@link PropertyLoadDriver}, by default 1 thread runs an even mix of queries for 10 seconds
+     * after 2 seconds of warm up, top N is 10 percent as in {@link Application}
+     */
+    public static class Builder
+    {
+        private int threads = 1;
+        private long warmUpMillis = 2000L;
+        private long durationMillis = 10000L;
+        private final int[] weights = {1, 1, 1};
+        private int percent = 10;
+        private long seed = 42L;
+
+        /**
+         * @param threads
+         *  at least 1
+         * @return
+         */
+        public Builder threads(int threads)
+        {
+            this.threads = Math.max(1, threads);
+            return this;
+        }
+
+        /**
+         * @param warmUpMillis
+         *  negative is 0
+         * @return
+         */
+        public Builder warmUp(long warmUpMillis)
+        {
+            this.warmUpMillis = Math.max(0L, warmUpMillis);
+            return this;
+        }
+
+        /**
+         * @param durationMillis
+         *  measured period, at least 1
+         * @return
+         */
+        public Builder duration(long durationMillis)
+        {
+            this.durationMillis = Math.max(1L, durationMillis);
+            return this;
+        }
+
+        /**
+         * relative frequency of <code>query</code> in the mix, 0 to leave it out
+         * @param query
+         * @param weight
+         *  negative is 0
+         * @return
+         */
+        public Builder weight(Query query, int weight)
+        {
+            this.weights[query.ordinal()] = Math.max(0, weight);
+            return this;
+        }
+
+        /**
+         * @param percent
+         *  of {@link Query#TOP_N}
+         * @return
+         */
+        public Builder percent(int percent)
+        {
+            this.percent = percent;
+            return this;
+        }
+
+        public Builder seed(long seed)
+        {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * throw RuntimeException if all weights are 0
+         * @return
+         */
+        public PropertyLoadDriver build()
+        {
+            if (Arrays.stream(weights).sum() == 0) {
+                throw new RuntimeException("At least one query should have a weight");
+            }
+            return new PropertyLoadDriver(this);
+        }
+    }
+}
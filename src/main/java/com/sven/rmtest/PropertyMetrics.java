@@ -0,0 +1,84 @@
+package com.sven.rmtest;
+
+/**
+ * receives timings and counts of loads and queries, set with {@link PropertyUtils#setMetrics(PropertyMetrics)}.
+ * <p>
+ * callers check {@link #isEnabled()} before reading the clock or counting anything,
+ * so {@link #NOOP} (the default) costs one volatile read and a branch per operation.
+ * <p>
+ * implementations must be thread safe and fast, they are called on the hot path.
+ * @see RecordingPropertyMetrics
+ */
+public interface PropertyMetrics
+{
+
+    String MEAN_PRICE_BY_POSTCODE_OUTWARD = "meanPriceByPostcodeOutward";
+    String MEAN_PRICE_BY_PROPERTY_TYPE = "meanPriceByPropertyType";
+    String TOP_N_PERCENT_MOST_EXPENSIVE = "topNPercentMostExpensive";
+
+    /**
+     * metrics which records nothing
+     */
+    PropertyMetrics NOOP = new PropertyMetrics() {
+
+        @Override
+        public boolean isEnabled()
+        {
+            return false;
+        }
+
+        @Override
+        public void recordLoad(String source, long records, long skipped, long bytes, long nanos)
+        {
+        }
+
+        @Override
+        public void recordQuery(String query, long nanos, int results)
+        {
+        }
+
+        @Override
+        public void recordCacheAccess(String cache, boolean hit)
+        {
+        }
+    };
+
+    /**
+     * @return
+     *  false if nothing should be measured
+     */
+    boolean isEnabled();
+
+    /**
+     * a load of <code>source</code> finished, or was stopped by closing its stream.
+     * @param source
+     * @param records
+     *  properties read
+     * @param skipped
+     *  elements read which are not a property
+     * @param bytes
+     *  bytes read from source
+     * @param nanos
+     *  duration from opening to closing the source
+     */
+    void recordLoad(String source, long records, long skipped, long bytes, long nanos);
+
+    /**
+     * a query finished
+     * @param query
+     *  name of query, one of constants of this interface for {@link PropertyUtils} queries
+     * @param nanos
+     * @param results
+     *  number of properties in the result, 1 for a single value
+     */
+    void recordQuery(String query, long nanos, int results);
+
+    /**
+     * a cached result was looked up
+     * @param cache
+     *  name of cache
+     * @param hit
+     *  true if result was found in cache
+     */
+    void recordCacheAccess(String cache, boolean hit);
+}
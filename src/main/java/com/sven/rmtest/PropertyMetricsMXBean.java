@@ -0,0 +1,133 @@
+package com.sven.rmtest;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link RecordingPropertyMetrics}, registered with {@link RecordingPropertyMetrics#registerMBean()}.
+ */
+public interface PropertyMetricsMXBean
+{
+
+    long getLoadCount();
+
+    long getLoadedRecords();
+
+    long getSkippedRecords();
+
+    long getLoadedBytes();
+
+    /**
+     * @return
+     *  duration of last load in milliseconds, 0 if nothing was loaded
+     */
+    double getLastLoadMillis();
+
+    /**
+     * @return
+     *  records per second of last load
+     */
+    double getLastLoadRecordsPerSecond();
+
+    /**
+     * @return
+     *  bytes per second of last load
+     */
+    double getLastLoadBytesPerSecond();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    /**
+     * @return
+     *  hits / (hits + misses), 0 if cache wasn't accessed
+     */
+    double getCacheHitRate();
+
+    /**
+     * @return
+     *  statistics of each query, keyed by query name
+     */
+    Map<String, QueryStatistics> getQueries();
+
+    /**
+     * clear all metrics
+     */
+    void reset();
+
+    /**
+     * latency and result size statistics of a query, latencies are in microseconds.
+     */
+    public static class QueryStatistics
+    {
+        private final long count;
+        private final double meanMicros;
+        private final double p50Micros;
+        private final double p99Micros;
+        private final double p999Micros;
+        private final double maxMicros;
+        private final double meanResults;
+        private final long maxResults;
+
+        public QueryStatistics(long count, double meanMicros, double p50Micros, double p99Micros, double p999Micros,
+                double maxMicros, double meanResults, long maxResults)
+        {
+            this.count = count;
+            this.meanMicros = meanMicros;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.p999Micros = p999Micros;
+            this.maxMicros = maxMicros;
+            this.meanResults = meanResults;
+            this.maxResults = maxResults;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public double getMeanMicros()
+        {
+            return meanMicros;
+        }
+
+        public double getP50Micros()
+        {
+            return p50Micros;
+        }
+
+        public double getP99Micros()
+        {
+            return p99Micros;
+        }
+
+        public double getP999Micros()
+        {
+            return p999Micros;
+        }
+
+        public double getMaxMicros()
+        {
+            return maxMicros;
+        }
+
+        public double getMeanResults()
+        {
+            return meanResults;
+        }
+
+        public long getMaxResults()
+        {
+            return maxResults;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("QueryStatistics[count=%d, mean=%.1fus, p50=%.1fus, p99=%.1fus, p999=%.1fus, "
+                    + "max=%.1fus, meanResults=%.1f, maxResults=%d]",
+                    count, meanMicros, p50Micros, p99Micros, p999Micros, maxMicros, meanResults, maxResults);
+        }
+    }
+}
@@ -0,0 +1,906 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * type-ahead search of properties by prefix of postcode, address or region, compared ignoring case and extra spaces.
+ * <p>
+ * each field is indexed by a sorted array of distinct keys, keys of a prefix are a range found by binary search.
+ * rows of a key are held in one int array, ordered by price from high to low.
+ * <ul>
+ * <li>in key order: keys of the range are walked until k rows or keys are found</li>
+ * <li>by price: keys are grouped in blocks whose highest price is kept in a max tree,
+ * the range is walked best first, so only blocks and keys which can make top k are opened</li>
+ * </ul>
+ * properties added after the index was built go to a sorted map of at most {@value #MAX_DELTA_ROWS} rows,
+ * which is then built into a second, recent index. the recent index is merged into the main one
+ * by a rebuild once it holds more than 1/{@value #RECENT_RATIO} of the rows.
+ * indexes are built by the adding thread, readers are only blocked while they are swapped in.
+ * <p>
+ * properties are held by reference and ranked by their price when added, they should not be changed afterwards.
+ * <p>
+ * thread safe.
+ */
+public class PropertyPrefixIndex
+{
+
+    public enum Field
+    {
+        POSTCODE(Property::getPostcode),
+        ADDRESS(Property::getAddress),
+        REGION(Property::getRegion);
+
+        private final Function<Property, String> value;
+
+        private Field(Function<Property, String> value)
+        {
+            this.value = value;
+        }
+
+        String valueOf(Property property)
+        {
+            return value.apply(property);
+        }
+    }
+
+    /**
+     * rows in sorted maps which trigger a build of recent index
+     */
+    static final int MAX_DELTA_ROWS = 1 << 12;
+
+    /**
+     * rows in recent index which trigger a rebuild of main index, at least
+     */
+    static final int MIN_RECENT_ROWS = 1 << 16;
+
+    /**
+     * rows in recent index which trigger a rebuild of main index, at least 1/RECENT_RATIO of all rows
+     */
+    static final int RECENT_RATIO = 16;
+
+    /**
+     * keys of a block in max tree
+     */
+    static final int BLOCK_SIZE = 16;
+
+    private static final Field[] fields = Field.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Property[] properties = new Property[16];
+    private double[] prices = new double[16];
+    private int size = 0;
+
+    /**
+     * rows [0, mainSize) are in main indexes, [mainSize, recentSize) in recent ones, others in deltas
+     */
+    private int mainSize = 0;
+    private int recentSize = 0;
+    private final Map<Field, Segment> mains = new EnumMap<>(Field.class);
+    private final Map<Field, Segment> recents = new EnumMap<>(Field.class);
+    private final Map<Field, TreeMap<String, Rows>> deltas = new EnumMap<>(Field.class);
+    private boolean building = false;
+
+    public PropertyPrefixIndex()
+    {
+        for (Field field : fields) {
+            mains.put(field, Segment.EMPTY);
+            recents.put(field, Segment.EMPTY);
+            deltas.put(field, new TreeMap<>());
+        }
+    }
+
+    /**
+     * create index of giving <code>properties</code>, null elements are skipped.
+     * @param properties
+     * @return
+     */
+    public static PropertyPrefixIndex of(Collection<Property> properties)
+    {
+        PropertyPrefixIndex index = new PropertyPrefixIndex();
+        if (properties != null) {
+            for (Property property : properties) {
+                if (property != null) {
+                    index.append(property);
+                }
+            }
+        }
+        index.build(true);
+        return index;
+    }
+
+    /**
+     * add <code>property</code>, it can be found right after.
+     * <p>
+     * null is ignored, blank fields are not indexed.
+     * @param property
+     */
+    public void add(Property property)
+    {
+        if (property == null) {
+            return;
+        }
+
+        boolean build = false;
+        boolean all = false;
+        lock.writeLock().lock();
+        try
+        {
+            addToDeltas(append(property));
+            if (!building && size - recentSize > MAX_DELTA_ROWS) {
+                building = build = true;
+                all = size - mainSize > Math.max(MIN_RECENT_ROWS, mainSize / RECENT_RATIO);
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+
+        if (build) {
+            build(all);
+        }
+    }
+
+    /**
+     * properties whose <code>field</code> starts with <code>prefix</code>
+     * @param field
+     * @param prefix
+     *  blank matches all properties with a value of <code>field</code>
+     * @param k
+     *  maximum number of properties
+     * @param rankByPrice
+     *  if true, most expensive first, properties with same price in order of adding.
+     *  otherwise in order of field value, then by price.
+     * @return
+     *  empty list if <code>k</code> is not positive
+     */
+    public List<Property> search(Field field, String prefix, int k, boolean rankByPrice)
+    {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+
+        String folded = fold(prefix, true);
+        lock.readLock().lock();
+        try
+        {
+            int[] rows = rankByPrice
+                    ? new BestFirst(field, folded).nextRows(k)
+                    : rowsInKeyOrder(field, folded, k);
+            List<Property> matches = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                matches.add(properties[row]);
+            }
+            return matches;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * distinct values of <code>field</code> which start with <code>prefix</code>
+     * @param field
+     * @param prefix
+     *  blank matches all values
+     * @param k
+     *  maximum number of values
+     * @param rankByPrice
+     *  if true, values of the most expensive properties first, otherwise in alphabetical order
+     * @return
+     *  canonical, upper case values, empty list if <code>k</code> is not positive
+     */
+    public List<String> complete(Field field, String prefix, int k, boolean rankByPrice)
+    {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+
+        String folded = fold(prefix, true);
+        lock.readLock().lock();
+        try
+        {
+            if (rankByPrice) {
+                return new BestFirst(field, folded).nextKeys(k);
+            }
+
+            List<String> keys = new ArrayList<>(k);
+            KeyMerger merger = new KeyMerger(field, folded);
+            while (keys.size() < k && merger.next()) {
+                keys.add(merger.key);
+            }
+            return keys;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param field
+     * @param prefix
+     * @return
+     *  number of properties whose <code>field</code> starts with <code>prefix</code>
+     */
+    public int count(Field field, String prefix)
+    {
+        String folded = fold(prefix, true);
+        lock.readLock().lock();
+        try
+        {
+            int count = mains.get(field).count(folded) + recents.get(field).count(folded);
+            for (Rows rows : deltaOf(field, folded).values()) {
+                count += rows.size;
+            }
+            return count;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return
+     *  number of properties added
+     */
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return size;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * key of a field value or of a prefix: upper case, without leading spaces,
+     * inner spaces collapsed to one, trailing spaces dropped for a value but kept as one for a prefix
+     * @param value
+     * @param prefix
+     * @return
+     *  null if <code>value</code> is blank and not a prefix
+     */
+    static String fold(String value, boolean prefix)
+    {
+        if (value == null) {
+            return prefix ? "" : null;
+        }
+        if (isFolded(value, prefix)) {
+            return value;
+        }
+
+        StringBuilder folded = new StringBuilder(value.length());
+        boolean space = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = folded.length() > 0;
+            } else {
+                if (space) {
+                    folded.append(' ');
+                    space = false;
+                }
+                folded.append(c);
+            }
+        }
+        if (space && prefix) {
+            folded.append(' ');
+        }
+        if (folded.length() == 0 && !prefix) {
+            return null;
+        }
+        return folded.toString().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * most values are already folded, e.g. postcodes, checked without creating a string
+     */
+    private static boolean isFolded(String value, boolean prefix)
+    {
+        int length = value.length();
+        if (length == 0) {
+            return prefix;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == ' ') {
+                if (i == 0 || value.charAt(i - 1) == ' ' || (i == length - 1 && !prefix)) {
+                    return false;
+                }
+            } else if (c >= 0x80 || Character.isWhitespace(c) || Character.isLowerCase(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * append <code>property</code> as the next row without indexing it
+     */
+    private int append(Property property)
+    {
+        if (size == properties.length) {
+            properties = Arrays.copyOf(properties, size * 2);
+            prices = Arrays.copyOf(prices, size * 2);
+        }
+        properties[size] = property;
+        prices[size] = property.getPrice();
+        return size++;
+    }
+
+    private void addToDeltas(int row)
+    {
+        for (Field field : fields) {
+            String key = fold(field.valueOf(properties[row]), false);
+            if (key != null) {
+                deltas.get(field).computeIfAbsent(key, s -> new Rows()).add(row, prices);
+            }
+        }
+    }
+
+    /**
+     * build indexes of all rows, or of rows not in main indexes, swap them in and keep rows added meanwhile in deltas
+     */
+    private void build(boolean all)
+    {
+        Property[] builtProperties;
+        double[] builtPrices;
+        int from;
+        int to;
+        lock.readLock().lock();
+        try
+        {
+            //rows are only appended, arrays are replaced when they grow
+            builtProperties = properties;
+            builtPrices = prices;
+            from = all ? 0 : mainSize;
+            to = size;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+
+        Map<Field, Segment> built = new EnumMap<>(Field.class);
+        try
+        {
+            for (Field field : fields) {
+                built.put(field, Segment.build(field, builtProperties, builtPrices, from, to));
+            }
+        }
+        finally
+        {
+            lock.writeLock().lock();
+            try
+            {
+                building = false;
+                if (built.size() == fields.length) {
+                    if (all) {
+                        mains.putAll(built);
+                        recents.replaceAll((field, segment) -> Segment.EMPTY);
+                        mainSize = to;
+                    } else {
+                        recents.putAll(built);
+                    }
+                    recentSize = to;
+
+                    deltas.values().forEach(TreeMap::clear);
+                    for (int row = recentSize; row < size; row++) {
+                        addToDeltas(row);
+                    }
+                }
+            }
+            finally
+            {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * entries of delta of <code>field</code> whose key starts with <code>prefix</code>
+     */
+    private NavigableMap<String, Rows> deltaOf(Field field, String prefix)
+    {
+        TreeMap<String, Rows> delta = deltas.get(field);
+        if (prefix.isEmpty()) {
+            return delta;
+        }
+        //keys starting with prefix are before prefix with its last char incremented
+        char last = prefix.charAt(prefix.length() - 1);
+        if (last == Character.MAX_VALUE) {
+            return delta.tailMap(prefix, true);
+        }
+        String end = prefix.substring(0, prefix.length() - 1) + (char) (last + 1);
+        return delta.subMap(prefix, true, end, false);
+    }
+
+    private int[] rowsInKeyOrder(Field field, String prefix, int k)
+    {
+        int[] rows = new int[k];
+        int count = 0;
+        KeyMerger merger = new KeyMerger(field, prefix);
+        while (count < k && merger.next()) {
+            //rows of a key in each index are ordered by price, merged by taking the best head
+            List<KeyRows> lists = merger.lists;
+            int[] positions = new int[lists.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = lists.get(i).from;
+            }
+            while (count < k) {
+                int best = -1;
+                for (int i = 0; i < positions.length; i++) {
+                    KeyRows list = lists.get(i);
+                    if (positions[i] < list.to
+                            && (best < 0 || compare(list.rows[positions[i]], lists.get(best).rows[positions[best]]) < 0)) {
+                        best = i;
+                    }
+                }
+                if (best < 0) {
+                    break;
+                }
+                rows[count++] = lists.get(best).rows[positions[best]++];
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * negative if <code>row1</code> ranks before <code>row2</code>: higher price, then added first
+     */
+    private int compare(int row1, int row2)
+    {
+        return compare(prices, row1, row2);
+    }
+
+    private static int compare(double[] prices, int row1, int row2)
+    {
+        int result = Double.compare(prices[row2], prices[row1]);
+        return result != 0 ? result : Integer.compare(row1, row2);
+    }
+
+    /**
+     * a key with its rows <code>rows[from, to)</code>, ordered by price
+     */
+    private static class KeyRows
+    {
+        private final String key;
+        private final int[] rows;
+        private final int from;
+        private final int to;
+
+        private KeyRows(String key, int[] rows, int from, int to)
+        {
+            this.key = key;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * keys with a prefix in main index, recent index and delta, one after another in alphabetical order
+     */
+    private class KeyMerger
+    {
+        private final Segment main;
+        private final Segment recent;
+        private final int mainTo;
+        private final int recentTo;
+        private final Iterator<Map.Entry<String, Rows>> entries;
+        private int mainFrom;
+        private int recentFrom;
+        private Map.Entry<String, Rows> entry;
+
+        private String key;
+
+        /**
+         * rows of key in each index which has it
+         */
+        private final List<KeyRows> lists = new ArrayList<>(3);
+
+        private KeyMerger(Field field, String prefix)
+        {
+            this.main = mains.get(field);
+            this.recent = recents.get(field);
+            this.mainFrom = main.lowerBound(prefix);
+            this.mainTo = main.upperBound(prefix, mainFrom);
+            this.recentFrom = recent.lowerBound(prefix);
+            this.recentTo = recent.upperBound(prefix, recentFrom);
+            this.entries = deltaOf(field, prefix).entrySet().iterator();
+            this.entry = entries.hasNext() ? entries.next() : null;
+        }
+
+        private boolean next()
+        {
+            String mainKey = mainFrom < mainTo ? main.keys[mainFrom] : null;
+            String recentKey = recentFrom < recentTo ? recent.keys[recentFrom] : null;
+            String deltaKey = entry == null ? null : entry.getKey();
+            key = min(min(mainKey, recentKey), deltaKey);
+            if (key == null) {
+                return false;
+            }
+
+            lists.clear();
+            if (key.equals(mainKey)) {
+                lists.add(main.rowsOf(mainFrom++));
+            }
+            if (key.equals(recentKey)) {
+                lists.add(recent.rowsOf(recentFrom++));
+            }
+            if (key.equals(deltaKey)) {
+                lists.add(entry.getValue().of(key));
+                entry = entries.hasNext() ? entries.next() : null;
+            }
+            return true;
+        }
+
+        private String min(String key1, String key2)
+        {
+            return key1 == null ? key2 : key2 == null || key1.compareTo(key2) <= 0 ? key1 : key2;
+        }
+    }
+
+    /**
+     * best first walk of a prefix: max tree nodes and keys of indexes, and keys of delta are queued by their best row
+     */
+    private class BestFirst
+    {
+        private final PriorityQueue<Cursor> queue = new PriorityQueue<>((c1, c2) -> compare(c1.row, c2.row));
+
+        private BestFirst(Field field, String prefix)
+        {
+            for (Segment segment : Arrays.asList(mains.get(field), recents.get(field))) {
+                int from = segment.lowerBound(prefix);
+                segment.queueRange(this, from, segment.upperBound(prefix, from));
+            }
+            for (Map.Entry<String, Rows> entry : deltaOf(field, prefix).entrySet()) {
+                queueKey(entry.getValue().of(entry.getKey()));
+            }
+        }
+
+        /**
+         * @return
+         *  next k best rows
+         */
+        private int[] nextRows(int k)
+        {
+            int[] rows = new int[k];
+            int count = 0;
+            while (count < k && !queue.isEmpty()) {
+                Cursor cursor = queue.poll();
+                if (cursor.list == null) {
+                    cursor.segment.expand(this, cursor.node);
+                    continue;
+                }
+
+                rows[count++] = cursor.row;
+                if (cursor.position + 1 < cursor.list.to) {
+                    queue.add(new Cursor(cursor.list, cursor.position + 1));
+                }
+            }
+            return Arrays.copyOf(rows, count);
+        }
+
+        /**
+         * @return
+         *  next k keys ordered by their best row
+         */
+        private List<String> nextKeys(int k)
+        {
+            List<String> keys = new ArrayList<>(k);
+            Set<String> seen = new HashSet<>();
+            while (keys.size() < k && !queue.isEmpty()) {
+                Cursor cursor = queue.poll();
+                if (cursor.list == null) {
+                    cursor.segment.expand(this, cursor.node);
+                } else if (seen.add(cursor.list.key)) {
+                    keys.add(cursor.list.key);
+                }
+            }
+            return keys;
+        }
+
+        private void queueNode(Segment segment, int node)
+        {
+            if (segment.tree[node] >= 0) {
+                queue.add(new Cursor(segment, node));
+            }
+        }
+
+        private void queueKey(KeyRows list)
+        {
+            queue.add(new Cursor(list, list.from));
+        }
+    }
+
+    /**
+     * an entry of {@link BestFirst} ranked by its best row:
+     * a max tree node of an index, or a position in rows of a key
+     */
+    private static class Cursor
+    {
+        private final Segment segment;
+        private final int node;
+        private final KeyRows list;
+        private final int position;
+        private final int row;
+
+        private Cursor(Segment segment, int node)
+        {
+            this.segment = segment;
+            this.node = node;
+            this.list = null;
+            this.position = -1;
+            this.row = segment.tree[node];
+        }
+
+        private Cursor(KeyRows list, int position)
+        {
+            this.segment = null;
+            this.node = -1;
+            this.list = list;
+            this.position = position;
+            this.row = list.rows[position];
+        }
+    }
+
+    /**
+     * immutable index of one field over a range of rows
+     */
+    private static class Segment
+    {
+        private static final Segment EMPTY = new Segment(new String[0], new int[1], new int[0], new int[] {-1, -1}, 1);
+
+        /**
+         * distinct keys in alphabetical order
+         */
+        private final String[] keys;
+
+        /**
+         * rows of key i are rows[offsets[i], offsets[i + 1]), ordered by price from high to low
+         */
+        private final int[] offsets;
+        private final int[] rows;
+
+        /**
+         * best row of blocks of keys, node i has children 2i and 2i + 1, blocks are leaves from <code>capacity</code>.
+         * -1 for a node without rows
+         */
+        private final int[] tree;
+        private final int capacity;
+
+        private Segment(String[] keys, int[] offsets, int[] rows, int[] tree, int capacity)
+        {
+            this.keys = keys;
+            this.offsets = offsets;
+            this.rows = rows;
+            this.tree = tree;
+            this.capacity = capacity;
+        }
+
+        /**
+         * index of <code>field</code> over rows [from, to)
+         */
+        private static Segment build(Field field, Property[] properties, double[] prices, int from, int to)
+        {
+            //dictionary of keys, then ids renumbered in key order
+            Map<String, Integer> ids = new HashMap<>();
+            List<String> keysById = new ArrayList<>();
+            int[] idsOfRows = new int[to - from];
+            for (int row = from; row < to; row++) {
+                String key = fold(field.valueOf(properties[row]), false);
+                Integer id = key == null ? null : ids.get(key);
+                if (key != null && id == null) {
+                    id = keysById.size();
+                    ids.put(key, id);
+                    keysById.add(key);
+                }
+                idsOfRows[row - from] = id == null ? -1 : id;
+            }
+
+            String[] keys = keysById.toArray(new String[keysById.size()]);
+            Arrays.sort(keys);
+            int[] indexOfIds = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                indexOfIds[ids.get(keys[i])] = i;
+            }
+
+            //rows grouped by key, then ordered by price within a key
+            int[] offsets = new int[keys.length + 1];
+            for (int id : idsOfRows) {
+                if (id >= 0) {
+                    offsets[indexOfIds[id] + 1]++;
+                }
+            }
+            for (int i = 0; i < keys.length; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] rows = new int[offsets[keys.length]];
+            int[] next = Arrays.copyOf(offsets, keys.length);
+            for (int row = from; row < to; row++) {
+                int id = idsOfRows[row - from];
+                if (id >= 0) {
+                    rows[next[indexOfIds[id]]++] = row;
+                }
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (offsets[i + 1] - offsets[i] > 1) {
+                    PropertyTopN.sort(prices, rows, offsets[i], offsets[i + 1]);
+                }
+            }
+
+            //max tree over blocks of keys
+            int blocks = (keys.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            int capacity = Integer.highestOneBit(Math.max(1, blocks - 1)) << 1;
+            int[] tree = new int[capacity * 2];
+            Arrays.fill(tree, -1);
+            for (int i = 0; i < keys.length; i++) {
+                int leaf = capacity + i / BLOCK_SIZE;
+                tree[leaf] = best(prices, tree[leaf], rows[offsets[i]]);
+            }
+            for (int node = capacity - 1; node > 0; node--) {
+                tree[node] = best(prices, tree[2 * node], tree[2 * node + 1]);
+            }
+            return new Segment(keys, offsets, rows, tree, capacity);
+        }
+
+        /**
+         * @return
+         *  index of first key which is not before keys starting with <code>prefix</code>
+         */
+        private int lowerBound(String prefix)
+        {
+            int lo = 0;
+            int hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(prefix) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * @param lowerBound
+         *  {@link #lowerBound(String)} of <code>prefix</code>
+         * @return
+         *  index of first key which is after keys starting with <code>prefix</code>
+         */
+        private int upperBound(String prefix, int lowerBound)
+        {
+            int lo = lowerBound;
+            int hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].startsWith(prefix)) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private int count(String prefix)
+        {
+            int from = lowerBound(prefix);
+            return offsets[upperBound(prefix, from)] - offsets[from];
+        }
+
+        private KeyRows rowsOf(int key)
+        {
+            return new KeyRows(keys[key], rows, offsets[key], offsets[key + 1]);
+        }
+
+        /**
+         * queue keys [from, to): keys of partial blocks one by one, whole blocks by fewest max tree nodes
+         */
+        private void queueRange(BestFirst walk, int from, int to)
+        {
+            int firstBlock = (from + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            int endBlock = to / BLOCK_SIZE;
+            if (firstBlock >= endBlock) {
+                for (int key = from; key < to; key++) {
+                    walk.queueKey(rowsOf(key));
+                }
+                return;
+            }
+
+            for (int key = from; key < firstBlock * BLOCK_SIZE; key++) {
+                walk.queueKey(rowsOf(key));
+            }
+            for (int key = endBlock * BLOCK_SIZE; key < to; key++) {
+                walk.queueKey(rowsOf(key));
+            }
+            for (int lo = firstBlock + capacity, hi = endBlock + capacity; lo < hi; lo >>= 1, hi >>= 1) {
+                if ((lo & 1) == 1) {
+                    walk.queueNode(this, lo++);
+                }
+                if ((hi & 1) == 1) {
+                    walk.queueNode(this, --hi);
+                }
+            }
+        }
+
+        /**
+         * queue children of a max tree node, or keys of a block
+         */
+        private void expand(BestFirst walk, int node)
+        {
+            if (node < capacity) {
+                walk.queueNode(this, 2 * node);
+                walk.queueNode(this, 2 * node + 1);
+                return;
+            }
+            int from = (node - capacity) * BLOCK_SIZE;
+            int to = Math.min(keys.length, from + BLOCK_SIZE);
+            for (int key = from; key < to; key++) {
+                walk.queueKey(rowsOf(key));
+            }
+        }
+
+        private static int best(double[] prices, int row1, int row2)
+        {
+            if (row1 < 0 || row2 < 0) {
+                return Math.max(row1, row2);
+            }
+            return compare(prices, row1, row2) < 0 ? row1 : row2;
+        }
+    }
+
+    /**
+     * growable rows of a delta key, ordered by price
+     */
+    private static class Rows
+    {
+        private int[] rows = new int[2];
+        private int size = 0;
+
+        private void add(int row, double[] prices)
+        {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            int i = size++;
+            while (i > 0 && compare(prices, row, rows[i - 1]) < 0) {
+                rows[i] = rows[i - 1];
+                i--;
+            }
+            rows[i] = row;
+        }
+
+        private KeyRows of(String key)
+        {
+            return new KeyRows(key, rows, 0, size);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * {@link PriceSketch} of all properties, of each {@link PropertyType} and of each outward postcode,
+ * fed one property at a time.
+ * <p>
+ * can be given to {@link PropertyUtils#loadDataFromClassPathFile(String, Consumer)} to sketch a file
+ * without keeping its properties, or fed with new properties as they arrive.
+ * sketches only count prices, a property which is updated or removed later can't be taken out.
+ * <p>
+ * not thread safe, use one per thread and {@link #merge(PropertyPriceSketches)} them.
+ */
+public class PropertyPriceSketches implements Consumer<Property>
+{
+
+    private final int k;
+
+    private final PriceSketch sketch;
+    private final Map<PropertyType, PriceSketch> propertyTypeSketches = new EnumMap<>(PropertyType.class);
+    private final OutwardPostcodeDictionary outwardPostcodes = new OutwardPostcodeDictionary();
+    private final List<PriceSketch> outwardPostcodeSketches = new ArrayList<>();
+
+    public PropertyPriceSketches()
+    {
+        this(PriceSketch.DEFAULT_K);
+    }
+
+    /**
+     * @param k
+     *  accuracy parameter of every sketch, see {@link PriceSketch#PriceSketch(int)}
+     */
+    public PropertyPriceSketches(int k)
+    {
+        this.k = k;
+        this.sketch = new PriceSketch(k);
+    }
+
+    /**
+     * add price of <code>property</code> to sketches of all, of its type and of its outward postcode.
+     * <p>
+     * null is ignored.
+     */
+    @Override
+    public void accept(Property property)
+    {
+        if (property == null) {
+            return;
+        }
+
+        sketch.accept(property.getPrice());
+        if (property.getPropertyType() != null) {
+            propertyTypeSketches.computeIfAbsent(property.getPropertyType(), s -> new PriceSketch(k))
+                    .accept(property.getPrice());
+        }
+        int outwardPostcodeId = outwardPostcodes.intern(property.getPostcode());
+        if (outwardPostcodeId != OutwardPostcodeDictionary.NO_ID) {
+            outwardPostcodeSketch(outwardPostcodeId).accept(property.getPrice());
+        }
+    }
+
+    /**
+     * merge sketches of <code>other</code> into this one, <code>other</code> is unchanged.
+     * <p>
+     * throw RuntimeException if sketches don't have the same k
+     * @param other
+     * @return
+     */
+    public PropertyPriceSketches merge(PropertyPriceSketches other)
+    {
+        sketch.merge(other.sketch);
+        other.propertyTypeSketches.forEach((propertyType, otherSketch) -> propertyTypeSketches
+                .computeIfAbsent(propertyType, s -> new PriceSketch(k)).merge(otherSketch));
+        for (int otherId = 0; otherId < other.outwardPostcodeSketches.size(); otherId++) {
+            //outward as it is, not as a postcode
+            int outwardPostcodeId = outwardPostcodes.internOutward(other.outwardPostcodes.get(otherId));
+            if (outwardPostcodeId != OutwardPostcodeDictionary.NO_ID) {
+                outwardPostcodeSketch(outwardPostcodeId).merge(other.outwardPostcodeSketches.get(otherId));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * sketch of all properties
+     * @return
+     */
+    public PriceSketch getSketch()
+    {
+        return sketch;
+    }
+
+    /**
+     * sketch of properties with giving <code>propertyType</code>
+     * @param propertyType
+     * @return
+     *  an empty sketch if there is no such property
+     */
+    public PriceSketch getSketch(PropertyType propertyType)
+    {
+        PriceSketch propertyTypeSketch = propertyTypeSketches.get(propertyType);
+        return propertyTypeSketch == null ? new PriceSketch(k) : propertyTypeSketch;
+    }
+
+    /**
+     * sketch of properties with giving <code>outwardPostcode</code>, compared ignoring case.
+     * @param outwardPostcode
+     * @return
+     *  an empty sketch if there is no such property
+     */
+    public PriceSketch getSketch(String outwardPostcode)
+    {
+        int outwardPostcodeId = outwardPostcodes.idOf(outwardPostcode);
+        return outwardPostcodeId == OutwardPostcodeDictionary.NO_ID
+                ? new PriceSketch(k)
+                : outwardPostcodeSketches.get(outwardPostcodeId);
+    }
+
+    /**
+     * sketches of each outward postcode, keyed by upper case outward postcode
+     * @return
+     */
+    public Map<String, PriceSketch> getOutwardPostcodeSketches()
+    {
+        Map<String, PriceSketch> sketches = new LinkedHashMap<>();
+        for (int id = 0; id < outwardPostcodeSketches.size(); id++) {
+            sketches.put(outwardPostcodes.get(id), outwardPostcodeSketches.get(id));
+        }
+        return sketches;
+    }
+
+    private PriceSketch outwardPostcodeSketch(int outwardPostcodeId)
+    {
+        if (outwardPostcodeId == outwardPostcodeSketches.size()) {
+            outwardPostcodeSketches.add(new PriceSketch(k));
+        }
+        return outwardPostcodeSketches.get(outwardPostcodeId);
+    }
+}
@@ -0,0 +1,244 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * collect many price statistics of properties in one pass.
+ * <p>
+ * every aggregation added to a query returns a handle, which is used to read its statistics
+ * from the {@link Result} after execution.
+ * a query can be executed many times but not concurrently.
+ *
+ * <pre>
+ * PropertyQuery query = new PropertyQuery();
+ * PropertyQuery.Total w1f = query.total(PropertyUtils.isPostcodeOutward("W1F"));
+ * PropertyQuery.Aggregation&lt;PropertyType&gt; byType = query.groupByPropertyType();
+ *
+ * PropertyQuery.Result result = query.execute(properties);
+ * result.get(w1f).getMean();
+ * result.get(byType, PropertyType.Flat).getMean();
+ * </pre>
+ */
+public class PropertyQuery
+{
+
+    private final List<Aggregation<?>> aggregations = new ArrayList<>();
+
+    /**
+     * statistics of all properties matching <code>filter</code>
+     * @param filter
+     * @return
+     */
+    public Total total(Predicate<Property> filter)
+    {
+        return new Total(groupBy(filter, s -> Boolean.TRUE));
+    }
+
+    /**
+     * statistics per {@link PropertyType}
+     * @return
+     */
+    public Aggregation<PropertyType> groupByPropertyType()
+    {
+        return add(s -> true, Property::getPropertyType, () -> new EnumMap<>(PropertyType.class));
+    }
+
+    /**
+     * statistics per outward postcode, keys are in upper case.
+     * <p>
+     * properties without postcode are skipped.
+     * @return
+     */
+    public Aggregation<String> groupByPostcodeOutward()
+    {
+        OutwardPostcodeDictionary outwardPostcodes = new OutwardPostcodeDictionary();
+        return groupBy(s -> outwardPostcodes.get(outwardPostcodes.intern(s.getPostcode())));
+    }
+
+    /**
+     * statistics per region, properties without region are skipped.
+     * @return
+     */
+    public Aggregation<String> groupByRegion()
+    {
+        return groupBy(Property::getRegion);
+    }
+
+    /**
+     * statistics per key of <code>key</code> function, properties with null key are skipped.
+     * @param key
+     * @return
+     */
+    public <K> Aggregation<K> groupBy(Function<Property, K> key)
+    {
+        return groupBy(s -> true, key);
+    }
+
+    /**
+     * statistics per key of <code>key</code> function of properties matching <code>filter</code>,
+     * properties with null key are skipped.
+     * @param filter
+     * @param key
+     * @return
+     */
+    public <K> Aggregation<K> groupBy(Predicate<Property> filter, Function<Property, K> key)
+    {
+        return add(filter, key, HashMap::new);
+    }
+
+    /**
+     * execute all aggregations in one pass over <code>properties</code>, null elements are skipped.
+     * @param properties
+     * @return
+     *  empty statistics if <code>properties</code> is null
+     */
+    public Result execute(Collection<Property> properties)
+    {
+        Result result = new Result(aggregations);
+        if (properties != null) {
+            properties.forEach(result::accept);
+        }
+        return result;
+    }
+
+    /**
+     * execute all aggregations in one pass over <code>properties</code>, null elements are skipped.
+     * <p>
+     * works with {@link PropertyUtils#streamDataFromClassPathFile(String)} so the data is never held in memory.
+     * @param properties
+     * @return
+     */
+    public Result execute(Stream<Property> properties)
+    {
+        Result result = new Result(aggregations);
+        properties.forEachOrdered(result::accept);
+        return result;
+    }
+
+    private <K> Aggregation<K> add(Predicate<Property> filter, Function<Property, K> key,
+            Supplier<Map<K, PriceStatistics>> mapFactory)
+    {
+        Aggregation<K> aggregation = new Aggregation<>(aggregations.size(), filter, key, mapFactory);
+        aggregations.add(aggregation);
+        return aggregation;
+    }
+
+    /**
+     * handle of a grouped aggregation
+     * @param <K>
+     *  type of group key
+     */
+    public static final class Aggregation<K>
+    {
+        private final int index;
+        private final Predicate<Property> filter;
+        private final Function<Property, K> key;
+        private final Supplier<Map<K, PriceStatistics>> mapFactory;
+
+        private Aggregation(int index, Predicate<Property> filter, Function<Property, K> key,
+                Supplier<Map<K, PriceStatistics>> mapFactory)
+        {
+            this.index = index;
+            this.filter = filter;
+            this.key = key;
+            this.mapFactory = mapFactory;
+        }
+
+        private void accept(Property property, Map<K, PriceStatistics> statistics)
+        {
+            if (!filter.test(property)) {
+                return;
+            }
+            K group = key.apply(property);
+            if (group != null) {
+                statistics.computeIfAbsent(group, s -> new PriceStatistics()).accept(property.getPrice());
+            }
+        }
+    }
+
+    /**
+     * handle of a not grouped aggregation
+     */
+    public static final class Total
+    {
+        private final Aggregation<Boolean> aggregation;
+
+        private Total(Aggregation<Boolean> aggregation)
+        {
+            this.aggregation = aggregation;
+        }
+    }
+
+    /**
+     * statistics of all aggregations of an executed query
+     */
+    public static final class Result
+    {
+        private final List<Aggregation<?>> aggregations;
+        private final List<Map<?, PriceStatistics>> statistics;
+
+        private Result(List<Aggregation<?>> aggregations)
+        {
+            this.aggregations = new ArrayList<>(aggregations);
+            this.statistics = new ArrayList<>(aggregations.size());
+            for (Aggregation<?> aggregation : aggregations) {
+                statistics.add(aggregation.mapFactory.get());
+            }
+        }
+
+        /**
+         * statistics per group of <code>aggregation</code>
+         * @param aggregation
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        public <K> Map<K, PriceStatistics> get(Aggregation<K> aggregation)
+        {
+            return Collections.unmodifiableMap((Map<K, PriceStatistics>) statistics.get(aggregation.index));
+        }
+
+        /**
+         * statistics of <code>group</code> of <code>aggregation</code>
+         * @param aggregation
+         * @param group
+         * @return
+         *  empty statistics if no property is in <code>group</code>
+         */
+        public <K> PriceStatistics get(Aggregation<K> aggregation, K group)
+        {
+            PriceStatistics groupStatistics = get(aggregation).get(group);
+            return groupStatistics == null ? new PriceStatistics() : groupStatistics;
+        }
+
+        /**
+         * statistics of <code>total</code>
+         * @param total
+         * @return
+         */
+        public PriceStatistics get(Total total)
+        {
+            return get(total.aggregation, Boolean.TRUE);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void accept(Property property)
+        {
+            if (property == null) {
+                return;
+            }
+            for (int i = 0; i < aggregations.size(); i++) {
+                ((Aggregation<Object>) aggregations.get(i)).accept(property, (Map<Object, PriceStatistics>) statistics.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.sven.rmtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+//@formatter:off
+/**
+ * local HTTP server answering property queries over a dataset loaded once, on the JDK built in server.
+ * <p>
+ * every query is a POST of a JSON object, answered with a JSON object:
+ * <pre>
+ * /mean/postcode    {"postcodeOutward": "W1F"}                           {"postcodeOutward": "W1F", "mean": 1158750.0}
+ * /mean/type        {"propertyType": "Flat"}                             {"propertyType": "Flat", "mean": 363999.75}
+ * /mean/difference  {"propertyType": "Detached", "otherPropertyType": "Flat"}
+ *                                                                        {"propertyType": ..., "otherPropertyType": ..., "difference": -43420.625}
+ * /top              {"percent": 10}                                      {"percent": 10, "properties": [...]}
+ * /search           {"minPrice": 300000, "maxPrice": 600000, "minBedrooms": 3, "region": "X",
+ *                    "order": "PRICE_DESCENDING", "page": 5, "pageSize": 20}
+ *                                                                        {"page": 5, "pageSize": 20, "hasNext": true, "properties": [...]}
+ * /dataset          {}                                                   {"epoch": 1, "size": 24}
+ * /reload           {}                                                   {"epoch": 1, "size": 24}, status 202
+ * </pre>
+ * <code>/reload</code> loads the data again in background, queries keep using the current dataset until
+ * the new one is swapped in, see {@link PropertyDatasetHolder}.
+ * a bad request is answered with status 400 and <code>{"error": "..."}</code>.
+ * <p>
+ * requests are run on virtual threads when the JVM has them (Java 21+), otherwise on a bounded pool of
+ * {@link #DEFAULT_THREADS} threads whose queue, when full, makes the accepting thread run the request itself.
+ * results are cached by {@link CachedPropertyQueries}.
+ */
+//@formatter:on
+public class PropertyQueryServer implements Closeable
+{
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final int QUEUE_SIZE = 10000;
+
+    private static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Property.class, PropertyTypeAdapter.DEFAULT)
+            .create();
+
+    private final CachedPropertyQueries queries;
+    private final Supplier<? extends Collection<Property>> loader;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * create server listening on loopback address at giving <code>port</code>, not started yet.
+     * <p>
+     * throw RuntimeException if port can't be bound
+     * @param queries
+     *  dataset to query
+     * @param port
+     *  0 for any free port
+     */
+    public PropertyQueryServer(CachedPropertyQueries queries, int port)
+    {
+        this(queries, port, null);
+    }
+
+    /**
+     * create server which can also reload its dataset with <code>loader</code>, see {@link #PropertyQueryServer(CachedPropertyQueries, int)}
+     * @param queries
+     * @param port
+     * @param loader
+     *  null if dataset can't be reloaded
+     */
+    public PropertyQueryServer(CachedPropertyQueries queries, int port, Supplier<? extends Collection<Property>> loader)
+    {
+        this.queries = queries;
+        this.loader = loader;
+        try
+        {
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(
+                    String.format("Unabled to listen on port %d", port), e);
+        }
+        this.executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/mean/postcode", s -> handle(s, this::meanByPostcodeOutward));
+        server.createContext("/mean/type", s -> handle(s, this::meanByPropertyType));
+        server.createContext("/mean/difference", s -> handle(s, this::meanDifference));
+        server.createContext("/top", s -> handle(s, this::topNPercent));
+        server.createContext("/search", s -> handle(s, this::search));
+        server.createContext("/dataset", s -> handle(s, this::dataset));
+        server.createContext("/reload", s -> handle(s, this::reload, 202));
+    }
+
+    /**
+     * create and start a server over properties of JSON classpath file
+     * @param classPath
+     * @param port
+     * @return
+     */
+    public static PropertyQueryServer start(String classPath, int port)
+    {
+        CachedPropertyQueries queries = new CachedPropertyQueries();
+        queries.loadClassPathFile(classPath);
+        PropertyQueryServer server = new PropertyQueryServer(queries, port,
+                () -> PropertyUtils.loadDataFromClassPathFile(classPath));
+        server.start();
+        return server;
+    }
+
+    public void start()
+    {
+        server.start();
+    }
+
+    /**
+     * port the server listens on
+     * @return
+     */
+    public int getPort()
+    {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * stop accepting requests, wait up to 1 second for running ones
+     */
+    @Override
+    public void close()
+    {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    private Map<String, Object> meanByPostcodeOutward(QueryRequest request)
+    {
+        require(request.postcodeOutward, "postcodeOutward");
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("postcodeOutward", request.postcodeOutward);
+        response.put("mean", queries.getMeanPriceByPostcodeOutward(request.postcodeOutward));
+        return response;
+    }
+
+    private Map<String, Object> meanByPropertyType(QueryRequest request)
+    {
+        require(request.propertyType, "propertyType");
+        PropertyType propertyType = enumOf(PropertyType.class, request.propertyType, "propertyType");
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("propertyType", propertyType);
+        response.put("mean", queries.getMeanPriceByPropertyType(propertyType));
+        return response;
+    }
+
+    private Map<String, Object> meanDifference(QueryRequest request)
+    {
+        require(request.propertyType, "propertyType");
+        require(request.otherPropertyType, "otherPropertyType");
+        PropertyType propertyType = enumOf(PropertyType.class, request.propertyType, "propertyType");
+        PropertyType otherPropertyType = enumOf(PropertyType.class, request.otherPropertyType, "otherPropertyType");
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("propertyType", propertyType);
+        response.put("otherPropertyType", otherPropertyType);
+        response.put("difference", queries.getMeanPriceByPropertyType(propertyType)
+                - queries.getMeanPriceByPropertyType(otherPropertyType));
+        return response;
+    }
+
+    private Map<String, Object> topNPercent(QueryRequest request)
+    {
+        require(request.percent, "percent");
+        if (request.percent < 0 || request.percent > 100) {
+            throw new BadRequestException("percent must be from 0 to 100");
+        }
+        List<Property> properties = queries.getTopNPercentMostExpensive(request.percent);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("percent", request.percent);
+        response.put("properties", properties);
+        return response;
+    }
+
+    private Map<String, Object> search(QueryRequest request)
+    {
+        PropertySearch.Builder builder = new PropertySearch.Builder()
+                .region(request.region)
+                .propertyType(enumOf(PropertyType.class, request.propertyType, "propertyType"))
+                .postcodeOutward(request.postcodeOutward)
+                .order(enumOf(PropertySearch.Order.class, request.order, "order"));
+        if (request.minPrice != null) {
+            builder.minPrice(request.minPrice);
+        }
+        if (request.maxPrice != null) {
+            builder.maxPrice(request.maxPrice);
+        }
+        builder.bedrooms(defaultIfNull(request.minBedrooms, Integer.MIN_VALUE), defaultIfNull(request.maxBedrooms, Integer.MAX_VALUE));
+        builder.bathrooms(defaultIfNull(request.minBathrooms, Integer.MIN_VALUE), defaultIfNull(request.maxBathrooms, Integer.MAX_VALUE));
+        builder.page(defaultIfNull(request.page, 0), defaultIfNull(request.pageSize, PropertySearch.DEFAULT_PAGE_SIZE));
+
+        PropertyIndex.Page page = queries.getDatasets().get().getIndex().search(builder.build());
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("page", page.getSearch().getPage());
+        response.put("pageSize", page.getSearch().getPageSize());
+        response.put("hasNext", page.hasNext());
+        response.put("properties", page.getProperties());
+        return response;
+    }
+
+    private Map<String, Object> dataset(QueryRequest request)
+    {
+        PropertyDataset dataset = queries.getDatasets().get();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("epoch", dataset.getEpoch());
+        response.put("size", dataset.size());
+        return response;
+    }
+
+    private Map<String, Object> reload(QueryRequest request)
+    {
+        if (loader == null) {
+            throw new BadRequestException(404, "Dataset can't be reloaded");
+        }
+        queries.getDatasets().reload(loader);
+        return dataset(request);
+    }
+
+    private static int defaultIfNull(Integer value, int defaultValue)
+    {
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * constant of <code>type</code> with giving <code>name</code>, Gson would read an unknown name as null
+     * <p>
+     * throw BadRequestException if name is unknown
+     * @param type
+     * @param name
+     * @param field
+     *  name of request field, for the error
+     * @return
+     *  null if name is null
+     */
+    private static <E extends Enum<E>> E enumOf(Class<E> type, String name, String field)
+    {
+        if (name == null) {
+            return null;
+        }
+        for (E value : type.getEnumConstants()) {
+            if (value.name().equals(name)) {
+                return value;
+            }
+        }
+        throw new BadRequestException(String.format("unknown %s [%s]", field, name));
+    }
+
+    private static void require(Object value, String name)
+    {
+        if (value == null) {
+            throw new BadRequestException(String.format("%s is required", name));
+        }
+    }
+
+    private static void handle(HttpExchange exchange, Query query) throws IOException
+    {
+        handle(exchange, query, 200);
+    }
+
+    private static void handle(HttpExchange exchange, Query query, int status) throws IOException
+    {
+        Object response;
+        try
+        {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                throw new BadRequestException(405, "Only POST is allowed");
+            }
+            QueryRequest request;
+            try (Reader in = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                request = gson.fromJson(in, QueryRequest.class);
+            }
+            catch (JsonParseException e)
+            {
+                throw new BadRequestException("Invalid JSON: " + e.getMessage());
+            }
+            response = query.run(request == null ? new QueryRequest() : request);
+        }
+        catch (BadRequestException e)
+        {
+            status = e.status;
+            response = error(e.getMessage());
+        }
+        catch (RuntimeException e)
+        {
+            status = 500;
+            response = error(StringUtils.defaultString(e.getMessage(), e.getClass().getName()));
+        }
+
+        byte[] body = gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, Object> error(String message)
+    {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("error", message);
+        return response;
+    }
+
+    /**
+     * virtual thread per request if available, otherwise a bounded pool
+     */
+    private static ExecutorService newExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            //before Java 21
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "property-query-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @FunctionalInterface
+    private interface Query
+    {
+        Object run(QueryRequest request);
+    }
+
+    /**
+     * parameters of all queries, each query reads the ones it needs
+     */
+    private static class QueryRequest
+    {
+        private String postcodeOutward;
+        private String propertyType;
+        private String otherPropertyType;
+        private Integer percent;
+        private Double minPrice;
+        private Double maxPrice;
+        private Integer minBedrooms;
+        private Integer maxBedrooms;
+        private Integer minBathrooms;
+        private Integer maxBathrooms;
+        private String region;
+        private String order;
+        private Integer page;
+        private Integer pageSize;
+    }
+
+    private static class BadRequestException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private BadRequestException(String message)
+        {
+            this(400, message);
+        }
+
+        private BadRequestException(int status, String message)
+        {
+            super(message);
+            this.status = status;
+        }
+    }
+}
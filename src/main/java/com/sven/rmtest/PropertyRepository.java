@@ -0,0 +1,281 @@
+package com.sven.rmtest;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * {@link PropertyStore} with secondary indexes built once at load time.
+ * <ul>
+ * <li>outward postcode and region: sorted posting list of rows per key</li>
+ * <li>{@link PropertyType}: bitset of rows per type</li>
+ * </ul>
+ * price statistics of every key are also precomputed, so mean of a single key is O(1)
+ * and combined filters cost O(rows of the smallest posting list).
+ * <p>
+ * read only, safe to be shared between threads.
+ */
+public class PropertyRepository
+{
+
+    private static final int[] NO_ROWS = new int[0];
+
+    private final PropertyStore store;
+
+    private final int[][] outwardPostcodeRows;
+    private final int[][] regionRows;
+    private final Map<PropertyType, BitSet> propertyTypeRows = new EnumMap<>(PropertyType.class);
+
+    private final PriceStatistics[] outwardPostcodeStatistics;
+    private final PriceStatistics[] regionStatistics;
+    private final Map<PropertyType, PriceStatistics> propertyTypeStatistics = new EnumMap<>(PropertyType.class);
+    private final PriceStatistics noPropertyTypeStatistics = new PriceStatistics();
+    private final PriceStatistics statistics = new PriceStatistics();
+
+    public PropertyRepository(PropertyStore store)
+    {
+        this.store = store;
+
+        int[] outwardPostcodeIds = new int[store.size()];
+        int[] regionIds = new int[store.size()];
+        for (int row = 0; row < store.size(); row++) {
+            outwardPostcodeIds[row] = store.getOutwardPostcodeId(row);
+            regionIds[row] = store.getRegionId(row);
+        }
+        this.outwardPostcodeRows = buildPostingLists(outwardPostcodeIds, store.getOutwardPostcodeCount());
+        this.regionRows = buildPostingLists(regionIds, store.getRegionCount());
+        this.outwardPostcodeStatistics = buildStatistics(outwardPostcodeRows);
+        this.regionStatistics = buildStatistics(regionRows);
+
+        for (PropertyType propertyType : PropertyType.values()) {
+            propertyTypeRows.put(propertyType, new BitSet(store.size()));
+            propertyTypeStatistics.put(propertyType, new PriceStatistics());
+        }
+        for (int row = 0; row < store.size(); row++) {
+            PropertyType propertyType = store.getPropertyType(row);
+            if (propertyType != null) {
+                propertyTypeRows.get(propertyType).set(row);
+                propertyTypeStatistics.get(propertyType).accept(store.getPrice(row));
+            } else {
+                noPropertyTypeStatistics.accept(store.getPrice(row));
+            }
+            statistics.accept(store.getPrice(row));
+        }
+    }
+
+    /**
+     * create repository from giving <code>properties</code>, null elements are skipped.
+     * @param properties
+     * @return
+     */
+    public static PropertyRepository of(Collection<Property> properties)
+    {
+        return new PropertyRepository(PropertyStore.of(properties));
+    }
+
+    public PropertyStore getStore()
+    {
+        return store;
+    }
+
+    /**
+     * mean price of properties with giving <code>postcodeOutward</code>, compared ignoring case.
+     * <p>
+     * filter will not be triggered if giving  <code>postcodeOutward</code> is blank,
+     * @param postcodeOutward
+     * @return
+     *  0 if no property matches
+     */
+    public double getMeanPriceByPostcodeOutward(String postcodeOutward)
+    {
+        return getStatistics(postcodeOutward, null, null).getMean();
+    }
+
+    /**
+     * mean price of properties with giving <code>propertyType</code>.
+     * <p>
+     * null matches properties without property type, as {@link PropertyUtils#isPropertyType(PropertyType)},
+     * use {@link #getStatistics(String, PropertyType, String)} for mean of all properties.
+     * @param propertyType
+     * @return
+     *  0 if no property matches
+     */
+    public double getMeanPriceByPropertyType(PropertyType propertyType)
+    {
+        return propertyType == null
+                ? noPropertyTypeStatistics.getMean()
+                : getStatistics(null, propertyType, null).getMean();
+    }
+
+    /**
+     * mean price of properties in giving <code>region</code>.
+     * <p>
+     * filter will not be triggered if giving  <code>region</code> is blank,
+     * @param region
+     * @return
+     *  0 if no property matches
+     */
+    public double getMeanPriceByRegion(String region)
+    {
+        return getStatistics(null, null, region).getMean();
+    }
+
+    /**
+     * price statistics of properties matching all giving filters,
+     * a filter will not be triggered if it's blank or null.
+     * <p>
+     * O(1) for a single filter, otherwise rows of the smallest filter are checked against the others.
+     * @param postcodeOutward
+     * @param propertyType
+     * @param region
+     * @return
+     */
+    public PriceStatistics getStatistics(String postcodeOutward, PropertyType propertyType, String region)
+    {
+        boolean byPostcodeOutward = StringUtils.isNotBlank(postcodeOutward);
+        boolean byRegion = StringUtils.isNotBlank(region);
+        boolean byPropertyType = propertyType != null;
+
+        if (!byPostcodeOutward && !byRegion) {
+            return copy(byPropertyType ? propertyTypeStatistics.get(propertyType) : statistics);
+        }
+        if (byPostcodeOutward && !byRegion && !byPropertyType) {
+            return copy(statisticsOf(outwardPostcodeStatistics, store.getOutwardPostcodeId(postcodeOutward)));
+        }
+        if (byRegion && !byPostcodeOutward && !byPropertyType) {
+            return copy(statisticsOf(regionStatistics, store.getRegionId(region)));
+        }
+
+        PriceStatistics rowStatistics = new PriceStatistics();
+        for (int row : getRows(postcodeOutward, propertyType, region)) {
+            rowStatistics.accept(store.getPrice(row));
+        }
+        return rowStatistics;
+    }
+
+    /**
+     * rows of properties matching all giving filters in ascending order,
+     * a filter will not be triggered if it's blank or null.
+     * @param postcodeOutward
+     * @param propertyType
+     * @param region
+     * @return
+     */
+    public int[] getRows(String postcodeOutward, PropertyType propertyType, String region)
+    {
+        int[] rows = null;
+        if (StringUtils.isNotBlank(postcodeOutward)) {
+            rows = postingListOf(outwardPostcodeRows, store.getOutwardPostcodeId(postcodeOutward));
+        }
+        if (StringUtils.isNotBlank(region)) {
+            int[] rowsOfRegion = postingListOf(regionRows, store.getRegionId(region));
+            rows = rows == null ? rowsOfRegion : intersect(rows, rowsOfRegion);
+        }
+
+        if (propertyType == null) {
+            return rows == null ? allRows() : rows.clone();
+        }
+
+        BitSet rowsOfPropertyType = propertyTypeRows.get(propertyType);
+        if (rows == null) {
+            return rowsOfPropertyType.stream().toArray();
+        }
+        int[] matchedRows = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            if (rowsOfPropertyType.get(row)) {
+                matchedRows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(matchedRows, count);
+    }
+
+    private int[] allRows()
+    {
+        int[] rows = new int[store.size()];
+        for (int row = 0; row < rows.length; row++) {
+            rows[row] = row;
+        }
+        return rows;
+    }
+
+    private PriceStatistics[] buildStatistics(int[][] postingLists)
+    {
+        PriceStatistics[] keyStatistics = new PriceStatistics[postingLists.length];
+        for (int id = 0; id < postingLists.length; id++) {
+            keyStatistics[id] = new PriceStatistics();
+            for (int row : postingLists[id]) {
+                keyStatistics[id].accept(store.getPrice(row));
+            }
+        }
+        return keyStatistics;
+    }
+
+    /**
+     * rows grouped by id with a counting sort, rows of an id are in ascending order.
+     */
+    private static int[][] buildPostingLists(int[] ids, int idCount)
+    {
+        int[] counts = new int[idCount];
+        for (int id : ids) {
+            if (id >= 0) {
+                counts[id]++;
+            }
+        }
+
+        int[][] postingLists = new int[idCount][];
+        for (int id = 0; id < idCount; id++) {
+            postingLists[id] = new int[counts[id]];
+        }
+        Arrays.fill(counts, 0);
+        for (int row = 0; row < ids.length; row++) {
+            int id = ids[row];
+            if (id >= 0) {
+                postingLists[id][counts[id]++] = row;
+            }
+        }
+        return postingLists;
+    }
+
+    private static int[] postingListOf(int[][] postingLists, int id)
+    {
+        return id < 0 ? NO_ROWS : postingLists[id];
+    }
+
+    private static PriceStatistics statisticsOf(PriceStatistics[] keyStatistics, int id)
+    {
+        return id < 0 ? new PriceStatistics() : keyStatistics[id];
+    }
+
+    /**
+     * statistics are mutable, never hand out the indexed ones
+     */
+    private static PriceStatistics copy(PriceStatistics statistics)
+    {
+        return new PriceStatistics().combine(statistics);
+    }
+
+    private static int[] intersect(int[] rows1, int[] rows2)
+    {
+        int[] rows = new int[Math.min(rows1.length, rows2.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < rows1.length && j < rows2.length) {
+            if (rows1[i] < rows2[j]) {
+                i++;
+            } else if (rows1[i] > rows2[j]) {
+                j++;
+            } else {
+                rows[count++] = rows1[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+}
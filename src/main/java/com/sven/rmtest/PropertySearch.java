@@ -0,0 +1,311 @@
+package com.sven.rmtest;
+
+/**
+ * search criteria of {@link PropertyIndex#search(PropertySearch)}: ranges of price, bedrooms and bathrooms,
+ * region, property type and outward postcode, all of them optional and combined with AND,
+ * plus sort order and page.
+ * <pre>
+ * //3+ bed, price 300k-600k, in region X, sorted by price, page 5 of 20 properties
+ * PropertySearch search = new PropertySearch.Builder()
+ *         .price(300000, 600000)
+ *         .minBedrooms(3)
+ *         .region("X")
+ *         .page(5, 20)
+ *         .build();
+ * </pre>
+ * immutable.
+ */
+public class PropertySearch
+{
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    public enum Order
+    {
+        PRICE_ASCENDING, PRICE_DESCENDING
+    }
+
+    private final double minPrice;
+    private final double maxPrice;
+    private final int minBedrooms;
+    private final int maxBedrooms;
+    private final int minBathrooms;
+    private final int maxBathrooms;
+    private final String region;
+    private final PropertyType propertyType;
+    private final String postcodeOutward;
+    private final Order order;
+    private final int page;
+    private final int pageSize;
+
+    private PropertySearch(Builder builder)
+    {
+        this.minPrice = builder.minPrice;
+        this.maxPrice = builder.maxPrice;
+        this.minBedrooms = builder.minBedrooms;
+        this.maxBedrooms = builder.maxBedrooms;
+        this.minBathrooms = builder.minBathrooms;
+        this.maxBathrooms = builder.maxBathrooms;
+        this.region = builder.region;
+        this.propertyType = builder.propertyType;
+        this.postcodeOutward = builder.postcodeOutward;
+        this.order = builder.order;
+        this.page = builder.page;
+        this.pageSize = builder.pageSize;
+    }
+
+    public double getMinPrice()
+    {
+        return minPrice;
+    }
+
+    public double getMaxPrice()
+    {
+        return maxPrice;
+    }
+
+    public boolean hasPriceRange()
+    {
+        return minPrice != Double.NEGATIVE_INFINITY || maxPrice != Double.POSITIVE_INFINITY;
+    }
+
+    public int getMinBedrooms()
+    {
+        return minBedrooms;
+    }
+
+    public int getMaxBedrooms()
+    {
+        return maxBedrooms;
+    }
+
+    public boolean hasBedroomsRange()
+    {
+        return minBedrooms != Integer.MIN_VALUE || maxBedrooms != Integer.MAX_VALUE;
+    }
+
+    public int getMinBathrooms()
+    {
+        return minBathrooms;
+    }
+
+    public int getMaxBathrooms()
+    {
+        return maxBathrooms;
+    }
+
+    public boolean hasBathroomsRange()
+    {
+        return minBathrooms != Integer.MIN_VALUE || maxBathrooms != Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return
+     *  null if any region
+     */
+    public String getRegion()
+    {
+        return region;
+    }
+
+    /**
+     * @return
+     *  null if any property type
+     */
+    public PropertyType getPropertyType()
+    {
+        return propertyType;
+    }
+
+    /**
+     * @return
+     *  null if any outward postcode
+     */
+    public String getPostcodeOutward()
+    {
+        return postcodeOutward;
+    }
+
+    public Order getOrder()
+    {
+        return order;
+    }
+
+    /**
+     * page number, the first one is 0
+     * @return
+     */
+    public int getPage()
+    {
+        return page;
+    }
+
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    /**
+     * number of matching properties before the page
+     * @return
+     */
+    public long getOffset()
+    {
+        return (long) page * pageSize;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("PropertySearch[price=[%s, %s], bedrooms=[%d, %d], bathrooms=[%d, %d], "
+                + "region=%s, propertyType=%s, postcodeOutward=%s, order=%s, page=%d, pageSize=%d]",
+                minPrice, maxPrice, minBedrooms, maxBedrooms, minBathrooms, maxBathrooms,
+                region, propertyType, postcodeOutward, order, page, pageSize);
+    }
+
+    /**
+     * build a {@link PropertySearch}, by default all properties match and the first page
+     * of {@link PropertySearch#DEFAULT_PAGE_SIZE} cheapest ones is returned.
+     */
+    public static class Builder
+    {
+        private double minPrice = Double.NEGATIVE_INFINITY;
+        private double maxPrice = Double.POSITIVE_INFINITY;
+        private int minBedrooms = Integer.MIN_VALUE;
+        private int maxBedrooms = Integer.MAX_VALUE;
+        private int minBathrooms = Integer.MIN_VALUE;
+        private int maxBathrooms = Integer.MAX_VALUE;
+        private String region;
+        private PropertyType propertyType;
+        private String postcodeOutward;
+        private Order order = Order.PRICE_ASCENDING;
+        private int page = 0;
+        private int pageSize = DEFAULT_PAGE_SIZE;
+
+        /**
+         * price within [<code>minPrice</code>, <code>maxPrice</code>]
+         * @param minPrice
+         * @param maxPrice
+         * @return
+         */
+        public Builder price(double minPrice, double maxPrice)
+        {
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            return this;
+        }
+
+        public Builder minPrice(double minPrice)
+        {
+            this.minPrice = minPrice;
+            return this;
+        }
+
+        public Builder maxPrice(double maxPrice)
+        {
+            this.maxPrice = maxPrice;
+            return this;
+        }
+
+        /**
+         * bedrooms within [<code>minBedrooms</code>, <code>maxBedrooms</code>]
+         * @param minBedrooms
+         * @param maxBedrooms
+         * @return
+         */
+        public Builder bedrooms(int minBedrooms, int maxBedrooms)
+        {
+            this.minBedrooms = minBedrooms;
+            this.maxBedrooms = maxBedrooms;
+            return this;
+        }
+
+        public Builder minBedrooms(int minBedrooms)
+        {
+            this.minBedrooms = minBedrooms;
+            return this;
+        }
+
+        /**
+         * bathrooms within [<code>minBathrooms</code>, <code>maxBathrooms</code>]
+         * @param minBathrooms
+         * @param maxBathrooms
+         * @return
+         */
+        public Builder bathrooms(int minBathrooms, int maxBathrooms)
+        {
+            this.minBathrooms = minBathrooms;
+            this.maxBathrooms = maxBathrooms;
+            return this;
+        }
+
+        public Builder minBathrooms(int minBathrooms)
+        {
+            this.minBathrooms = minBathrooms;
+            return this;
+        }
+
+        /**
+         * region equal to giving <code>region</code>, null for any
+         * @param region
+         * @return
+         */
+        public Builder region(String region)
+        {
+            this.region = region;
+            return this;
+        }
+
+        /**
+         * @param propertyType
+         *  null for any
+         * @return
+         */
+        public Builder propertyType(PropertyType propertyType)
+        {
+            this.propertyType = propertyType;
+            return this;
+        }
+
+        /**
+         * outward postcode compared ignoring case, null or blank for any
+         * @param postcodeOutward
+         * @return
+         */
+        public Builder postcodeOutward(String postcodeOutward)
+        {
+            this.postcodeOutward = postcodeOutward;
+            return this;
+        }
+
+        /**
+         * sort by price, properties with same price keep the order in which they were added
+         * @param order
+         * @return
+         */
+        public Builder order(Order order)
+        {
+            this.order = order == null ? Order.PRICE_ASCENDING : order;
+            return this;
+        }
+
+        /**
+         * @param page
+         *  page number from 0, negative is 0
+         * @param pageSize
+         *  at least 1
+         * @return
+         */
+        public Builder page(int page, int pageSize)
+        {
+            this.page = Math.max(0, page);
+            this.pageSize = Math.max(1, pageSize);
+            return this;
+        }
+
+        public PropertySearch build()
+        {
+            return new PropertySearch(this);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.sven.rmtest;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sven.rmtest.PropertyShardProtocol.Query;
+import com.sven.rmtest.PropertyShardProtocol.Request;
+import com.sven.rmtest.PropertyShardProtocol.Response;
+
+/**
+ * {@link PropertyUtils} queries over a dataset partitioned by outward postcode across {@link PropertyShardWorker}s.
+ * <p>
+ * each query is sent to all shards at the same time and their partial results are merged:
+ * <ul>
+ * <li>means: count and sum of each shard</li>
+ * <li>top N percent: N is taken from the total size, each shard returns its top N including same price
+ * as its last one, top N of all of them is taken again. shards are merged in order, so properties with same price
+ * are in order of shards then in order of each shard</li>
+ * <li>group by: groups of same key are merged. median is exact for a group held by one shard only
+ * (always the case by outward postcode), otherwise it's approximated from the merged {@link PriceSketch}
+ * of each shard, its rank within about 1.7% of the exact one</li>
+ * </ul>
+ * connections to shards are kept open and reused, one per concurrent query and shard. thread safe.
+ * <pre>
+ * List&lt;List&lt;Property&gt;&gt; shards = PropertyShardCoordinator.partition(properties, 4);
+ * //one PropertyShardWorker per shard, in other JVMs or hosts
+ * try (PropertyShardCoordinator coordinator = new PropertyShardCoordinator(addresses)) {
+ *     coordinator.getTopNPercentMostExpensive(10);
+ * }
+ * </pre>
+ */
+public class PropertyShardCoordinator implements Closeable
+{
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final ExecutorService executor;
+
+    /**
+     * @param addresses
+     *  address of each worker, in order of shards
+     */
+    public PropertyShardCoordinator(List<InetSocketAddress> addresses)
+    {
+        for (InetSocketAddress address : addresses) {
+            shards.add(new Shard(address));
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "property-shard-coordinator-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * shard of giving <code>postcode</code> among <code>shardCount</code> shards, by hash of its upper case outward.
+     * @param postcode
+     * @param shardCount
+     * @return
+     *  0 if <code>postcode</code> is blank
+     */
+    public static int shardOf(String postcode, int shardCount)
+    {
+        return PropertyUtils.getOutwardPostcode(postcode)
+                .map(s -> Math.floorMod(s.toUpperCase(Locale.ROOT).hashCode(), shardCount))
+                .orElse(0);
+    }
+
+    /**
+     * split <code>properties</code> in <code>shardCount</code> shards by {@link #shardOf(String, int)}, null elements are skipped.
+     * <p>
+     * all properties of an outward postcode are in the same shard, properties keep their order within a shard.
+     * @param properties
+     * @param shardCount
+     * @return
+     */
+    public static List<List<Property>> partition(Collection<Property> properties, int shardCount)
+    {
+        List<List<Property>> partitions = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (Property property : properties) {
+            if (property != null) {
+                partitions.get(shardOf(property.getPostcode(), shardCount)).add(property);
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * total number of properties of all shards
+     * @return
+     */
+    public long size()
+    {
+        long size = 0;
+        for (Response response : fanOut(new Request(Query.SIZE))) {
+            size += response.count;
+        }
+        return size;
+    }
+
+    /**
+     * @see PropertyUtils#getMeanPriceByPostcodeOutward(String, Collection)
+     */
+    public Double getMeanPriceByPostcodeOutward(String postcodeOutward)
+    {
+        Request request = new Request(Query.MEAN_BY_POSTCODE_OUTWARD);
+        request.postcodeOutward = postcodeOutward;
+        return mean(fanOut(request));
+    }
+
+    /**
+     * @see PropertyUtils#getMeanPriceByPropertyType(PropertyType, Collection)
+     */
+    public Double getMeanPriceByPropertyType(PropertyType propertyType)
+    {
+        Request request = new Request(Query.MEAN_BY_PROPERTY_TYPE);
+        request.propertyType = propertyType;
+        return mean(fanOut(request));
+    }
+
+    /**
+     * @see PropertyUtils#getTopNPercentMostExpensive(int, Collection)
+     */
+    public List<Property> getTopNPercentMostExpensive(int percent)
+    {
+        long size = size();
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+
+        int n = (int) Math.ceil(size / 100f * percent );
+        Request request = new Request(Query.TOP_N);
+        request.n = n;
+        List<Property> candidates = new ArrayList<>();
+        for (Response response : fanOut(request)) {
+            candidates.addAll(response.properties);
+        }
+        return PropertyTopN.select(n, candidates, true);
+    }
+
+    /**
+     * @see PropertyGroupBy#byOutwardPostcode(PropertyStore)
+     */
+    public PropertyGroupBy.Table groupByOutwardPostcode()
+    {
+        return merge(fanOut(new Request(Query.GROUP_BY_OUTWARD_POSTCODE)));
+    }
+
+    /**
+     * median of a group held by more than one shard is approximate, see {@link PriceSketch}
+     * @see PropertyGroupBy#byRegionAndPropertyType(PropertyStore)
+     */
+    public PropertyGroupBy.Table groupByRegionAndPropertyType()
+    {
+        return merge(fanOut(new Request(Query.GROUP_BY_REGION_AND_PROPERTY_TYPE)));
+    }
+
+    /**
+     * close connections to shards, workers keep running
+     */
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+        for (Shard shard : shards) {
+            shard.close();
+        }
+    }
+
+    private static Double mean(List<Response> responses)
+    {
+        long count = 0;
+        double sum = 0d;
+        for (Response response : responses) {
+            count += response.count;
+            sum += response.sum;
+        }
+        return count == 0 ? 0d : sum / count;
+    }
+
+    private static PropertyGroupBy.Table merge(List<Response> responses)
+    {
+        Map<List<Object>, PropertyGroupBy.Summary> merged = new LinkedHashMap<>();
+        Map<List<Object>, Integer> shardCounts = new HashMap<>();
+        Map<List<Object>, PriceSketch> sketches = new HashMap<>();
+        for (Response response : responses) {
+            for (int i = 0; i < response.summaries.size(); i++) {
+                PropertyGroupBy.Summary summary = response.summaries.get(i);
+                List<Object> key = PropertyShardProtocol.keyOf(
+                        summary.getOutwardPostcode(), summary.getRegion(), summary.getPropertyType());
+                merged.merge(key, summary, (s, t) -> new PropertyGroupBy.Summary(
+                        s.getOutwardPostcode(), s.getRegion(), s.getPropertyType(),
+                        s.getCount() + t.getCount(), s.getSum() + t.getSum(),
+                        Double.NaN,
+                        Math.min(s.getMin(), t.getMin()), Math.max(s.getMax(), t.getMax())));
+                shardCounts.merge(key, 1, Integer::sum);
+                if (response.sketches != null) {
+                    PriceSketch sketch = PriceSketch.fromByteArray(Base64.getDecoder().decode(response.sketches.get(i)));
+                    sketches.merge(key, sketch, PriceSketch::merge);
+                }
+            }
+        }
+
+        //median of a group spread over shards from merged sketches
+        List<PropertyGroupBy.Summary> summaries = new ArrayList<>(merged.size());
+        for (Map.Entry<List<Object>, PropertyGroupBy.Summary> entry : merged.entrySet()) {
+            PropertyGroupBy.Summary summary = entry.getValue();
+            PriceSketch sketch = sketches.get(entry.getKey());
+            if (shardCounts.get(entry.getKey()) > 1 && sketch != null) {
+                summary = new PropertyGroupBy.Summary(
+                        summary.getOutwardPostcode(), summary.getRegion(), summary.getPropertyType(),
+                        summary.getCount(), summary.getSum(), sketch.getQuantile(0.5d),
+                        summary.getMin(), summary.getMax());
+            }
+            summaries.add(summary);
+        }
+        return new PropertyGroupBy.Table(Collections.unmodifiableList(summaries));
+    }
+
+    /**
+     * send <code>request</code> to all shards at the same time
+     * @return
+     *  responses in order of shards
+     */
+    private List<Response> fanOut(Request request)
+    {
+        List<Future<Response>> futures = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            futures.add(executor.submit(() -> shard.send(request)));
+        }
+
+        List<Response> responses = new ArrayList<>(shards.size());
+        try
+        {
+            for (Future<Response> future : futures) {
+                responses.add(future.get());
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while querying shards", e);
+        }
+        catch (ExecutionException e)
+        {
+            futures.forEach(s -> s.cancel(true));
+            throw new RuntimeException(
+                    String.format("Unabled to run query %s", request.query), e.getCause());
+        }
+        return responses;
+    }
+
+    /**
+     * idle connections to one worker
+     */
+    private static class Shard
+    {
+        private final InetSocketAddress address;
+        private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+        private Shard(InetSocketAddress address)
+        {
+            this.address = address;
+        }
+
+        private Response send(Request request)
+        {
+            Connection connection = idle.poll();
+            try
+            {
+                if (connection == null) {
+                    connection = new Connection(address);
+                }
+                PropertyShardProtocol.write(connection.out, request);
+                Response response = PropertyShardProtocol.read(connection.in, Response.class);
+                if (response == null) {
+                    throw new IOException("Connection closed by worker");
+                }
+                idle.add(connection);
+                connection = null;
+
+                if (response.error != null) {
+                    throw new RuntimeException(
+                            String.format("Shard %s failed: %s", address, response.error));
+                }
+                return response;
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException(
+                        String.format("Unabled to query shard %s", address), e);
+            }
+            finally
+            {
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+        }
+
+        private void close()
+        {
+            Connection connection;
+            while ((connection = idle.poll()) != null) {
+                connection.close();
+            }
+        }
+    }
+
+    private static class Connection
+    {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+
+        private Connection(InetSocketAddress address) throws IOException
+        {
+            socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        private void close()
+        {
+            try
+            {
+                socket.close();
+            }
+            catch (IOException e)
+            {
+                //closing anyway
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.sven.rmtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * line delimited JSON messages between {@link PropertyShardCoordinator} and {@link PropertyShardWorker}:
+ * one {@link Request} per line, answered by one {@link Response} per line on the same connection.
+ */
+final class PropertyShardProtocol
+{
+
+    enum Query
+    {
+        /**
+         * number of properties of the shard
+         */
+        SIZE,
+        /**
+         * count and sum of prices with outward postcode
+         */
+        MEAN_BY_POSTCODE_OUTWARD,
+        /**
+         * count and sum of prices with property type
+         */
+        MEAN_BY_PROPERTY_TYPE,
+        /**
+         * top n most expensive including same price as the last one
+         */
+        TOP_N,
+        GROUP_BY_OUTWARD_POSTCODE,
+        /**
+         * summaries with a {@link PriceSketch} of each group, groups are spread over shards
+         */
+        GROUP_BY_REGION_AND_PROPERTY_TYPE
+    }
+
+    /**
+     * NaN prices are sent as is
+     */
+    static final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(Property.class, PropertyTypeAdapter.DEFAULT)
+            .serializeSpecialFloatingPointValues()
+            .create();
+
+    private PropertyShardProtocol()
+    {
+    }
+
+    static void write(Writer out, Object message) throws IOException
+    {
+        out.write(gson.toJson(message));
+        out.write('\n');
+        out.flush();
+    }
+
+    /**
+     * @return
+     *  null at end of stream
+     */
+    static <T> T read(BufferedReader in, Class<T> type) throws IOException
+    {
+        String line = in.readLine();
+        return line == null ? null : gson.fromJson(line, type);
+    }
+
+    /**
+     * key of a group of {@link PropertyGroupBy}, same for the same group in every shard
+     */
+    static List<Object> keyOf(String outwardPostcode, String region, PropertyType propertyType)
+    {
+        return Arrays.asList(outwardPostcode, region, propertyType);
+    }
+
+    static class Request
+    {
+        Query query;
+        String postcodeOutward;
+        PropertyType propertyType;
+        int n;
+
+        Request()
+        {
+        }
+
+        Request(Query query)
+        {
+            this.query = query;
+        }
+    }
+
+    static class Response
+    {
+        /**
+         * null if query succeeded
+         */
+        String error;
+        long count;
+        double sum;
+        List<Property> properties;
+        List<PropertyGroupBy.Summary> summaries;
+
+        /**
+         * base64 of {@link PriceSketch#toByteArray()} of each summary, in same order, null if not asked for
+         */
+        List<String> sketches;
+    }
+}
@@ -0,0 +1,251 @@
+package com.sven.rmtest;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.sven.rmtest.PropertyShardProtocol.Request;
+import com.sven.rmtest.PropertyShardProtocol.Response;
+
+/**
+ * worker holding one shard of a partitioned dataset, answering partial queries of a {@link PropertyShardCoordinator}
+ * over loopback socket connections, one thread per connection.
+ * <p>
+ * run as its own process with
+ * <pre>
+ * java -cp &lt;classpath&gt; com.sven.rmtest.PropertyShardWorker &lt;port&gt; &lt;shard JSON file&gt;
+ * </pre>
+ * a shard file is a JSON array of properties like <code>property-data.json</code>, e.g. each list of
+ * {@link PropertyShardCoordinator#partition(Collection, int)} written with {@link PropertyTypeAdapter}.
+ */
+public class PropertyShardWorker implements Closeable
+{
+
+    private final PropertyDatasetHolder datasets = new PropertyDatasetHolder();
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * start worker listening on loopback address at giving <code>port</code>.
+     * <p>
+     * throw RuntimeException if port can't be bound
+     * @param properties
+     *  properties of the shard, copied
+     * @param port
+     *  0 for any free port
+     */
+    public PropertyShardWorker(Collection<Property> properties, int port)
+    {
+        datasets.publish(properties);
+        try
+        {
+            serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(
+                    String.format("Unabled to listen on port %d", port), e);
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "property-shard-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        connections.execute(this::accept);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length != 2) {
+            System.err.println("Usage: PropertyShardWorker <port> <shard JSON file>");
+            System.exit(1);
+        }
+
+        List<Property> properties;
+        try (Stream<Property> stream = PropertyUtils.streamDataFromFile(Paths.get(args[1]))) {
+            properties = stream.collect(Collectors.toList());
+        }
+        PropertyShardWorker worker = new PropertyShardWorker(properties, Integer.parseInt(args[0]));
+        System.out.println(String.format("Shard of %d properties listening on %s", properties.size(), worker.getAddress()));
+        Thread.currentThread().join();
+    }
+
+    public InetSocketAddress getAddress()
+    {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    /**
+     * holder of the shard, e.g. to reload it
+     * @return
+     */
+    public PropertyDatasetHolder getDatasets()
+    {
+        return datasets;
+    }
+
+    @Override
+    public void close()
+    {
+        try
+        {
+            serverSocket.close();
+        }
+        catch (IOException e)
+        {
+            //closing anyway
+        }
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        connections.shutdownNow();
+    }
+
+    private void accept()
+    {
+        while (!serverSocket.isClosed()) {
+            try
+            {
+                Socket socket = serverSocket.accept();
+                sockets.add(socket);
+                connections.execute(() -> serve(socket));
+            }
+            catch (SocketException e)
+            {
+                //closed
+                return;
+            }
+            catch (IOException e)
+            {
+                //accept failed for this connection only, keep accepting
+            }
+        }
+    }
+
+    private void serve(Socket socket)
+    {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            Request request;
+            while ((request = PropertyShardProtocol.read(in, Request.class)) != null) {
+                PropertyShardProtocol.write(out, answer(request));
+            }
+        }
+        catch (IOException e)
+        {
+            //connection closed by coordinator or worker
+        }
+        finally
+        {
+            sockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private Response answer(Request request)
+    {
+        PropertyDataset dataset = datasets.get();
+        Response response = new Response();
+        try
+        {
+            switch (request.query) {
+            case SIZE:
+                response.count = dataset.size();
+                break;
+            case MEAN_BY_POSTCODE_OUTWARD:
+                sum(dataset, PropertyUtils.isPostcodeOutward(request.postcodeOutward), response);
+                break;
+            case MEAN_BY_PROPERTY_TYPE:
+                sum(dataset, PropertyUtils.isPropertyType(request.propertyType), response);
+                break;
+            case TOP_N:
+                response.properties = PropertyUtils.getTopNMostExpensive(request.n, dataset.getProperties(), true);
+                break;
+            case GROUP_BY_OUTWARD_POSTCODE:
+                response.summaries = PropertyGroupBy.byOutwardPostcode(dataset.getStore()).getSummaries();
+                break;
+            case GROUP_BY_REGION_AND_PROPERTY_TYPE:
+                response.summaries = PropertyGroupBy.byRegionAndPropertyType(dataset.getStore()).getSummaries();
+                response.sketches = sketchesOfRegionAndPropertyType(dataset.getStore(), response.summaries);
+                break;
+            default:
+                response.error = String.format("Unknown query %s", request.query);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            response.error = String.valueOf(e);
+        }
+        return response;
+    }
+
+    private static void sum(PropertyDataset dataset, Predicate<Property> filter, Response response)
+    {
+        PriceStatistics statistics = new PriceStatistics();
+        for (Property property : dataset.getProperties()) {
+            if (filter.test(property)) {
+                statistics.accept(property.getPrice());
+            }
+        }
+        response.count = statistics.getCount();
+        response.sum = statistics.getSum();
+    }
+
+    /**
+     * price sketch of each group of <code>summaries</code>, so medians of groups spread over shards can be merged
+     */
+    private static List<String> sketchesOfRegionAndPropertyType(PropertyStore store, List<PropertyGroupBy.Summary> summaries)
+    {
+        Map<List<Object>, PriceSketch> sketches = new HashMap<>();
+        for (int row = 0; row < store.size(); row++) {
+            List<Object> key = PropertyShardProtocol.keyOf(null, store.getRegion(row), store.getPropertyType(row));
+            sketches.computeIfAbsent(key, s -> new PriceSketch()).accept(store.getPrice(row));
+        }
+
+        List<String> encoded = new ArrayList<>(summaries.size());
+        for (PropertyGroupBy.Summary summary : summaries) {
+            PriceSketch sketch = sketches.get(PropertyShardProtocol.keyOf(null, summary.getRegion(), summary.getPropertyType()));
+            encoded.add(Base64.getEncoder().encodeToString(sketch.toByteArray()));
+        }
+        return encoded;
+    }
+
+    private static void closeQuietly(Socket socket)
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException e)
+        {
+            //closing anyway
+        }
+    }
+}
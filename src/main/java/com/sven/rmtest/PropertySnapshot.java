@@ -0,0 +1,329 @@
+package com.sven.rmtest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+//@formatter:off
+/**
+ * versioned binary snapshot of {@link Property} data, read with {@link MappedPropertySnapshot}.
+ * <p>
+ * all numbers are little endian, every section starts at a multiple of 8 bytes.
+ * <pre>
+ * header, {@link #HEADER_SIZE} bytes:
+ *   int    magic {@link #MAGIC}
+ *   int    version {@link #VERSION}
+ *   int    row count
+ *   int    string count
+ *   int    outward postcode count
+ *   int    region count
+ *   long[] offset of each {@link Section}
+ * sections, in any order, located by their offset in header:
+ *   PROPERTY_REFERENCES  long[rows]
+ *   PRICES               double[rows]
+ *   BEDROOMS             int[rows]
+ *   BATHROOMS            int[rows]
+ *   PROPERTY_TYPES       byte[rows], ordinal of {@link PropertyType}, -1 for null
+ *   OUTWARD_POSTCODES    int[rows], index in OUTWARD_POSTCODE_TABLE, -1 for none
+ *   REGIONS              int[rows], index in REGION_TABLE, -1 for none
+ *   HOUSE_NUMBERS        int[rows], string id, -1 for null
+ *   ADDRESSES            int[rows], string id, -1 for null
+ *   POSTCODES            int[rows], string id, -1 for null
+ *   OUTWARD_POSTCODE_TABLE int[outward postcode count], string id of upper case outward postcode
+ *   REGION_TABLE         int[region count], string id of region
+ *   STRING_OFFSETS       long[strings + 1], offset of each string in STRING_BYTES
+ *   STRING_BYTES         UTF-8 bytes of all strings
+ * </pre>
+ */
+//@formatter:on
+public class PropertySnapshot
+{
+
+    public static final int MAGIC = 0x524D5053;
+    public static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 256;
+
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    enum Section
+    {
+        PROPERTY_REFERENCES, PRICES, BEDROOMS, BATHROOMS, PROPERTY_TYPES,
+        OUTWARD_POSTCODES, REGIONS, HOUSE_NUMBERS, ADDRESSES, POSTCODES,
+        OUTWARD_POSTCODE_TABLE, REGION_TABLE, STRING_OFFSETS, STRING_BYTES
+    }
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * convert a JSON file to a snapshot file, usage:
+     * <pre>
+     * PropertySnapshot &lt;json file&gt; &lt;snapshot file&gt;
+     * </pre>
+     * @param args
+     */
+    public static void main(String[] args)
+    {
+        if (args.length != 2) {
+            System.err.println("Usage: PropertySnapshot <json file> <snapshot file>");
+            System.exit(1);
+        }
+
+        long start = System.currentTimeMillis();
+        PropertyStore store;
+        try (Stream<Property> properties = PropertyUtils.streamDataFromFile(Paths.get(args[0]))) {
+            store = collect(properties);
+        }
+        write(store, Paths.get(args[1]));
+        System.out.println(String.format("Wrote %d properties to [%s] in %d ms",
+                store.size(), args[1], System.currentTimeMillis() - start));
+    }
+
+    /**
+     * convert JSON classpath file to a snapshot file.
+     * <p>
+     * throw RuntimeException if failed
+     * @param classPath
+     * @param file
+     */
+    public static void convertClassPathFile(String classPath, Path file)
+    {
+        try (Stream<Property> properties = PropertyUtils.streamDataFromClassPathFile(classPath)) {
+            write(collect(properties), file);
+        }
+    }
+
+    /**
+     * write <code>store</code> to a snapshot file, existing file is replaced.
+     * <p>
+     * throw RuntimeException if failed
+     * @param store
+     * @param file
+     */
+    public static void write(PropertyStore store, Path file)
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+        {
+            new SnapshotWriter(store, channel).write();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(
+                    String.format("Unabled to write snapshot [%s]", file), e);
+        }
+    }
+
+    private static PropertyStore collect(Stream<Property> properties)
+    {
+        PropertyStore.Builder builder = new PropertyStore.Builder();
+        properties.forEachOrdered(builder::add);
+        return builder.build();
+    }
+
+    private static class SnapshotWriter
+    {
+        private final PropertyStore store;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BYTE_ORDER);
+        private final long[] sectionOffsets = new long[Section.values().length];
+        private final StringDictionary strings = new StringDictionary();
+
+        private long position = HEADER_SIZE;
+
+        private SnapshotWriter(PropertyStore store, FileChannel channel)
+        {
+            this.store = store;
+            this.channel = channel;
+        }
+
+        private void write() throws IOException
+        {
+            int size = store.size();
+            channel.position(HEADER_SIZE);
+
+            begin(Section.PROPERTY_REFERENCES);
+            for (int row = 0; row < size; row++) {
+                putLong(store.getPropertyReference(row));
+            }
+            begin(Section.PRICES);
+            for (int row = 0; row < size; row++) {
+                putDouble(store.getPrice(row));
+            }
+            begin(Section.BEDROOMS);
+            for (int row = 0; row < size; row++) {
+                putInt(store.getBedrooms(row));
+            }
+            begin(Section.BATHROOMS);
+            for (int row = 0; row < size; row++) {
+                putInt(store.getBathrooms(row));
+            }
+            begin(Section.PROPERTY_TYPES);
+            for (int row = 0; row < size; row++) {
+                PropertyType propertyType = store.getPropertyType(row);
+                putByte(propertyType == null ? PropertyStore.NO_PROPERTY_TYPE : (byte) propertyType.ordinal());
+            }
+            begin(Section.OUTWARD_POSTCODES);
+            for (int row = 0; row < size; row++) {
+                putInt(store.getOutwardPostcodeId(row));
+            }
+            begin(Section.REGIONS);
+            for (int row = 0; row < size; row++) {
+                putInt(store.getRegionId(row));
+            }
+            begin(Section.HOUSE_NUMBERS);
+            for (int row = 0; row < size; row++) {
+                putInt(strings.intern(store.getHouseNumber(row)));
+            }
+            begin(Section.ADDRESSES);
+            for (int row = 0; row < size; row++) {
+                putInt(strings.intern(store.getAddress(row)));
+            }
+            begin(Section.POSTCODES);
+            for (int row = 0; row < size; row++) {
+                putInt(strings.intern(store.getPostcode(row)));
+            }
+
+            //outward postcode and region ids are same as ids of the store
+            begin(Section.OUTWARD_POSTCODE_TABLE);
+            int[] outwardPostcodeRows = firstRowOfEachId(store.getOutwardPostcodeCount(), true);
+            for (int row : outwardPostcodeRows) {
+                putInt(strings.intern(store.getOutwardPostcode(row)));
+            }
+            begin(Section.REGION_TABLE);
+            int[] regionRows = firstRowOfEachId(store.getRegionCount(), false);
+            for (int row : regionRows) {
+                putInt(strings.intern(store.getRegion(row)));
+            }
+
+            begin(Section.STRING_BYTES);
+            long[] stringOffsets = new long[strings.size() + 1];
+            long stringOffset = 0;
+            for (int id = 0; id < strings.size(); id++) {
+                stringOffsets[id] = stringOffset;
+                byte[] bytes = strings.get(id).getBytes(StandardCharsets.UTF_8);
+                putBytes(bytes);
+                stringOffset += bytes.length;
+            }
+            stringOffsets[strings.size()] = stringOffset;
+            begin(Section.STRING_OFFSETS);
+            for (long offset : stringOffsets) {
+                putLong(offset);
+            }
+            flush();
+
+            writeHeader(size, outwardPostcodeRows.length, regionRows.length);
+        }
+
+        /**
+         * a row of each outward postcode or region id, in order of id
+         */
+        private int[] firstRowOfEachId(int count, boolean outwardPostcode)
+        {
+            int[] rows = new int[count];
+            int found = 0;
+            boolean[] seen = new boolean[count];
+            for (int row = 0; row < store.size() && found < count; row++) {
+                int id = outwardPostcode ? store.getOutwardPostcodeId(row) : store.getRegionId(row);
+                if (id >= 0 && !seen[id]) {
+                    seen[id] = true;
+                    rows[id] = row;
+                    found++;
+                }
+            }
+            return rows;
+        }
+
+        private void writeHeader(int size, int outwardPostcodeCount, int regionCount) throws IOException
+        {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(size);
+            header.putInt(strings.size());
+            header.putInt(outwardPostcodeCount);
+            header.putInt(regionCount);
+            for (long offset : sectionOffsets) {
+                header.putLong(offset);
+            }
+            header.flip();
+            long headerPosition = 0;
+            while (header.hasRemaining()) {
+                headerPosition += channel.write(header, headerPosition);
+            }
+        }
+
+        /**
+         * start a section at next multiple of 8
+         */
+        private void begin(Section section) throws IOException
+        {
+            while (position % 8 != 0) {
+                putByte((byte) 0);
+            }
+            sectionOffsets[section.ordinal()] = position;
+        }
+
+        private void putLong(long value) throws IOException
+        {
+            ensureRemaining(8);
+            buffer.putLong(value);
+            position += 8;
+        }
+
+        private void putDouble(double value) throws IOException
+        {
+            ensureRemaining(8);
+            buffer.putDouble(value);
+            position += 8;
+        }
+
+        private void putInt(int value) throws IOException
+        {
+            ensureRemaining(4);
+            buffer.putInt(value);
+            position += 4;
+        }
+
+        private void putByte(byte value) throws IOException
+        {
+            ensureRemaining(1);
+            buffer.put(value);
+            position += 1;
+        }
+
+        private void putBytes(byte[] bytes) throws IOException
+        {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensureRemaining(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+            position += bytes.length;
+        }
+
+        private void ensureRemaining(int bytes) throws IOException
+        {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException
+        {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * read only, column oriented copy of {@link Property} data for analytics.
+ * <p>
+ * each field is held in its own primitive array indexed by row,
+ * property types are stored as ordinals, outward postcodes and regions are dictionary encoded.
+ * queries are plain loops over the arrays, no boxing and no object per row.
+ * when all prices are finite, filters are branch free loops of {@link PriceKernels}.
+ * <p>
+ * use {@link Builder} or {@link #of(Collection)} to create one.
+ */
+public class PropertyStore
+{
+
+    public static final byte NO_PROPERTY_TYPE = -1;
+
+    private static final PropertyType[] propertyTypes = PropertyType.values();
+
+    private final int size;
+
+    private final long[] propertyReferences;
+    private final double[] prices;
+    private final boolean finitePrices;
+    private final int[] bedrooms;
+    private final int[] bathrooms;
+    private final byte[] propertyTypeOrdinals;
+    private final int[] outwardPostcodeIds;
+    private final int[] regionIds;
+    private final String[] houseNumbers;
+    private final String[] addresses;
+    private final String[] postcodes;
+
+    private final OutwardPostcodeDictionary outwardPostcodes;
+    private final StringDictionary regions;
+
+    private PropertyStore(Builder builder)
+    {
+        this.size = builder.size;
+        this.propertyReferences = Arrays.copyOf(builder.propertyReferences, size);
+        this.prices = Arrays.copyOf(builder.prices, size);
+        this.finitePrices = PriceKernels.isFinite(prices, 0, size);
+        this.bedrooms = Arrays.copyOf(builder.bedrooms, size);
+        this.bathrooms = Arrays.copyOf(builder.bathrooms, size);
+        this.propertyTypeOrdinals = Arrays.copyOf(builder.propertyTypeOrdinals, size);
+        this.outwardPostcodeIds = Arrays.copyOf(builder.outwardPostcodeIds, size);
+        this.regionIds = Arrays.copyOf(builder.regionIds, size);
+        this.houseNumbers = Arrays.copyOf(builder.houseNumbers, size);
+        this.addresses = Arrays.copyOf(builder.addresses, size);
+        this.postcodes = Arrays.copyOf(builder.postcodes, size);
+        this.outwardPostcodes = builder.outwardPostcodes;
+        this.regions = builder.regions;
+    }
+
+    /**
+     * create store from giving <code>properties</code>, null elements are skipped.
+     * @param properties
+     * @return
+     *  empty store if <code>properties</code> is null
+     */
+    public static PropertyStore of(Collection<Property> properties)
+    {
+        Builder builder = new Builder();
+        if (properties != null) {
+            properties.forEach(builder::add);
+        }
+        return builder.build();
+    }
+
+    /**
+     * calculate mean price of properties with giving <code>postcodeOutward</code>,
+     * compared case insensitively.
+     * <p>
+     * filter will not be triggered if giving  <code>postcodeOutward</code> is blank,
+     * @param postcodeOutward
+     * @return
+     *  0 if no property matches
+     */
+    public double getMeanPriceByPostcodeOutward(String postcodeOutward)
+    {
+        if (StringUtils.isBlank(postcodeOutward)) {
+            return PriceKernels.mean(prices, 0, size);
+        }
+
+        int outwardPostcodeId = outwardPostcodes.idOf(postcodeOutward);
+        if (outwardPostcodeId == OutwardPostcodeDictionary.NO_ID) {
+            return 0d;
+        }
+
+        return finitePrices
+                ? PriceKernels.meanOfFinite(outwardPostcodeIds, outwardPostcodeId, prices, 0, size)
+                : PriceKernels.mean(outwardPostcodeIds, outwardPostcodeId, prices, 0, size);
+    }
+
+    /**
+     * calculate mean price of properties with giving <code>propertyType</code>.
+     * @param propertyType
+     * @return
+     *  0 if no property matches
+     */
+    public double getMeanPriceByPropertyType(PropertyType propertyType)
+    {
+        byte ordinal = toOrdinal(propertyType);
+        return finitePrices
+                ? PriceKernels.meanOfFinite(propertyTypeOrdinals, ordinal, prices, 0, size)
+                : PriceKernels.mean(propertyTypeOrdinals, ordinal, prices, 0, size);
+    }
+
+    /**
+     * get top <code>percent</code> percent most expensive properties,
+     * including properties which have same price as the last one of top N.
+     * <p>
+     * fractional part (if have) is rounded up to upper Integer.
+     * @param percent
+     * @return
+     *  empty list if store is empty
+     * @see PropertyUtils#getTopNPercentMostExpensive(int, Collection)
+     */
+    public List<Property> getTopNPercentMostExpensive(int percent)
+    {
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+
+        int n = (int) Math.ceil(size / 100f * percent );
+        int[] rows = PropertyTopN.selectTopRows(prices, 0, size, n, true);
+        List<Property> topProperties = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            topProperties.add(getProperty(row));
+        }
+        return topProperties;
+    }
+
+    /**
+     * create a new {@link Property} with values of giving <code>row</code>
+     * @param row
+     * @return
+     */
+    public Property getProperty(int row)
+    {
+        Property property = new Property(
+                propertyReferences[row], prices[row], postcodes[row], getPropertyType(row));
+        property.setBedrooms(bedrooms[row]);
+        property.setBathrooms(bathrooms[row]);
+        property.setHouseNumber(houseNumbers[row]);
+        property.setAddress(addresses[row]);
+        property.setRegion(regions.get(regionIds[row]));
+        return property;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long getPropertyReference(int row)
+    {
+        return propertyReferences[row];
+    }
+
+    public double getPrice(int row)
+    {
+        return prices[row];
+    }
+
+    public int getBedrooms(int row)
+    {
+        return bedrooms[row];
+    }
+
+    public int getBathrooms(int row)
+    {
+        return bathrooms[row];
+    }
+
+    public PropertyType getPropertyType(int row)
+    {
+        byte ordinal = propertyTypeOrdinals[row];
+        return ordinal == NO_PROPERTY_TYPE ? null : propertyTypes[ordinal];
+    }
+
+    /**
+     * @param row
+     * @return
+     *  canonical, upper case outward postcode
+     */
+    public String getOutwardPostcode(int row)
+    {
+        return outwardPostcodes.get(outwardPostcodeIds[row]);
+    }
+
+    /**
+     * @param row
+     * @return
+     *  {@link OutwardPostcodeDictionary#NO_ID} if property has no postcode
+     */
+    public int getOutwardPostcodeId(int row)
+    {
+        return outwardPostcodeIds[row];
+    }
+
+    /**
+     * id of giving <code>outwardPostcode</code>, compared ignoring case.
+     * @param outwardPostcode
+     * @return
+     *  {@link OutwardPostcodeDictionary#NO_ID} if no property has <code>outwardPostcode</code>
+     */
+    public int getOutwardPostcodeId(String outwardPostcode)
+    {
+        return outwardPostcodes.idOf(outwardPostcode);
+    }
+
+    /**
+     * @return
+     *  number of distinct outward postcodes, outward postcode ids are in [0, count)
+     */
+    public int getOutwardPostcodeCount()
+    {
+        return outwardPostcodes.size();
+    }
+
+    public String getRegion(int row)
+    {
+        return regions.get(regionIds[row]);
+    }
+
+    /**
+     * @param row
+     * @return
+     *  {@link StringDictionary#NO_ID} if property has no region
+     */
+    public int getRegionId(int row)
+    {
+        return regionIds[row];
+    }
+
+    /**
+     * id of giving <code>region</code>
+     * @param region
+     * @return
+     *  {@link StringDictionary#NO_ID} if no property has <code>region</code>
+     */
+    public int getRegionId(String region)
+    {
+        return regions.idOf(region);
+    }
+
+    /**
+     * @return
+     *  number of distinct regions, region ids are in [0, count)
+     */
+    public int getRegionCount()
+    {
+        return regions.size();
+    }
+
+    public String getHouseNumber(int row)
+    {
+        return houseNumbers[row];
+    }
+
+    public String getAddress(int row)
+    {
+        return addresses[row];
+    }
+
+    public String getPostcode(int row)
+    {
+        return postcodes[row];
+    }
+
+    private static byte toOrdinal(PropertyType propertyType)
+    {
+        return propertyType == null ? NO_PROPERTY_TYPE : (byte) propertyType.ordinal();
+    }
+
+    /**
+     * collect properties row by row into a {@link PropertyStore}
+     * <p>
+     * can be used as consumer of {@link PropertyUtils#loadDataFromClassPathFile(String, java.util.function.Consumer)}
+     * so the data is never held as {@link Property} objects.
+     */
+    public static class Builder
+    {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int size = 0;
+
+        private long[] propertyReferences = new long[INITIAL_CAPACITY];
+        private double[] prices = new double[INITIAL_CAPACITY];
+        private int[] bedrooms = new int[INITIAL_CAPACITY];
+        private int[] bathrooms = new int[INITIAL_CAPACITY];
+        private byte[] propertyTypeOrdinals = new byte[INITIAL_CAPACITY];
+        private int[] outwardPostcodeIds = new int[INITIAL_CAPACITY];
+        private int[] regionIds = new int[INITIAL_CAPACITY];
+        private String[] houseNumbers = new String[INITIAL_CAPACITY];
+        private String[] addresses = new String[INITIAL_CAPACITY];
+        private String[] postcodes = new String[INITIAL_CAPACITY];
+
+        private final OutwardPostcodeDictionary outwardPostcodes = new OutwardPostcodeDictionary();
+        private final StringDictionary regions = new StringDictionary();
+
+        /**
+         * add <code>property</code> as the next row, null is ignored.
+         * @param property
+         * @return
+         */
+        public Builder add(Property property)
+        {
+            if (property == null) {
+                return this;
+            }
+
+            if (size == prices.length) {
+                grow();
+            }
+
+            propertyReferences[size] = property.getPropertyReference();
+            prices[size] = property.getPrice();
+            bedrooms[size] = property.getBedrooms();
+            bathrooms[size] = property.getBathrooms();
+            propertyTypeOrdinals[size] = toOrdinal(property.getPropertyType());
+            outwardPostcodeIds[size] = outwardPostcodes.intern(property.getPostcode());
+            regionIds[size] = regions.intern(property.getRegion());
+            houseNumbers[size] = property.getHouseNumber();
+            addresses[size] = property.getAddress();
+            postcodes[size] = property.getPostcode();
+            size++;
+            return this;
+        }
+
+        /**
+         * builder should not be used anymore after build.
+         * @return
+         */
+        public PropertyStore build()
+        {
+            return new PropertyStore(this);
+        }
+
+        private void grow()
+        {
+            int capacity = prices.length * 2;
+            propertyReferences = Arrays.copyOf(propertyReferences, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            bedrooms = Arrays.copyOf(bedrooms, capacity);
+            bathrooms = Arrays.copyOf(bathrooms, capacity);
+            propertyTypeOrdinals = Arrays.copyOf(propertyTypeOrdinals, capacity);
+            outwardPostcodeIds = Arrays.copyOf(outwardPostcodeIds, capacity);
+            regionIds = Arrays.copyOf(regionIds, capacity);
+            houseNumbers = Arrays.copyOf(houseNumbers, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+            postcodes = Arrays.copyOf(postcodes, capacity);
+        }
+    }
+}
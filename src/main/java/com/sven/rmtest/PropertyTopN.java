@@ -0,0 +1,511 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * selection based top N most expensive, without sorting the whole data.
+ * <p>
+ * rows are ranked by price in descent order, rows with same price keep their original order,
+ * which is the same order as a stable sort with {@link PropertyUtils#propertyPriceDescentComparator}.
+ * <ul>
+ * <li>small n: bounded heap of n rows, O(size * log n)</li>
+ * <li>large n: introselect partition then sort of the n selected rows, O(size + n * log n)</li>
+ * </ul>
+ * for large n over many rows, rows below a price guessed from a sample are dropped first by a branch free scan,
+ * so only a little more than n rows are partitioned, see {@link PriceKernels}.
+ */
+public class PropertyTopN
+{
+
+    /**
+     * heap selection is used when n * HEAP_SELECT_RATIO <= number of rows
+     */
+    static final int HEAP_SELECT_RATIO = 16;
+
+    /**
+     * rows of a chunk in parallel selection
+     */
+    static final int MIN_PARALLEL_CHUNK_SIZE = 1 << 14;
+
+    /**
+     * rows are pruned by a guessed threshold from this number of rows
+     */
+    static final int MIN_PRUNING_SIZE = 1 << 12;
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private static final int[] NO_ROWS = new int[0];
+
+    //@formatter:off
+    /**
+     * get top <code>n</code> most expensive properties, same as sorting <code>properties</code> with
+     * {@link PropertyUtils#propertyPriceDescentComparator} and taking the first n.
+     * <p>
+     * null elements are ranked after all properties.
+     * @param n
+     * @param properties
+     *  must not null.
+     * @param includeIfHasSamePrice
+     *  if true, include properties if has same price as the last property of top N.
+     * @return
+     *  empty list if <code>n</code> is not positive
+     */
+    //@formatter:on
+    public static List<Property> select(int n, Collection<Property> properties, boolean includeIfHasSamePrice)
+    {
+        return select(n, properties, includeIfHasSamePrice, null);
+    }
+
+    /**
+     * parallel version of {@link #select(int, Collection, boolean)},
+     * each chunk of <code>properties</code> selects its own top N in <code>pool</code> and results are merged.
+     * <p>
+     * result is the same as sequential one.
+     * @param n
+     * @param properties
+     *  must not null.
+     * @param includeIfHasSamePrice
+     * @param pool
+     * @return
+     */
+    public static List<Property> selectParallel(int n, Collection<Property> properties,
+            boolean includeIfHasSamePrice, ForkJoinPool pool)
+    {
+        return select(n, properties, includeIfHasSamePrice, pool);
+    }
+
+    /**
+     * get rows of top <code>n</code> highest <code>prices</code> within [from, to),
+     * ordered by price in descent order then by row.
+     * @param prices
+     * @param from
+     * @param to
+     * @param n
+     * @param includeIfHasSamePrice
+     *  if true, include rows if has same price as the last row of top N.
+     * @return
+     */
+    public static int[] selectTopRows(double[] prices, int from, int to, int n, boolean includeIfHasSamePrice)
+    {
+        int k = Math.min(n, to - from);
+        if (k <= 0) {
+            return NO_ROWS;
+        }
+
+        int[] candidates = prune(prices, from, to, k);
+        if (candidates != null) {
+            //top N and rows with same price are all above threshold
+            int[] topRows = selectTopRows(prices, candidates, 0, candidates.length, k);
+            if (!includeIfHasSamePrice) {
+                return topRows;
+            }
+            return appendRowsWithSamePrice(prices, topRows,
+                    findRowsWithSamePrice(prices, candidates, topRows[k - 1]));
+        }
+
+        int[] topRows = selectTopRows(prices, null, from, to, k);
+        if (!includeIfHasSamePrice) {
+            return topRows;
+        }
+        return appendRowsWithSamePrice(prices, topRows,
+                findRowsWithSamePrice(prices, from, to, topRows[k - 1]));
+    }
+
+    /**
+     * parallel version of {@link #selectTopRows(double[], int, int, int, boolean)} over [0, size).
+     * <p>
+     * result is the same as sequential one.
+     * @param prices
+     * @param size
+     * @param n
+     * @param includeIfHasSamePrice
+     * @param pool
+     * @return
+     */
+    public static int[] selectTopRowsParallel(double[] prices, int size, int n,
+            boolean includeIfHasSamePrice, ForkJoinPool pool)
+    {
+        int k = Math.min(n, size);
+        if (k <= 0) {
+            return NO_ROWS;
+        }
+
+        int chunkSize = Math.max(MIN_PARALLEL_CHUNK_SIZE, size / (pool.getParallelism() * 4) + 1);
+        if (chunkSize >= size) {
+            return selectTopRows(prices, 0, size, n, includeIfHasSamePrice);
+        }
+
+        //top k of each chunk
+        List<ForkJoinTask<int[]>> tasks = new ArrayList<>();
+        for (int from = 0; from < size; from += chunkSize) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(size, from + chunkSize);
+            tasks.add(pool.submit(() -> selectTopRows(prices, null, chunkFrom, chunkTo, Math.min(k, chunkTo - chunkFrom))));
+        }
+
+        int candidateCount = 0;
+        List<int[]> chunkTopRows = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<int[]> task : tasks) {
+            int[] rows = task.join();
+            chunkTopRows.add(rows);
+            candidateCount += rows.length;
+        }
+
+        //top k of all candidates
+        int[] candidates = new int[candidateCount];
+        int offset = 0;
+        for (int[] rows : chunkTopRows) {
+            System.arraycopy(rows, 0, candidates, offset, rows.length);
+            offset += rows.length;
+        }
+        int[] topRows = selectTopRows(prices, candidates, 0, candidateCount, k);
+        if (!includeIfHasSamePrice) {
+            return topRows;
+        }
+
+        //rows with same price are looked up in whole data, not only the candidates
+        int lowestRowInTopN = topRows[k - 1];
+        List<ForkJoinTask<int[]>> sameTasks = new ArrayList<>();
+        for (int from = 0; from < size; from += chunkSize) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(size, from + chunkSize);
+            sameTasks.add(pool.submit(() -> findRowsWithSamePrice(prices, chunkFrom, chunkTo, lowestRowInTopN)));
+        }
+        int[] rowsWithSamePrice = NO_ROWS;
+        for (ForkJoinTask<int[]> task : sameTasks) {
+            rowsWithSamePrice = concat(rowsWithSamePrice, task.join());
+        }
+        return appendRowsWithSamePrice(prices, topRows, rowsWithSamePrice);
+    }
+
+    private static List<Property> select(int n, Collection<Property> properties,
+            boolean includeIfHasSamePrice, ForkJoinPool pool)
+    {
+        if (n <= 0 || properties.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        //rows of non null properties, null elements are always at bottom
+        Property[] rowProperties = new Property[properties.size()];
+        double[] prices = new double[properties.size()];
+        int size = 0;
+        for (Property property : properties) {
+            if (property != null) {
+                rowProperties[size] = property;
+                prices[size] = property.getPrice();
+                size++;
+            }
+        }
+        int nullCount = properties.size() - size;
+
+        int[] topRows = pool == null
+                ? selectTopRows(prices, 0, size, n, includeIfHasSamePrice && n <= size)
+                : selectTopRowsParallel(prices, size, n, includeIfHasSamePrice && n <= size, pool);
+
+        List<Property> topProperties = new ArrayList<>(topRows.length);
+        for (int row : topRows) {
+            topProperties.add(rowProperties[row]);
+        }
+        for (int i = size; i < n && i - size < nullCount; i++) {
+            topProperties.add(null);
+        }
+        return topProperties;
+    }
+
+    /**
+     * select top k (k > 0) rows within [from, to) of <code>rows</code>,
+     * or of row numbers themselves if <code>rows</code> is null
+     */
+    private static int[] selectTopRows(double[] prices, int[] rows, int from, int to, int k)
+    {
+        if ((long) k * HEAP_SELECT_RATIO <= to - from) {
+            return heapSelect(prices, rows, from, to, k);
+        }
+
+        int[] selected = rows == null ? range(from, to) : Arrays.copyOfRange(rows, from, to);
+        introSelect(prices, selected, 0, selected.length, k);
+        int[] topRows = Arrays.copyOf(selected, k);
+        sort(prices, topRows, 0, k);
+        return topRows;
+    }
+
+    /**
+     * rows within [from, to) whose price is not below a guessed threshold,
+     * if there are at least k of them, top k rows are among them.
+     * @return
+     *  null if pruning doesn't apply or too few rows are left
+     */
+    private static int[] prune(double[] prices, int from, int to, int k)
+    {
+        //heap selection of small k already skips most rows with one comparison
+        if (to - from < MIN_PRUNING_SIZE || (long) k * HEAP_SELECT_RATIO <= to - from) {
+            return null;
+        }
+
+        double threshold = PriceKernels.guessThreshold(prices, from, to, k);
+        if (Double.isNaN(threshold)) {
+            return null;
+        }
+        int[] candidates = PriceKernels.rowsNotBelow(prices, from, to, threshold);
+        return candidates.length >= k ? candidates : null;
+    }
+
+    /**
+     * rows of <code>candidates</code> which are not in top N but have same price as <code>lowestRowInTopN</code>
+     */
+    private static int[] findRowsWithSamePrice(double[] prices, int[] candidates, int lowestRowInTopN)
+    {
+        double lowestPriceInTopN = prices[lowestRowInTopN];
+        int[] rows = NO_ROWS;
+        int count = 0;
+        for (int row : candidates) {
+            if (prices[row] >= lowestPriceInTopN && compare(prices, row, lowestRowInTopN) > 0) {
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, Math.max(8, count * 2));
+                }
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * rows within [from, to) which are not in top N but have same price as <code>lowestRowInTopN</code>
+     */
+    private static int[] findRowsWithSamePrice(double[] prices, int from, int to, int lowestRowInTopN)
+    {
+        double lowestPriceInTopN = prices[lowestRowInTopN];
+        int[] rows = NO_ROWS;
+        int count = 0;
+        for (int row = from; row < to; row++) {
+            if (prices[row] >= lowestPriceInTopN && compare(prices, row, lowestRowInTopN) > 0) {
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, Math.max(8, count * 2));
+                }
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    private static int[] appendRowsWithSamePrice(double[] prices, int[] topRows, int[] rowsWithSamePrice)
+    {
+        if (rowsWithSamePrice.length == 0) {
+            return topRows;
+        }
+        sort(prices, rowsWithSamePrice, 0, rowsWithSamePrice.length);
+        return concat(topRows, rowsWithSamePrice);
+    }
+
+    /**
+     * keep k best rows in a heap whose root is the worst of them
+     */
+    private static int[] heapSelect(double[] prices, int[] rows, int from, int to, int k)
+    {
+        int[] heap = new int[k];
+        int heapSize = 0;
+        for (int i = from; i < to; i++) {
+            int row = rows == null ? i : rows[i];
+            if (heapSize < k) {
+                heap[heapSize] = row;
+                siftUp(prices, heap, heapSize);
+                heapSize++;
+            } else if (compare(prices, row, heap[0]) < 0) {
+                heap[0] = row;
+                siftDown(prices, heap, 0, k);
+            }
+        }
+
+        //pop the worst to the end until heap is empty, which leaves rows sorted from best to worst
+        for (int end = k - 1; end > 0; end--) {
+            swap(heap, 0, end);
+            siftDown(prices, heap, 0, end);
+        }
+        return heap;
+    }
+
+    /**
+     * partition <code>rows</code> within [from, to) so the k best rows are in [from, from + k)
+     */
+    private static void introSelect(double[] prices, int[] rows, int from, int to, int k)
+    {
+        int target = from + k;
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+        int lo = from;
+        int hi = to;
+        while (hi - lo > INSERTION_SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                //bad pivots, guaranteed n log n fallback
+                heapSort(prices, rows, lo, hi);
+                return;
+            }
+            int p = partition(prices, rows, lo, hi);
+            if (p == target || p + 1 == target) {
+                return;
+            } else if (p < target) {
+                lo = p + 1;
+            } else {
+                hi = p;
+            }
+        }
+        insertionSort(prices, rows, lo, hi);
+    }
+
+    /**
+     * sort <code>rows</code> within [from, to) from best to worst
+     */
+    static void sort(double[] prices, int[] rows, int from, int to)
+    {
+        introSort(prices, rows, from, to, 2 * (32 - Integer.numberOfLeadingZeros(to - from)));
+    }
+
+    private static void introSort(double[] prices, int[] rows, int lo, int hi, int depthLimit)
+    {
+        while (hi - lo > INSERTION_SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                heapSort(prices, rows, lo, hi);
+                return;
+            }
+            int p = partition(prices, rows, lo, hi);
+
+            //recurse into smaller part, loop on larger one
+            if (p - lo < hi - p) {
+                introSort(prices, rows, lo, p, depthLimit);
+                lo = p + 1;
+            } else {
+                introSort(prices, rows, p + 1, hi, depthLimit);
+                hi = p;
+            }
+        }
+        insertionSort(prices, rows, lo, hi);
+    }
+
+    /**
+     * median of three pivot, returns final position of pivot.
+     */
+    private static int partition(double[] prices, int[] rows, int lo, int hi)
+    {
+        int mid = (lo + hi) >>> 1;
+        int last = hi - 1;
+        if (compare(prices, rows[mid], rows[lo]) < 0) {
+            swap(rows, mid, lo);
+        }
+        if (compare(prices, rows[last], rows[lo]) < 0) {
+            swap(rows, last, lo);
+        }
+        if (compare(prices, rows[last], rows[mid]) < 0) {
+            swap(rows, last, mid);
+        }
+        swap(rows, mid, last);
+
+        int pivot = rows[last];
+        int store = lo;
+        for (int i = lo; i < last; i++) {
+            if (compare(prices, rows[i], pivot) < 0) {
+                swap(rows, i, store++);
+            }
+        }
+        swap(rows, store, last);
+        return store;
+    }
+
+    private static void insertionSort(double[] prices, int[] rows, int lo, int hi)
+    {
+        for (int i = lo + 1; i < hi; i++) {
+            int row = rows[i];
+            int j = i - 1;
+            while (j >= lo && compare(prices, rows[j], row) > 0) {
+                rows[j + 1] = rows[j];
+                j--;
+            }
+            rows[j + 1] = row;
+        }
+    }
+
+    private static void heapSort(double[] prices, int[] rows, int lo, int hi)
+    {
+        //heap whose root is the worst row, popped to the end
+        int[] heap = Arrays.copyOfRange(rows, lo, hi);
+        for (int i = heap.length / 2 - 1; i >= 0; i--) {
+            siftDown(prices, heap, i, heap.length);
+        }
+        for (int end = heap.length - 1; end > 0; end--) {
+            swap(heap, 0, end);
+            siftDown(prices, heap, 0, end);
+        }
+        System.arraycopy(heap, 0, rows, lo, heap.length);
+    }
+
+    private static void siftUp(double[] prices, int[] heap, int i)
+    {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (compare(prices, heap[i], heap[parent]) <= 0) {
+                return;
+            }
+            swap(heap, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(double[] prices, int[] heap, int i, int size)
+    {
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && compare(prices, heap[left], heap[worst]) > 0) {
+                worst = left;
+            }
+            if (right < size && compare(prices, heap[right], heap[worst]) > 0) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(heap, i, worst);
+            i = worst;
+        }
+    }
+
+    /**
+     * negative if <code>row1</code> ranks before <code>row2</code>
+     */
+    private static int compare(double[] prices, int row1, int row2)
+    {
+        int result = Double.compare(prices[row2], prices[row1]);
+        return result != 0 ? result : Integer.compare(row1, row2);
+    }
+
+    private static void swap(int[] rows, int i, int j)
+    {
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+    }
+
+    private static int[] range(int from, int to)
+    {
+        int[] rows = new int[to - from];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = from + i;
+        }
+        return rows;
+    }
+
+    private static int[] concat(int[] rows1, int[] rows2)
+    {
+        if (rows2.length == 0) {
+            return rows1;
+        }
+        int[] rows = Arrays.copyOf(rows1, rows1.length + rows2.length);
+        System.arraycopy(rows2, 0, rows, rows1.length, rows2.length);
+        return rows;
+    }
+}
@@ -0,0 +1,277 @@
+package com.sven.rmtest;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * hand written Gson {@link TypeAdapter} of {@link Property}, reads and writes the same JSON as
+ * <code>new Gson().getAdapter(Property.class)</code> without reflection.
+ * <ul>
+ * <li>numbers are read straight from the reader, as Gson they may also be quoted</li>
+ * <li>{@link PropertyType} is looked up by name in a map built once</li>
+ * <li>null and missing fields get the value of a default property, see {@link Builder#defaults(Property)}</li>
+ * <li>unknown fields are skipped</li>
+ * </ul>
+ * a record with a value of a wrong type (e.g. <code>"price": "abc"</code> or <code>"bedrooms": 2.5</code>)
+ * is read to its end and {@link MalformedPropertyException} is thrown,
+ * so the reader is left at the next record and can go on.
+ * <p>
+ * thread safe.
+ */
+public class PropertyTypeAdapter extends TypeAdapter<Property>
+{
+
+    /**
+     * adapter with Gson defaults: 0 for missing numbers, null for missing text and unknown property type
+     */
+    public static final PropertyTypeAdapter DEFAULT = new Builder().build();
+
+    private static final Map<String, PropertyType> propertyTypes = new HashMap<>();
+    private static final Map<String, PropertyType> upperCasePropertyTypes = new HashMap<>();
+    private static final PropertyType[] propertyTypeValues = PropertyType.values();
+    private static final char[][] propertyTypeNames = new char[propertyTypeValues.length][];
+
+    static {
+        for (PropertyType propertyType : propertyTypeValues) {
+            propertyTypes.put(propertyType.name(), propertyType);
+            upperCasePropertyTypes.put(propertyType.name().toUpperCase(Locale.ROOT), propertyType);
+            propertyTypeNames[propertyType.ordinal()] = propertyType.name().toCharArray();
+        }
+    }
+
+    private final Property defaults;
+    private final boolean propertyTypeIgnoreCase;
+
+    private PropertyTypeAdapter(Builder builder)
+    {
+        this.defaults = copyOf(builder.defaults);
+        this.propertyTypeIgnoreCase = builder.propertyTypeIgnoreCase;
+    }
+
+    /**
+     * throw {@link MalformedPropertyException} if a value has a wrong type, after the whole record was read.
+     * <p>
+     * throw IOException if JSON is broken, reader can't go on.
+     */
+    @Override
+    public Property read(JsonReader in) throws IOException
+    {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            throw new MalformedPropertyException(String.format("Expected a property but was %s", token));
+        }
+
+        Property property = newProperty();
+        String malformed = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+
+            try
+            {
+                switch (name) {
+                case "propertyReference":
+                    property.setPropertyReference(in.nextLong());
+                    break;
+                case "price":
+                    property.setPrice(in.nextDouble());
+                    break;
+                case "bedrooms":
+                    property.setBedrooms(in.nextInt());
+                    break;
+                case "bathrooms":
+                    property.setBathrooms(in.nextInt());
+                    break;
+                case "houseNumber":
+                    property.setHouseNumber(nextString(in));
+                    break;
+                case "address":
+                    property.setAddress(nextString(in));
+                    break;
+                case "region":
+                    property.setRegion(nextString(in));
+                    break;
+                case "postcode":
+                    property.setPostcode(nextString(in));
+                    break;
+                case "propertyType":
+                    property.setPropertyType(propertyTypeOf(nextString(in)));
+                    break;
+                default:
+                    in.skipValue();
+                }
+            }
+            catch (NumberFormatException | IllegalStateException e)
+            {
+                //value is still pending after a failed nextXxx
+                in.skipValue();
+                if (malformed == null) {
+                    malformed = String.format("Invalid value of [%s]: %s", name, e.getMessage());
+                }
+            }
+        }
+        in.endObject();
+
+        if (malformed != null) {
+            throw new MalformedPropertyException(malformed);
+        }
+        return property;
+    }
+
+    @Override
+    public void write(JsonWriter out, Property property) throws IOException
+    {
+        if (property == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        out.name("propertyReference").value(property.getPropertyReference());
+        out.name("price").value(property.getPrice());
+        out.name("bedrooms").value(property.getBedrooms());
+        out.name("bathrooms").value(property.getBathrooms());
+        out.name("houseNumber").value(property.getHouseNumber());
+        out.name("address").value(property.getAddress());
+        out.name("region").value(property.getRegion());
+        out.name("postcode").value(property.getPostcode());
+        out.name("propertyType").value(property.getPropertyType() == null ? null : property.getPropertyType().name());
+        out.endObject();
+    }
+
+    /**
+     * new property with default values
+     * @return
+     */
+    Property newProperty()
+    {
+        return copyOf(defaults);
+    }
+
+    /**
+     * {@link PropertyType} of name in first <code>length</code> chars of <code>name</code>,
+     * same as {@link #propertyTypeOf(String)} without creating a String
+     * @param name
+     * @param length
+     * @return
+     */
+    PropertyType propertyTypeOf(char[] name, int length)
+    {
+        for (int i = 0; i < propertyTypeNames.length; i++) {
+            if (propertyTypeNames[i].length == length && PropertyJsonScanner.equals(propertyTypeNames[i], name, length)) {
+                return propertyTypeValues[i];
+            }
+        }
+        return propertyTypeIgnoreCase
+                ? propertyTypeOf(new String(name, 0, length))
+                : defaults.getPropertyType();
+    }
+
+    /**
+     * {@link PropertyType} of giving <code>name</code>
+     * @param name
+     * @return
+     *  property type of default property if name is unknown
+     */
+    PropertyType propertyTypeOf(String name)
+    {
+        PropertyType propertyType = propertyTypes.get(name);
+        if (propertyType == null && propertyTypeIgnoreCase) {
+            propertyType = upperCasePropertyTypes.get(name.toUpperCase(Locale.ROOT));
+        }
+        return propertyType == null ? defaults.getPropertyType() : propertyType;
+    }
+
+    /**
+     * text of a string, number or boolean, as Gson does
+     */
+    private static String nextString(JsonReader in) throws IOException
+    {
+        if (in.peek() == JsonToken.BOOLEAN) {
+            return Boolean.toString(in.nextBoolean());
+        }
+        return in.nextString();
+    }
+
+    private static Property copyOf(Property property)
+    {
+        Property copy = new Property(property.getPropertyReference(), property.getPrice(),
+                property.getPostcode(), property.getPropertyType());
+        copy.setBedrooms(property.getBedrooms());
+        copy.setBathrooms(property.getBathrooms());
+        copy.setHouseNumber(property.getHouseNumber());
+        copy.setAddress(property.getAddress());
+        copy.setRegion(property.getRegion());
+        return copy;
+    }
+
+    /**
+     * thrown when a record is valid JSON but not a valid property, the record has been read completely.
+     */
+    public static class MalformedPropertyException extends JsonParseException
+    {
+        private static final long serialVersionUID = 1L;
+
+        public MalformedPropertyException(String message)
+        {
+            super(message);
+        }
+    }
+
+    /**
+     * build a {@link PropertyTypeAdapter}
+     */
+    public static class Builder
+    {
+        private Property defaults = new Property();
+        private boolean propertyTypeIgnoreCase = false;
+
+        /**
+         * values of giving <code>defaults</code> are used for null or missing fields,
+         * its property type is also used for unknown property type names.
+         * <p>
+         * <code>defaults</code> is copied.
+         * @param defaults
+         * @return
+         */
+        public Builder defaults(Property defaults)
+        {
+            this.defaults = copyOf(defaults);
+            return this;
+        }
+
+        /**
+         * match property type names ignoring case, e.g. <code>"flat"</code>, case sensitive by default as Gson
+         * @param propertyTypeIgnoreCase
+         * @return
+         */
+        public Builder propertyTypeIgnoreCase(boolean propertyTypeIgnoreCase)
+        {
+            this.propertyTypeIgnoreCase = propertyTypeIgnoreCase;
+            return this;
+        }
+
+        public PropertyTypeAdapter build()
+        {
+            return new PropertyTypeAdapter(this);
+        }
+    }
+}
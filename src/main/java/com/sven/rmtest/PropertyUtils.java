@@ -1,27 +1,50 @@
 package com.sven.rmtest;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.Charset;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang3.StringUtils;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
 public class PropertyUtils
 {
     
     private final static String Postcode_Separator = " ";
     
+    private static volatile PropertyMetrics metrics = PropertyMetrics.NOOP;
+    
+    /**
+     * set metrics which loads and queries are reported to, {@link PropertyMetrics#NOOP} by default.
+     * @param propertyMetrics
+     *  null for {@link PropertyMetrics#NOOP}
+     */
+    public static void setMetrics(PropertyMetrics propertyMetrics) {
+        metrics = propertyMetrics == null ? PropertyMetrics.NOOP : propertyMetrics;
+    }
+    
+    public static PropertyMetrics getMetrics() {
+        return metrics;
+    }
+    
     
     /**
      * comparing price of {@link Property} with descent order.
@@ -62,12 +85,11 @@ public class PropertyUtils
      * @return 
      */
     public static final Predicate<Property> isPostcodeOutward(String outwardPostcode) {
-        return s -> {
-            
-            Optional<String> outward = getOutwardPostcode(s.getPostcode());
-            return StringUtils.isBlank(outwardPostcode) || 
-                    outward.isPresent() && outwardPostcode.equalsIgnoreCase(outward.get());
-        };
+        
+        if (StringUtils.isBlank(outwardPostcode)) {
+            return s -> true;
+        }
+        return s -> isSameOutwardPostcode(s.getPostcode(), outwardPostcode);
     }
     
     /**
@@ -89,13 +111,48 @@ public class PropertyUtils
      */
     public static Optional<String> getOutwardPostcode(String postcode) {
         
-        if (StringUtils.isNotBlank(postcode)) {
-            
-            String outward = postcode.split(Postcode_Separator)[0];
-            return Optional.ofNullable(outward);
+        int length = getOutwardPostcodeLength(postcode);
+        if (length >= 0) {
+            return Optional.of(postcode.substring(0, length));
         }
         return Optional.empty();
     }
+    
+    /**
+     * Get length of outward of giving <code>postcode</code>, 
+     * outward is <code>postcode.substring(0, length)</code>
+     * <p>
+     * no object is created.
+     * @param postcode
+     * @return
+     *  -1 if <code>postcode</code> is blank
+     */
+    public static int getOutwardPostcodeLength(String postcode) {
+        
+        if (StringUtils.isBlank(postcode)) {
+            return -1;
+        }
+        int end = postcode.indexOf(Postcode_Separator);
+        return end < 0 ? postcode.length() : end;
+    }
+    
+    /**
+     * check if outward of giving <code>postcode</code> equals to <code>outwardPostcode</code> ignoring case.
+     * <p>
+     * same as <code>outwardPostcode.equalsIgnoreCase(getOutwardPostcode(postcode).get())</code>
+     * but no object is created.
+     * @param postcode
+     * @param outwardPostcode
+     *  must not null.
+     * @return
+     *  false if <code>postcode</code> is blank
+     */
+    public static boolean isSameOutwardPostcode(String postcode, String outwardPostcode) {
+        
+        int length = getOutwardPostcodeLength(postcode);
+        return length == outwardPostcode.length() 
+                && postcode.regionMatches(true, 0, outwardPostcode, 0, length);
+    }
  
 
     /**
@@ -106,6 +163,52 @@ public class PropertyUtils
      * @return
      */
     public static List<Property> loadDataFromClassPathFile(String classPath)
+    {
+        List<Property> properties = new ArrayList<>();
+        loadDataFromClassPathFile(classPath, properties::add);
+        return properties;
+    }
+    
+    /**
+     * load data from classpath file and push each {@link Property} to giving <code>consumer</code>
+     * as soon as it's parsed, the whole file is never held in memory.
+     * <p>
+     * throw RuntimeException if failed
+     * @param classPath
+     * @param consumer
+     */
+    public static void loadDataFromClassPathFile(String classPath, Consumer<? super Property> consumer)
+    {
+        try (Stream<Property> properties = streamDataFromClassPathFile(classPath)) {
+            properties.forEachOrdered(consumer);
+        }
+    }
+    
+    /**
+     * lazily load data from classpath file.
+     * <p>
+     * properties are parsed while the stream is consumed, 
+     * the stream should be closed after use to release the file.
+     * <p>
+     * throw RuntimeException if failed
+     * @param classPath
+     * @return
+     */
+    public static Stream<Property> streamDataFromClassPathFile(String classPath)
+    {
+        return streamDataFromClassPathFile(classPath, new PropertyJsonReader.Options());
+    }
+    
+    /**
+     * lazily load data from classpath file, read as set by giving <code>options</code>.
+     * <p>
+     * throw RuntimeException if failed
+     * @param classPath
+     * @param options
+     * @return
+     * @see #streamDataFromClassPathFile(String)
+     */
+    public static Stream<Property> streamDataFromClassPathFile(String classPath, PropertyJsonReader.Options options)
     {
         
         /*
@@ -119,18 +222,108 @@ public class PropertyUtils
             throw new RuntimeException(
                     String.format("File [%s] not found on classpath", classPath));
         }
+        return streamData(in, classPath, options);
+    }
+    
+    /**
+     * lazily load data from file system.
+     * <p>
+     * throw RuntimeException if failed
+     * @param path
+     * @return
+     * @see #streamDataFromClassPathFile(String)
+     */
+    public static Stream<Property> streamDataFromFile(Path path)
+    {
+        return streamDataFromFile(path, new PropertyJsonReader.Options());
+    }
+    
+    /**
+     * lazily load data from file system, read as set by giving <code>options</code>.
+     * <p>
+     * throw RuntimeException if failed
+     * @param path
+     * @param options
+     * @return
+     * @see #streamDataFromClassPathFile(String)
+     */
+    public static Stream<Property> streamDataFromFile(Path path, PropertyJsonReader.Options options)
+    {
+        InputStream in;
         try
         {
-            String json = IOUtils.toString(in, Charset.forName("UTF-8"));
-            return new Gson().fromJson(json, new TypeToken<List<Property>>()
-            {
-            }.getType());
+            in = Files.newInputStream(path);
         }
-        catch (Exception e)
+        catch (IOException e)
         {
             throw new RuntimeException(
-                    String.format("Unabled to load data from [%s]", classPath));
+                    String.format("Unabled to load data from [%s]", path), e);
+        }
+        return streamData(in, path.toString(), options);
+    }
+    
+    /**
+     * lazily load data from giving <code>in</code>, which is closed when the stream is closed.
+     * <p>
+     * throw RuntimeException if failed
+     * @param in
+     * @param source
+     *  name of <code>in</code>, used in error messages only.
+     * @return
+     * @see PropertyJsonReader
+     */
+    public static Stream<Property> streamData(InputStream in, String source)
+    {
+        return streamData(in, source, new PropertyJsonReader.Options());
+    }
+    
+    /**
+     * lazily load data from giving <code>in</code>, read as set by giving <code>options</code>.
+     * <p>
+     * throw RuntimeException if failed
+     * @param in
+     * @param source
+     *  name of <code>in</code>, used in error messages only.
+     * @param options
+     * @return
+     * @see #streamData(InputStream, String)
+     */
+    public static Stream<Property> streamData(InputStream in, String source, PropertyJsonReader.Options options)
+    {
+        PropertyMetrics propertyMetrics = metrics;
+        if (propertyMetrics.isEnabled()) {
+            return streamData(in, source, options, propertyMetrics);
         }
+        
+        PropertyJsonReader reader = new PropertyJsonReader(
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), source, options);
+        
+      //@formatter:off
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(reader, Spliterator.ORDERED), false)
+                .onClose(reader::close);
+      //@formatter:on
+    }
+    
+    /**
+     * {@link #streamData(InputStream, String, PropertyJsonReader.Options)} reporting the load 
+     * to <code>propertyMetrics</code> when closed
+     */
+    private static Stream<Property> streamData(InputStream in, String source, PropertyJsonReader.Options options,
+            PropertyMetrics propertyMetrics)
+    {
+        long start = System.nanoTime();
+        CountingInputStream countingIn = new CountingInputStream(in);
+        PropertyJsonReader reader = new PropertyJsonReader(
+                new BufferedReader(new InputStreamReader(countingIn, StandardCharsets.UTF_8)), source, options);
+        
+      //@formatter:off
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(reader, Spliterator.ORDERED), false)
+                .onClose(() -> propertyMetrics.recordLoad(source, reader.getCount(), reader.getSkippedCount(), 
+                        countingIn.getByteCount(), System.nanoTime() - start))
+                .onClose(reader::close);
+      //@formatter:on
     }
     
     /**
@@ -151,11 +344,45 @@ public class PropertyUtils
             return 0d;
         }
         
+        PropertyMetrics propertyMetrics = metrics;
+        long start = propertyMetrics.isEnabled() ? System.nanoTime() : 0L;
       //@formatter:off
-        return properties.stream()
+        Double mean = properties.stream()
                 .filter(isPostcodeOutward(postcodeOutward))
                 .collect(Collectors.averagingDouble(Property::getPrice));
       //@formatter:on
+        if (propertyMetrics.isEnabled()) {
+            propertyMetrics.recordQuery(PropertyMetrics.MEAN_PRICE_BY_POSTCODE_OUTWARD, System.nanoTime() - start, 1);
+        }
+        return mean;
+    }
+    
+    /**
+     * parallel version of {@link #getMeanPriceByPostcodeOutward(String, Collection)}, 
+     * executed in giving <code>pool</code>.
+     * <p>
+     * each chunk of <code>properties</code> is summed on its own and merged in a fixed order, 
+     * so the result is the same on every run.
+     * @param postcodeOutward
+     * @param properties
+     * @param pool
+     * @return
+     *  0 if <code>properties</code> is empty or null
+     */
+    public static Double getMeanPriceByPostcodeOutward(String postcodeOutward, Collection<Property> properties, 
+            ForkJoinPool pool)
+    {
+
+        if (properties == null || properties.isEmpty()) {
+            return 0d;
+        }
+        PropertyMetrics propertyMetrics = metrics;
+        long start = propertyMetrics.isEnabled() ? System.nanoTime() : 0L;
+        Double mean = PriceStatisticsTask.aggregate(properties, isPostcodeOutward(postcodeOutward), pool).getMean();
+        if (propertyMetrics.isEnabled()) {
+            propertyMetrics.recordQuery(PropertyMetrics.MEAN_PRICE_BY_POSTCODE_OUTWARD, System.nanoTime() - start, 1);
+        }
+        return mean;
     }
     
     /**
@@ -175,11 +402,45 @@ public class PropertyUtils
             return 0d;
         }
         
+        PropertyMetrics propertyMetrics = metrics;
+        long start = propertyMetrics.isEnabled() ? System.nanoTime() : 0L;
       //@formatter:off
-        return properties.stream()
+        Double mean = properties.stream()
                 .filter(isPropertyType(propertyType))
                 .collect(Collectors.averagingDouble(Property::getPrice));
       //@formatter:on
+        if (propertyMetrics.isEnabled()) {
+            propertyMetrics.recordQuery(PropertyMetrics.MEAN_PRICE_BY_PROPERTY_TYPE, System.nanoTime() - start, 1);
+        }
+        return mean;
+    }
+    
+    /**
+     * parallel version of {@link #getMeanPriceByPropertyType(PropertyType, Collection)}, 
+     * executed in giving <code>pool</code>.
+     * <p>
+     * each chunk of <code>properties</code> is summed on its own and merged in a fixed order, 
+     * so the result is the same on every run.
+     * @param propertyType
+     * @param properties
+     * @param pool
+     * @return
+     *  0 if <code>properties</code> is empty or null
+     */
+    public static Double getMeanPriceByPropertyType(PropertyType propertyType, Collection<Property> properties, 
+            ForkJoinPool pool)
+    {
+
+        if (properties == null || properties.isEmpty()) {
+            return 0d;
+        }
+        PropertyMetrics propertyMetrics = metrics;
+        long start = propertyMetrics.isEnabled() ? System.nanoTime() : 0L;
+        Double mean = PriceStatisticsTask.aggregate(properties, isPropertyType(propertyType), pool).getMean();
+        if (propertyMetrics.isEnabled()) {
+            propertyMetrics.recordQuery(PropertyMetrics.MEAN_PRICE_BY_PROPERTY_TYPE, System.nanoTime() - start, 1);
+        }
+        return mean;
     }
     
     /**
@@ -197,9 +458,45 @@ public class PropertyUtils
             return Collections.emptyList();
         }
         
+        PropertyMetrics propertyMetrics = metrics;
+        long start = propertyMetrics.isEnabled() ? System.nanoTime() : 0L;
         int size = properties.size();
         int n = (int) Math.ceil(size / 100f * percent );
-        return getTopNMostExpensive(n, properties, true);        
+        List<Property> topProperties = getTopNMostExpensive(n, properties, true);
+        if (propertyMetrics.isEnabled()) {
+            propertyMetrics.recordQuery(PropertyMetrics.TOP_N_PERCENT_MOST_EXPENSIVE, System.nanoTime() - start, 
+                    topProperties.size());
+        }
+        return topProperties;
+    }
+    
+    /**
+     * parallel version of {@link #getTopNPercentMostExpensive(int, Collection)}, 
+     * executed in giving <code>pool</code>.
+     * @param percent
+     * @param properties
+     * @param pool
+     * @return
+     *  empty list if <code>properties</code> is empty or null
+     * @see PropertyTopN#selectParallel(int, Collection, boolean, ForkJoinPool)
+     */
+    public static List<Property> getTopNPercentMostExpensive(int percent, Collection<Property> properties, 
+            ForkJoinPool pool)
+    {
+        if (properties == null || properties.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        PropertyMetrics propertyMetrics = metrics;
+        long start = propertyMetrics.isEnabled() ? System.nanoTime() : 0L;
+        int size = properties.size();
+        int n = (int) Math.ceil(size / 100f * percent );
+        List<Property> topProperties = PropertyTopN.selectParallel(n, properties, true, pool);
+        if (propertyMetrics.isEnabled()) {
+            propertyMetrics.recordQuery(PropertyMetrics.TOP_N_PERCENT_MOST_EXPENSIVE, System.nanoTime() - start, 
+                    topProperties.size());
+        }
+        return topProperties;
     }
     
     //@formatter:off
@@ -224,32 +521,10 @@ public class PropertyUtils
      *   Top 2 with includeIfHasSamePrice:      
      *      [Property A, Property B, Property C]
      * @return
+     * @see PropertyTopN
      */
     //@formatter:on    
     protected static List<Property> getTopNMostExpensive(int n, Collection<Property> properties, boolean includeIfHasSamePrice) {
-        List<Property> orderedProperties = properties.stream()
-                .sorted(propertyPriceDescentComparator)
-                .collect(Collectors.toList());
-        
-        return IntStream.range(0, orderedProperties.size())
-            .filter(s -> {
-                if (s < n) {
-                    
-                    //top N properties
-                    return true;
-                } else if (includeIfHasSamePrice){
-                    
-                    //other properties with same price as lowestPriceInTopN
-                    double lowestPriceInTopN = orderedProperties.get(n-1).getPrice();
-                    double currPrice = orderedProperties.get(s).getPrice();
-                    return currPrice >= lowestPriceInTopN;
-                    
-                } else {
-                    
-                    //skip rest properties
-                    return false;
-                }
-            }).mapToObj(s -> orderedProperties.get(s))
-            .collect(Collectors.toList());
+        return PropertyTopN.select(n, properties, includeIfHasSamePrice);
     }
 }
@@ -0,0 +1,239 @@
+package com.sven.rmtest;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * {@link PropertyMetrics} which keeps totals of loads and cache accesses, and a {@link LatencyHistogram}
+ * of latency and of result size for each query.
+ * <p>
+ * read with the getters (a snapshot at the time of call) or over JMX, see {@link #registerMBean()}.
+ * <pre>
+ * RecordingPropertyMetrics metrics = new RecordingPropertyMetrics();
+ * PropertyUtils.setMetrics(metrics);
+ * metrics.registerMBean();
+ * </pre>
+ */
+public class RecordingPropertyMetrics implements PropertyMetrics, PropertyMetricsMXBean
+{
+
+    public static final String OBJECT_NAME = "com.sven.rmtest:type=PropertyMetrics";
+
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadedRecords = new LongAdder();
+    private final LongAdder skippedRecords = new LongAdder();
+    private final LongAdder loadedBytes = new LongAdder();
+    private final AtomicReference<Load> lastLoad = new AtomicReference<>(new Load(0, 0, 0));
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    private final ConcurrentMap<String, QueryHistograms> queries = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isEnabled()
+    {
+        return true;
+    }
+
+    @Override
+    public void recordLoad(String source, long records, long skipped, long bytes, long nanos)
+    {
+        loadCount.increment();
+        loadedRecords.add(records);
+        skippedRecords.add(skipped);
+        loadedBytes.add(bytes);
+        lastLoad.set(new Load(records, bytes, nanos));
+    }
+
+    @Override
+    public void recordQuery(String query, long nanos, int results)
+    {
+        QueryHistograms histograms = queries.get(query);
+        if (histograms == null) {
+            histograms = queries.computeIfAbsent(query, s -> new QueryHistograms());
+        }
+        histograms.latencies.record(nanos);
+        histograms.results.record(results);
+    }
+
+    @Override
+    public void recordCacheAccess(String cache, boolean hit)
+    {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    /**
+     * register this as MBean {@link #OBJECT_NAME} of platform MBean server, replacing the registered one.
+     * <p>
+     * throw RuntimeException if failed
+     */
+    public void registerMBean()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        }
+        catch (JMException e)
+        {
+            throw new RuntimeException(
+                    String.format("Unabled to register MBean [%s]", OBJECT_NAME), e);
+        }
+    }
+
+    @Override
+    public long getLoadCount()
+    {
+        return loadCount.sum();
+    }
+
+    @Override
+    public long getLoadedRecords()
+    {
+        return loadedRecords.sum();
+    }
+
+    @Override
+    public long getSkippedRecords()
+    {
+        return skippedRecords.sum();
+    }
+
+    @Override
+    public long getLoadedBytes()
+    {
+        return loadedBytes.sum();
+    }
+
+    @Override
+    public double getLastLoadMillis()
+    {
+        return lastLoad.get().nanos / 1e6d;
+    }
+
+    @Override
+    public double getLastLoadRecordsPerSecond()
+    {
+        Load load = lastLoad.get();
+        return load.perSecond(load.records);
+    }
+
+    @Override
+    public double getLastLoadBytesPerSecond()
+    {
+        Load load = lastLoad.get();
+        return load.perSecond(load.bytes);
+    }
+
+    @Override
+    public long getCacheHits()
+    {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCacheMisses()
+    {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public double getCacheHitRate()
+    {
+        long hits = cacheHits.sum();
+        long total = hits + cacheMisses.sum();
+        return total == 0 ? 0d : (double) hits / total;
+    }
+
+    @Override
+    public Map<String, QueryStatistics> getQueries()
+    {
+        Map<String, QueryStatistics> statistics = new TreeMap<>();
+        queries.forEach((query, histograms) -> statistics.put(query, histograms.toStatistics()));
+        return statistics;
+    }
+
+    /**
+     * statistics of giving <code>query</code>
+     * @param query
+     * @return
+     *  null if query was never recorded
+     */
+    public QueryStatistics getQuery(String query)
+    {
+        QueryHistograms histograms = queries.get(query);
+        return histograms == null ? null : histograms.toStatistics();
+    }
+
+    /**
+     * latency histogram of giving <code>query</code>, in nanoseconds
+     * @param query
+     * @return
+     *  null if query was never recorded
+     */
+    public LatencyHistogram getLatencyHistogram(String query)
+    {
+        QueryHistograms histograms = queries.get(query);
+        return histograms == null ? null : histograms.latencies;
+    }
+
+    @Override
+    public void reset()
+    {
+        loadCount.reset();
+        loadedRecords.reset();
+        skippedRecords.reset();
+        loadedBytes.reset();
+        lastLoad.set(new Load(0, 0, 0));
+        cacheHits.reset();
+        cacheMisses.reset();
+        queries.clear();
+    }
+
+    private static class Load
+    {
+        private final long records;
+        private final long bytes;
+        private final long nanos;
+
+        private Load(long records, long bytes, long nanos)
+        {
+            this.records = records;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        private double perSecond(long value)
+        {
+            return nanos == 0 ? 0d : value * 1e9d / nanos;
+        }
+    }
+
+    private static class QueryHistograms
+    {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LatencyHistogram results = new LatencyHistogram();
+
+        private QueryStatistics toStatistics()
+        {
+            return new QueryStatistics(latencies.getCount(), latencies.getMean() / 1e3d,
+                    latencies.getValueAtPercentile(50) / 1e3d, latencies.getValueAtPercentile(99) / 1e3d,
+                    latencies.getValueAtPercentile(99.9) / 1e3d, latencies.getMax() / 1e3d,
+                    results.getMean(), results.getMax());
+        }
+    }
+}
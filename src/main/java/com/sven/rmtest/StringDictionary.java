@@ -0,0 +1,72 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * dictionary encoding of strings, each distinct string is given a dense id starting from 0.
+ * <p>
+ * not thread safe while strings are being added.
+ */
+public class StringDictionary
+{
+    public static final int NO_ID = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * get id of giving <code>value</code>, add it to the dictionary if it's new.
+     * @param value
+     * @return
+     *  {@link #NO_ID} if <code>value</code> is null
+     */
+    public int intern(String value)
+    {
+        if (value == null) {
+            return NO_ID;
+        }
+
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    /**
+     * get id of giving <code>value</code>
+     * @param value
+     * @return
+     *  {@link #NO_ID} if <code>value</code> is null or not in the dictionary
+     */
+    public int idOf(String value)
+    {
+        if (value == null) {
+            return NO_ID;
+        }
+
+        Integer id = ids.get(value);
+        return id == null ? NO_ID : id;
+    }
+
+    /**
+     * get string of giving <code>id</code>
+     * @param id
+     * @return
+     *  null if <code>id</code> is {@link #NO_ID}
+     */
+    public String get(int id)
+    {
+        return id == NO_ID ? null : values.get(id);
+    }
+
+    public int size()
+    {
+        return values.size();
+    }
+}
@@ -0,0 +1,448 @@
+package com.sven.rmtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * count and mean price of property events per {@link PropertyType} and per outward postcode
+ * over time windows, e.g. last hour, last day and last week.
+ * <p>
+ * each window is a ring buffer of buckets holding count and sum of prices of their period, a bucket is reused
+ * once it's older than the window. an event is added to one bucket per window, O(number of windows),
+ * and a window is read by summing its buckets, O(number of buckets). memory is fixed per window and key,
+ * whatever the event rate is.
+ * <p>
+ * number of outward postcodes is bounded too, so a feed of garbage or ever new postcodes can't grow it:
+ * a postcode without event for longer than the longest window is dropped, and above
+ * {@link #DEFAULT_MAX_OUTWARD_POSTCODES} postcodes, the one updated least recently is dropped.
+ * <ul>
+ * <li>{@link Mode#SLIDING}: the last window length until now, e.g. last 60 minutes, moving by one bucket</li>
+ * <li>{@link Mode#TUMBLING}: the current window aligned on its length since epoch, e.g. this hour so far</li>
+ * </ul>
+ * events older than the window are ignored by it, events are timed by a clock unless a time is given.
+ * <p>
+ * thread safe, one writer and many readers.
+ */
+public class WindowedPriceStatistics
+{
+
+    public enum Mode
+    {
+        SLIDING, TUMBLING
+    }
+
+    /**
+     * last hour by minute
+     */
+    public static final Window HOUR = Window.of(Duration.ofHours(1), 60);
+
+    /**
+     * last day by 15 minutes
+     */
+    public static final Window DAY = Window.of(Duration.ofDays(1), 96);
+
+    /**
+     * last week by hour
+     */
+    public static final Window WEEK = Window.of(Duration.ofDays(7), 168);
+
+    /**
+     * more than districts of UK, about 32MB with default windows
+     */
+    public static final int DEFAULT_MAX_OUTWARD_POSTCODES = 4096;
+
+    private final List<Window> windows;
+    private final LongSupplier clock;
+    private final int maxOutwardPostcodes;
+    private final long longestWindowMillis;
+
+    private final Map<PropertyType, Ring[]> propertyTypeRings = new EnumMap<>(PropertyType.class);
+
+    /**
+     * rings by upper case outward postcode, least recently updated first
+     */
+    private final LinkedHashMap<String, PostcodeRings> outwardPostcodeRings = new LinkedHashMap<>();
+
+    private long eventCount = 0;
+
+    /**
+     * statistics over {@link #HOUR}, {@link #DAY} and {@link #WEEK}, timed by system clock
+     */
+    public WindowedPriceStatistics()
+    {
+        this(Arrays.asList(HOUR, DAY, WEEK), System::currentTimeMillis);
+    }
+
+    /**
+     * @param windows
+     * @param clock
+     *  current time in milliseconds since epoch
+     */
+    public WindowedPriceStatistics(List<Window> windows, LongSupplier clock)
+    {
+        this(windows, clock, DEFAULT_MAX_OUTWARD_POSTCODES);
+    }
+
+    /**
+     * @param windows
+     * @param clock
+     *  current time in milliseconds since epoch
+     * @param maxOutwardPostcodes
+     *  at least 1
+     */
+    public WindowedPriceStatistics(List<Window> windows, LongSupplier clock, int maxOutwardPostcodes)
+    {
+        this.windows = Collections.unmodifiableList(new ArrayList<>(windows));
+        this.clock = clock;
+        this.maxOutwardPostcodes = Math.max(1, maxOutwardPostcodes);
+        this.longestWindowMillis = windows.stream().mapToLong(s -> s.getLength().toMillis()).max().orElse(0L);
+        for (PropertyType propertyType : PropertyType.values()) {
+            propertyTypeRings.put(propertyType, newRings());
+        }
+    }
+
+    public List<Window> getWindows()
+    {
+        return windows;
+    }
+
+    /**
+     * add an event of <code>property</code> at current time of clock, null is ignored
+     * @param property
+     */
+    public void accept(Property property)
+    {
+        accept(property, clock.getAsLong());
+    }
+
+    /**
+     * add an event of <code>property</code> at giving time, null is ignored
+     * @param property
+     * @param timeMillis
+     *  milliseconds since epoch
+     */
+    public synchronized void accept(Property property, long timeMillis)
+    {
+        if (property == null) {
+            return;
+        }
+
+        eventCount++;
+        double price = property.getPrice();
+        if (property.getPropertyType() != null) {
+            add(propertyTypeRings.get(property.getPropertyType()), timeMillis, price);
+        }
+        int length = PropertyUtils.getOutwardPostcodeLength(property.getPostcode());
+        if (length >= 0) {
+            String outwardPostcode = property.getPostcode().substring(0, length).toUpperCase(Locale.ROOT);
+
+            //moved to the end as most recently updated
+            PostcodeRings rings = outwardPostcodeRings.remove(outwardPostcode);
+            if (rings == null) {
+                rings = new PostcodeRings(newRings());
+            }
+            outwardPostcodeRings.put(outwardPostcode, rings);
+            rings.lastMillis = Math.max(rings.lastMillis, timeMillis);
+            add(rings.rings, timeMillis, price);
+            evictOutwardPostcodes(timeMillis);
+        }
+    }
+
+    /**
+     * number of outward postcodes currently held
+     * @return
+     */
+    public synchronized int getOutwardPostcodeCount()
+    {
+        return outwardPostcodeRings.size();
+    }
+
+    /**
+     * number of events accepted since creation
+     * @return
+     */
+    public synchronized long getEventCount()
+    {
+        return eventCount;
+    }
+
+    /**
+     * statistics of events with <code>propertyType</code> in <code>window</code> at current time of clock
+     * @param propertyType
+     * @param window
+     *  one of {@link #getWindows()}
+     * @param mode
+     * @return
+     */
+    public Aggregate getByPropertyType(PropertyType propertyType, Window window, Mode mode)
+    {
+        long now = clock.getAsLong();
+        synchronized (this) {
+            return propertyTypeRings.get(propertyType)[indexOf(window)].aggregate(now, mode);
+        }
+    }
+
+    /**
+     * statistics of events with <code>postcodeOutward</code>, compared ignoring case,
+     * in <code>window</code> at current time of clock
+     * @param postcodeOutward
+     * @param window
+     *  one of {@link #getWindows()}
+     * @param mode
+     * @return
+     */
+    public Aggregate getByPostcodeOutward(String postcodeOutward, Window window, Mode mode)
+    {
+        long now = clock.getAsLong();
+        int index = indexOf(window);
+        synchronized (this) {
+            PostcodeRings rings = postcodeOutward == null
+                    ? null
+                    : outwardPostcodeRings.get(postcodeOutward.toUpperCase(Locale.ROOT));
+            return rings == null ? Aggregate.EMPTY : rings.rings[index].aggregate(now, mode);
+        }
+    }
+
+    /**
+     * @see #getByPropertyType(PropertyType, Window, Mode)
+     * @return
+     *  0 if there is no event
+     */
+    public double getMeanPriceByPropertyType(PropertyType propertyType, Window window, Mode mode)
+    {
+        return getByPropertyType(propertyType, window, mode).getMean();
+    }
+
+    /**
+     * @see #getByPostcodeOutward(String, Window, Mode)
+     * @return
+     *  0 if there is no event
+     */
+    public double getMeanPriceByPostcodeOutward(String postcodeOutward, Window window, Mode mode)
+    {
+        return getByPostcodeOutward(postcodeOutward, window, mode).getMean();
+    }
+
+    private Ring[] newRings()
+    {
+        Ring[] rings = new Ring[windows.size()];
+        for (int i = 0; i < rings.length; i++) {
+            rings[i] = new Ring(windows.get(i));
+        }
+        return rings;
+    }
+
+    /**
+     * drop least recently updated postcodes which have no event in any window anymore, or are above the maximum
+     */
+    private void evictOutwardPostcodes(long nowMillis)
+    {
+        Iterator<PostcodeRings> iterator = outwardPostcodeRings.values().iterator();
+        while (iterator.hasNext()) {
+            PostcodeRings rings = iterator.next();
+            if (outwardPostcodeRings.size() <= maxOutwardPostcodes && rings.lastMillis >= nowMillis - longestWindowMillis) {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+
+    private static void add(Ring[] rings, long timeMillis, double price)
+    {
+        for (Ring ring : rings) {
+            ring.add(timeMillis, price);
+        }
+    }
+
+    private int indexOf(Window window)
+    {
+        int index = windows.indexOf(window);
+        if (index < 0) {
+            throw new RuntimeException(String.format("Unknown window %s", window));
+        }
+        return index;
+    }
+
+    /**
+     * length of a window and number of its buckets
+     */
+    public static final class Window
+    {
+        private final long bucketMillis;
+        private final int buckets;
+
+        private Window(long bucketMillis, int buckets)
+        {
+            this.bucketMillis = bucketMillis;
+            this.buckets = buckets;
+        }
+
+        /**
+         * @param length
+         *  at least 1 millisecond per bucket
+         * @param buckets
+         *  number of buckets, precision of sliding window is one bucket
+         * @return
+         */
+        public static Window of(Duration length, int buckets)
+        {
+            int count = Math.max(1, buckets);
+            return new Window(Math.max(1, length.toMillis() / count), count);
+        }
+
+        public Duration getLength()
+        {
+            return Duration.ofMillis(bucketMillis * buckets);
+        }
+
+        public int getBuckets()
+        {
+            return buckets;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Window)) {
+                return false;
+            }
+            Window other = (Window) obj;
+            return bucketMillis == other.bucketMillis && buckets == other.buckets;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(bucketMillis) * 31 + buckets;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Window[length=%s, buckets=%d]", getLength(), buckets);
+        }
+    }
+
+    /**
+     * count and sum of prices of a window
+     */
+    public static final class Aggregate
+    {
+        static final Aggregate EMPTY = new Aggregate(0, 0d);
+
+        private final long count;
+        private final double sum;
+
+        private Aggregate(long count, double sum)
+        {
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public double getSum()
+        {
+            return sum;
+        }
+
+        /**
+         * @return
+         *  0 if there is no event
+         */
+        public double getMean()
+        {
+            return count == 0 ? 0d : sum / count;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("Aggregate[count=%d, mean=%f]", count, getMean());
+        }
+    }
+
+    /**
+     * rings of an outward postcode and time of its latest event
+     */
+    private static class PostcodeRings
+    {
+        private final Ring[] rings;
+        private long lastMillis = Long.MIN_VALUE;
+
+        private PostcodeRings(Ring[] rings)
+        {
+            this.rings = rings;
+        }
+    }
+
+    /**
+     * buckets of one window, bucket of period <code>p</code> (time / bucket millis) is at <code>p % buckets</code>
+     */
+    private static class Ring
+    {
+        private final Window window;
+        private final long[] periods;
+        private final long[] counts;
+        private final double[] sums;
+
+        private Ring(Window window)
+        {
+            this.window = window;
+            this.periods = new long[window.buckets];
+            this.counts = new long[window.buckets];
+            this.sums = new double[window.buckets];
+            Arrays.fill(periods, Long.MIN_VALUE);
+        }
+
+        private void add(long timeMillis, double price)
+        {
+            long period = Math.floorDiv(timeMillis, window.bucketMillis);
+            int slot = (int) Math.floorMod(period, (long) window.buckets);
+            if (periods[slot] != period) {
+                if (periods[slot] > period) {
+                    //bucket already reused by a newer period, event is older than the window
+                    return;
+                }
+                periods[slot] = period;
+                counts[slot] = 0;
+                sums[slot] = 0d;
+            }
+            counts[slot]++;
+            sums[slot] += price;
+        }
+
+        private Aggregate aggregate(long nowMillis, Mode mode)
+        {
+            long current = Math.floorDiv(nowMillis, window.bucketMillis);
+            long first = mode == Mode.SLIDING
+                    ? current - window.buckets + 1
+                    : Math.floorDiv(current, window.buckets) * window.buckets;
+
+            long count = 0;
+            double sum = 0d;
+            for (int slot = 0; slot < periods.length; slot++) {
+                if (periods[slot] >= first && periods[slot] <= current) {
+                    count += counts[slot];
+                    sum += sums[slot];
+                }
+            }
+            return count == 0 ? Aggregate.EMPTY : new Aggregate(count, sum);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CachedPropertyQueriesTest
+{
+
+    private Property property1 = new Property(1, 100, "ZONE1 ST1", PropertyType.Detached);
+    private Property property2 = new Property(2, 30, "zone1 ST2", PropertyType.Detached);
+    private Property property5 = new Property(5, 23, "ZONE2 ST5", PropertyType.Flat);
+    
+    @Test
+    public void test_nothing_loaded() {
+        CachedPropertyQueries queries = new CachedPropertyQueries();
+        
+        Assert.assertEquals(0, queries.getEpoch());
+        Assert.assertEquals(0, queries.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+        Assert.assertTrue(queries.getTopNPercentMostExpensive(10).isEmpty());
+    }
+    
+    @Test
+    public void test_repeated_queries_are_cached() {
+        CachedPropertyQueries queries = new CachedPropertyQueries();
+        queries.load(Arrays.asList(property1, property2, property5));
+        
+        Assert.assertEquals(65, queries.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+        Assert.assertEquals(65, queries.getMeanPriceByPostcodeOutward("zone1"), 0);
+        Assert.assertEquals(65, queries.getMeanPriceByPropertyType(PropertyType.Detached), 0);
+        Assert.assertEquals(65, queries.getMeanPriceByPropertyType(PropertyType.Detached), 0);
+        List<Property> top = queries.getTopNPercentMostExpensive(50);
+        Assert.assertSame(top, queries.getTopNPercentMostExpensive(50));
+        Assert.assertEquals(Arrays.asList(property1, property2), top);
+        
+        Assert.assertEquals(3, queries.getStats().missCount());
+        Assert.assertEquals(3, queries.getStats().hitCount());
+    }
+    
+    @Test
+    public void test_load_invalidates_results() {
+        List<Property> properties = new ArrayList<>(Arrays.asList(property1, property2));
+        CachedPropertyQueries queries = new CachedPropertyQueries();
+        long epoch = queries.load(properties);
+        Assert.assertEquals(65, queries.getMeanPriceByPostcodeOutward(""), 0);
+        
+        //changing loaded collection has no effect
+        properties.add(property5);
+        Assert.assertEquals(65, queries.getMeanPriceByPostcodeOutward(""), 0);
+        
+        Assert.assertEquals(epoch + 1, queries.load(properties));
+        Assert.assertEquals(0, queries.getCachedSize());
+        Assert.assertEquals(51, queries.getMeanPriceByPostcodeOutward(""), 0);
+        Assert.assertEquals(2, queries.getStats().missCount());
+    }
+    
+    @Test
+    public void test_maximum_size() {
+        CachedPropertyQueries queries = new CachedPropertyQueries(2);
+        queries.load(Arrays.asList(property1, property2, property5));
+        for (int percent = 1; percent <= 10; percent++) {
+            queries.getTopNPercentMostExpensive(percent);
+        }
+        
+        Assert.assertTrue(queries.getCachedSize() <= 2);
+        Assert.assertTrue(queries.getStats().evictionCount() >= 8);
+    }
+}
@@ -0,0 +1,146 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LivePropertyStoreTest
+{
+
+    private Property property1 = new Property(1, 100, "ZONE1 ST1", PropertyType.Detached);
+    private Property property2 = new Property(2, 30, "zone1 ST2", PropertyType.Detached);
+    private Property property5 = new Property(5, 23, "ZONE2 ST5", PropertyType.Flat);
+    private Property property6 = new Property(6, 100, "ZONE2 ST6", PropertyType.Flat);
+    
+    @Test
+    public void test_upsert() {
+        LivePropertyStore store = LivePropertyStore.of(Arrays.asList(property1, property2, property5));
+        
+        Assert.assertEquals(3, store.size());
+        Assert.assertEquals(65, store.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+        Assert.assertEquals(51, store.getMeanPriceByPostcodeOutward(""), 0);
+        Assert.assertEquals(23, store.getMeanPriceByPropertyType(PropertyType.Flat), 0);
+        
+        store.upsert(new Property(2, 50, "ZONE2 ST2", PropertyType.Flat));
+        Assert.assertEquals(3, store.size());
+        Assert.assertEquals(100, store.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+        Assert.assertEquals(36.5, store.getMeanPriceByPostcodeOutward("ZONE2"), 0);
+        Assert.assertEquals(100, store.getMeanPriceByPropertyType(PropertyType.Detached), 0);
+        Assert.assertEquals(36.5, store.getMeanPriceByPropertyType(PropertyType.Flat), 0);
+    }
+    
+    @Test
+    public void test_getMeanPriceByPropertyType_of_null() {
+        List<Property> properties = Arrays.asList(property1, property5, new Property(7, 40, "ZONE3 ST7", null));
+        LivePropertyStore store = LivePropertyStore.of(properties);
+        
+        Assert.assertEquals(40, store.getMeanPriceByPropertyType(null), 0);
+        Assert.assertEquals(PropertyUtils.getMeanPriceByPropertyType(null, properties),
+                store.getMeanPriceByPropertyType(null), 0);
+        Assert.assertEquals(PropertyStore.of(properties).getMeanPriceByPropertyType(null),
+                store.getMeanPriceByPropertyType(null), 0);
+        
+        store.remove(7);
+        Assert.assertEquals(0, store.getMeanPriceByPropertyType(null), 0);
+    }
+    
+    @Test
+    public void test_updatePrice() {
+        LivePropertyStore store = LivePropertyStore.of(Arrays.asList(property1, property2, property5));
+        
+        Assert.assertTrue(store.updatePrice(5, 200));
+        Assert.assertFalse(store.updatePrice(9, 200));
+        Assert.assertEquals(200, store.get(5).getPrice(), 0);
+        Assert.assertEquals(200, store.getMeanPriceByPostcodeOutward("ZONE2"), 0);
+        Assert.assertEquals(5, store.getTopNPercentMostExpensive(1).get(0).getPropertyReference());
+    }
+    
+    @Test
+    public void test_updatePrice_of_infinite_price() {
+        LivePropertyStore store = LivePropertyStore.of(Arrays.asList(property1, property2));
+        
+        store.upsert(new Property(3, Double.POSITIVE_INFINITY, "ZONE1 ST3", PropertyType.Detached));
+        Assert.assertEquals(Double.POSITIVE_INFINITY, store.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+        
+        store.updatePrice(3, 50);
+        Assert.assertEquals(60, store.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+        Assert.assertEquals(60, store.getMeanPriceByPropertyType(PropertyType.Detached), 0);
+        Assert.assertEquals(60, store.getMeanPriceByPostcodeOutward(""), 0);
+        
+        store.updatePrice(3, Double.NaN);
+        Assert.assertTrue(Double.isNaN(store.getMeanPriceByPostcodeOutward("ZONE1")));
+        store.remove(3);
+        Assert.assertEquals(65, store.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+    }
+    
+    @Test
+    public void test_mean_of_prices_of_very_different_size() {
+        LivePropertyStore store = new LivePropertyStore();
+        store.upsert(new Property(1, 250, "ZONE1 ST1", PropertyType.Flat));
+        for (int i = 0; i < 10000; i++) {
+            store.upsert(new Property(2, 1e8 + i * 0.1, "ZONE1 ST2", PropertyType.Flat));
+            store.updatePrice(2, 1e17 + i * 3);
+        }
+        store.remove(2);
+        Assert.assertEquals(250, store.getMeanPriceByPropertyType(PropertyType.Flat), 0);
+    }
+    
+    @Test
+    public void test_remove() {
+        LivePropertyStore store = LivePropertyStore.of(Arrays.asList(property1, property2, property5));
+        
+        Assert.assertTrue(store.remove(1));
+        Assert.assertFalse(store.remove(1));
+        Assert.assertNull(store.get(1));
+        Assert.assertEquals(30, store.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+        
+        store.remove(2);
+        Assert.assertEquals(0, store.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+        Assert.assertEquals(0, store.getMeanPriceByPropertyType(PropertyType.Detached), 0);
+    }
+    
+    @Test
+    public void test_properties_are_copied() {
+        LivePropertyStore store = LivePropertyStore.of(Arrays.asList(property1));
+        
+        property1.setPrice(1);
+        store.get(1).setPrice(2);
+        Assert.assertEquals(100, store.get(1).getPrice(), 0);
+    }
+    
+    @Test
+    public void test_getTopNPercentMostExpensive_same_as_PropertyUtils() {
+        Random random = new Random(11);
+        List<Property> properties = new ArrayList<>();
+        LivePropertyStore store = new LivePropertyStore();
+        for (int i = 0; i < 2000; i++) {
+            Property property = new Property(i, random.nextInt(100), "ZONE1 ST1", PropertyType.Flat);
+            properties.add(property);
+            store.upsert(property);
+        }
+        for (int i = 0; i < 500; i++) {
+            int index = random.nextInt(properties.size());
+            if (random.nextBoolean()) {
+                store.remove(properties.remove(index).getPropertyReference());
+            } else {
+                properties.get(index).setPrice(random.nextInt(100));
+                store.updatePrice(properties.get(index).getPropertyReference(), properties.get(index).getPrice());
+            }
+        }
+        
+        for (int percent : new int[] {1, 10, 50, 100}) {
+            List<Property> expected = PropertyUtils.getTopNPercentMostExpensive(percent, properties);
+            List<Property> actual = store.getTopNPercentMostExpensive(percent);
+            Assert.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(expected.get(i).getPropertyReference(), actual.get(i).getPropertyReference());
+            }
+        }
+        Assert.assertEquals(PropertyUtils.getMeanPriceByPostcodeOutward("ZONE1", properties), 
+                store.getMeanPriceByPostcodeOutward("ZONE1"), 0.0001);
+    }
+}
@@ -0,0 +1,119 @@
+package com.sven.rmtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedPropertySnapshotTest
+{
+
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("property-snapshot", ".bin");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void test_queries_same_as_json() {
+        List<Property> properties = PropertyUtils.loadDataFromClassPathFile("/property-data.json");
+        PropertySnapshot.convertClassPathFile("/property-data.json", file);
+        
+        try (MappedPropertySnapshot snapshot = MappedPropertySnapshot.open(file)) {
+            Assert.assertEquals(properties.size(), snapshot.size());
+            Assert.assertEquals(PropertyUtils.getMeanPriceByPostcodeOutward("W1F", properties),
+                    snapshot.getMeanPriceByPostcodeOutward("w1f"), 0.000001);
+            Assert.assertEquals(PropertyUtils.getMeanPriceByPostcodeOutward(null, properties),
+                    snapshot.getMeanPriceByPostcodeOutward(null), 0.000001);
+            for (PropertyType propertyType : PropertyType.values()) {
+                Assert.assertEquals(PropertyUtils.getMeanPriceByPropertyType(propertyType, properties),
+                        snapshot.getMeanPriceByPropertyType(propertyType), 0.000001);
+            }
+            
+            List<Property> expected = PropertyUtils.getTopNPercentMostExpensive(10, properties);
+            List<Property> actual = snapshot.getTopNPercentMostExpensive(10);
+            Assert.assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(expected.get(i).getPropertyReference(), actual.get(i).getPropertyReference());
+            }
+        }
+    }
+    
+    @Test
+    public void test_getProperty() {
+        Property property = new Property(9, 250, "W1F 3FT", PropertyType.Terraced);
+        property.setBedrooms(3);
+        property.setBathrooms(2);
+        property.setHouseNumber("12");
+        property.setAddress("Rue de l'\u00c9glise");
+        property.setRegion("London");
+        Property empty = new Property(10, 50, null, null);
+        PropertySnapshot.write(PropertyStore.of(Arrays.asList(property, empty)), file);
+        
+        try (MappedPropertySnapshot snapshot = MappedPropertySnapshot.open(file)) {
+            Property actual = snapshot.getProperty(0);
+            Assert.assertEquals(9, actual.getPropertyReference());
+            Assert.assertEquals(250, actual.getPrice(), 0);
+            Assert.assertEquals(3, actual.getBedrooms());
+            Assert.assertEquals(2, actual.getBathrooms());
+            Assert.assertEquals("12", actual.getHouseNumber());
+            Assert.assertEquals("Rue de l'\u00c9glise", actual.getAddress());
+            Assert.assertEquals("London", actual.getRegion());
+            Assert.assertEquals("W1F 3FT", actual.getPostcode());
+            Assert.assertEquals(PropertyType.Terraced, actual.getPropertyType());
+            
+            actual = snapshot.getProperty(1);
+            Assert.assertNull(actual.getPostcode());
+            Assert.assertNull(actual.getPropertyType());
+            Assert.assertNull(actual.getRegion());
+            Assert.assertEquals(50, snapshot.getMeanPriceByPropertyType(null), 0);
+            Assert.assertEquals(250, snapshot.getMeanPriceByPostcodeOutward("W1F"), 0);
+        }
+    }
+    
+    @Test
+    public void test_blank_outward_postcode() {
+        //outward of " W1F 7AA" is blank, ids of outwards after it must not move
+        PropertyStore store = PropertyStore.of(Arrays.asList(
+                new Property(1, 100, " W1F 7AA", PropertyType.Flat),
+                new Property(2, 200, "W1F 7AB", PropertyType.Flat),
+                new Property(3, 300, "SW1 1AA", PropertyType.Flat)));
+        PropertySnapshot.write(store, file);
+        
+        try (MappedPropertySnapshot snapshot = MappedPropertySnapshot.open(file)) {
+            Assert.assertEquals(store.getMeanPriceByPostcodeOutward("W1F"), snapshot.getMeanPriceByPostcodeOutward("W1F"), 0);
+            Assert.assertEquals(200, snapshot.getMeanPriceByPostcodeOutward("W1F"), 0);
+            Assert.assertEquals(300, snapshot.getMeanPriceByPostcodeOutward("sw1"), 0);
+            Assert.assertEquals(" W1F 7AA", snapshot.getProperty(0).getPostcode());
+        }
+    }
+    
+    @Test
+    public void test_empty_snapshot() {
+        PropertySnapshot.write(PropertyStore.of(null), file);
+        
+        try (MappedPropertySnapshot snapshot = MappedPropertySnapshot.open(file)) {
+            Assert.assertEquals(0, snapshot.size());
+            Assert.assertEquals(0, snapshot.getMeanPriceByPostcodeOutward(""), 0);
+            Assert.assertTrue(snapshot.getTopNPercentMostExpensive(10).isEmpty());
+        }
+    }
+    
+    @Test(expected = RuntimeException.class)
+    public void test_open_with_bad_magic() throws IOException {
+        Files.write(file, new byte[PropertySnapshot.HEADER_SIZE]);
+        MappedPropertySnapshot.open(file);
+    }
+}
@@ -0,0 +1,71 @@
+package com.sven.rmtest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OutwardPostcodeDictionaryTest
+{
+
+    @Test
+    public void test_intern_ignoring_case() {
+        OutwardPostcodeDictionary dictionary = new OutwardPostcodeDictionary();
+        
+        int id = dictionary.intern("w1f 3FT");
+        Assert.assertEquals(0, id);
+        Assert.assertEquals(id, dictionary.intern("W1F 4AB"));
+        Assert.assertEquals(id, dictionary.intern("W1F"));
+        Assert.assertEquals(1, dictionary.intern("W1 3FT"));
+        Assert.assertEquals(2, dictionary.size());
+        Assert.assertEquals("W1F", dictionary.get(id));
+    }
+    
+    @Test
+    public void test_intern_with_blank_postcode() {
+        OutwardPostcodeDictionary dictionary = new OutwardPostcodeDictionary();
+        
+        Assert.assertEquals(OutwardPostcodeDictionary.NO_ID, dictionary.intern(null));
+        Assert.assertEquals(OutwardPostcodeDictionary.NO_ID, dictionary.intern(" "));
+        //outward is empty before the space
+        Assert.assertEquals(OutwardPostcodeDictionary.NO_ID, dictionary.intern(" W1F 7AA"));
+        Assert.assertEquals(OutwardPostcodeDictionary.NO_ID, dictionary.internOutward(""));
+        Assert.assertEquals(OutwardPostcodeDictionary.NO_ID, dictionary.idOf(""));
+        Assert.assertEquals(OutwardPostcodeDictionary.NO_ID, dictionary.idOfPostcode(" W1F 7AA"));
+        Assert.assertEquals(0, dictionary.size());
+        Assert.assertNull(dictionary.get(OutwardPostcodeDictionary.NO_ID));
+    }
+    
+    @Test
+    public void test_internOutward() {
+        OutwardPostcodeDictionary dictionary = new OutwardPostcodeDictionary();
+        
+        Assert.assertEquals(0, dictionary.internOutward("w1f"));
+        Assert.assertEquals(0, dictionary.intern("W1F 7AA"));
+        Assert.assertEquals(1, dictionary.internOutward("SW1"));
+        Assert.assertEquals("W1F", dictionary.get(0));
+        Assert.assertEquals(2, dictionary.size());
+    }
+    
+    @Test
+    public void test_idOf() {
+        OutwardPostcodeDictionary dictionary = new OutwardPostcodeDictionary();
+        int id = dictionary.intern("SH1 1AW");
+        
+        Assert.assertEquals(id, dictionary.idOf("sh1"));
+        Assert.assertEquals(id, dictionary.idOfPostcode("SH1 2XY"));
+        Assert.assertEquals(OutwardPostcodeDictionary.NO_ID, dictionary.idOf("SH1 1AW"));
+        Assert.assertEquals(OutwardPostcodeDictionary.NO_ID, dictionary.idOf("SH2"));
+        Assert.assertEquals(OutwardPostcodeDictionary.NO_ID, dictionary.idOfPostcode(""));
+    }
+    
+    @Test
+    public void test_intern_many_outwards() {
+        OutwardPostcodeDictionary dictionary = new OutwardPostcodeDictionary();
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(i, dictionary.intern("A" + i + " 1AA"));
+        }
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(i, dictionary.idOf("a" + i));
+        }
+        Assert.assertEquals(10000, dictionary.size());
+    }
+}
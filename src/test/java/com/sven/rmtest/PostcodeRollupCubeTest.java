@@ -0,0 +1,191 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sven.rmtest.PostcodeRollupCube.BedroomBand;
+import com.sven.rmtest.PostcodeRollupCube.Cell;
+import com.sven.rmtest.PostcodeRollupCube.Level;
+
+public class PostcodeRollupCubeTest
+{
+
+    private Property property1 = TestProperties.property(1, 100, "SW1A 1AA", PropertyType.Detached, 4);
+    private Property property2 = TestProperties.property(2, 30, "sw1a  1ab", PropertyType.Flat, 1);
+    private Property property3 = TestProperties.property(3, 60, "SW1A 2AA", PropertyType.Flat, 2);
+    private Property property4 = TestProperties.property(4, 40, "SW2 3BB", PropertyType.Flat, 1);
+    private Property property5 = TestProperties.property(5, 23, "N1", null, 0);
+    private Property property6 = TestProperties.property(6, 10, null, PropertyType.Flat, 1);
+    
+    private PostcodeRollupCube cube = PostcodeRollupCube.of(
+            Arrays.asList(property1, property2, property3, property4, property5, property6, null));
+    
+    @Test
+    public void test_keysOf() {
+        Assert.assertArrayEquals(new String[] {"SW", "SW1A", "SW1A 1", "SW1A 1AA"}, PostcodeRollupCube.keysOf(" sw1a 1aa"));
+        Assert.assertArrayEquals(new String[] {"N", "N1", null, null}, PostcodeRollupCube.keysOf("N1"));
+        Assert.assertArrayEquals(new String[] {"1", "1", "1 2", "1 2"}, PostcodeRollupCube.keysOf("1 2"));
+        Assert.assertNull(PostcodeRollupCube.keysOf(" "));
+    }
+    
+    @Test
+    public void test_empty_cube() {
+        PostcodeRollupCube empty = PostcodeRollupCube.of(null);
+        Cell cell = empty.get(Level.AREA, "SW", null, null);
+        Assert.assertEquals(0, cell.getCount());
+        Assert.assertEquals(0, cell.getMean(), 0);
+        Assert.assertTrue(Double.isNaN(cell.getMax()));
+        Assert.assertEquals(0, empty.size());
+        Assert.assertTrue(empty.getCells(Level.AREA, null, null).isEmpty());
+    }
+    
+    @Test
+    public void test_roll_up() {
+        Assert.assertEquals(5, cube.size());
+        
+        Cell area = cube.get(Level.AREA, "sw", null, null);
+        Assert.assertEquals("SW", area.getKey());
+        Assert.assertEquals(4, area.getCount());
+        Assert.assertEquals(230, area.getSum(), 0);
+        Assert.assertEquals(30, area.getMin(), 0);
+        Assert.assertEquals(100, area.getMax(), 0);
+        
+        Cell flats = cube.get(Level.DISTRICT, "SW1A", PropertyType.Flat, null);
+        Assert.assertEquals(2, flats.getCount());
+        Assert.assertEquals(45, flats.getMean(), 0);
+        
+        Cell oneBedroom = cube.get(Level.AREA, "SW", PropertyType.Flat, BedroomBand.ONE);
+        Assert.assertEquals(2, oneBedroom.getCount());
+        Assert.assertEquals(35, oneBedroom.getMean(), 0);
+        
+        Assert.assertEquals(1, cube.get(Level.UNIT, "SW1A 1AB", null, null).getCount());
+        Assert.assertEquals(1, cube.get(Level.SECTOR, "SW1A 1", null, BedroomBand.FOUR_OR_MORE).getCount());
+        
+        //no property type counts to all property types only
+        Assert.assertEquals(1, cube.get(Level.DISTRICT, "N1", null, BedroomBand.STUDIO).getCount());
+        Assert.assertEquals(0, cube.get(Level.DISTRICT, "N1", PropertyType.Flat, null).getCount());
+        
+        Cell total = cube.getTotal(PropertyType.Flat, null);
+        Assert.assertNull(total.getLevel());
+        Assert.assertEquals(3, total.getCount());
+    }
+    
+    @Test
+    public void test_drill_down() {
+        Assert.assertEquals(Arrays.asList("N", "SW"), keysOf(cube.getCells(Level.AREA, null, null)));
+        Assert.assertEquals(Arrays.asList("SW1A", "SW2"), keysOf(cube.drillDown(Level.AREA, "SW", null, null)));
+        Assert.assertEquals(Arrays.asList("SW1A 1", "SW1A 2"), keysOf(cube.drillDown(Level.DISTRICT, "SW1A", null, null)));
+        Assert.assertEquals(Arrays.asList("SW1A 1AB"), keysOf(cube.drillDown(Level.SECTOR, "SW1A 1", PropertyType.Flat, null)));
+        
+        Assert.assertTrue(cube.drillDown(Level.DISTRICT, "N1", null, null).isEmpty());
+        Assert.assertTrue(cube.drillDown(Level.UNIT, "SW1A 1AA", null, null).isEmpty());
+        Assert.assertTrue(cube.drillDown(Level.AREA, "E", null, null).isEmpty());
+    }
+    
+    @Test
+    public void test_read_empty_cells() {
+        //no terraced property, cells are only created by add
+        Assert.assertEquals(0, cube.get(Level.AREA, "SW", PropertyType.Terraced, BedroomBand.TWO).getCount());
+        Assert.assertTrue(cube.drillDown(Level.AREA, "SW", PropertyType.Terraced, null).isEmpty());
+        Assert.assertTrue(cube.getCells(Level.SECTOR, PropertyType.Terraced, null).isEmpty());
+        Assert.assertEquals(0, cube.getTotal(PropertyType.Terraced, null).getCount());
+        
+        cube.add(TestProperties.property(7, 50, "SW2 3BC", PropertyType.Terraced, 2));
+        Cell terraced = cube.get(Level.AREA, "SW", PropertyType.Terraced, BedroomBand.TWO);
+        Assert.assertEquals(1, terraced.getCount());
+        Assert.assertEquals(50, terraced.getMin(), 0);
+        Assert.assertEquals(Arrays.asList("SW2"), keysOf(cube.drillDown(Level.AREA, "SW", PropertyType.Terraced, null)));
+        Assert.assertEquals(6, cube.size());
+    }
+    
+    @Test
+    public void test_remove() {
+        Assert.assertFalse(cube.remove(TestProperties.property(1, 99, "SW1A 1AA", PropertyType.Detached, 4)));
+        Assert.assertFalse(cube.remove(property6));
+        
+        Assert.assertTrue(cube.remove(property1));
+        Cell area = cube.get(Level.AREA, "SW", null, null);
+        Assert.assertEquals(3, area.getCount());
+        Assert.assertEquals(130, area.getSum(), 0);
+        Assert.assertEquals(60, area.getMax(), 0);
+        Assert.assertEquals(0, cube.get(Level.UNIT, "SW1A 1AA", null, null).getCount());
+        Assert.assertEquals(Arrays.asList("SW1A 1AB"), keysOf(cube.drillDown(Level.SECTOR, "SW1A 1", null, null)));
+        
+        Assert.assertTrue(cube.remove(property5));
+        Assert.assertEquals(Arrays.asList("SW"), keysOf(cube.getCells(Level.AREA, null, null)));
+        Assert.assertFalse(cube.remove(property5));
+    }
+    
+    @Test
+    public void test_sum_of_prices_of_very_different_size() {
+        PostcodeRollupCube churned = PostcodeRollupCube.of(Arrays.asList(
+                TestProperties.property(1, 1, "E1 1AA", PropertyType.Flat, 1),
+                TestProperties.property(2, 1e17, "E1 1AB", PropertyType.Flat, 1)));
+        for (int i = 0; i < 100; i++) {
+            churned.add(TestProperties.property(100 + i, 3, "E1 1AD", PropertyType.Flat, 1));
+            Property removed = TestProperties.property(200 + i, 5e16 + i * 16, "E1 1AE", PropertyType.Flat, 1);
+            churned.add(removed);
+            Assert.assertTrue(churned.remove(removed));
+        }
+        
+        //3 is below the ulp of 1e17, a plain sum loses all of them
+        Cell area = churned.get(Level.AREA, "E", null, null);
+        Assert.assertEquals(102, area.getCount());
+        Assert.assertEquals(1e17 + 301, area.getSum(), 16);
+    }
+    
+    @Test
+    public void test_replace() {
+        Property changed = TestProperties.property(2, 200, "SW1A 1AB", PropertyType.Flat, 1);
+        Assert.assertTrue(cube.replace(property2, changed));
+        
+        Cell flats = cube.get(Level.SECTOR, "SW1A 1", PropertyType.Flat, BedroomBand.ONE);
+        Assert.assertEquals(1, flats.getCount());
+        Assert.assertEquals(200, flats.getMax(), 0);
+        Assert.assertEquals(40, cube.get(Level.AREA, "SW", PropertyType.Flat, null).getMin(), 0);
+        Assert.assertEquals(5, cube.size());
+    }
+    
+    @Test
+    public void test_same_as_rebuild() {
+        List<Property> properties = new PropertyGenerator(5).generate(20000);
+        PostcodeRollupCube updated = PostcodeRollupCube.of(properties);
+        
+        Random random = new Random(5);
+        List<Property> remaining = new ArrayList<>(properties);
+        for (int i = 0; i < 5000; i++) {
+            Property removed = remaining.remove(random.nextInt(remaining.size()));
+            Assert.assertTrue(updated.remove(removed));
+        }
+        PostcodeRollupCube rebuilt = PostcodeRollupCube.of(remaining);
+        
+        for (Level level : Level.values()) {
+            for (PropertyType propertyType : Arrays.asList(null, PropertyType.Flat)) {
+                List<Cell> expected = rebuilt.getCells(level, propertyType, BedroomBand.TWO);
+                List<Cell> actual = updated.getCells(level, propertyType, BedroomBand.TWO);
+                Assert.assertEquals(keysOf(expected), keysOf(actual));
+                for (int i = 0; i < expected.size(); i++) {
+                    Assert.assertEquals(expected.get(i).getCount(), actual.get(i).getCount());
+                    Assert.assertEquals(expected.get(i).getSum(), actual.get(i).getSum(), 1e-3);
+                    Assert.assertEquals(expected.get(i).getMin(), actual.get(i).getMin(), 0);
+                    Assert.assertEquals(expected.get(i).getMax(), actual.get(i).getMax(), 0);
+                }
+            }
+        }
+        
+        PropertyStore store = PropertyStore.of(remaining);
+        for (Cell district : rebuilt.getCells(Level.DISTRICT, null, null)) {
+            Assert.assertEquals(store.getMeanPriceByPostcodeOutward(district.getKey()), district.getMean(), 1e-6);
+        }
+    }
+    
+    private static List<String> keysOf(List<Cell> cells) {
+        return cells.stream().map(Cell::getKey).collect(Collectors.toList());
+    }
+}
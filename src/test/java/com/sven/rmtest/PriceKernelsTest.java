@@ -0,0 +1,68 @@
+package com.sven.rmtest;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PriceKernelsTest
+{
+
+    @Test
+    public void test_mean() {
+        double[] prices = {1, 2, 3, 4, 5, 6, 7};
+        Assert.assertEquals(4, PriceKernels.mean(prices, 0, 7), 0);
+        Assert.assertEquals(6.5, PriceKernels.mean(prices, 5, 7), 0);
+        Assert.assertEquals(0, PriceKernels.mean(prices, 3, 3), 0);
+    }
+    
+    @Test
+    public void test_meanOfFinite_same_as_mean() {
+        Random random = new Random(3);
+        //sizes around the unrolled step
+        for (int size = 0; size < 40; size++) {
+            double[] prices = new double[size];
+            byte[] types = new byte[size];
+            int[] ids = new int[size];
+            for (int i = 0; i < size; i++) {
+                prices[i] = random.nextInt(1000);
+                types[i] = (byte) (random.nextInt(3) - 1);
+                ids[i] = random.nextInt(3);
+            }
+            for (int key = -1; key < 3; key++) {
+                Assert.assertEquals(PriceKernels.mean(types, (byte) key, prices, 0, size),
+                        PriceKernels.meanOfFinite(types, (byte) key, prices, 0, size), 1e-9);
+                Assert.assertEquals(PriceKernels.mean(ids, key, prices, 1, size),
+                        PriceKernels.meanOfFinite(ids, key, prices, 1, size), 1e-9);
+            }
+        }
+    }
+    
+    @Test
+    public void test_isFinite() {
+        Assert.assertTrue(PriceKernels.isFinite(new double[] {0, -1, Double.MAX_VALUE}, 0, 3));
+        Assert.assertFalse(PriceKernels.isFinite(new double[] {0, Double.NaN}, 0, 2));
+        Assert.assertFalse(PriceKernels.isFinite(new double[] {Double.NEGATIVE_INFINITY}, 0, 1));
+        Assert.assertTrue(PriceKernels.isFinite(new double[] {Double.NaN, 1}, 1, 2));
+    }
+    
+    @Test
+    public void test_rowsNotBelow() {
+        double[] prices = {5, 1, Double.NaN, 3, 4, 2};
+        Assert.assertArrayEquals(new int[] {0, 2, 3, 4}, PriceKernels.rowsNotBelow(prices, 0, 6, 3));
+        Assert.assertArrayEquals(new int[] {2}, PriceKernels.rowsNotBelow(prices, 1, 4, 4));
+    }
+    
+    @Test
+    public void test_guessThreshold() {
+        double[] prices = new double[100000];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = (i * 7919) % prices.length;
+        }
+        double threshold = PriceKernels.guessThreshold(prices, 0, prices.length, 10000);
+        int count = PriceKernels.rowsNotBelow(prices, 0, prices.length, threshold).length;
+        Assert.assertTrue(count >= 10000 && count < 13000);
+        
+        Assert.assertTrue(Double.isNaN(PriceKernels.guessThreshold(prices, 0, prices.length, 95000)));
+    }
+}
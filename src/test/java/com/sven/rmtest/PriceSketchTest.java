@@ -0,0 +1,155 @@
+package com.sven.rmtest;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PriceSketchTest
+{
+
+    private static final double RANK_ERROR = 0.03;
+
+    @Test
+    public void test_empty_sketch() {
+        PriceSketch sketch = new PriceSketch();
+        
+        Assert.assertEquals(0, sketch.getCount());
+        Assert.assertEquals(0, sketch.getMax(), 0);
+        Assert.assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+        Assert.assertTrue(Double.isNaN(sketch.getTopNPercentThreshold(10)));
+    }
+    
+    @Test
+    public void test_small_sketch_is_exact() {
+        PriceSketch sketch = new PriceSketch();
+        for (int price = 1; price <= 100; price++) {
+            sketch.accept(price);
+        }
+        
+        Assert.assertEquals(100, sketch.getCount());
+        Assert.assertEquals(1, sketch.getMin(), 0);
+        Assert.assertEquals(100, sketch.getMax(), 0);
+        Assert.assertEquals(50, sketch.getQuantile(0.5), 0);
+        Assert.assertEquals(91, sketch.getTopNPercentThreshold(10), 0);
+        Assert.assertEquals(1, sketch.getTopNPercentThreshold(100), 0);
+        Assert.assertTrue(Double.isNaN(sketch.getTopNPercentThreshold(0)));
+        Assert.assertEquals(0.25, sketch.getRank(25), 0);
+    }
+    
+    @Test
+    public void test_large_sketch_is_bounded_and_accurate() {
+        List<Property> properties = new PropertyGenerator(42).generate(200000);
+        double[] prices = properties.stream().mapToDouble(Property::getPrice).sorted().toArray();
+        PriceSketch sketch = new PriceSketch();
+        properties.forEach(s -> sketch.accept(s.getPrice()));
+        
+        Assert.assertEquals(prices.length, sketch.getCount());
+        Assert.assertTrue(sketch.getRetained() < 4 * PriceSketch.DEFAULT_K);
+        for (double fraction : new double[] {0.1, 0.5, 0.9, 0.99}) {
+            assertRank(prices, fraction, sketch.getQuantile(fraction));
+        }
+        assertRank(prices, 0.9, sketch.getTopNPercentThreshold(10));
+    }
+    
+    @Test
+    public void test_merge() {
+        List<Property> properties = new PropertyGenerator(7).generate(100000);
+        double[] prices = properties.stream().mapToDouble(Property::getPrice).sorted().toArray();
+        PriceSketch left = new PriceSketch();
+        PriceSketch right = new PriceSketch();
+        for (int i = 0; i < properties.size(); i++) {
+            (i % 3 == 0 ? left : right).accept(properties.get(i).getPrice());
+        }
+        
+        PriceSketch merged = left.merge(right);
+        Assert.assertEquals(prices.length, merged.getCount());
+        Assert.assertEquals(prices[0], merged.getMin(), 0);
+        Assert.assertEquals(prices[prices.length - 1], merged.getMax(), 0);
+        assertRank(prices, 0.5, merged.getQuantile(0.5));
+        assertRank(prices, 0.9, merged.getTopNPercentThreshold(10));
+    }
+    
+    @Test(expected = RuntimeException.class)
+    public void test_merge_with_different_k() {
+        new PriceSketch(100).merge(new PriceSketch(200));
+    }
+    
+    @Test
+    public void test_serialization() {
+        PriceSketch sketch = new PriceSketch(50);
+        new PropertyGenerator(1).generate(10000).forEach(s -> sketch.accept(s.getPrice()));
+        
+        PriceSketch copy = PriceSketch.fromByteArray(sketch.toByteArray());
+        Assert.assertEquals(50, copy.getK());
+        Assert.assertEquals(sketch.getCount(), copy.getCount());
+        Assert.assertEquals(sketch.getRetained(), copy.getRetained());
+        Assert.assertEquals(sketch.getMin(), copy.getMin(), 0);
+        Assert.assertEquals(sketch.getQuantile(0.3), copy.getQuantile(0.3), 0);
+        Assert.assertEquals(sketch.getTopNPercentThreshold(5), copy.getTopNPercentThreshold(5), 0);
+    }
+    
+    @Test(expected = RuntimeException.class)
+    public void test_fromByteArray_with_truncated_bytes() {
+        byte[] bytes = new PriceSketch().toByteArray();
+        PriceSketch.fromByteArray(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+    
+    @Test
+    public void test_property_sketches() {
+        PropertyPriceSketches sketches = new PropertyPriceSketches();
+        PropertyUtils.loadDataFromClassPathFile("/property-data.json", sketches);
+        List<Property> properties = PropertyUtils.loadDataFromClassPathFile("/property-data.json");
+        
+        Assert.assertEquals(properties.size(), sketches.getSketch().getCount());
+        Assert.assertEquals(PropertyUtils.getTopNPercentMostExpensive(10, properties).get(2).getPrice(),
+                sketches.getSketch().getTopNPercentThreshold(10), 0);
+        long flats = properties.stream().filter(PropertyUtils.isPropertyType(PropertyType.Flat)).count();
+        Assert.assertEquals(flats, sketches.getSketch(PropertyType.Flat).getCount());
+        long w1f = properties.stream().filter(PropertyUtils.isPostcodeOutward("W1F")).count();
+        Assert.assertEquals(w1f, sketches.getSketch("w1f").getCount());
+        Assert.assertEquals(0, sketches.getSketch("ZZ9").getCount());
+        
+        PropertyPriceSketches other = new PropertyPriceSketches();
+        properties.forEach(other);
+        sketches.merge(other);
+        Assert.assertEquals(2 * w1f, sketches.getSketch("W1F").getCount());
+        Assert.assertEquals(2 * properties.size(), sketches.getSketch().getCount());
+    }
+    
+    @Test
+    public void test_merge_property_sketches_with_blank_outward() {
+        //outward of " W1F 7AA" is blank, it counts to all properties only
+        PropertyPriceSketches sketches = new PropertyPriceSketches();
+        sketches.accept(new Property(1, 100, "W1F 7AB", PropertyType.Flat));
+        PropertyPriceSketches other = new PropertyPriceSketches();
+        other.accept(new Property(2, 200, " W1F 7AA", PropertyType.Flat));
+        other.accept(new Property(3, 300, "SW1 1AA", PropertyType.Flat));
+        other.accept(new Property(4, 400, "w1f 7AC", PropertyType.Flat));
+        
+        sketches.merge(other);
+        Assert.assertEquals(4, sketches.getSketch().getCount());
+        Assert.assertEquals(2, sketches.getSketch("W1F").getCount());
+        Assert.assertEquals(400, sketches.getSketch("W1F").getMax(), 0);
+        Assert.assertEquals(1, sketches.getSketch("SW1").getCount());
+        Assert.assertEquals(0, sketches.getSketch("").getCount());
+    }
+    
+    private static void assertRank(double[] sortedPrices, double expectedFraction, double price) {
+        int lower = Arrays.binarySearch(sortedPrices, price);
+        Assert.assertTrue(lower >= 0);
+        int upper = lower;
+        while (lower > 0 && sortedPrices[lower - 1] == price) {
+            lower--;
+        }
+        while (upper < sortedPrices.length - 1 && sortedPrices[upper + 1] == price) {
+            upper++;
+        }
+        //any rank of equal prices is fine
+        double from = (double) lower / sortedPrices.length - RANK_ERROR;
+        double to = (double) (upper + 1) / sortedPrices.length + RANK_ERROR;
+        Assert.assertTrue(String.format("%f not in [%f, %f]", expectedFraction, from, to),
+                expectedFraction >= from && expectedFraction <= to);
+    }
+}
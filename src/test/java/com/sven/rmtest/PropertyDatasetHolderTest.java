@@ -0,0 +1,120 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyDatasetHolderTest
+{
+
+    private Property property1 = new Property(1, 100, "ZONE1 ST1", PropertyType.Detached);
+    private Property property2 = new Property(2, 30, "zone1 ST2", PropertyType.Detached);
+    private Property property5 = new Property(5, 23, "ZONE2 ST5", PropertyType.Flat);
+    
+    @Test
+    public void test_nothing_published() {
+        PropertyDatasetHolder datasets = new PropertyDatasetHolder();
+        
+        Assert.assertEquals(0, datasets.get().getEpoch());
+        Assert.assertEquals(0, datasets.get().size());
+        Assert.assertEquals(0, datasets.get().getStore().size());
+    }
+    
+    @Test
+    public void test_publish_swaps_dataset() {
+        PropertyDatasetHolder datasets = new PropertyDatasetHolder();
+        List<Long> published = new ArrayList<>();
+        datasets.addListener(s -> published.add(s.getEpoch()));
+        
+        List<Property> properties = new ArrayList<>(Arrays.asList(property1, null, property2));
+        PropertyDataset first = datasets.publish(properties);
+        properties.add(property5);
+        
+        Assert.assertSame(first, datasets.get());
+        Assert.assertEquals(1, first.getEpoch());
+        Assert.assertEquals(Arrays.asList(property1, property2), first.getProperties());
+        Assert.assertEquals(65, first.getStore().getMeanPriceByPostcodeOutward("ZONE1"), 0);
+        
+        PropertyDataset second = datasets.publish(properties);
+        Assert.assertEquals(2, second.getEpoch());
+        Assert.assertEquals(3, datasets.get().getStore().size());
+        
+        //a reader holding first snapshot still sees it unchanged
+        Assert.assertEquals(2, first.size());
+        Assert.assertEquals(Arrays.asList(1L, 2L), published);
+    }
+    
+    @Test
+    public void test_reload_in_background() throws Exception {
+        PropertyDatasetHolder datasets = new PropertyDatasetHolder();
+        PropertyDataset first = datasets.publish(Arrays.asList(property1));
+        
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<PropertyDataset> reload = datasets.reload(() -> {
+            loading.countDown();
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return Arrays.asList(property1, property2, property5);
+        });
+        
+        //current dataset is served while the next one is loading
+        Assert.assertTrue(loading.await(5, TimeUnit.SECONDS));
+        Assert.assertSame(first, datasets.get());
+        
+        release.countDown();
+        PropertyDataset second = reload.get(5, TimeUnit.SECONDS);
+        Assert.assertSame(second, datasets.get());
+        Assert.assertEquals(2, second.getEpoch());
+        Assert.assertEquals(3, second.size());
+    }
+    
+    @Test
+    public void test_failed_reload_keeps_dataset() throws Exception {
+        PropertyDatasetHolder datasets = new PropertyDatasetHolder();
+        PropertyDataset first = datasets.publish(Arrays.asList(property1));
+        
+        CompletableFuture<PropertyDataset> reload = datasets.reload(() -> {
+            throw new RuntimeException("broken feed");
+        });
+        try
+        {
+            reload.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        }
+        catch (ExecutionException e)
+        {
+            Assert.assertEquals("broken feed", e.getCause().getMessage());
+        }
+        Assert.assertSame(first, datasets.get());
+        
+        //next reload still runs
+        Assert.assertEquals(2, datasets.reload(Collections::emptyList).get(5, TimeUnit.SECONDS).getEpoch());
+    }
+    
+    @Test
+    public void test_cached_queries_follow_reload() throws Exception {
+        CachedPropertyQueries queries = new CachedPropertyQueries();
+        queries.load(Arrays.asList(property1, property2));
+        Assert.assertEquals(65, queries.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+        
+        queries.getDatasets().reload(() -> Arrays.asList(property2)).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(2, queries.getEpoch());
+        Assert.assertEquals(0, queries.getCachedSize());
+        Assert.assertEquals(30, queries.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+    }
+}
@@ -0,0 +1,76 @@
+package com.sven.rmtest;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyGeneratorTest
+{
+
+    @Test
+    public void test_generate_with_same_seed() {
+        List<Property> properties1 = new PropertyGenerator(1).generate(100);
+        List<Property> properties2 = new PropertyGenerator(1).generate(100);
+        
+        Assert.assertEquals(100, properties1.size());
+        for (int i = 0; i < properties1.size(); i++) {
+            Assert.assertEquals(i + 1, properties1.get(i).getPropertyReference());
+            Assert.assertEquals(properties1.get(i).getPrice(), properties2.get(i).getPrice(), 0);
+            Assert.assertEquals(properties1.get(i).getPostcode(), properties2.get(i).getPostcode());
+        }
+    }
+    
+    @Test
+    public void test_generate_with_popular_outward_postcode() {
+        PropertyGenerator generator = new PropertyGenerator(2);
+        List<Property> properties = generator.generate(10000);
+        
+        long popular = properties.stream()
+                .filter(PropertyUtils.isPostcodeOutward(generator.getMostPopularOutwardPostcode()))
+                .count();
+        Assert.assertTrue(popular > 500);
+        Assert.assertTrue(properties.stream().allMatch(s -> s.getPrice() > 0 && s.getRegion() != null));
+    }
+    
+    @Test
+    public void test_generate_with_nulls() {
+        List<Property> properties = new PropertyGenerator(4, 0.1d).generate(10000);
+        
+        long nullPostcodes = properties.stream().filter(s -> s.getPostcode() == null).count();
+        Assert.assertTrue(nullPostcodes > 800 && nullPostcodes < 1200);
+        Assert.assertTrue(properties.stream().anyMatch(s -> s.getPropertyType() == null));
+        Assert.assertTrue(properties.stream().anyMatch(s -> s.getRegion() == null));
+        for (PropertyType propertyType : PropertyType.values()) {
+            Assert.assertTrue(properties.stream().anyMatch(s -> s.getPropertyType() == propertyType));
+        }
+        
+        //same seed without nulls is unchanged by null rate support, values of generator before it
+        List<Property> withoutNulls = new PropertyGenerator(4, 0d).generate(10);
+        Assert.assertEquals(674000, withoutNulls.get(0).getPrice(), 0);
+        Assert.assertEquals("E23 5ZP", withoutNulls.get(0).getPostcode());
+        Assert.assertEquals(105750, withoutNulls.get(9).getPrice(), 0);
+        Assert.assertEquals("NE12 6FU", withoutNulls.get(9).getPostcode());
+        Assert.assertEquals(PropertyType.Terraced, withoutNulls.get(9).getPropertyType());
+    }
+    
+    @Test
+    public void test_writeJson() {
+        StringWriter out = new StringWriter();
+        new PropertyGenerator(3).writeJson(out, 50);
+        List<Property> expected = new PropertyGenerator(3).generate(50);
+        
+        try (Stream<Property> stream = PropertyUtils.streamData(
+                new ByteArrayInputStream(out.toString().getBytes(StandardCharsets.UTF_8)), "generated")) {
+            List<Property> actual = stream.collect(Collectors.toList());
+            Assert.assertEquals(50, actual.size());
+            Assert.assertEquals(expected.get(49).getPrice(), actual.get(49).getPrice(), 0);
+            Assert.assertEquals(expected.get(49).getAddress(), actual.get(49).getAddress());
+        }
+    }
+}
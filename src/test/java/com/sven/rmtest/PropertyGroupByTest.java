@@ -0,0 +1,124 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyGroupByTest
+{
+
+    private Property property1 = TestProperties.property(1, 100, "ZONE1 ST1", PropertyType.Detached, "London");
+    private Property property2 = TestProperties.property(2, 30, "zone1 ST2", PropertyType.Detached, "London");
+    private Property property5 = TestProperties.property(5, 23, "ZONE2 ST5", PropertyType.Flat, "Essex");
+    private Property property6 = TestProperties.property(6, 100, "ZONE2 ST6", PropertyType.Flat, "London");
+    private Property property7 = TestProperties.property(7, 50, "ZONE1 ST7", PropertyType.Flat, null);
+    private Property property8 = TestProperties.property(8, 10, null, null, "London");
+    
+    private PropertyStore store = PropertyStore.of(
+            Arrays.asList(property1, property2, property5, property6, property7, property8));
+    
+    @Test
+    public void test_empty_store() {
+        Assert.assertEquals(0, PropertyGroupBy.byOutwardPostcode(PropertyStore.of(null)).size());
+        Assert.assertEquals(0, PropertyGroupBy.byRegionAndPropertyType(PropertyStore.of(null)).size());
+    }
+    
+    @Test
+    public void test_byOutwardPostcode() {
+        List<PropertyGroupBy.Summary> summaries = PropertyGroupBy.byOutwardPostcode(store).getSummaries();
+        
+        Assert.assertEquals(2, summaries.size());
+        PropertyGroupBy.Summary zone1 = summaries.get(0);
+        Assert.assertEquals("ZONE1", zone1.getOutwardPostcode());
+        Assert.assertNull(zone1.getRegion());
+        Assert.assertEquals(3, zone1.getCount());
+        Assert.assertEquals(180, zone1.getSum(), 0);
+        Assert.assertEquals(60, zone1.getMean(), 0);
+        Assert.assertEquals(50, zone1.getMedian(), 0);
+        Assert.assertEquals(30, zone1.getMin(), 0);
+        Assert.assertEquals(100, zone1.getMax(), 0);
+        
+        PropertyGroupBy.Summary zone2 = summaries.get(1);
+        Assert.assertEquals("ZONE2", zone2.getOutwardPostcode());
+        Assert.assertEquals(2, zone2.getCount());
+        Assert.assertEquals(61.5, zone2.getMedian(), 0);
+    }
+    
+    @Test
+    public void test_byRegionAndPropertyType() {
+        List<PropertyGroupBy.Summary> summaries = PropertyGroupBy.byRegionAndPropertyType(store).getSummaries();
+        
+        Assert.assertEquals(Arrays.asList("London/Detached", "Essex/Flat", "London/Flat", "null/Flat", "London/null"),
+                summaries.stream().map(s -> s.getRegion() + "/" + s.getPropertyType()).collect(Collectors.toList()));
+        Assert.assertEquals(65, summaries.get(0).getMedian(), 0);
+        Assert.assertEquals(2, summaries.get(0).getCount());
+        Assert.assertNull(summaries.get(0).getOutwardPostcode());
+    }
+    
+    @Test
+    public void test_sortedBy() {
+        PropertyGroupBy.Table table = PropertyGroupBy.byRegionAndPropertyType(store);
+        
+        List<PropertyGroupBy.Summary> sorted = table.sortedBy(PropertyGroupBy.Statistic.MAX, true);
+        //same max keeps order of groups
+        Assert.assertEquals(Arrays.asList(100d, 100d, 50d, 23d, 10d),
+                sorted.stream().map(PropertyGroupBy.Summary::getMax).collect(Collectors.toList()));
+        Assert.assertEquals(PropertyType.Detached, sorted.get(0).getPropertyType());
+        
+        sorted = table.sortedBy(PropertyGroupBy.Statistic.COUNT, false);
+        Assert.assertEquals(1, sorted.get(0).getCount());
+        Assert.assertEquals(2, sorted.get(sorted.size() - 1).getCount());
+        Assert.assertEquals(5, table.getSummaries().size());
+    }
+    
+    @Test
+    public void test_same_as_queries() {
+        List<Property> properties = new PropertyGenerator(3).generate(20000);
+        PropertyStore generated = PropertyStore.of(properties);
+        
+        for (PropertyGroupBy.Summary summary : PropertyGroupBy.byOutwardPostcode(generated).getSummaries()) {
+            Assert.assertEquals(generated.getMeanPriceByPostcodeOutward(summary.getOutwardPostcode()), summary.getMean(), 1e-6);
+        }
+        long count = PropertyGroupBy.byRegionAndPropertyType(generated).getSummaries().stream()
+                .mapToLong(PropertyGroupBy.Summary::getCount).sum();
+        Assert.assertEquals(properties.size(), count);
+    }
+    
+    @Test
+    public void test_parallel_same_as_sequential() {
+        //many small groups, more than chunks and resizes of the hash map
+        List<Property> properties = new ArrayList<>();
+        for (int i = 0; i < 200000; i++) {
+            properties.add(TestProperties.property(i, (i * 7919) % 100003, "Z" + (i % 50000) + " 1AA",
+                    PropertyType.values()[(i / 70000) % PropertyType.values().length], "R" + (i % 70000)));
+        }
+        PropertyStore large = PropertyStore.of(properties);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            assertSame(PropertyGroupBy.byOutwardPostcode(large), PropertyGroupBy.byOutwardPostcode(large, pool));
+            PropertyGroupBy.Table table = PropertyGroupBy.byRegionAndPropertyType(large, pool);
+            Assert.assertEquals(200000, table.size());
+            assertSame(PropertyGroupBy.byRegionAndPropertyType(large), table);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+    
+    private static void assertSame(PropertyGroupBy.Table expected, PropertyGroupBy.Table actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            PropertyGroupBy.Summary e = expected.getSummaries().get(i);
+            PropertyGroupBy.Summary a = actual.getSummaries().get(i);
+            Assert.assertEquals(e.toString(), a.toString());
+            Assert.assertEquals(e.getSum(), a.getSum(), 0);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyIndexTest
+{
+
+    private Property property1 = TestProperties.property(1, 100, "ZONE1 ST1", PropertyType.Detached, 3, "London");
+    private Property property2 = TestProperties.property(2, 30, "zone1 ST2", PropertyType.Detached, 1, "London");
+    private Property property5 = TestProperties.property(5, 23, "ZONE2 ST5", PropertyType.Flat, 2, "Essex");
+    private Property property6 = TestProperties.property(6, 100, "ZONE2 ST6", PropertyType.Flat, 4, "Essex");
+    private Property property7 = TestProperties.property(7, 100, "ZONE3 ST7", PropertyType.Flat, 3, "London");
+    
+    private PropertyIndex index = PropertyIndex.of(
+            PropertyStore.of(Arrays.asList(property1, property2, property5, property6, property7)));
+    
+    @Test
+    public void test_empty_store() {
+        PropertyIndex.Page page = PropertyIndex.of(PropertyStore.of(null)).search(new PropertySearch.Builder().build());
+        
+        Assert.assertTrue(page.getProperties().isEmpty());
+        Assert.assertFalse(page.hasNext());
+    }
+    
+    @Test
+    public void test_price_range_and_order() {
+        PropertySearch.Builder builder = new PropertySearch.Builder().price(30, 100);
+        
+        Assert.assertEquals(Arrays.asList(2L, 1L, 6L, 7L), referencesOf(index.search(builder.build())));
+        
+        //same price keeps order of rows
+        builder.order(PropertySearch.Order.PRICE_DESCENDING);
+        Assert.assertEquals(Arrays.asList(1L, 6L, 7L, 2L), referencesOf(index.search(builder.build())));
+        Assert.assertEquals(4, index.count(builder.build()));
+        
+        Assert.assertEquals(0, index.count(new PropertySearch.Builder().price(101, 200).build()));
+        Assert.assertEquals(0, index.count(new PropertySearch.Builder().price(100, 30).build()));
+    }
+    
+    @Test
+    public void test_combined_criteria() {
+        PropertySearch search = new PropertySearch.Builder()
+                .minBedrooms(3)
+                .region("London")
+                .build();
+        Assert.assertEquals(Arrays.asList(1L, 7L), referencesOf(index.search(search)));
+        
+        search = new PropertySearch.Builder()
+                .postcodeOutward("zone2")
+                .propertyType(PropertyType.Flat)
+                .bedrooms(2, 2)
+                .build();
+        Assert.assertEquals(Arrays.asList(5L), referencesOf(index.search(search)));
+        
+        Assert.assertEquals(0, index.count(new PropertySearch.Builder().region("Kent").build()));
+        Assert.assertEquals(0, index.count(new PropertySearch.Builder().postcodeOutward("ZONE9").build()));
+        Assert.assertEquals(0, index.count(new PropertySearch.Builder().propertyType(PropertyType.Mansion).build()));
+    }
+    
+    @Test
+    public void test_pages() {
+        PropertySearch.Builder builder = new PropertySearch.Builder().order(PropertySearch.Order.PRICE_DESCENDING);
+        
+        PropertyIndex.Page page = index.search(builder.page(0, 2).build());
+        Assert.assertEquals(Arrays.asList(1L, 6L), referencesOf(page));
+        Assert.assertTrue(page.hasNext());
+        
+        page = index.search(builder.page(2, 2).build());
+        Assert.assertEquals(Arrays.asList(5L), referencesOf(page));
+        Assert.assertFalse(page.hasNext());
+        
+        page = index.search(builder.page(1, 4).build());
+        Assert.assertEquals(Arrays.asList(5L), referencesOf(page));
+        Assert.assertFalse(page.hasNext());
+        
+        Assert.assertTrue(index.search(builder.page(3, 2).build()).getProperties().isEmpty());
+    }
+    
+    @Test
+    public void test_same_as_full_scan() {
+        List<Property> properties = new PropertyGenerator(7).generate(5000);
+        PropertyIndex generatedIndex = PropertyIndex.of(PropertyStore.of(properties));
+        String postcodeOutward = properties.get(0).getPostcode().split(" ")[0];
+        Random random = new Random(11);
+        
+        for (int i = 0; i < 200; i++) {
+            double minPrice = random.nextInt(1000000);
+            PropertySearch.Builder builder = new PropertySearch.Builder()
+                    .price(minPrice, minPrice + random.nextInt(2000000))
+                    .order(random.nextBoolean() ? PropertySearch.Order.PRICE_ASCENDING : PropertySearch.Order.PRICE_DESCENDING)
+                    .page(random.nextInt(3), 1 + random.nextInt(30));
+            if (random.nextBoolean()) {
+                builder.minBedrooms(random.nextInt(5));
+            }
+            if (random.nextBoolean()) {
+                builder.propertyType(PropertyType.values()[random.nextInt(PropertyType.values().length)]);
+            }
+            if (random.nextInt(4) == 0) {
+                //selective search, bitmap rows are sorted
+                builder.postcodeOutward(postcodeOutward.toLowerCase(Locale.ROOT));
+            }
+            PropertySearch search = builder.build();
+            
+            List<Property> expected = scan(properties, search);
+            int from = (int) Math.min(expected.size(), search.getOffset());
+            int to = Math.min(expected.size(), from + search.getPageSize());
+            PropertyIndex.Page page = generatedIndex.search(search);
+            Assert.assertEquals(search.toString(), 
+                    expected.subList(from, to).stream().map(Property::getPropertyReference).collect(Collectors.toList()),
+                    referencesOf(page));
+            Assert.assertEquals(to < expected.size(), page.hasNext());
+            Assert.assertEquals(expected.size(), generatedIndex.count(search));
+        }
+    }
+    
+    private static List<Property> scan(List<Property> properties, PropertySearch search) {
+        Comparator<Property> comparator = Comparator.comparingDouble(Property::getPrice);
+        if (search.getOrder() == PropertySearch.Order.PRICE_DESCENDING) {
+            comparator = comparator.reversed();
+        }
+        List<Property> matches = new ArrayList<>();
+        for (Property property : properties) {
+            if (property.getPrice() >= search.getMinPrice() && property.getPrice() <= search.getMaxPrice()
+                    && property.getBedrooms() >= search.getMinBedrooms()
+                    && (search.getPropertyType() == null || search.getPropertyType() == property.getPropertyType())
+                    && (search.getPostcodeOutward() == null 
+                        || PropertyUtils.isPostcodeOutward(search.getPostcodeOutward()).test(property))) {
+                matches.add(property);
+            }
+        }
+        //stable sort, same price keeps order
+        matches.sort(comparator);
+        return matches;
+    }
+    
+    private static List<Long> referencesOf(PropertyIndex.Page page) {
+        return page.getProperties().stream().map(Property::getPropertyReference).collect(Collectors.toList());
+    }
+}
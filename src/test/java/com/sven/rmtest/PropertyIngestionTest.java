@@ -0,0 +1,100 @@
+package com.sven.rmtest;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PropertyIngestionTest
+{
+
+    private Path directory;
+    
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("property-shards");
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+    
+    @Test
+    public void test_ingestDirectory() throws IOException {
+        PropertyGenerator generator = new PropertyGenerator(3);
+        for (int shard = 0; shard < 10; shard++) {
+            try (Writer out = Files.newBufferedWriter(directory.resolve("shard-" + shard + ".json"), 
+                    StandardCharsets.UTF_8)) {
+                generator.writeJson(out, 1000);
+            }
+        }
+        Files.write(directory.resolve("broken.json"), "[{\"price\": ".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("readme.txt"), "not a shard".getBytes(StandardCharsets.UTF_8));
+        
+        PropertyIngestion.Result result = new PropertyIngestion(3).ingestDirectory(directory);
+        
+        Assert.assertEquals(11, result.getShards().size());
+        Assert.assertTrue(result.hasFailures());
+        Assert.assertEquals(1, result.getFailures().size());
+        String broken = directory.resolve("broken.json").toString();
+        Assert.assertNotNull(result.getFailures().get(broken).getCause());
+        Assert.assertEquals(10000, result.getCount());
+        
+        //merged in order of file names
+        List<Property> properties = result.getProperties();
+        Assert.assertEquals(10000, properties.size());
+        Assert.assertEquals(1, properties.get(0).getPropertyReference());
+        Assert.assertEquals(1000, properties.get(999).getPropertyReference());
+        
+        List<Property> sequential = new PropertyIngestion(1).ingestDirectory(directory).getProperties();
+        for (int i = 0; i < properties.size(); i++) {
+            Assert.assertEquals(sequential.get(i).getPrice(), properties.get(i).getPrice(), 0);
+        }
+        
+        //straight into a store, shards are dropped once merged
+        PropertyStore.Builder builder = new PropertyStore.Builder();
+        PropertyIngestion.Result stored = new PropertyIngestion(2).ingestDirectory(directory, "*.json", builder::add);
+        PropertyStore store = builder.build();
+        Assert.assertEquals(10000, stored.getCount());
+        Assert.assertTrue(stored.getProperties().isEmpty());
+        Assert.assertEquals(10000, store.size());
+        Assert.assertEquals(properties.get(999).getPrice(), store.getPrice(999), 0);
+    }
+    
+    @Test
+    public void test_ingestDirectory_with_glob() throws IOException {
+        Files.write(directory.resolve("a.json"), "[]".getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("b.ndjson"), "{\"propertyReference\": 1, \"price\": 10}".getBytes(StandardCharsets.UTF_8));
+        
+        PropertyIngestion.Result result = new PropertyIngestion(2).ingestDirectory(directory, "*.ndjson");
+        Assert.assertEquals(1, result.getShards().size());
+        Assert.assertEquals(1, result.getCount());
+    }
+    
+    @Test(expected = RuntimeException.class)
+    public void test_ingestDirectory_with_missing_directory() {
+        new PropertyIngestion(2).ingestDirectory(directory.resolve("missing"));
+    }
+    
+    @Test
+    public void test_ingestClassPathFiles() {
+        PropertyIngestion.Result result = new PropertyIngestion(2)
+                .ingestClassPathFiles(Arrays.asList("/property-data.json", "/missing.json", "/property-data.json"));
+        
+        int size = PropertyUtils.loadDataFromClassPathFile("/property-data.json").size();
+        Assert.assertEquals(2 * size, result.getCount());
+        Assert.assertEquals(Arrays.asList("/missing.json"), Arrays.asList(result.getFailures().keySet().toArray()));
+        Assert.assertTrue(result.getShards().get(1).isFailed());
+        Assert.assertEquals(0, result.getShards().get(1).getCount());
+    }
+}
@@ -0,0 +1,53 @@
+package com.sven.rmtest;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sven.rmtest.PropertyLoadDriver.Query;
+
+public class PropertyLoadDriverTest
+{
+
+    private final PropertyStore store = PropertyStore.of(new PropertyGenerator(8, 0.05d).generate(5000));
+
+    @Test
+    public void test_run() {
+        PropertyLoadDriver.Report report = new PropertyLoadDriver.Builder()
+                .threads(2)
+                .warmUp(50)
+                .duration(300)
+                .build()
+                .run(store);
+        
+        Assert.assertEquals(2, report.getThreads());
+        for (Query query : Query.values()) {
+            LatencyHistogram histogram = report.getHistogram(query);
+            Assert.assertTrue(histogram.getCount() > 0);
+            Assert.assertTrue(histogram.getValueAtPercentile(50) <= histogram.getValueAtPercentile(99.9));
+        }
+        Assert.assertEquals(report.getTotal().getCount() * 1e9d / report.getElapsedNanos(), report.getThroughput(), 1e-6);
+        Assert.assertTrue(report.toString().contains("p999="));
+    }
+    
+    @Test
+    public void test_run_with_weights() {
+        PropertyLoadDriver.Report report = new PropertyLoadDriver.Builder()
+                .warmUp(0)
+                .duration(100)
+                .weight(Query.TOP_N, 0)
+                .build()
+                .run(store);
+        
+        Assert.assertEquals(0, report.getHistogram(Query.TOP_N).getCount());
+        Assert.assertTrue(report.getHistogram(Query.MEAN).getCount() > 0);
+    }
+    
+    @Test(expected = RuntimeException.class)
+    public void test_build_without_weights() {
+        PropertyLoadDriver.Builder builder = new PropertyLoadDriver.Builder();
+        for (Query query : Query.values()) {
+            builder.weight(query, 0);
+        }
+        builder.build();
+    }
+}
@@ -0,0 +1,135 @@
+package com.sven.rmtest;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sven.rmtest.PropertyMetricsMXBean.QueryStatistics;
+
+public class PropertyMetricsTest
+{
+
+    private RecordingPropertyMetrics metrics = new RecordingPropertyMetrics();
+    
+    @Before
+    public void setUp() {
+        PropertyUtils.setMetrics(metrics);
+    }
+    
+    @After
+    public void tearDown() {
+        PropertyUtils.setMetrics(null);
+    }
+    
+    @Test
+    public void test_noop_by_default() {
+        PropertyUtils.setMetrics(null);
+        
+        Assert.assertSame(PropertyMetrics.NOOP, PropertyUtils.getMetrics());
+        Assert.assertFalse(PropertyUtils.getMetrics().isEnabled());
+    }
+    
+    @Test
+    public void test_load_is_recorded() {
+        List<Property> properties = PropertyUtils.loadDataFromClassPathFile("/property-data.json");
+        
+        Assert.assertEquals(1, metrics.getLoadCount());
+        Assert.assertEquals(properties.size(), metrics.getLoadedRecords());
+        Assert.assertEquals(0, metrics.getSkippedRecords());
+        Assert.assertTrue(metrics.getLoadedBytes() > 0);
+        Assert.assertTrue(metrics.getLastLoadMillis() > 0);
+        Assert.assertTrue(metrics.getLastLoadRecordsPerSecond() > 0);
+    }
+    
+    @Test
+    public void test_queries_are_recorded() {
+        List<Property> properties = Arrays.asList(
+                new Property(1, 100, "ZONE1 ST1", PropertyType.Detached),
+                new Property(2, 30, "ZONE1 ST2", PropertyType.Flat),
+                new Property(3, 30, "ZONE2 ST3", PropertyType.Flat));
+        PropertyUtils.getMeanPriceByPostcodeOutward("ZONE1", properties);
+        PropertyUtils.getMeanPriceByPostcodeOutward("ZONE2", properties);
+        PropertyUtils.getMeanPriceByPropertyType(PropertyType.Flat, properties);
+        PropertyUtils.getTopNPercentMostExpensive(50, properties);
+        
+        QueryStatistics postcodeOutward = metrics.getQuery(PropertyMetrics.MEAN_PRICE_BY_POSTCODE_OUTWARD);
+        Assert.assertEquals(2, postcodeOutward.getCount());
+        Assert.assertTrue(postcodeOutward.getMaxMicros() >= postcodeOutward.getP50Micros());
+        Assert.assertEquals(1, metrics.getQuery(PropertyMetrics.MEAN_PRICE_BY_PROPERTY_TYPE).getCount());
+        
+        //ties are included
+        Assert.assertEquals(3, metrics.getQuery(PropertyMetrics.TOP_N_PERCENT_MOST_EXPENSIVE).getMaxResults());
+        Assert.assertEquals(3, metrics.getQueries().size());
+        
+        metrics.reset();
+        Assert.assertTrue(metrics.getQueries().isEmpty());
+    }
+    
+    @Test
+    public void test_cache_hit_rate() {
+        CachedPropertyQueries queries = new CachedPropertyQueries();
+        queries.load(Arrays.asList(new Property(1, 100, "ZONE1 ST1", PropertyType.Detached)));
+        for (int i = 0; i < 4; i++) {
+            queries.getMeanPriceByPostcodeOutward("ZONE1");
+        }
+        
+        Assert.assertEquals(3, metrics.getCacheHits());
+        Assert.assertEquals(1, metrics.getCacheMisses());
+        Assert.assertEquals(0.75, metrics.getCacheHitRate(), 0);
+        Assert.assertEquals(1, metrics.getQuery(PropertyMetrics.MEAN_PRICE_BY_POSTCODE_OUTWARD).getCount());
+    }
+    
+    @Test
+    public void test_registerMBean() throws Exception {
+        metrics.registerMBean();
+        PropertyUtils.getMeanPriceByPropertyType(PropertyType.Flat, 
+                Arrays.asList(new Property(1, 100, "ZONE1 ST1", PropertyType.Flat)));
+        
+        ObjectName name = new ObjectName(RecordingPropertyMetrics.OBJECT_NAME);
+        Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        Assert.assertNotNull(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Queries"));
+        Assert.assertEquals(0L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "LoadCount"));
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+    
+    @Test
+    public void test_histogram_percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+        
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+        
+        Assert.assertEquals(100000, histogram.getCount());
+        Assert.assertEquals(100000, histogram.getMax());
+        Assert.assertEquals(50000.5, histogram.getMean(), 0.000001);
+        Assert.assertEquals(50000, histogram.getValueAtPercentile(50), 50000 * 0.04);
+        Assert.assertEquals(99000, histogram.getValueAtPercentile(99), 99000 * 0.04);
+        Assert.assertEquals(100000, histogram.getValueAtPercentile(100));
+        
+        LatencyHistogram other = new LatencyHistogram();
+        other.record(Long.MAX_VALUE);
+        histogram.add(other);
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+        
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+    }
+    
+    @Test
+    public void test_histogram_buckets() {
+        for (long value : new long[] {0, 1, 31, 32, 33, 63, 64, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            Assert.assertTrue(LatencyHistogram.highestValueOf(bucket) >= value);
+            Assert.assertTrue(bucket == 0 || LatencyHistogram.highestValueOf(bucket - 1) < value);
+        }
+    }
+}
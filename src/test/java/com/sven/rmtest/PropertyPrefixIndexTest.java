@@ -0,0 +1,120 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sven.rmtest.PropertyPrefixIndex.Field;
+
+public class PropertyPrefixIndexTest
+{
+
+    private Property property1 = TestProperties.property(1, 100, "SW1A 1AA", PropertyType.Flat, "Richard Lane", "London");
+    private Property property2 = TestProperties.property(2, 300, "sw1a 2ab", PropertyType.Flat, "Brick  Road", "London");
+    private Property property3 = TestProperties.property(3, 200, "SW2 3BB", PropertyType.Flat, "richard street", "Leeds");
+    private Property property4 = TestProperties.property(4, 300, "SH1 1AW", PropertyType.Flat, "Brick Road", "Sheffield");
+    private Property property5 = TestProperties.property(5, 50, null, PropertyType.Flat, " ", null);
+    
+    private PropertyPrefixIndex index = PropertyPrefixIndex.of(
+            Arrays.asList(property1, property2, property3, null, property4, property5));
+    
+    @Test
+    public void test_fold() {
+        Assert.assertEquals("BRICK ROAD", PropertyPrefixIndex.fold("  brick \t road ", false));
+        Assert.assertEquals("BRICK ", PropertyPrefixIndex.fold(" brick  ", true));
+        Assert.assertEquals("", PropertyPrefixIndex.fold(null, true));
+        Assert.assertNull(PropertyPrefixIndex.fold(" ", false));
+    }
+    
+    @Test
+    public void test_empty_index() {
+        PropertyPrefixIndex empty = PropertyPrefixIndex.of(null);
+        Assert.assertTrue(empty.search(Field.POSTCODE, "S", 10, true).isEmpty());
+        Assert.assertTrue(empty.complete(Field.POSTCODE, "", 10, false).isEmpty());
+        Assert.assertEquals(0, empty.count(Field.ADDRESS, null));
+    }
+    
+    @Test
+    public void test_search_in_key_order() {
+        Assert.assertEquals(Arrays.asList(property4, property1, property2, property3),
+                index.search(Field.POSTCODE, "s", 10, false));
+        Assert.assertEquals(Arrays.asList(property1, property2),
+                index.search(Field.POSTCODE, "Sw1a ", 10, false));
+        //same key by price
+        Assert.assertEquals(Arrays.asList(property2, property4, property1),
+                index.search(Field.ADDRESS, "", 3, false));
+        Assert.assertTrue(index.search(Field.POSTCODE, "SW1AX", 10, false).isEmpty());
+        Assert.assertTrue(index.search(Field.POSTCODE, "S", 0, false).isEmpty());
+    }
+    
+    @Test
+    public void test_search_by_price() {
+        //same price in order of adding
+        Assert.assertEquals(Arrays.asList(property2, property4, property3),
+                index.search(Field.POSTCODE, "S", 3, true));
+        Assert.assertEquals(Arrays.asList(property3, property1),
+                index.search(Field.ADDRESS, "RICHARD", 10, true));
+        Assert.assertEquals(Arrays.asList(property2, property1),
+                index.search(Field.REGION, "lon", 10, true));
+    }
+    
+    @Test
+    public void test_complete() {
+        Assert.assertEquals(Arrays.asList("SH1 1AW", "SW1A 1AA", "SW1A 2AB"), index.complete(Field.POSTCODE, "S", 3, false));
+        Assert.assertEquals(Arrays.asList("BRICK ROAD", "RICHARD STREET", "RICHARD LANE"),
+                index.complete(Field.ADDRESS, "", 10, true));
+        Assert.assertEquals(Arrays.asList("LEEDS", "LONDON"), index.complete(Field.REGION, "L", 10, false));
+        Assert.assertEquals(4, index.count(Field.POSTCODE, "s"));
+        Assert.assertEquals(2, index.count(Field.ADDRESS, "brick"));
+    }
+    
+    @Test
+    public void test_add() {
+        Property property6 = TestProperties.property(6, 1000, "SW1A 1AA", PropertyType.Flat, "Brick Road", "London");
+        Property property7 = TestProperties.property(7, 10, "SE1 1AA", PropertyType.Flat, "Abbey Road", "London");
+        index.add(property6);
+        index.add(property7);
+        index.add(null);
+        
+        Assert.assertEquals(7, index.size());
+        Assert.assertEquals(Arrays.asList(property6, property2, property4),
+                index.search(Field.ADDRESS, "brick", 10, true));
+        Assert.assertEquals(Arrays.asList(property6, property1, property2),
+                index.search(Field.POSTCODE, "SW1A", 10, false));
+        Assert.assertEquals(Arrays.asList("SE1 1AA", "SH1 1AW", "SW1A 1AA"),
+                index.complete(Field.POSTCODE, "S", 3, false));
+        Assert.assertEquals(Arrays.asList("SW1A 1AA", "SW1A 2AB", "SH1 1AW"),
+                index.complete(Field.POSTCODE, "S", 3, true));
+        Assert.assertEquals(3, index.count(Field.POSTCODE, "SW1A"));
+    }
+    
+    @Test
+    public void test_same_as_scan() {
+        //enough properties for blocks of keys, recent builds and a rebuild while adding
+        List<Property> properties = new PropertyGenerator(11).generate(100000);
+        PropertyPrefixIndex built = PropertyPrefixIndex.of(properties.subList(0, 10000));
+        properties.subList(10000, properties.size()).forEach(built::add);
+        
+        Comparator<Property> byPrice = Comparator.comparingDouble(Property::getPrice).reversed();
+        for (String prefix : Arrays.asList("", "W", "W1", "n1 ", "E14 5")) {
+            List<Property> expected = properties.stream()
+                    .filter(s -> PropertyPrefixIndex.fold(s.getPostcode(), false).startsWith(prefix.toUpperCase()))
+                    .sorted(byPrice)
+                    .collect(Collectors.toList());
+            
+            Assert.assertEquals(expected.size(), built.count(Field.POSTCODE, prefix));
+            List<Property> actual = built.search(Field.POSTCODE, prefix, 50, true);
+            Assert.assertEquals(expected.subList(0, Math.min(50, expected.size())), actual);
+        }
+        
+        List<String> keys = new ArrayList<>(built.complete(Field.POSTCODE, "", 100000, false));
+        List<String> expectedKeys = properties.stream().map(Property::getPostcode).distinct().sorted()
+                .collect(Collectors.toList());
+        Assert.assertEquals(expectedKeys, keys);
+    }
+}
@@ -0,0 +1,154 @@
+package com.sven.rmtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class PropertyQueryServerTest
+{
+
+    private Property property1 = new Property(1, 100, "ZONE1 ST1", PropertyType.Detached);
+    private Property property2 = new Property(2, 30, "zone1 ST2", PropertyType.Detached);
+    private Property property5 = new Property(5, 23, "ZONE2 ST5", PropertyType.Flat);
+    private Property property6 = new Property(6, 25, "ZONE2 ST6", PropertyType.Flat);
+    
+    private PropertyQueryServer server;
+    
+    @Before
+    public void setUp() {
+        CachedPropertyQueries queries = new CachedPropertyQueries();
+        queries.load(Arrays.asList(property1, property2, property5));
+        server = new PropertyQueryServer(queries, 0, () -> Arrays.asList(property1, property2, property5, property6));
+        server.start();
+    }
+    
+    @After
+    public void tearDown() {
+        server.close();
+    }
+    
+    @Test
+    public void test_mean_queries() throws IOException {
+        JsonObject response = post("/mean/postcode", "{\"postcodeOutward\": \"zone1\"}", 200);
+        Assert.assertEquals("zone1", response.get("postcodeOutward").getAsString());
+        Assert.assertEquals(65, response.get("mean").getAsDouble(), 0);
+        
+        response = post("/mean/type", "{\"propertyType\": \"Flat\"}", 200);
+        Assert.assertEquals(23, response.get("mean").getAsDouble(), 0);
+        
+        response = post("/mean/difference", "{\"propertyType\": \"Detached\", \"otherPropertyType\": \"Flat\"}", 200);
+        Assert.assertEquals(42, response.get("difference").getAsDouble(), 0);
+    }
+    
+    @Test
+    public void test_top_n_percent() throws IOException {
+        JsonObject response = post("/top", "{\"percent\": 50}", 200);
+        Assert.assertEquals(2, response.get("properties").getAsJsonArray().size());
+        Property first = PropertyTypeAdapter.DEFAULT.fromJsonTree(response.get("properties").getAsJsonArray().get(0));
+        Assert.assertEquals(1, first.getPropertyReference());
+        Assert.assertEquals(PropertyType.Detached, first.getPropertyType());
+    }
+    
+    @Test
+    public void test_search() throws IOException {
+        JsonObject response = post("/search", "{\"maxPrice\": 50, \"order\": \"PRICE_DESCENDING\", \"pageSize\": 1}", 200);
+        Assert.assertEquals(0, response.get("page").getAsInt());
+        Assert.assertTrue(response.get("hasNext").getAsBoolean());
+        Assert.assertEquals(2, response.get("properties").getAsJsonArray().get(0).getAsJsonObject().get("propertyReference").getAsLong());
+        
+        response = post("/search", "{\"maxPrice\": 50, \"order\": \"PRICE_DESCENDING\", \"page\": 1, \"pageSize\": 1}", 200);
+        Assert.assertFalse(response.get("hasNext").getAsBoolean());
+        Assert.assertEquals(5, response.get("properties").getAsJsonArray().get(0).getAsJsonObject().get("propertyReference").getAsLong());
+    }
+    
+    @Test
+    public void test_reload() throws Exception {
+        JsonObject response = post("/dataset", "{}", 200);
+        Assert.assertEquals(1, response.get("epoch").getAsLong());
+        Assert.assertEquals(3, response.get("size").getAsInt());
+        
+        post("/reload", "{}", 202);
+        for (int i = 0; i < 100 && post("/dataset", "{}", 200).get("epoch").getAsLong() < 2; i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(4, post("/dataset", "{}", 200).get("size").getAsInt());
+        Assert.assertEquals(24, post("/mean/type", "{\"propertyType\": \"Flat\"}", 200).get("mean").getAsDouble(), 0);
+    }
+    
+    @Test
+    public void test_bad_requests() throws IOException {
+        Assert.assertEquals("propertyType is required", post("/mean/type", "{}", 400).get("error").getAsString());
+        Assert.assertTrue(post("/mean/type", "{\"propertyType\": ", 400).has("error"));
+        Assert.assertEquals("unknown propertyType [Bungalow]",
+                post("/mean/type", "{\"propertyType\": \"Bungalow\"}", 400).get("error").getAsString());
+        Assert.assertEquals("unknown otherPropertyType [flat]",
+                post("/mean/difference", "{\"propertyType\": \"Detached\", \"otherPropertyType\": \"flat\"}", 400).get("error").getAsString());
+        Assert.assertEquals("unknown order [CHEAPEST]", post("/search", "{\"order\": \"CHEAPEST\"}", 400).get("error").getAsString());
+        Assert.assertTrue(post("/top", "{\"percent\": 101}", 400).has("error"));
+        Assert.assertTrue(post("/top", "", 400).has("error"));
+        
+        HttpURLConnection connection = open("/top");
+        Assert.assertEquals(405, connection.getResponseCode());
+        Assert.assertEquals("POST", connection.getHeaderField("Allow"));
+    }
+    
+    @Test
+    public void test_concurrent_requests() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try
+        {
+            List<Future<JsonObject>> responses = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String body = i % 2 == 0 ? "{\"postcodeOutward\": \"ZONE1\"}" : "{\"postcodeOutward\": \"ZONE2\"}";
+                responses.add(clients.submit(() -> post("/mean/postcode", body, 200)));
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                Assert.assertEquals(i % 2 == 0 ? 65 : 23, responses.get(i).get().get("mean").getAsDouble(), 0);
+            }
+        }
+        finally
+        {
+            clients.shutdownNow();
+        }
+    }
+    
+    private HttpURLConnection open(String path) throws IOException {
+        URL url = new URL("http", "localhost", server.getPort(), path);
+        return (HttpURLConnection) url.openConnection();
+    }
+    
+    private JsonObject post(String path, String body, int status) throws IOException {
+        HttpURLConnection connection = open(path);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        Assert.assertEquals(status, connection.getResponseCode());
+        Assert.assertEquals("application/json; charset=utf-8", connection.getContentType());
+        
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return new JsonParser().parse(reader).getAsJsonObject();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.sven.rmtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyQueryTest
+{
+
+    private Property property1 = new Property(1, 100, "ZONE1 ST1", PropertyType.Detached);
+    private Property property2 = new Property(2, 30, "zone1 ST2", PropertyType.Detached);
+    private Property property5 = new Property(5, 23, "ZONE2 ST5", PropertyType.Flat);
+    private Property property6 = new Property(6, 100, null, PropertyType.Flat);
+    
+    @Test
+    public void test_execute_with_null_properties() {
+        PropertyQuery query = new PropertyQuery();
+        PropertyQuery.Aggregation<PropertyType> byType = query.groupByPropertyType();
+        
+        PropertyQuery.Result result = query.execute((List<Property>) null);
+        Assert.assertTrue(result.get(byType).isEmpty());
+        Assert.assertEquals(0, result.get(byType, PropertyType.Flat).getMean(), 0);
+    }
+    
+    @Test
+    public void test_execute_with_many_aggregations() {
+        PropertyQuery query = new PropertyQuery();
+        PropertyQuery.Total all = query.total(s -> true);
+        PropertyQuery.Total zone1 = query.total(PropertyUtils.isPostcodeOutward("ZONE1"));
+        PropertyQuery.Aggregation<PropertyType> byType = query.groupByPropertyType();
+        PropertyQuery.Aggregation<String> byOutward = query.groupByPostcodeOutward();
+        
+        PropertyQuery.Result result = query.execute(Arrays.asList(property1, null, property2, property5, property6));
+        
+        Assert.assertEquals(4, result.get(all).getCount());
+        Assert.assertEquals(253, result.get(all).getSum(), 0);
+        Assert.assertEquals(65, result.get(zone1).getMean(), 0);
+        
+        PriceStatistics detached = result.get(byType, PropertyType.Detached);
+        Assert.assertEquals(2, detached.getCount());
+        Assert.assertEquals(30, detached.getMin(), 0);
+        Assert.assertEquals(100, detached.getMax(), 0);
+        Assert.assertEquals(65, detached.getMean(), 0);
+        
+        Map<String, PriceStatistics> outwards = result.get(byOutward);
+        Assert.assertEquals(2, outwards.size());
+        Assert.assertEquals(2, outwards.get("ZONE1").getCount());
+        Assert.assertEquals(23, outwards.get("ZONE2").getMean(), 0);
+    }
+    
+    @Test
+    public void test_execute_same_results_as_PropertyUtils() {
+        PropertyQuery query = new PropertyQuery();
+        PropertyQuery.Total w1f = query.total(PropertyUtils.isPostcodeOutward("W1F"));
+        PropertyQuery.Aggregation<PropertyType> byType = query.groupByPropertyType();
+        PropertyQuery.Aggregation<String> byRegion = query.groupByRegion();
+        
+        List<Property> properties = PropertyUtils.loadDataFromClassPathFile("/property-data.json");
+        PropertyQuery.Result result;
+        try (Stream<Property> stream = PropertyUtils.streamDataFromClassPathFile("/property-data.json")) {
+            result = query.execute(stream);
+        }
+        
+        Assert.assertEquals(PropertyUtils.getMeanPriceByPostcodeOutward("W1F", properties), 
+                result.get(w1f).getMean(), 0.0001);
+        for (PropertyType propertyType : PropertyType.values()) {
+            Assert.assertEquals(PropertyUtils.getMeanPriceByPropertyType(propertyType, properties), 
+                    result.get(byType, propertyType).getMean(), 0.0001);
+        }
+        long count = result.get(byRegion).values().stream().mapToLong(PriceStatistics::getCount).sum();
+        Assert.assertEquals(properties.size(), count);
+    }
+}
@@ -0,0 +1,100 @@
+package com.sven.rmtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyRepositoryTest
+{
+
+    private Property property1 = TestProperties.property(1, 100, "ZONE1 ST1", PropertyType.Detached, "London");
+    private Property property2 = TestProperties.property(2, 30, "zone1 ST2", PropertyType.Flat, "London");
+    private Property property3 = TestProperties.property(3, 21, "ZONE1 ST3", PropertyType.Flat, "Essex");
+    private Property property5 = TestProperties.property(5, 23, "ZONE2 ST5", PropertyType.Flat, "London");
+    private Property property6 = TestProperties.property(6, 100, null, PropertyType.Mansion, null);
+    
+    private PropertyRepository repository = PropertyRepository.of(
+            Arrays.asList(property1, property2, property3, property5, property6));
+    
+    @Test
+    public void test_getMeanPriceByPostcodeOutward() {
+        Assert.assertEquals(50.333, repository.getMeanPriceByPostcodeOutward("Zone1"), 0.001);
+        Assert.assertEquals(54.8, repository.getMeanPriceByPostcodeOutward(""), 0.001);
+        Assert.assertEquals(0, repository.getMeanPriceByPostcodeOutward("ZONE9"), 0);
+    }
+    
+    @Test
+    public void test_getMeanPriceByPropertyType() {
+        Assert.assertEquals(24.666, repository.getMeanPriceByPropertyType(PropertyType.Flat), 0.001);
+        Assert.assertEquals(0, repository.getMeanPriceByPropertyType(PropertyType.Terraced), 0);
+    }
+    
+    @Test
+    public void test_getMeanPriceByPropertyType_of_null() {
+        List<Property> properties = Arrays.asList(property1, property2, new Property(7, 40, "ZONE3 ST7", null));
+        PropertyRepository repository = PropertyRepository.of(properties);
+        
+        Assert.assertEquals(40, repository.getMeanPriceByPropertyType(null), 0);
+        Assert.assertEquals(PropertyUtils.getMeanPriceByPropertyType(null, properties),
+                repository.getMeanPriceByPropertyType(null), 0);
+        Assert.assertEquals(repository.getStore().getMeanPriceByPropertyType(null),
+                repository.getMeanPriceByPropertyType(null), 0);
+        Assert.assertEquals(56.666, repository.getStatistics(null, null, null).getMean(), 0.001);
+    }
+    
+    @Test
+    public void test_getMeanPriceByRegion() {
+        Assert.assertEquals(51, repository.getMeanPriceByRegion("London"), 0);
+        Assert.assertEquals(0, repository.getMeanPriceByRegion("Sheffield"), 0);
+    }
+    
+    @Test
+    public void test_getStatistics_with_combined_filters() {
+        PriceStatistics actual = repository.getStatistics("ZONE1", PropertyType.Flat, "London");
+        Assert.assertEquals(1, actual.getCount());
+        Assert.assertEquals(30, actual.getSum(), 0);
+        
+        actual = repository.getStatistics("ZONE1", PropertyType.Flat, null);
+        Assert.assertEquals(2, actual.getCount());
+        Assert.assertEquals(21, actual.getMin(), 0);
+        
+        actual = repository.getStatistics(null, PropertyType.Flat, "London");
+        Assert.assertEquals(2, actual.getCount());
+        Assert.assertEquals(53, actual.getSum(), 0);
+    }
+    
+    @Test
+    public void test_getStatistics_doesnt_expose_index() {
+        repository.getStatistics("ZONE1", null, null).accept(1000);
+        Assert.assertEquals(3, repository.getStatistics("ZONE1", null, null).getCount());
+    }
+    
+    @Test
+    public void test_getRows() {
+        Assert.assertArrayEquals(new int[] {0, 1, 2}, repository.getRows("zone1", null, null));
+        Assert.assertArrayEquals(new int[] {1, 3}, repository.getRows(null, PropertyType.Flat, "London"));
+        Assert.assertArrayEquals(new int[] {0, 1, 2, 3, 4}, repository.getRows(null, null, null));
+        Assert.assertArrayEquals(new int[0], repository.getRows("ZONE2", PropertyType.Detached, null));
+    }
+    
+    @Test
+    public void test_same_results_as_PropertyUtils() {
+        List<Property> properties = PropertyUtils.loadDataFromClassPathFile("/property-data.json");
+        PropertyRepository repository = PropertyRepository.of(properties);
+        
+        Assert.assertEquals(PropertyUtils.getMeanPriceByPostcodeOutward("W1F", properties), 
+                repository.getMeanPriceByPostcodeOutward("W1F"), 0.0001);
+        for (PropertyType propertyType : PropertyType.values()) {
+            Assert.assertEquals(PropertyUtils.getMeanPriceByPropertyType(propertyType, properties), 
+                    repository.getMeanPriceByPropertyType(propertyType), 0.0001);
+            
+            List<Property> expected = properties.stream()
+                    .filter(PropertyUtils.isPostcodeOutward("W1F").and(PropertyUtils.isPropertyType(propertyType)))
+                    .collect(Collectors.toList());
+            Assert.assertEquals(expected.size(), repository.getRows("W1F", propertyType, null).length);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.sven.rmtest;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyShardCoordinatorTest
+{
+
+    private List<PropertyShardWorker> workers = new ArrayList<>();
+    
+    @After
+    public void tearDown() {
+        workers.forEach(PropertyShardWorker::close);
+    }
+    
+    @Test
+    public void test_partition_by_outward_postcode() {
+        Property property1 = new Property(1, 100, "ZONE1 ST1", PropertyType.Detached);
+        Property property2 = new Property(2, 30, "zone1 ST2", PropertyType.Detached);
+        Property property3 = new Property(3, 30, null, PropertyType.Flat);
+        
+        List<List<Property>> shards = PropertyShardCoordinator.partition(Arrays.asList(property1, null, property2, property3), 3);
+        
+        Assert.assertEquals(3, shards.size());
+        int shard = PropertyShardCoordinator.shardOf("ZONE1 XX", 3);
+        Assert.assertEquals(Arrays.asList(property1, property2), shards.get(shard));
+        Assert.assertTrue(shards.get(0).contains(property3));
+        Assert.assertEquals(3, shards.stream().mapToInt(List::size).sum());
+    }
+    
+    @Test
+    public void test_same_as_single_dataset() {
+        List<Property> properties = new PropertyGenerator(5).generate(3000);
+        try (PropertyShardCoordinator coordinator = start(properties, 3)) {
+            Assert.assertEquals(properties.size(), coordinator.size());
+            
+            String outwardPostcode = PropertyUtils.getOutwardPostcode(properties.get(0).getPostcode()).get();
+            Assert.assertEquals(PropertyUtils.getMeanPriceByPostcodeOutward(outwardPostcode, properties),
+                    coordinator.getMeanPriceByPostcodeOutward(outwardPostcode), 1e-6);
+            Assert.assertEquals(PropertyUtils.getMeanPriceByPostcodeOutward(null, properties),
+                    coordinator.getMeanPriceByPostcodeOutward(null), 1e-6);
+            Assert.assertEquals(PropertyUtils.getMeanPriceByPropertyType(PropertyType.Flat, properties),
+                    coordinator.getMeanPriceByPropertyType(PropertyType.Flat), 1e-6);
+            
+            for (int percent : new int[] {0, 1, 10, 100}) {
+                List<Property> expected = PropertyUtils.getTopNPercentMostExpensive(percent, properties);
+                List<Property> actual = coordinator.getTopNPercentMostExpensive(percent);
+                Assert.assertEquals(pricesOf(expected), pricesOf(actual));
+            }
+            
+            Map<String, PropertyGroupBy.Summary> expected = new HashMap<>();
+            PropertyGroupBy.byOutwardPostcode(PropertyStore.of(properties)).getSummaries()
+                    .forEach(s -> expected.put(s.getOutwardPostcode(), s));
+            PropertyGroupBy.Table table = coordinator.groupByOutwardPostcode();
+            Assert.assertEquals(expected.size(), table.size());
+            for (PropertyGroupBy.Summary summary : table.getSummaries()) {
+                PropertyGroupBy.Summary single = expected.get(summary.getOutwardPostcode());
+                Assert.assertEquals(single.getCount(), summary.getCount());
+                Assert.assertEquals(single.getMedian(), summary.getMedian(), 0);
+                Assert.assertEquals(single.getMax(), summary.getMax(), 0);
+            }
+            
+            long count = coordinator.groupByRegionAndPropertyType().getSummaries().stream()
+                    .mapToLong(PropertyGroupBy.Summary::getCount).sum();
+            Assert.assertEquals(properties.size(), count);
+        }
+    }
+    
+    @Test
+    public void test_median_of_groups_spread_over_shards() {
+        List<Property> properties = new PropertyGenerator(6).generate(20000);
+        try (PropertyShardCoordinator coordinator = start(properties, 4)) {
+            for (PropertyGroupBy.Summary summary : coordinator.groupByRegionAndPropertyType().getSummaries()) {
+                double[] prices = properties.stream()
+                        .filter(s -> summary.getRegion().equals(s.getRegion()) && summary.getPropertyType() == s.getPropertyType())
+                        .mapToDouble(Property::getPrice)
+                        .toArray();
+                Assert.assertEquals(prices.length, summary.getCount());
+                Assert.assertFalse(Double.isNaN(summary.getMedian()));
+                
+                //rank of approximate median is close to 1/2
+                long below = Arrays.stream(prices).filter(s -> s < summary.getMedian()).count();
+                long notAbove = Arrays.stream(prices).filter(s -> s <= summary.getMedian()).count();
+                Assert.assertTrue(summary.toString(), below <= prices.length * 0.55 && notAbove >= prices.length * 0.45);
+            }
+        }
+    }
+    
+    @Test
+    public void test_top_n_percent_ties_across_shards() {
+        //same price in every shard, ties are all included in order of shards
+        List<Property> properties = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            properties.add(new Property(i, i < 4 ? 500 : 100, "Z" + i + " 1AA", PropertyType.Flat));
+        }
+        try (PropertyShardCoordinator coordinator = start(properties, 4)) {
+            Assert.assertEquals(4, coordinator.getTopNPercentMostExpensive(10).size());
+            Assert.assertEquals(20, coordinator.getTopNPercentMostExpensive(25).size());
+            Assert.assertEquals(0d, coordinator.getMeanPriceByPostcodeOutward("NOWHERE"), 0);
+        }
+    }
+    
+    @Test
+    public void test_unreachable_shard() {
+        PropertyShardWorker worker = new PropertyShardWorker(new ArrayList<>(), 0);
+        InetSocketAddress address = worker.getAddress();
+        worker.close();
+        try (PropertyShardCoordinator coordinator = new PropertyShardCoordinator(Arrays.asList(address))) {
+            coordinator.size();
+            Assert.fail();
+        }
+        catch (RuntimeException e)
+        {
+            Assert.assertTrue(e.getMessage().contains("SIZE"));
+        }
+    }
+    
+    private PropertyShardCoordinator start(List<Property> properties, int shardCount) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (List<Property> shard : PropertyShardCoordinator.partition(properties, shardCount)) {
+            PropertyShardWorker worker = new PropertyShardWorker(shard, 0);
+            workers.add(worker);
+            addresses.add(worker.getAddress());
+        }
+        return new PropertyShardCoordinator(addresses);
+    }
+    
+    private static List<Double> pricesOf(List<Property> properties) {
+        return properties.stream().map(Property::getPrice).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,108 @@
+package com.sven.rmtest;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyStoreTest
+{
+
+    private Property property1 = new Property(1, 100, "ZONE1 ST1", PropertyType.Detached);
+    private Property property2 = new Property(2, 30, "zone1 ST2", PropertyType.Detached);
+    private Property property5 = new Property(5, 23, "ZONE2 ST5", PropertyType.Flat);
+    private Property property6 = new Property(6, 100, "ZONE2 ST6", PropertyType.Flat);
+    private Property property7 = new Property(7, 100, "ZONE3 ST7", PropertyType.Flat);
+    private Property property8 = new Property(8, 100, "ZONE3 ST8", PropertyType.Mansion);
+    
+    @Test
+    public void test_of_with_null_properties() {
+        PropertyStore store = PropertyStore.of(null);
+        
+        Assert.assertEquals(0, store.size());
+        Assert.assertEquals(0, store.getMeanPriceByPropertyType(PropertyType.Flat), 0);
+        Assert.assertTrue(store.getTopNPercentMostExpensive(10).isEmpty());
+    }
+    
+    @Test
+    public void test_getProperty() {
+        Property property = new Property(9, 250, "W1F 3FT", PropertyType.Terraced);
+        property.setBedrooms(3);
+        property.setBathrooms(2);
+        property.setHouseNumber("12");
+        property.setAddress("Richard Lane");
+        property.setRegion("London");
+        
+        Property actual = PropertyStore.of(Arrays.asList(null, property)).getProperty(0);
+        Assert.assertEquals(9, actual.getPropertyReference());
+        Assert.assertEquals(250, actual.getPrice(), 0);
+        Assert.assertEquals(3, actual.getBedrooms());
+        Assert.assertEquals(2, actual.getBathrooms());
+        Assert.assertEquals("12", actual.getHouseNumber());
+        Assert.assertEquals("Richard Lane", actual.getAddress());
+        Assert.assertEquals("London", actual.getRegion());
+        Assert.assertEquals("W1F 3FT", actual.getPostcode());
+        Assert.assertEquals(PropertyType.Terraced, actual.getPropertyType());
+    }
+    
+    @Test
+    public void test_getMeanPriceByPostcodeOutward() {
+        PropertyStore store = PropertyStore.of(Arrays.asList(property1, property2, property5));
+        
+        Assert.assertEquals(65, store.getMeanPriceByPostcodeOutward("Zone1"), 0);
+        Assert.assertEquals(51, store.getMeanPriceByPostcodeOutward(""), 0);
+        Assert.assertEquals(0, store.getMeanPriceByPostcodeOutward("ZONE9"), 0);
+    }
+    
+    @Test
+    public void test_getMeanPriceByPropertyType() {
+        PropertyStore store = PropertyStore.of(Arrays.asList(property1, property2, property5));
+        
+        Assert.assertEquals(65, store.getMeanPriceByPropertyType(PropertyType.Detached), 0);
+        Assert.assertEquals(0, store.getMeanPriceByPropertyType(PropertyType.Mansion), 0);
+    }
+    
+    @Test
+    public void test_getMeanPrice_with_infinite_price() {
+        Property infinite = new Property(9, Double.POSITIVE_INFINITY, "ZONE9 ST9", PropertyType.Mansion);
+        PropertyStore store = PropertyStore.of(Arrays.asList(property1, property2, property5, infinite));
+        
+        //infinite price of other rows doesn't leak into means
+        Assert.assertEquals(65, store.getMeanPriceByPropertyType(PropertyType.Detached), 0);
+        Assert.assertEquals(65, store.getMeanPriceByPostcodeOutward("ZONE1"), 0);
+        Assert.assertEquals(Double.POSITIVE_INFINITY, store.getMeanPriceByPropertyType(PropertyType.Mansion), 0);
+    }
+    
+    @Test
+    public void test_getTopNPercentMostExpensive_with_50_percents_of_4_properties() {
+        PropertyStore store = PropertyStore.of(Arrays.asList(property7, property6, property8, property5));
+        
+        List<Property> actual = store.getTopNPercentMostExpensive(50);
+        Assert.assertEquals(3, actual.size());
+        Assert.assertEquals(7, actual.get(0).getPropertyReference());
+        Assert.assertEquals(6, actual.get(1).getPropertyReference());
+        Assert.assertEquals(8, actual.get(2).getPropertyReference());
+    }
+    
+    @Test
+    public void test_same_results_as_PropertyUtils() {
+        List<Property> properties = PropertyUtils.loadDataFromClassPathFile("/property-data.json");
+        PropertyStore store = PropertyStore.of(properties);
+        
+        Assert.assertEquals(properties.size(), store.size());
+        Assert.assertEquals(PropertyUtils.getMeanPriceByPostcodeOutward("W1F", properties), 
+                store.getMeanPriceByPostcodeOutward("W1F"), 0.0001);
+        for (PropertyType propertyType : PropertyType.values()) {
+            Assert.assertEquals(PropertyUtils.getMeanPriceByPropertyType(propertyType, properties), 
+                    store.getMeanPriceByPropertyType(propertyType), 0.0001);
+        }
+        
+        List<Property> expected = PropertyUtils.getTopNPercentMostExpensive(30, properties);
+        List<Property> actual = store.getTopNPercentMostExpensive(30);
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getPropertyReference(), actual.get(i).getPropertyReference());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.sven.rmtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropertyTopNTest
+{
+
+    private Property property5 = new Property(5, 23, "ZONE2 ST5", PropertyType.Flat);
+    private Property property6 = new Property(6, 100, "ZONE2 ST6", PropertyType.Flat);
+    private Property property7 = new Property(7, 100, "ZONE3 ST7", PropertyType.Flat);
+    private Property property8 = new Property(8, 100, "ZONE3 ST8", PropertyType.Mansion);
+    
+    @Test
+    public void test_select_with_includeIfHasSamePrice() {
+        List<Property> properties = Arrays.asList(property5, property7, property6, property8);
+        
+        List<Property> actual = PropertyTopN.select(1, properties, true);
+        Assert.assertEquals(Arrays.asList(property7, property6, property8), actual);
+    }
+    
+    @Test
+    public void test_select_without_includeIfHasSamePrice() {
+        List<Property> properties = Arrays.asList(property5, property7, property6, property8);
+        
+        List<Property> actual = PropertyTopN.select(1, properties, false);
+        Assert.assertEquals(Arrays.asList(property7), actual);
+    }
+    
+    @Test
+    public void test_select_with_null_properties_at_bottom() {
+        List<Property> properties = Arrays.asList(null, property5, null, property6);
+        
+        List<Property> actual = PropertyTopN.select(3, properties, true);
+        Assert.assertEquals(Arrays.asList(property6, property5, null), actual);
+    }
+    
+    @Test
+    public void test_select_with_non_positive_n() {
+        List<Property> properties = Arrays.asList(property5, property6);
+        
+        Assert.assertTrue(PropertyTopN.select(0, properties, true).isEmpty());
+    }
+    
+    @Test
+    public void test_select_same_as_full_sort() {
+        Random random = new Random(42);
+        for (int size : new int[] {1, 10, 100, 5000}) {
+            List<Property> properties = randomProperties(random, size);
+            for (int n : new int[] {1, 2, size / 20 + 1, size / 2 + 1, size, size + 1}) {
+                Assert.assertEquals(sortAndTakeTopN(n, properties, true), PropertyTopN.select(n, properties, true));
+                Assert.assertEquals(sortAndTakeTopN(n, properties, false), PropertyTopN.select(n, properties, false));
+            }
+        }
+    }
+    
+    @Test
+    public void test_selectParallel_same_as_full_sort() {
+        Random random = new Random(7);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Property> properties = randomProperties(random, 100000);
+            for (int n : new int[] {1, 100, 10000, 60000}) {
+                Assert.assertEquals(sortAndTakeTopN(n, properties, true), 
+                        PropertyTopN.selectParallel(n, properties, true, pool));
+                Assert.assertEquals(sortAndTakeTopN(n, properties, false), 
+                        PropertyTopN.selectParallel(n, properties, false, pool));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void test_selectTopRows_pruned_same_as_full_sort() {
+        Random random = new Random(7);
+        List<Property> properties = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            //many distinct prices with ties, prices sorted in half of rows so a sample guesses badly
+            double price = i < 10000 ? i / 3 : random.nextInt(5000);
+            properties.add(new Property(i, price, "ZONE1 ST1", PropertyType.Flat));
+        }
+        properties.get(42).setPrice(Double.NaN);
+        double[] prices = properties.stream().mapToDouble(Property::getPrice).toArray();
+        
+        for (int n : new int[] {1500, 2000, 5000, 19999}) {
+            List<Property> expected = sortAndTakeTopN(n, properties, true);
+            int[] rows = PropertyTopN.selectTopRows(prices, 0, prices.length, n, true);
+            Assert.assertEquals(expected, Arrays.stream(rows).mapToObj(properties::get).collect(Collectors.toList()));
+        }
+    }
+    
+    /**
+     * few distinct prices so there are many properties with same price
+     */
+    private static List<Property> randomProperties(Random random, int size) {
+        List<Property> properties = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            properties.add(new Property(i, random.nextInt(50) * 1000, "ZONE1 ST1", PropertyType.Flat));
+        }
+        return properties;
+    }
+    
+    private static List<Property> sortAndTakeTopN(int n, List<Property> properties, boolean includeIfHasSamePrice) {
+        List<Property> ordered = properties.stream()
+                .sorted(PropertyUtils.propertyPriceDescentComparator)
+                .collect(Collectors.toList());
+        List<Property> topN = new ArrayList<>(ordered.subList(0, Math.min(n, ordered.size())));
+        for (int i = n; includeIfHasSamePrice && i < ordered.size(); i++) {
+            if (ordered.get(i).getPrice() >= ordered.get(n - 1).getPrice()) {
+                topN.add(ordered.get(i));
+            }
+        }
+        return topN;
+    }
+}
@@ -0,0 +1,205 @@
+package com.sven.rmtest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.sven.rmtest.PropertyJsonReader.MalformedPolicy;
+import com.sven.rmtest.PropertyJsonReader.MalformedRecord;
+
+public class PropertyTypeAdapterTest
+{
+
+    private static final String malformedJson = "[{\"propertyReference\": 1, \"price\": 100}, "
+            + "{\"propertyReference\": 2, \"price\": \"abc\", \"postcode\": \"W1F 1AA\"}, "
+            + "{\"propertyReference\": 3, \"bedrooms\": 2.5}, "
+            + "42, "
+            + "{\"propertyReference\": 5, \"price\": 50, \"region\": {\"name\": \"London\"}}, "
+            + "{\"propertyReference\": 6, \"price\": 60}]";
+
+    @Test
+    public void test_read_same_as_gson_reflection() throws Exception {
+        StringWriter out = new StringWriter();
+        new PropertyGenerator(5).writeJson(out, 200);
+        String json = out.toString();
+        
+        List<Property> expected = new Gson().fromJson(json, new TypeToken<List<Property>>() {}.getType());
+        List<Property> actual = read(json, new PropertyJsonReader.Options());
+        assertSameProperties(expected, actual);
+        
+        try (InputStreamReader in = new InputStreamReader(
+                PropertyTypeAdapterTest.class.getResourceAsStream("/property-data.json"), StandardCharsets.UTF_8)) {
+            expected = new Gson().fromJson(in, new TypeToken<List<Property>>() {}.getType());
+        }
+        assertSameProperties(expected, PropertyUtils.loadDataFromClassPathFile("/property-data.json"));
+    }
+    
+    @Test
+    public void test_read_quoted_numbers_and_unknown_fields() throws IOException {
+        Property property = PropertyTypeAdapter.DEFAULT.fromJson("{\"price\": \"12.5\", \"bedrooms\": \"3\", "
+                + "\"garden\": [1, 2], \"houseNumber\": 12, \"propertyType\": \"Castle\"}");
+        
+        Assert.assertEquals(12.5, property.getPrice(), 0);
+        Assert.assertEquals(3, property.getBedrooms());
+        Assert.assertEquals("12", property.getHouseNumber());
+        Assert.assertNull(property.getPropertyType());
+    }
+    
+    @Test
+    public void test_defaults() {
+        Property defaults = new Property(0, 0, null, PropertyType.Terraced);
+        defaults.setBathrooms(1);
+        defaults.setRegion("Unknown");
+        PropertyTypeAdapter adapter = new PropertyTypeAdapter.Builder()
+                .defaults(defaults)
+                .propertyTypeIgnoreCase(true)
+                .build();
+        
+        List<Property> properties = read("[{\"price\": 10, \"bathrooms\": null, \"propertyType\": \"flat\"}, "
+                + "{\"price\": 20, \"bathrooms\": 3, \"region\": \"London\", \"propertyType\": \"Castle\"}]", 
+                new PropertyJsonReader.Options().adapter(adapter));
+        
+        Assert.assertEquals(1, properties.get(0).getBathrooms());
+        Assert.assertEquals("Unknown", properties.get(0).getRegion());
+        Assert.assertEquals(PropertyType.Flat, properties.get(0).getPropertyType());
+        Assert.assertEquals(3, properties.get(1).getBathrooms());
+        Assert.assertEquals("London", properties.get(1).getRegion());
+        Assert.assertEquals(PropertyType.Terraced, properties.get(1).getPropertyType());
+    }
+    
+    @Test
+    public void test_malformed_fail_by_default() {
+        try {
+            read(malformedJson, new PropertyJsonReader.Options());
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("$[1]"));
+            Assert.assertTrue(e.getCause() instanceof PropertyTypeAdapter.MalformedPropertyException);
+        }
+    }
+    
+    @Test
+    public void test_malformed_skip() {
+        List<MalformedRecord> malformedRecords = new ArrayList<>();
+        List<Property> properties = read(malformedJson, 
+                new PropertyJsonReader.Options().onMalformed(MalformedPolicy.SKIP, malformedRecords::add));
+        
+        Assert.assertEquals(2, properties.size());
+        Assert.assertEquals(1, properties.get(0).getPropertyReference());
+        Assert.assertEquals(6, properties.get(1).getPropertyReference());
+        
+        Assert.assertEquals(4, malformedRecords.size());
+        Assert.assertEquals(1, malformedRecords.get(0).getIndex());
+        Assert.assertEquals("$[1]", malformedRecords.get(0).getPath());
+        Assert.assertTrue(malformedRecords.get(0).getMessage().contains("price"));
+        Assert.assertNull(malformedRecords.get(0).getJson());
+        Assert.assertEquals(4, malformedRecords.get(3).getIndex());
+    }
+    
+    @Test
+    public void test_malformed_quarantine() {
+        List<MalformedRecord> malformedRecords = new ArrayList<>();
+        List<Property> properties = read(malformedJson, 
+                new PropertyJsonReader.Options().onMalformed(MalformedPolicy.QUARANTINE, malformedRecords::add));
+        
+        Assert.assertEquals(2, properties.size());
+        Assert.assertEquals(4, malformedRecords.size());
+        Assert.assertTrue(malformedRecords.get(0).getJson().contains("\"abc\""));
+        Assert.assertEquals("42", malformedRecords.get(2).getJson());
+    }
+    
+    @Test
+    public void test_malformed_last_record_skipped() {
+        PropertyJsonReader reader = new PropertyJsonReader(new StringReader("[{\"price\": \"abc\"}]"), "test",
+                new PropertyJsonReader.Options().onMalformed(MalformedPolicy.SKIP, s -> {}));
+        
+        Assert.assertFalse(reader.hasNext());
+        Assert.assertEquals(1, reader.getSkippedCount());
+    }
+    
+    @Test
+    public void test_read_numbers_and_strings() {
+        Random random = new Random(11);
+        StringBuilder json = new StringBuilder();
+        double[] prices = new double[1000];
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = i % 2 == 0 ? random.nextDouble() * 1e7 : Math.round(random.nextDouble() * 1e6) / 100d;
+            json.append(String.format("{\"price\": %s, \"propertyReference\": %d}\n", prices[i], Long.MAX_VALUE - i));
+        }
+        json.append("{\"price\": 1.5e3, \"bedrooms\": 2.0, \"address\": \"Rue de l\\u2019\\\"\u00c9glise\\\"\", "
+                + "\"postcode\": true, \"region\": -12, \"propertyType\": \"Flat\"}");
+        
+        List<Property> properties = read(json.toString(), new PropertyJsonReader.Options());
+        for (int i = 0; i < prices.length; i++) {
+            Assert.assertEquals(prices[i], properties.get(i).getPrice(), 0);
+            Assert.assertEquals(Long.MAX_VALUE - i, properties.get(i).getPropertyReference());
+        }
+        Property last = properties.get(prices.length);
+        Assert.assertEquals(1500, last.getPrice(), 0);
+        Assert.assertEquals(2, last.getBedrooms());
+        Assert.assertEquals("Rue de l\u2019\"\u00c9glise\"", last.getAddress());
+        Assert.assertEquals("true", last.getPostcode());
+        Assert.assertEquals("-12", last.getRegion());
+        Assert.assertEquals(PropertyType.Flat, last.getPropertyType());
+    }
+    
+    @Test
+    public void test_malformed_offset() {
+        List<MalformedRecord> malformedRecords = new ArrayList<>();
+        String json = "{\"price\": 1}\n  {\"price\": []}\n";
+        read(json, new PropertyJsonReader.Options().onMalformed(MalformedPolicy.QUARANTINE, malformedRecords::add));
+        
+        Assert.assertEquals(1, malformedRecords.size());
+        Assert.assertEquals(json.indexOf("{\"price\": []}"), malformedRecords.get(0).getOffset());
+        Assert.assertEquals("$", malformedRecords.get(0).getPath());
+        Assert.assertEquals("{\"price\": []}", malformedRecords.get(0).getJson());
+    }
+    
+    @Test(expected = RuntimeException.class)
+    public void test_unterminated_array_fails() {
+        read("[{\"price\": 1}", new PropertyJsonReader.Options());
+    }
+    
+    @Test(expected = RuntimeException.class)
+    public void test_broken_json_fails_whatever_the_policy() {
+        read("[{\"price\": 1}, {\"price\" 2}]", 
+                new PropertyJsonReader.Options().onMalformed(MalformedPolicy.SKIP, s -> {}));
+    }
+    
+    private static List<Property> read(String json, PropertyJsonReader.Options options) {
+        try (Stream<Property> stream = PropertyUtils.streamData(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), "test", options)) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+    
+    private static void assertSameProperties(List<Property> expected, List<Property> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Property e = expected.get(i);
+            Property a = actual.get(i);
+            Assert.assertEquals(e.getPropertyReference(), a.getPropertyReference());
+            Assert.assertEquals(e.getPrice(), a.getPrice(), 0);
+            Assert.assertEquals(e.getBedrooms(), a.getBedrooms());
+            Assert.assertEquals(e.getBathrooms(), a.getBathrooms());
+            Assert.assertEquals(e.getHouseNumber(), a.getHouseNumber());
+            Assert.assertEquals(e.getAddress(), a.getAddress());
+            Assert.assertEquals(e.getRegion(), a.getRegion());
+            Assert.assertEquals(e.getPostcode(), a.getPostcode());
+            Assert.assertEquals(e.getPropertyType(), a.getPropertyType());
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package com.sven.rmtest;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -91,6 +97,26 @@ public class PropertyUtilsTest
         Assert.assertEquals("W11", actual2.get());
     }
     
+    @Test
+    public void test_getOutwardPostcode_same_as_split() {
+        for (String postcode : new String[] {"W1F 3FT", "w1f", " W1F", "W1F  3FT", "W1F\t3FT", "W1F "}) {
+            Assert.assertEquals(postcode.split(" ")[0], PropertyUtils.getOutwardPostcode(postcode).get());
+        }
+        Assert.assertFalse(PropertyUtils.getOutwardPostcode(null).isPresent());
+        Assert.assertFalse(PropertyUtils.getOutwardPostcode("  ").isPresent());
+    }
+    
+    //isSameOutwardPostcode tests
+    @Test
+    public void test_isSameOutwardPostcode() {
+        Assert.assertTrue(PropertyUtils.isSameOutwardPostcode("W1F 3FT", "w1f"));
+        Assert.assertTrue(PropertyUtils.isSameOutwardPostcode("W1F", "W1F"));
+        Assert.assertFalse(PropertyUtils.isSameOutwardPostcode("W1F 3FT", "W1"));
+        Assert.assertFalse(PropertyUtils.isSameOutwardPostcode("W1F 3FT", "W1F 3FT"));
+        Assert.assertFalse(PropertyUtils.isSameOutwardPostcode(null, "W1F"));
+        Assert.assertFalse(PropertyUtils.isSameOutwardPostcode(" ", "W1F"));
+    }
+    
     //loadDataFromClassPathFile tests
     @Test(expected=RuntimeException.class)
     public void test_loadDataFromClassPathFile_with_wrong_file_path() {
@@ -105,6 +131,47 @@ public class PropertyUtilsTest
         Assert.assertEquals(2, actual.get(1).getPropertyReference());
     }
     
+    @Test()
+    public void test_loadDataFromClassPathFile_with_consumer() {
+        List<Property> actual = new ArrayList<>();
+        PropertyUtils.loadDataFromClassPathFile("/test-property-data.json", actual::add);
+        Assert.assertEquals(2, actual.size());
+        Assert.assertEquals(1, actual.get(0).getPropertyReference());
+        Assert.assertEquals(2, actual.get(1).getPropertyReference());
+    }
+    
+    //streamData tests
+    @Test()
+    public void test_streamDataFromClassPathFile() {
+        try (Stream<Property> properties = PropertyUtils.streamDataFromClassPathFile("/test-property-data.json")) {
+            Double actual = properties
+                    .filter(PropertyUtils.isPostcodeOutward("W1F"))
+                    .collect(Collectors.averagingDouble(Property::getPrice));
+            Assert.assertEquals(1000000, actual, 0);
+        }
+    }
+    
+    @Test()
+    public void test_streamData_with_newline_delimited_objects() {
+        String json = "{\"propertyReference\": 1, \"price\": 10}\n{\"propertyReference\": 2, \"price\": 20}\n";
+        try (Stream<Property> properties = PropertyUtils.streamData(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), "test")) {
+            List<Property> actual = properties.collect(Collectors.toList());
+            Assert.assertEquals(2, actual.size());
+            Assert.assertEquals(1, actual.get(0).getPropertyReference());
+            Assert.assertEquals(20, actual.get(1).getPrice(), 0);
+        }
+    }
+    
+    @Test(expected=RuntimeException.class)
+    public void test_streamData_with_malformed_json() {
+        String json = "[{\"propertyReference\": 1, \"price\": 10}, {\"propertyReference\": ";
+        try (Stream<Property> properties = PropertyUtils.streamData(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), "test")) {
+            properties.count();
+        }
+    }
+    
     //getMeanPriceByPostcodeOutWard tests
     @Test
     public void test_getMeanPriceByPostcodeOutWard_with_null_properties() {
@@ -182,6 +249,55 @@ public class PropertyUtilsTest
         Assert.assertEquals(property8, actual.get(2));
     }
     
+    //parallel tests
+    @Test
+    public void test_parallel_same_results_as_sequential() {
+        List<Property> properties = new ArrayList<>();
+        Random random = new Random(3);
+        for (int i = 0; i < 100000; i++) {
+            properties.add(new Property(i, random.nextDouble() * 1000000, "ZONE" + random.nextInt(5) + " ST1", 
+                    PropertyType.values()[random.nextInt(PropertyType.values().length)]));
+        }
+        
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Assert.assertEquals(PropertyUtils.getMeanPriceByPostcodeOutward("ZONE1", properties), 
+                    PropertyUtils.getMeanPriceByPostcodeOutward("ZONE1", properties, pool), 0.0001);
+            Assert.assertEquals(PropertyUtils.getMeanPriceByPropertyType(PropertyType.Flat, properties), 
+                    PropertyUtils.getMeanPriceByPropertyType(PropertyType.Flat, properties, pool), 0.0001);
+            Assert.assertEquals(PropertyUtils.getTopNPercentMostExpensive(10, properties), 
+                    PropertyUtils.getTopNPercentMostExpensive(10, properties, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    public void test_parallel_mean_is_reproducible() {
+        List<Property> properties = new ArrayList<>();
+        Random random = new Random(5);
+        for (int i = 0; i < 100000; i++) {
+            properties.add(new Property(i, random.nextDouble() * Math.pow(10, random.nextInt(9)), "ZONE1 ST1", 
+                    PropertyType.Flat));
+        }
+        
+        Double expected = PropertyUtils.getMeanPriceByPropertyType(PropertyType.Flat, properties, ForkJoinPool.commonPool());
+        for (int parallelism : new int[] {1, 2, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                Assert.assertEquals(expected, PropertyUtils.getMeanPriceByPropertyType(PropertyType.Flat, properties, pool));
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+    
+    @Test
+    public void test_parallel_with_null_properties() {
+        Assert.assertEquals(0, PropertyUtils.getMeanPriceByPostcodeOutward("", null, ForkJoinPool.commonPool()), 0);
+        Assert.assertTrue(PropertyUtils.getTopNPercentMostExpensive(10, null, ForkJoinPool.commonPool()).isEmpty());
+    }
+    
     //getTopNMostExpensive get
     
     @Test
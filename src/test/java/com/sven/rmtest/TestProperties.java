@@ -0,0 +1,37 @@
+package com.sven.rmtest;
+
+/**
+ * properties of test fixtures, with the fields a test needs on top of {@link Property#Property(long, double, String, PropertyType)}
+ */
+final class TestProperties
+{
+
+    private TestProperties() {
+    }
+    
+    static Property property(long reference, double price, String postcode, PropertyType propertyType, String region) {
+        Property property = new Property(reference, price, postcode, propertyType);
+        property.setRegion(region);
+        return property;
+    }
+    
+    static Property property(long reference, double price, String postcode, PropertyType propertyType,
+            int bedrooms, String region) {
+        Property property = property(reference, price, postcode, propertyType, region);
+        property.setBedrooms(bedrooms);
+        return property;
+    }
+    
+    static Property property(long reference, double price, String postcode, PropertyType propertyType, int bedrooms) {
+        Property property = new Property(reference, price, postcode, propertyType);
+        property.setBedrooms(bedrooms);
+        return property;
+    }
+    
+    static Property property(long reference, double price, String postcode, PropertyType propertyType,
+            String address, String region) {
+        Property property = property(reference, price, postcode, propertyType, region);
+        property.setAddress(address);
+        return property;
+    }
+}
@@ -0,0 +1,178 @@
+package com.sven.rmtest;
+
+import java.io.ByteArrayInputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sven.rmtest.WindowedPriceStatistics.Mode;
+import com.sven.rmtest.WindowedPriceStatistics.Window;
+
+public class WindowedPriceStatisticsTest
+{
+
+    private static final long MINUTE = 60000L;
+    
+    private Property property1 = new Property(1, 100, "ZONE1 ST1", PropertyType.Detached);
+    private Property property2 = new Property(2, 30, "zone1 ST2", PropertyType.Detached);
+    private Property property5 = new Property(5, 23, "ZONE2 ST5", PropertyType.Flat);
+    
+    private AtomicLong now = new AtomicLong(10 * MINUTE);
+    private Window tenMinutes = Window.of(Duration.ofMinutes(10), 10);
+    private WindowedPriceStatistics statistics = new WindowedPriceStatistics(
+            Arrays.asList(tenMinutes, WindowedPriceStatistics.HOUR), now::get);
+    
+    @Test
+    public void test_nothing_accepted() {
+        Assert.assertEquals(0, statistics.getMeanPriceByPropertyType(PropertyType.Flat, tenMinutes, Mode.SLIDING), 0);
+        Assert.assertEquals(0, statistics.getByPostcodeOutward("ZONE1", tenMinutes, Mode.SLIDING).getCount());
+    }
+    
+    @Test
+    public void test_sliding_window() {
+        statistics.accept(property1);
+        now.addAndGet(5 * MINUTE);
+        statistics.accept(property2);
+        statistics.accept(property5);
+        
+        Assert.assertEquals(65, statistics.getMeanPriceByPropertyType(PropertyType.Detached, tenMinutes, Mode.SLIDING), 0);
+        Assert.assertEquals(65, statistics.getMeanPriceByPostcodeOutward("zone1", tenMinutes, Mode.SLIDING), 0);
+        Assert.assertEquals(1, statistics.getByPostcodeOutward("ZONE2", tenMinutes, Mode.SLIDING).getCount());
+        
+        //first event slides out of 10 minutes, not out of the hour
+        now.addAndGet(5 * MINUTE);
+        Assert.assertEquals(30, statistics.getMeanPriceByPropertyType(PropertyType.Detached, tenMinutes, Mode.SLIDING), 0);
+        Assert.assertEquals(65, statistics.getMeanPriceByPropertyType(PropertyType.Detached, WindowedPriceStatistics.HOUR, Mode.SLIDING), 0);
+        
+        now.addAndGet(10 * MINUTE);
+        Assert.assertEquals(0, statistics.getByPropertyType(PropertyType.Detached, tenMinutes, Mode.SLIDING).getCount());
+        Assert.assertEquals(3, statistics.getEventCount());
+    }
+    
+    @Test
+    public void test_tumbling_window() {
+        //10th minute starts a window of 10 minutes
+        statistics.accept(property1, 9 * MINUTE);
+        statistics.accept(property2);
+        now.addAndGet(5 * MINUTE);
+        
+        Assert.assertEquals(30, statistics.getMeanPriceByPropertyType(PropertyType.Detached, tenMinutes, Mode.TUMBLING), 0);
+        Assert.assertEquals(65, statistics.getMeanPriceByPropertyType(PropertyType.Detached, tenMinutes, Mode.SLIDING), 0);
+        Assert.assertEquals(65, statistics.getMeanPriceByPropertyType(PropertyType.Detached, WindowedPriceStatistics.HOUR, Mode.TUMBLING), 0);
+        
+        now.addAndGet(5 * MINUTE);
+        Assert.assertEquals(0, statistics.getByPropertyType(PropertyType.Detached, tenMinutes, Mode.TUMBLING).getCount());
+    }
+    
+    @Test
+    public void test_late_events() {
+        now.set(100 * MINUTE);
+        statistics.accept(property1);
+        
+        //within window, in an older bucket
+        statistics.accept(property2, 95 * MINUTE);
+        Assert.assertEquals(65, statistics.getMeanPriceByPropertyType(PropertyType.Detached, tenMinutes, Mode.SLIDING), 0);
+        
+        //older than window, its bucket is used by a newer minute
+        statistics.accept(property2, 90 * MINUTE);
+        Assert.assertEquals(2, statistics.getByPropertyType(PropertyType.Detached, tenMinutes, Mode.SLIDING).getCount());
+        Assert.assertEquals(3, statistics.getByPropertyType(PropertyType.Detached, WindowedPriceStatistics.HOUR, Mode.SLIDING).getCount());
+    }
+    
+    @Test
+    public void test_outward_postcodes_are_bounded() {
+        WindowedPriceStatistics statistics = new WindowedPriceStatistics(Arrays.asList(tenMinutes), now::get, 3);
+        for (int i = 0; i < 100; i++) {
+            statistics.accept(new Property(i, 10, "ZONE" + i + " ST1", PropertyType.Flat));
+        }
+        Assert.assertEquals(3, statistics.getOutwardPostcodeCount());
+        Assert.assertEquals(10, statistics.getMeanPriceByPostcodeOutward("zone99", tenMinutes, Mode.SLIDING), 0);
+        Assert.assertEquals(0, statistics.getMeanPriceByPostcodeOutward("ZONE0", tenMinutes, Mode.SLIDING), 0);
+        
+        //postcodes without event in the window are dropped
+        now.addAndGet(11 * MINUTE);
+        statistics.accept(property1);
+        Assert.assertEquals(1, statistics.getOutwardPostcodeCount());
+        Assert.assertEquals(100, statistics.getMeanPriceByPostcodeOutward("ZONE1", tenMinutes, Mode.SLIDING), 0);
+    }
+    
+    @Test(expected = RuntimeException.class)
+    public void test_unknown_window() {
+        statistics.getByPropertyType(PropertyType.Flat, WindowedPriceStatistics.WEEK, Mode.SLIDING);
+    }
+    
+    @Test
+    public void test_read_stream() throws Exception {
+        String events = "{\"price\": 100, \"postcode\": \"ZONE1 ST1\", \"propertyType\": \"Detached\"}\n"
+                + "\n"
+                + "{\"price\": \"abc\", \"postcode\": \"ZONE1 ST1\"}\n"
+                + "not json\n"
+                + "{\"price\": 30, \"postcode\": \"ZONE1 ST2\", \"propertyType\": \"Detached\"}";
+        PropertyEventTailer tailer = PropertyEventTailer.read(
+                new ByteArrayInputStream(events.getBytes(StandardCharsets.UTF_8)), "events", statistics);
+        AtomicLong published = new AtomicLong();
+        tailer.addListener(s -> published.set(s.getEventCount()));
+        tailer.start();
+        
+        Assert.assertTrue(tailer.await(5000));
+        Assert.assertNull(tailer.getFailure());
+        Assert.assertEquals(2, tailer.getSkippedCount());
+        Assert.assertEquals(2, published.get());
+        Assert.assertEquals(65, statistics.getMeanPriceByPostcodeOutward("ZONE1", tenMinutes, Mode.SLIDING), 0);
+    }
+    
+    @Test
+    public void test_failing_listener() throws Exception {
+        String events = "{\"price\": 100, \"postcode\": \"ZONE1 ST1\", \"propertyType\": \"Detached\"}\n";
+        PropertyEventTailer tailer = PropertyEventTailer.read(
+                new ByteArrayInputStream(events.getBytes(StandardCharsets.UTF_8)), "events", statistics);
+        tailer.addListener(s -> {
+            throw new IllegalStateException("listener failed");
+        });
+        tailer.start();
+        
+        Assert.assertTrue(tailer.await(5000));
+        Assert.assertNotNull(tailer.getFailure());
+        Assert.assertEquals("listener failed", tailer.getFailure().getCause().getMessage());
+    }
+    
+    @Test
+    public void test_follow_file() throws Exception {
+        Path file = Files.createTempFile("property-events", ".ndjson");
+        CountDownLatch published = new CountDownLatch(1);
+        try (PropertyEventTailer tailer = PropertyEventTailer.follow(file, statistics)) {
+            tailer.addListener(s -> {
+                if (s.getEventCount() == 2) {
+                    published.countDown();
+                }
+            });
+            tailer.start();
+            
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+                out.write("{\"price\": 100, \"postcode\": \"ZONE1 ST1\", \"propertyType\": \"Flat\"}\n{\"price\": 20,");
+                out.flush();
+                Thread.sleep(200);
+                //rest of the line being written
+                out.write(" \"postcode\": \"ZONE1 ST2\", \"propertyType\": \"Flat\"}\n");
+            }
+            
+            Assert.assertTrue(published.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(60, statistics.getMeanPriceByPropertyType(PropertyType.Flat, tenMinutes, Mode.SLIDING), 0);
+            Assert.assertEquals(0, tailer.getSkippedCount());
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+}